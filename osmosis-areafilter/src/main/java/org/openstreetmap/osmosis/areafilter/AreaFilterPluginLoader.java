@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.openstreetmap.osmosis.areafilter.v0_6.BoundingBoxFilterFactory;
+import org.openstreetmap.osmosis.areafilter.v0_6.MultiAreaFilterFactory;
 import org.openstreetmap.osmosis.areafilter.v0_6.PolygonFilterFactory;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.plugin.PluginLoader;
@@ -30,9 +31,12 @@ public class AreaFilterPluginLoader implements PluginLoader {
 		factoryMap.put("bb", new BoundingBoxFilterFactory());
 		factoryMap.put("bounding-polygon", new PolygonFilterFactory());
 		factoryMap.put("bp", new PolygonFilterFactory());
+		factoryMap.put("bounding-areas", new MultiAreaFilterFactory());
+		factoryMap.put("ba", new MultiAreaFilterFactory());
 		
 		factoryMap.put("bounding-box-0.6", new BoundingBoxFilterFactory());
 		factoryMap.put("bounding-polygon-0.6", new PolygonFilterFactory());
+		factoryMap.put("bounding-areas-0.6", new MultiAreaFilterFactory());
 		
 		return factoryMap;
 	}
@@ -0,0 +1,194 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.areafilter.common;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+
+
+/**
+ * Finds all areas containing a point from a collection of polygons and
+ * bounding boxes. The world is divided into one degree cells, each listing the
+ * areas whose bounds overlap it, so a point is only checked against areas in
+ * its vicinity. Polygons are checked using a polygon index, and boxes include
+ * points lying on their edges in the same way as the bounding box filter.
+ * <p>
+ * Areas are numbered with all polygons first followed by all boxes, each in
+ * the order provided. Once created an index is never modified and may be used
+ * by multiple threads concurrently.
+ *
+ * @author Brett Henderson
+ */
+public class MultiAreaIndex {
+	private static final int COLUMN_COUNT = 360;
+	private static final int ROW_COUNT = 180;
+
+	private int areaCount;
+	/**
+	 * The polygon index for each area, or null if the area is a box.
+	 */
+	private PolygonIndex[] polygons;
+	/**
+	 * Each area is represented by one or more entries, boxes crossing the
+	 * antimeridian are split in two.
+	 */
+	private int entryCount;
+	private int[] entryAreas;
+	/**
+	 * Holds the bounds of each entry as minX, minY, maxX, maxY.
+	 */
+	private double[] entryBounds;
+	private int[] cellEntryOffsets;
+	private int[] cellEntries;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param polygonAreas
+	 *            The polygons to be indexed.
+	 * @param boxes
+	 *            The bounding boxes to be indexed.
+	 */
+	public MultiAreaIndex(List<Area> polygonAreas, List<Bound> boxes) {
+		areaCount = polygonAreas.size() + boxes.size();
+		polygons = new PolygonIndex[areaCount];
+
+		// Allow for every box crossing the antimeridian.
+		entryAreas = new int[polygonAreas.size() + boxes.size() * 2];
+		entryBounds = new double[entryAreas.length * 4];
+		entryCount = 0;
+
+		for (int i = 0; i < polygonAreas.size(); i++) {
+			Area area = polygonAreas.get(i);
+			Rectangle2D bounds = area.getBounds2D();
+
+			polygons[i] = new PolygonIndex(area);
+			addEntry(i, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+		}
+		for (int i = 0; i < boxes.size(); i++) {
+			for (Bound simpleBound : boxes.get(i).toSimpleBound()) {
+				addEntry(polygonAreas.size() + i,
+						simpleBound.getLeft(), simpleBound.getBottom(), simpleBound.getRight(), simpleBound.getTop());
+			}
+		}
+
+		buildCells();
+	}
+
+
+	private void addEntry(int area, double minX, double minY, double maxX, double maxY) {
+		int offset;
+
+		offset = entryCount * 4;
+		entryAreas[entryCount] = area;
+		entryBounds[offset] = minX;
+		entryBounds[offset + 1] = minY;
+		entryBounds[offset + 2] = maxX;
+		entryBounds[offset + 3] = maxY;
+		entryCount++;
+	}
+
+
+	private static int getColumn(double longitude) {
+		return Math.max(0, Math.min(COLUMN_COUNT - 1, (int) Math.floor(longitude + 180)));
+	}
+
+
+	private static int getRow(double latitude) {
+		return Math.max(0, Math.min(ROW_COUNT - 1, (int) Math.floor(latitude + 90)));
+	}
+
+
+	/**
+	 * Builds the list of entries overlapping each cell. Entries are added in
+	 * order so each cell lists its areas in ascending order.
+	 */
+	private void buildCells() {
+		int[] cellCounts;
+
+		cellCounts = new int[COLUMN_COUNT * ROW_COUNT];
+		cellEntryOffsets = new int[cellCounts.length + 1];
+
+		// The first pass counts the entries in each cell, the second fills them in.
+		for (int pass = 0; pass < 2; pass++) {
+			for (int entry = 0; entry < entryCount; entry++) {
+				int offset = entry * 4;
+				int lastColumn = getColumn(entryBounds[offset + 2]);
+				int lastRow = getRow(entryBounds[offset + 3]);
+
+				for (int row = getRow(entryBounds[offset + 1]); row <= lastRow; row++) {
+					for (int column = getColumn(entryBounds[offset]); column <= lastColumn; column++) {
+						int cell = row * COLUMN_COUNT + column;
+
+						if (pass > 0) {
+							cellEntries[cellEntryOffsets[cell] + cellCounts[cell]] = entry;
+						}
+						cellCounts[cell]++;
+					}
+				}
+			}
+
+			if (pass == 0) {
+				for (int cell = 0; cell < cellCounts.length; cell++) {
+					cellEntryOffsets[cell + 1] = cellEntryOffsets[cell] + cellCounts[cell];
+				}
+				cellEntries = new int[cellEntryOffsets[cellCounts.length]];
+				Arrays.fill(cellCounts, 0);
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the number of areas in the index.
+	 *
+	 * @return The area count.
+	 */
+	public int getAreaCount() {
+		return areaCount;
+	}
+
+
+	/**
+	 * Finds all areas containing the specified point.
+	 *
+	 * @param longitude
+	 *            The longitude of the point.
+	 * @param latitude
+	 *            The latitude of the point.
+	 * @param areaIndexes
+	 *            Receives the indexes of the matching areas in ascending
+	 *            order. It must have room for all areas in the index.
+	 * @return The number of matching areas.
+	 */
+	public int findAreas(double longitude, double latitude, int[] areaIndexes) {
+		int cell;
+		int matchCount;
+
+		cell = getRow(latitude) * COLUMN_COUNT + getColumn(longitude);
+		matchCount = 0;
+		for (int i = cellEntryOffsets[cell]; i < cellEntryOffsets[cell + 1]; i++) {
+			int entry = cellEntries[i];
+			int offset = entry * 4;
+			int area = entryAreas[entry];
+
+			// Skip remaining entries for an area that has already matched.
+			if (matchCount > 0 && areaIndexes[matchCount - 1] == area) {
+				continue;
+			}
+
+			if (longitude >= entryBounds[offset] && latitude >= entryBounds[offset + 1]
+					&& longitude <= entryBounds[offset + 2] && latitude <= entryBounds[offset + 3]) {
+				if (polygons[area] == null || polygons[area].contains(longitude, latitude)) {
+					areaIndexes[matchCount++] = area;
+				}
+			}
+		}
+
+		return matchCount;
+	}
+}
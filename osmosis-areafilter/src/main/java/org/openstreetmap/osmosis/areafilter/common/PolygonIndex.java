@@ -0,0 +1,472 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.areafilter.common;
+
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+
+/**
+ * Provides fast point in polygon tests for a polygon area. The bounds of the
+ * polygon are divided into a grid of cells which are classified as lying
+ * entirely inside the polygon, entirely outside the polygon, or on its
+ * boundary. Only points falling in boundary cells need to be checked against
+ * polygon edges, and then only against the edges passing through the cells
+ * between the point and the next classified cell in the same row.
+ * <p>
+ * Points are considered inside using the same rules as Area.contains, points
+ * on a left or bottom edge are inside and points on a right or top edge are
+ * outside. Once created an index is never modified and may be used by multiple
+ * threads concurrently.
+ *
+ * @author Brett Henderson
+ */
+public class PolygonIndex {
+
+	/**
+	 * The maximum number of cells in the grid, this limits the size of the
+	 * index for very detailed polygons.
+	 */
+	private static final int MAX_CELL_COUNT = 1 << 22;
+
+	/**
+	 * The number of cells created for each polygon edge.
+	 */
+	private static final int CELLS_PER_EDGE = 4;
+
+	/**
+	 * The flatness used when converting curves into lines. Polygon files only
+	 * contain straight lines so this has no effect in practice.
+	 */
+	private static final double FLATNESS = 1E-9;
+
+	private static final byte CELL_OUTSIDE = 0;
+	private static final byte CELL_INSIDE = 1;
+	private static final byte CELL_BOUNDARY = 2;
+
+	/**
+	 * Holds the start and end coordinates of each edge as x0, y0, x1, y1.
+	 */
+	private double[] edges;
+	private int edgeCount;
+	private double minX;
+	private double minY;
+	private double maxX;
+	private double maxY;
+	private int columnCount;
+	private int rowCount;
+	private double cellWidth;
+	private double cellHeight;
+	private byte[] cellTypes;
+	/**
+	 * The edges passing through each cell are held in cellEdges between
+	 * cellEdgeOffsets[cell] and cellEdgeOffsets[cell + 1].
+	 */
+	private int[] cellEdgeOffsets;
+	private int[] cellEdges;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param area
+	 *            The polygon area to be indexed. It is not referenced once the
+	 *            index is built.
+	 */
+	public PolygonIndex(Area area) {
+		loadEdges(area);
+
+		if (edgeCount > 0) {
+			buildGrid();
+			assignEdges();
+			classifyCells();
+		}
+	}
+
+
+	private void loadEdges(Area area) {
+		PathIterator pathIterator;
+		double[] coords;
+		double startX;
+		double startY;
+		double lastX;
+		double lastY;
+
+		edges = new double[64];
+		edgeCount = 0;
+		minX = Double.POSITIVE_INFINITY;
+		minY = Double.POSITIVE_INFINITY;
+		maxX = Double.NEGATIVE_INFINITY;
+		maxY = Double.NEGATIVE_INFINITY;
+
+		coords = new double[6];
+		startX = 0;
+		startY = 0;
+		lastX = 0;
+		lastY = 0;
+		for (pathIterator = area.getPathIterator(null, FLATNESS); !pathIterator.isDone(); pathIterator.next()) {
+			switch (pathIterator.currentSegment(coords)) {
+			case PathIterator.SEG_MOVETO:
+				startX = coords[0];
+				startY = coords[1];
+				lastX = startX;
+				lastY = startY;
+				break;
+			case PathIterator.SEG_LINETO:
+				addEdge(lastX, lastY, coords[0], coords[1]);
+				lastX = coords[0];
+				lastY = coords[1];
+				break;
+			case PathIterator.SEG_CLOSE:
+				addEdge(lastX, lastY, startX, startY);
+				lastX = startX;
+				lastY = startY;
+				break;
+			default:
+				throw new IllegalStateException("Unexpected path segment type in flattened path.");
+			}
+		}
+
+		edges = Arrays.copyOf(edges, edgeCount * 4);
+	}
+
+
+	private void addEdge(double x0, double y0, double x1, double y1) {
+		int offset;
+
+		if (x0 == x1 && y0 == y1) {
+			return;
+		}
+
+		offset = edgeCount * 4;
+		if (offset == edges.length) {
+			edges = Arrays.copyOf(edges, edges.length * 2);
+		}
+		edges[offset] = x0;
+		edges[offset + 1] = y0;
+		edges[offset + 2] = x1;
+		edges[offset + 3] = y1;
+		edgeCount++;
+
+		minX = Math.min(minX, Math.min(x0, x1));
+		minY = Math.min(minY, Math.min(y0, y1));
+		maxX = Math.max(maxX, Math.max(x0, x1));
+		maxY = Math.max(maxY, Math.max(y0, y1));
+	}
+
+
+	/**
+	 * Sizes the grid so that cells are approximately square with a cell count
+	 * proportional to the number of edges.
+	 */
+	private void buildGrid() {
+		long cellTarget;
+		double width;
+		double height;
+
+		cellTarget = Math.min(MAX_CELL_COUNT, (long) edgeCount * CELLS_PER_EDGE);
+		width = maxX - minX;
+		height = maxY - minY;
+
+		if (width > 0 && height > 0) {
+			columnCount = (int) Math.round(Math.sqrt(cellTarget * width / height));
+			columnCount = (int) Math.max(1, Math.min(cellTarget, columnCount));
+		} else {
+			columnCount = 1;
+		}
+		rowCount = (int) Math.max(1, cellTarget / columnCount);
+
+		// A degenerate polygon still needs non-zero cell sizes.
+		cellWidth = Math.max(width, Double.MIN_VALUE) / columnCount;
+		cellHeight = Math.max(height, Double.MIN_VALUE) / rowCount;
+	}
+
+
+	private int getColumn(double x) {
+		int column;
+
+		column = (int) ((x - minX) / cellWidth);
+		if (column < 0) {
+			return 0;
+		} else if (column >= columnCount) {
+			return columnCount - 1;
+		} else {
+			return column;
+		}
+	}
+
+
+	private int getRow(double y) {
+		int row;
+
+		row = (int) ((y - minY) / cellHeight);
+		if (row < 0) {
+			return 0;
+		} else if (row >= rowCount) {
+			return rowCount - 1;
+		} else {
+			return row;
+		}
+	}
+
+
+	/**
+	 * Calculates the x coordinate at which an edge reaches the specified y
+	 * coordinate. The edge must not be horizontal.
+	 */
+	private double getEdgeX(int edge, double y) {
+		int offset;
+		double x0;
+		double y0;
+		double x1;
+		double y1;
+
+		offset = edge * 4;
+		x0 = edges[offset];
+		y0 = edges[offset + 1];
+		x1 = edges[offset + 2];
+		y1 = edges[offset + 3];
+
+		// Always calculate from the lower end so the result doesn't depend on
+		// the edge direction.
+		if (y0 < y1) {
+			return x0 + (y - y0) * (x1 - x0) / (y1 - y0);
+		} else {
+			return x1 + (y - y1) * (x0 - x1) / (y0 - y1);
+		}
+	}
+
+
+	/**
+	 * Checks whether a horizontal ray at the specified y coordinate crosses
+	 * an edge. Each edge includes its lower end but not its upper end so that
+	 * a ray passing through a vertex crosses exactly one of its edges.
+	 */
+	private boolean isEdgeCrossed(int edge, double y) {
+		double y0;
+		double y1;
+
+		y0 = edges[edge * 4 + 1];
+		y1 = edges[edge * 4 + 3];
+
+		if (y0 < y1) {
+			return y >= y0 && y < y1;
+		} else {
+			return y >= y1 && y < y0;
+		}
+	}
+
+
+	/**
+	 * Invokes the supplied action for every cell an edge may pass through.
+	 * The column range for each row is widened by one cell on each side so
+	 * that rounding when calculating crossing points can't place a crossing
+	 * in a cell that doesn't reference the edge.
+	 *
+	 * @param edge
+	 *            The edge index.
+	 * @param cellCounts
+	 *            The number of edges added to each cell so far, updated for
+	 *            each cell visited.
+	 * @param targetEdges
+	 *            If not null, the edge is written into the cell edge list for
+	 *            each cell visited.
+	 */
+	private void addEdgeToCells(int edge, int[] cellCounts, int[] targetEdges) {
+		int offset;
+		double edgeMinY;
+		double edgeMaxY;
+		int lastRow;
+
+		offset = edge * 4;
+		edgeMinY = Math.min(edges[offset + 1], edges[offset + 3]);
+		edgeMaxY = Math.max(edges[offset + 1], edges[offset + 3]);
+
+		lastRow = getRow(edgeMaxY);
+		for (int row = getRow(edgeMinY); row <= lastRow; row++) {
+			double xa;
+			double xb;
+			int firstColumn;
+			int lastColumn;
+
+			if (edgeMinY == edgeMaxY) {
+				xa = edges[offset];
+				xb = edges[offset + 2];
+			} else {
+				xa = getEdgeX(edge, Math.max(edgeMinY, minY + row * cellHeight));
+				xb = getEdgeX(edge, Math.min(edgeMaxY, minY + (row + 1) * cellHeight));
+			}
+
+			firstColumn = Math.max(0, getColumn(Math.min(xa, xb)) - 1);
+			lastColumn = Math.min(columnCount - 1, getColumn(Math.max(xa, xb)) + 1);
+
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				int cell = row * columnCount + column;
+
+				if (targetEdges != null) {
+					targetEdges[cellEdgeOffsets[cell] + cellCounts[cell]] = edge;
+				}
+				cellCounts[cell]++;
+			}
+		}
+	}
+
+
+	/**
+	 * Builds the list of edges passing through each cell.
+	 */
+	private void assignEdges() {
+		int cellCount;
+		int[] cellCounts;
+
+		cellCount = columnCount * rowCount;
+		cellCounts = new int[cellCount];
+
+		// The first pass counts the edges in each cell, the second fills them in.
+		for (int edge = 0; edge < edgeCount; edge++) {
+			addEdgeToCells(edge, cellCounts, null);
+		}
+
+		cellEdgeOffsets = new int[cellCount + 1];
+		for (int cell = 0; cell < cellCount; cell++) {
+			cellEdgeOffsets[cell + 1] = cellEdgeOffsets[cell] + cellCounts[cell];
+		}
+
+		cellEdges = new int[cellEdgeOffsets[cellCount]];
+		Arrays.fill(cellCounts, 0);
+		for (int edge = 0; edge < edgeCount; edge++) {
+			addEdgeToCells(edge, cellCounts, cellEdges);
+		}
+	}
+
+
+	/**
+	 * Marks cells containing edges as boundary cells, and determines whether
+	 * every other cell lies inside or outside the polygon by casting a ray
+	 * along the centre of each row.
+	 */
+	private void classifyCells() {
+		double[] crossings;
+
+		cellTypes = new byte[columnCount * rowCount];
+		crossings = new double[16];
+
+		for (int row = 0; row < rowCount; row++) {
+			int rowStart;
+			double y;
+			int crossingCount;
+			int crossingIndex;
+
+			rowStart = row * columnCount;
+			y = minY + (row + 0.5) * cellHeight;
+
+			// Find where the ray crosses each edge. Edges appear in several
+			// cells so each crossing is only recorded by the cell it lies in.
+			crossingCount = 0;
+			for (int column = 0; column < columnCount; column++) {
+				int cell = rowStart + column;
+
+				for (int i = cellEdgeOffsets[cell]; i < cellEdgeOffsets[cell + 1]; i++) {
+					int edge = cellEdges[i];
+
+					if (isEdgeCrossed(edge, y)) {
+						double x = getEdgeX(edge, y);
+
+						if (getColumn(x) == column) {
+							if (crossingCount == crossings.length) {
+								crossings = Arrays.copyOf(crossings, crossings.length * 2);
+							}
+							crossings[crossingCount++] = x;
+						}
+					}
+				}
+			}
+			Arrays.sort(crossings, 0, crossingCount);
+
+			// A cell without edges is inside if the ray from its centre to the
+			// right crosses an odd number of edges.
+			crossingIndex = 0;
+			for (int column = 0; column < columnCount; column++) {
+				int cell = rowStart + column;
+				double x = minX + (column + 0.5) * cellWidth;
+
+				while (crossingIndex < crossingCount && crossings[crossingIndex] < x) {
+					crossingIndex++;
+				}
+
+				if (cellEdgeOffsets[cell] < cellEdgeOffsets[cell + 1]) {
+					cellTypes[cell] = CELL_BOUNDARY;
+				} else if (((crossingCount - crossingIndex) & 1) == 1) {
+					cellTypes[cell] = CELL_INSIDE;
+				} else {
+					cellTypes[cell] = CELL_OUTSIDE;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Tests if the specified point lies inside the polygon.
+	 *
+	 * @param x
+	 *            The x coordinate (longitude).
+	 * @param y
+	 *            The y coordinate (latitude).
+	 * @return True if the point lies inside the polygon.
+	 */
+	public boolean contains(double x, double y) {
+		int rowStart;
+		int crossingCount;
+
+		if (edgeCount == 0 || !(x >= minX && x < maxX && y >= minY && y < maxY)) {
+			return false;
+		}
+
+		// Cast a ray to the right until it reaches a cell that is known to be
+		// inside or outside, counting the edges crossed along the way.
+		rowStart = getRow(y) * columnCount;
+		crossingCount = 0;
+		for (int column = getColumn(x); column < columnCount; column++) {
+			int cell = rowStart + column;
+
+			if (cellTypes[cell] != CELL_BOUNDARY) {
+				boolean cellInside = cellTypes[cell] == CELL_INSIDE;
+
+				return cellInside != ((crossingCount & 1) == 1);
+			}
+
+			for (int i = cellEdgeOffsets[cell]; i < cellEdgeOffsets[cell + 1]; i++) {
+				int edge = cellEdges[i];
+
+				if (isEdgeCrossed(edge, y)) {
+					double edgeX = getEdgeX(edge, y);
+
+					if (x < edgeX && getColumn(edgeX) == column) {
+						crossingCount++;
+					}
+				}
+			}
+		}
+
+		// The ray left the grid so the last cell is outside the polygon.
+		return (crossingCount & 1) == 1;
+	}
+
+
+	/**
+	 * Gets the approximate number of bytes of memory consumed by the index.
+	 *
+	 * @return The memory size.
+	 */
+	public long getMemoryUsage() {
+		long result;
+
+		result = 8L * edges.length;
+		if (cellTypes != null) {
+			result += cellTypes.length + 4L * cellEdgeOffsets.length + 4L * cellEdges.length;
+		}
+
+		return result;
+	}
+}
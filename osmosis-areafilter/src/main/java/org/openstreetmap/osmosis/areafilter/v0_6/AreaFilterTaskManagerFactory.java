@@ -13,7 +13,9 @@ import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
  * @author Brett Henderson
  */
 public abstract class AreaFilterTaskManagerFactory extends TaskManagerFactory {
-	private static final IdTrackerType DEFAULT_ID_TRACKER_TYPE = IdTrackerType.Dynamic;
+	private static final IdTrackerType DEFAULT_ID_TRACKER_TYPE = IdTrackerType.Roaring;
+	private static final String ARG_WORKERS = "workers";
+	private static final int DEFAULT_WORKERS = AreaFilter.DEFAULT_WORKER_COUNT;
 
 
 	/**
@@ -28,4 +30,18 @@ public abstract class AreaFilterTaskManagerFactory extends TaskManagerFactory {
 	protected IdTrackerType getIdTrackerType(TaskConfiguration taskConfig) {
 		return DEFAULT_ID_TRACKER_TYPE;
 	}
+	
+	
+	/**
+	 * Utility method for retrieving the number of threads to use for checking
+	 * whether nodes lie within the area.
+	 * 
+	 * @param taskConfig
+	 *            Contains all information required to instantiate and configure
+	 *            the task.
+	 * @return The worker thread count.
+	 */
+	protected int getWorkerCount(TaskConfiguration taskConfig) {
+		return getIntegerArgument(taskConfig, ARG_WORKERS, DEFAULT_WORKERS);
+	}
 }
@@ -0,0 +1,1273 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.areafilter.v0_6;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatchOutput;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityProcessor;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.filter.common.IdTrackerType;
+import org.openstreetmap.osmosis.core.filter.common.MultiIdTracker;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.store.CompactObjectSerializationFactory;
+import org.openstreetmap.osmosis.core.store.SimpleObjectStore;
+import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
+import org.openstreetmap.osmosis.core.task.v0_6.MultiPassSink;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+
+
+/**
+ * Selects the entities lying within one or more areas, sending the entities
+ * of each area to a separate output. Entities are stored once regardless of
+ * the number of areas, and the selections of all areas are held in combined
+ * id trackers so entities outside every area are rejected with a single
+ * lookup. This implements the area filter tasks, which differ only in how
+ * nodes and bounds are matched against their areas.
+ *
+ * @author Brett Henderson
+ * @author Karl Newman
+ */
+abstract class AreaSelector implements BatchSink, MultiPassSink, EntityProcessor {
+
+	private static final Logger LOG = Logger.getLogger(AreaSelector.class.getName());
+
+	/**
+	 * The number of nodes checked by a worker in a single task.
+	 */
+	private static final int NODE_CHUNK_SIZE = 4096;
+
+	private int areaCount;
+	private EntityBatchOutput[] outputs;
+	private int[] nodeAreas; // Receives the areas containing a node checked without workers.
+	private MultiIdTracker availableNodes; // Nodes within the area.
+	private MultiIdTracker requiredNodes; // Nodes needed to complete referencing entities.
+	private MultiIdTracker availableWays; // Ways within the area.
+	private MultiIdTracker requiredWays; // Ways needed to complete referencing relations.
+	private MultiIdTracker availableRelations; // Relations within the area.
+	private MultiIdTracker requiredRelations; // Relations needed to complete referencing relations.
+	private boolean clipIncompleteEntities;
+	private boolean completeWays;
+	private boolean completeRelations;
+	private boolean storeEntities;
+	private boolean cascadingRelations;
+	private SimpleObjectStore<WayContainer> allWays;
+	private SimpleObjectStore<NodeContainer> allNodes;
+	// this duplicates as a container for held-back relations in the cascadingRelations case:
+	private SimpleObjectStore<RelationContainer> allRelations;
+	private int workerCount;
+	private ExecutorService executorService;
+	private List<NodeContainer> nodeChunk; // Nodes not yet passed to a worker.
+	private Queue<NodeChunkResult> nodeChunkResults; // Chunks being checked in submission order.
+	private boolean multiPass;
+	private Pass pass;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param idTrackerType
+	 *            Defines the id tracker implementation to use.
+	 * @param areaCount
+	 *            The number of areas, each having its own output.
+	 * @param clipIncompleteEntities
+	 *            If true, entities referring to non-existent entities will be
+	 *            modified to ensure referential integrity. For example, ways
+	 *            will be modified to only include nodes inside the area.
+	 * @param completeWays
+	 *            Include all nodes for ways which have at least one node inside
+	 *            the filtered area.
+	 * @param completeRelations
+	 *            Include all relations referenced by other relations which have
+	 *            members inside the filtered area.
+	 * @param cascadingRelations
+	 *            Make sure that a relation referencing a relation which is included
+	 *            will also be included.
+	 * @param workerCount
+	 *            The number of threads used to check whether nodes lie within
+	 *            the areas. If greater than one, the findAreas implementation
+	 *            must support concurrent calls.
+	 */
+	AreaSelector(
+			IdTrackerType idTrackerType, int areaCount, boolean clipIncompleteEntities, boolean completeWays,
+			boolean completeRelations, boolean cascadingRelations, int workerCount) {
+		if (workerCount <= 0) {
+			throw new OsmosisRuntimeException("An area filter worker count of " + workerCount + " is invalid.");
+		}
+		this.workerCount = workerCount;
+		nodeChunk = new ArrayList<NodeContainer>(NODE_CHUNK_SIZE);
+		nodeChunkResults = new LinkedList<NodeChunkResult>();
+
+		this.areaCount = areaCount;
+		outputs = new EntityBatchOutput[areaCount];
+		nodeAreas = new int[areaCount];
+
+		this.clipIncompleteEntities = clipIncompleteEntities;
+		// Allowing complete relations without complete ways is very difficult and not allowed for
+		// now.
+		this.completeWays = completeWays || completeRelations;
+		this.completeRelations = completeRelations;
+		// cascadingRelations is included for free with any of the complete options so you don't
+		// need it if those are set.
+		this.cascadingRelations = cascadingRelations && !completeRelations && !completeWays;
+
+		availableNodes = new MultiIdTracker(idTrackerType, areaCount);
+		requiredNodes = new MultiIdTracker(idTrackerType, areaCount);
+		availableWays = new MultiIdTracker(idTrackerType, areaCount);
+		requiredWays = new MultiIdTracker(idTrackerType, areaCount);
+		availableRelations = new MultiIdTracker(idTrackerType, areaCount);
+		requiredRelations = new MultiIdTracker(idTrackerType, areaCount);
+
+		// If either complete ways or complete relations are required, then all data must be stored
+		// during processing.
+		storeEntities = completeWays || completeRelations;
+		if (storeEntities) {
+			allNodes = new SimpleObjectStore<NodeContainer>(
+					new CompactObjectSerializationFactory(
+							new SingleClassObjectSerializationFactory(NodeContainer.class)), "afn", true);
+			allWays = new SimpleObjectStore<WayContainer>(
+					new CompactObjectSerializationFactory(
+							new SingleClassObjectSerializationFactory(WayContainer.class)), "afw", true);
+			allRelations =
+				new SimpleObjectStore<RelationContainer>(
+						new CompactObjectSerializationFactory(
+								new SingleClassObjectSerializationFactory(RelationContainer.class)), "afr", true);
+		} else if (cascadingRelations) {
+			allRelations =
+				new SimpleObjectStore<RelationContainer>(
+						new CompactObjectSerializationFactory(
+								new SingleClassObjectSerializationFactory(RelationContainer.class)), "afr", true);
+		}
+	}
+
+
+	/**
+	 * Finds all areas containing a node.
+	 *
+	 * @param node
+	 *            The node to be checked.
+	 * @param areaIndexes
+	 *            Receives the indexes of the matching areas in ascending
+	 *            order. It has room for all areas.
+	 * @return The number of matching areas.
+	 */
+	protected abstract int findAreas(Node node, int[] areaIndexes);
+
+
+	/**
+	 * Clips a bound to an area.
+	 *
+	 * @param area
+	 *            The index of the area.
+	 * @param bound
+	 *            The bound to be clipped.
+	 * @return The clipped bound, or null if the bound doesn't overlap the
+	 *         area.
+	 */
+	protected abstract Bound intersectBound(int area, Bound bound);
+
+
+	/**
+	 * Sets the sink receiving the entities within an area.
+	 *
+	 * @param area
+	 *            The index of the area.
+	 * @param sink
+	 *            The sink.
+	 */
+	public void setSink(int area, Sink sink) {
+		outputs[area] = new EntityBatchOutput(sink);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Multiple passes are only used if complete ways or relations are
+	 * required. Instead of storing all nodes and ways, the first pass selects
+	 * the required entities and a final pass sends them to the sinks.
+	 * Relations are still stored because selecting parent and child relations
+	 * requires repeated passes over them.
+	 */
+	@Override
+	public boolean requestMultiPass() {
+		if (!storeEntities) {
+			return false;
+		}
+
+		multiPass = true;
+		pass = Pass.Select;
+
+		allNodes.release();
+		allNodes = null;
+		allWays.release();
+		allWays = null;
+
+		return true;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean completePass() {
+		flushNodes();
+
+		switch (pass) {
+		case Select:
+			selectRequiredEntities();
+
+			// The nodes of ways selected by relations aren't known until the
+			// ways are read again.
+			if (completeRelations) {
+				pass = Pass.WayNodes;
+			} else {
+				pass = Pass.Emit;
+			}
+			return true;
+		case WayNodes:
+			pass = Pass.Emit;
+			return true;
+		default:
+			return false;
+		}
+	}
+
+
+	/**
+	 * Indicates if entities are being selected from the data currently being
+	 * received, rather than having been selected in an earlier pass.
+	 *
+	 * @return True if entities are being selected.
+	 */
+	private boolean isSelecting() {
+		return !multiPass || pass == Pass.Select;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void initialize(Map<String, Object> metaData) {
+		for (EntityBatchOutput output : outputs) {
+			output.initialize(metaData);
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(EntityContainer entityContainer) {
+		// Ask the entity container to invoke the appropriate processing method
+		// for the entity type.
+		entityContainer.process(this);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(EntityBatch batch) {
+		process(batch, this);
+	}
+
+
+	/**
+	 * Passes each entity in a batch to a processor, sending the resulting
+	 * output of each area downstream as a single batch.
+	 *
+	 * @param batch
+	 *            The batch to be processed.
+	 * @param processor
+	 *            The per-entity processing of the task owning this selector.
+	 */
+	public void process(EntityBatch batch, Sink processor) {
+		for (EntityBatchOutput output : outputs) {
+			output.beginBatch(batch.size());
+		}
+		for (EntityContainer entityContainer : batch.getEntities()) {
+			processor.process(entityContainer);
+		}
+
+		// Nodes still being checked belong to this batch.
+		flushNodes();
+		for (EntityBatchOutput output : outputs) {
+			output.endBatch();
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(BoundContainer boundContainer) {
+		Bound bound;
+
+		flushNodes();
+
+		// When using multiple passes, the bound is only sent with the selected entities.
+		if (multiPass && pass != Pass.Emit) {
+			return;
+		}
+
+		// Send on a bound clipped to each area that it overlaps.
+		bound = boundContainer.getEntity();
+		for (int area = 0; area < areaCount; area++) {
+			Bound newBound;
+
+			newBound = intersectBound(area, bound);
+			if (newBound != null) {
+				outputs[area].process(new BoundContainer(newBound));
+			}
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(NodeContainer container) {
+		if (!isSelecting()) {
+			if (pass == Pass.Emit) {
+				emitNode(container);
+			}
+		} else if (workerCount > 1) {
+			nodeChunk.add(container);
+			if (nodeChunk.size() >= NODE_CHUNK_SIZE) {
+				submitNodeChunk();
+			}
+		} else {
+			processNode(container, nodeAreas, 0, findAreas(container.getEntity(), nodeAreas));
+		}
+	}
+
+
+	/**
+	 * Finds the areas containing each node of a chunk. The result begins with
+	 * an offset for each node followed by the end offset of the last node. The
+	 * indexes of the areas containing each node lie between its offset and
+	 * the next.
+	 *
+	 * @param chunk
+	 *            The nodes to be checked.
+	 * @return The areas containing each node.
+	 */
+	private int[] findChunkAreas(List<NodeContainer> chunk) {
+		int[] areas;
+		int[] result;
+		int offset;
+
+		areas = new int[areaCount];
+
+		// Allow for each node lying within one area.
+		result = new int[chunk.size() * 2 + 1];
+		offset = chunk.size() + 1;
+		for (int i = 0; i < chunk.size(); i++) {
+			int matchCount;
+
+			result[i] = offset;
+			matchCount = findAreas(chunk.get(i).getEntity(), areas);
+			if (offset + matchCount > result.length) {
+				result = Arrays.copyOf(result, Math.max(result.length * 2, offset + matchCount));
+			}
+			System.arraycopy(areas, 0, result, offset, matchCount);
+			offset += matchCount;
+		}
+		result[chunk.size()] = offset;
+
+		return result;
+	}
+
+
+	/**
+	 * Passes the current chunk of nodes to a worker to be checked against the
+	 * areas. This will block until the oldest chunk completes if all workers
+	 * are busy.
+	 */
+	private void submitNodeChunk() {
+		final List<NodeContainer> chunk;
+
+		if (nodeChunk.size() == 0) {
+			return;
+		}
+
+		if (executorService == null) {
+			executorService = Executors.newFixedThreadPool(workerCount);
+		}
+
+		// Allow one chunk per worker to be queued behind those in progress,
+		// beyond that the results must be consumed before continuing.
+		while (nodeChunkResults.size() >= workerCount * 2) {
+			processNodeChunkResult(nodeChunkResults.remove());
+		}
+
+		chunk = nodeChunk;
+		nodeChunk = new ArrayList<NodeContainer>(NODE_CHUNK_SIZE);
+
+		nodeChunkResults.add(new NodeChunkResult(chunk, executorService.submit(new Callable<int[]>() {
+			@Override
+			public int[] call() {
+				return findChunkAreas(chunk);
+			}
+		})));
+	}
+
+
+	/**
+	 * Waits for a worker to finish checking a chunk of nodes and processes the
+	 * nodes in their original order.
+	 *
+	 * @param chunkResult
+	 *            The chunk to be processed.
+	 */
+	private void processNodeChunkResult(NodeChunkResult chunkResult) {
+		int[] areas;
+
+		try {
+			areas = chunkResult.getResult().get();
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new OsmosisRuntimeException("An area filter worker thread failed, aborting.", e.getCause());
+		}
+
+		for (int i = 0; i < chunkResult.getNodes().size(); i++) {
+			processNode(chunkResult.getNodes().get(i), areas, areas[i], areas[i + 1] - areas[i]);
+		}
+	}
+
+
+	/**
+	 * Processes all nodes that have been received but not yet processed. This
+	 * must be called before any other entity is processed to maintain the
+	 * order of the output.
+	 */
+	private void flushNodes() {
+		if (workerCount > 1) {
+			submitNodeChunk();
+			while (!nodeChunkResults.isEmpty()) {
+				processNodeChunkResult(nodeChunkResults.remove());
+			}
+		}
+	}
+
+
+	/**
+	 * Records a node once the areas containing it are known.
+	 *
+	 * @param container
+	 *            The node to be processed.
+	 * @param areas
+	 *            Holds the indexes of the areas containing the node.
+	 * @param offset
+	 *            The position of the first area index.
+	 * @param matchCount
+	 *            The number of areas containing the node.
+	 */
+	private void processNode(NodeContainer container, int[] areas, int offset, int matchCount) {
+		long nodeId;
+
+		nodeId = container.getEntity().getId();
+
+		// Check if we're storing entities for later.
+		if (allNodes != null) {
+			allNodes.add(container);
+		}
+
+		// Only add the node to the areas it lies within.
+		for (int i = offset; i < offset + matchCount; i++) {
+			int area = areas[i];
+
+			availableNodes.set(area, nodeId);
+
+			// If we're not storing entities, we pass it on immediately.
+			if (!storeEntities) {
+				outputs[area].process(container);
+			}
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(WayContainer container) {
+		Way way;
+		boolean inAnyArea;
+
+		flushNodes();
+
+		way = container.getEntity();
+
+		if (!isSelecting()) {
+			if (pass == Pass.WayNodes) {
+				selectWayNodes(way);
+			} else {
+				emitWay(container);
+			}
+			return;
+		}
+
+		// Check if we're storing entities for later.
+		if (allWays != null) {
+			allWays.add(container);
+		}
+
+		// Ways without any nodes in an area can be skipped without checking
+		// each area individually.
+		inAnyArea = false;
+		for (WayNode nodeReference : way.getWayNodes()) {
+			if (availableNodes.getAny(nodeReference.getNodeId())) {
+				inAnyArea = true;
+				break;
+			}
+		}
+		if (!inAnyArea) {
+			return;
+		}
+
+		for (int area = 0; area < areaCount; area++) {
+			boolean inArea;
+
+			// First look through all the nodes to see if any are within the filtered area
+			inArea = false;
+			for (WayNode nodeReference : way.getWayNodes()) {
+				if (availableNodes.get(area, nodeReference.getNodeId())) {
+					inArea = true;
+					break;
+				}
+			}
+
+			// If the way has at least one node in the filtered area.
+			if (inArea) {
+				availableWays.set(area, way.getId());
+
+				// If complete ways are desired, mark any unavailable nodes as required.
+				if (completeWays) {
+					for (WayNode nodeReference : way.getWayNodes()) {
+						long nodeId = nodeReference.getNodeId();
+
+						if (!availableNodes.get(area, nodeId)) {
+							requiredNodes.set(area, nodeId);
+						}
+					}
+				}
+
+				// If we're not storing entities, we pass it on immediately.
+				if (!storeEntities) {
+					emitWay(area, container);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Checks whether a relation member has been selected for an area.
+	 *
+	 * @param area
+	 *            The index of the area.
+	 * @param member
+	 *            The member to be checked.
+	 * @return True if the member is available.
+	 */
+	private boolean isMemberAvailable(int area, RelationMember member) {
+		switch (member.getMemberType()) {
+		case Node:
+			return availableNodes.get(area, member.getMemberId());
+		case Way:
+			return availableWays.get(area, member.getMemberId());
+		case Relation:
+			return availableRelations.get(area, member.getMemberId());
+		default:
+			return false;
+		}
+	}
+
+
+	/**
+	 * Checks whether a relation member has been selected for any area.
+	 *
+	 * @param member
+	 *            The member to be checked.
+	 * @return True if the member is available in at least one area.
+	 */
+	private boolean isMemberAvailableInAnyArea(RelationMember member) {
+		switch (member.getMemberType()) {
+		case Node:
+			return availableNodes.getAny(member.getMemberId());
+		case Way:
+			return availableWays.getAny(member.getMemberId());
+		case Relation:
+			return availableRelations.getAny(member.getMemberId());
+		default:
+			return false;
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(RelationContainer container) {
+		Relation relation;
+		boolean inAnyArea;
+		boolean holdBackRelation;
+
+		flushNodes();
+
+		relation = container.getEntity();
+
+		if (!isSelecting()) {
+			if (pass == Pass.Emit) {
+				emitRelation(container);
+			}
+			return;
+		}
+
+		holdBackRelation = cascadingRelations;
+
+		// Check if we're storing entities for later.
+		if (storeEntities || holdBackRelation) {
+			allRelations.add(container);
+		}
+
+		// Relations without any members in an area can be skipped without
+		// checking each area individually.
+		inAnyArea = false;
+		for (RelationMember member : relation.getMembers()) {
+			if (isMemberAvailableInAnyArea(member)) {
+				inAnyArea = true;
+				break;
+			}
+		}
+		if (!inAnyArea) {
+			return;
+		}
+
+		for (int area = 0; area < areaCount; area++) {
+			boolean inArea;
+
+			// First look through all the node and way members to see if any are within the filtered area
+			inArea = false;
+			for (RelationMember member : relation.getMembers()) {
+				if (isMemberAvailable(area, member)) {
+					inArea = true;
+					break;
+				}
+			}
+
+			// If the relation has at least one member in the filtered area.
+			if (inArea) {
+				availableRelations.set(area, relation.getId());
+
+				// If we're not storing entities, we pass it on immediately.
+				if (!storeEntities && !holdBackRelation) {
+					emitRelation(area, container);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Sends a node to the sink of each area it has been selected for.
+	 *
+	 * @param nodeContainer
+	 *            Node to be sent.
+	 */
+	private void emitNode(NodeContainer nodeContainer) {
+		long nodeId;
+
+		nodeId = nodeContainer.getEntity().getId();
+		if (!availableNodes.getAny(nodeId)) {
+			return;
+		}
+
+		for (int area = 0; area < areaCount; area++) {
+			if (availableNodes.get(area, nodeId)) {
+				outputs[area].process(nodeContainer);
+			}
+		}
+	}
+
+
+	/**
+	 * Sends a way to the sink of each area it has been selected for.
+	 *
+	 * @param wayContainer
+	 *            Way to be sent.
+	 */
+	private void emitWay(WayContainer wayContainer) {
+		long wayId;
+
+		wayId = wayContainer.getEntity().getId();
+		if (!availableWays.getAny(wayId)) {
+			return;
+		}
+
+		for (int area = 0; area < areaCount; area++) {
+			if (availableWays.get(area, wayId)) {
+				emitWay(area, wayContainer);
+			}
+		}
+	}
+
+
+	/**
+	 * Sends a way to the sink of an area. This will perform any necessary
+	 * transformations on the way before sending it.
+	 *
+	 * @param area
+	 *            The index of the area.
+	 * @param wayContainer
+	 *            Way to be sent.
+	 */
+	private void emitWay(int area, WayContainer wayContainer) {
+		if (clipIncompleteEntities) {
+			WayContainer filteredWayContainer;
+			Way filteredWay;
+
+			filteredWayContainer = wayContainer.getWriteableInstance();
+			filteredWay = filteredWayContainer.getEntity();
+
+			// Remove node references for nodes that are unavailable.
+			for (Iterator<WayNode> i = filteredWay.getWayNodes().iterator(); i.hasNext();) {
+				WayNode nodeReference = i.next();
+
+				if (!availableNodes.get(area, nodeReference.getNodeId())) {
+					i.remove();
+				}
+			}
+
+			// Only add ways that contain nodes.
+			if (filteredWay.getWayNodes().size() > 0) {
+				outputs[area].process(filteredWayContainer);
+			}
+
+		} else {
+			outputs[area].process(wayContainer);
+		}
+	}
+
+
+	/**
+	 * Sends a relation to the sink of each area it has been selected for.
+	 *
+	 * @param relationContainer
+	 *            Relation to be sent.
+	 */
+	private void emitRelation(RelationContainer relationContainer) {
+		long relationId;
+
+		relationId = relationContainer.getEntity().getId();
+		if (!availableRelations.getAny(relationId)) {
+			return;
+		}
+
+		for (int area = 0; area < areaCount; area++) {
+			if (availableRelations.get(area, relationId)) {
+				emitRelation(area, relationContainer);
+			}
+		}
+	}
+
+
+	/**
+	 * Sends a relation to the sink of an area. This will perform any necessary
+	 * transformations on the relation before sending it.
+	 *
+	 * @param area
+	 *            The index of the area.
+	 * @param relationContainer
+	 *            Relation to be sent.
+	 */
+	private void emitRelation(int area, RelationContainer relationContainer) {
+		if (clipIncompleteEntities) {
+			RelationContainer filteredRelationContainer;
+			Relation filteredRelation;
+
+			filteredRelationContainer = relationContainer.getWriteableInstance();
+			filteredRelation = filteredRelationContainer.getEntity();
+
+			// Remove members for entities that are unavailable.
+			for (Iterator<RelationMember> i = filteredRelation.getMembers().iterator(); i.hasNext();) {
+				RelationMember member = i.next();
+				EntityType memberType;
+				long memberId;
+
+				memberType = member.getMemberType();
+				memberId = member.getMemberId();
+
+				switch (memberType) {
+				case Node:
+					if (!availableNodes.get(area, memberId)) {
+						i.remove();
+					}
+					break;
+				case Way:
+					if (!availableWays.get(area, memberId)) {
+						i.remove();
+					}
+					break;
+				case Relation:
+					if (!availableRelations.get(area, memberId)) {
+						i.remove();
+					}
+					break;
+				default:
+					break;
+				}
+			}
+
+			// Only add relations that contain entities.
+			if (filteredRelation.getMembers().size() > 0) {
+				outputs[area].process(filteredRelationContainer);
+			}
+
+		} else {
+			outputs[area].process(relationContainer);
+		}
+	}
+
+
+	private boolean selectParentRelationsPass() {
+		ReleasableIterator<RelationContainer> i = allRelations.iterate();
+
+		try {
+			int selectionCount;
+
+			selectionCount = 0;
+
+			while (i.hasNext()) {
+				Relation relation = i.next().getEntity();
+				long relationId = relation.getId();
+				boolean memberAvailable;
+
+				// Relations without a member relation selected for any area
+				// can't be selected.
+				memberAvailable = false;
+				for (RelationMember member : relation.getMembers()) {
+					if (member.getMemberType().equals(EntityType.Relation)
+							&& availableRelations.getAny(member.getMemberId())) {
+						memberAvailable = true;
+						break;
+					}
+				}
+				if (!memberAvailable) {
+					continue;
+				}
+
+				for (int area = 0; area < areaCount; area++) {
+					// Ignore relations that have already been selected.
+					if (!availableRelations.get(area, relationId)) {
+
+						// This relation becomes an available relation if one of its member
+						// relations is also available.
+						for (RelationMember member : relation.getMembers()) {
+							if (member.getMemberType().equals(EntityType.Relation)) {
+								if (availableRelations.get(area, member.getMemberId())) {
+									availableRelations.set(area, relationId);
+									selectionCount++;
+								}
+							}
+						}
+					}
+				}
+			}
+
+			return selectionCount > 0;
+
+		} finally {
+			i.release();
+		}
+	}
+
+
+	/**
+	 * Walk up the relation tree. This means iterating through relations until all parent relations
+	 * of existing relations are marked in the available list. We may have to do this multiple times
+	 * depending on the nesting level of relations.
+	 */
+	private void selectParentRelations() {
+		boolean selectionsMade;
+
+		do {
+			selectionsMade = selectParentRelationsPass();
+		} while (selectionsMade);
+	}
+
+
+	/**
+	 * Select all relation members of type relation for existing selected relations. This may need
+	 * to be called several times until all children are selected.
+	 *
+	 * @return True if additional selections were made an another pass is needed.
+	 */
+	private boolean selectChildRelationsPass() {
+		ReleasableIterator<RelationContainer> i = allRelations.iterate();
+
+		try {
+			int selectionCount;
+
+			selectionCount = 0;
+
+			while (i.hasNext()) {
+				Relation relation = i.next().getEntity();
+				long relationId = relation.getId();
+
+				// Only examine available relations.
+				if (!availableRelations.getAny(relationId)) {
+					continue;
+				}
+
+				for (int area = 0; area < areaCount; area++) {
+					if (availableRelations.get(area, relationId)) {
+						// Select the child if it hasn't already been selected.
+						for (RelationMember member : relation.getMembers()) {
+							if (member.getMemberType().equals(EntityType.Relation)) {
+								long memberId = member.getMemberId();
+
+								if (!availableRelations.get(area, memberId)) {
+									availableRelations.set(area, memberId);
+									selectionCount++;
+								}
+							}
+						}
+					}
+				}
+			}
+
+			return selectionCount > 0;
+
+		} finally {
+			i.release();
+		}
+	}
+
+
+	/**
+	 * Select all relation members of type node or way for existing selected relations.
+	 */
+	private void selectChildNonRelationsPass() {
+		ReleasableIterator<RelationContainer> i = allRelations.iterate();
+
+		try {
+			while (i.hasNext()) {
+				Relation relation = i.next().getEntity();
+				long relationId = relation.getId();
+
+				// Only examine available relations.
+				if (!availableRelations.getAny(relationId)) {
+					continue;
+				}
+
+				for (int area = 0; area < areaCount; area++) {
+					if (availableRelations.get(area, relationId)) {
+						// Select the member if it hasn't already been selected.
+						for (RelationMember member : relation.getMembers()) {
+							switch (member.getMemberType()) {
+							case Node:
+								availableNodes.set(area, member.getMemberId());
+								break;
+							case Way:
+								availableWays.set(area, member.getMemberId());
+								break;
+							default:
+								break;
+							}
+						}
+					}
+				}
+			}
+
+		} finally {
+			i.release();
+		}
+	}
+
+
+	/**
+	 * Select all nodes within already selected ways.
+	 */
+	private void selectWayNodes() {
+		ReleasableIterator<WayContainer> i = allWays.iterate();
+
+		try {
+			while (i.hasNext()) {
+				selectWayNodes(i.next().getEntity());
+			}
+
+		} finally {
+			i.release();
+		}
+	}
+
+
+	/**
+	 * Select all nodes within a way for each area the way has been selected
+	 * for.
+	 *
+	 * @param way
+	 *            The way containing the nodes.
+	 */
+	private void selectWayNodes(Way way) {
+		long wayId;
+
+		wayId = way.getId();
+		if (!availableWays.getAny(wayId)) {
+			return;
+		}
+
+		for (int area = 0; area < areaCount; area++) {
+			if (availableWays.get(area, wayId)) {
+				for (WayNode wayNode : way.getWayNodes()) {
+					availableNodes.set(area, wayNode.getNodeId());
+				}
+			}
+		}
+	}
+
+
+	private void buildCompleteRelations() {
+		boolean selectionsMade;
+
+		// Select all child relation members of type relation.
+		do {
+			selectionsMade = selectChildRelationsPass();
+		} while (selectionsMade);
+
+		// Select all child relation members of type way or node.
+		selectChildNonRelationsPass();
+	}
+
+
+	/**
+	 * Selects all entities required in addition to those within the areas
+	 * once all entities have been examined.
+	 */
+	private void selectRequiredEntities() {
+		// Select all parents of current relations.
+		selectParentRelations();
+
+		// Merge required ids into available ids.
+		availableNodes.setAll(requiredNodes);
+		availableWays.setAll(requiredWays);
+		availableRelations.setAll(requiredRelations);
+		requiredNodes = null;
+		requiredWays = null;
+		requiredRelations = null;
+
+		if (completeRelations) {
+			buildCompleteRelations();
+		}
+	}
+
+
+	private void pumpNodesToSink() {
+		ReleasableIterator<NodeContainer> i = allNodes.iterate();
+
+		try {
+			while (i.hasNext()) {
+				emitNode(i.next());
+			}
+
+		} finally {
+			i.release();
+		}
+	}
+
+
+	private void pumpWaysToSink() {
+		ReleasableIterator<WayContainer> i = allWays.iterate();
+
+		try {
+			while (i.hasNext()) {
+				emitWay(i.next());
+			}
+
+		} finally {
+			i.release();
+		}
+	}
+
+
+	private void pumpRelationsToSink() {
+		ReleasableIterator<RelationContainer> i = allRelations.iterate();
+
+		try {
+			while (i.hasNext()) {
+				emitRelation(i.next());
+			}
+
+		} finally {
+			i.release();
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void complete() {
+		flushNodes();
+		if (executorService != null) {
+			executorService.shutdown();
+		}
+
+		// If we've stored entities temporarily, we now need to forward the selected ones to the output.
+		// When using multiple passes they have already been sent during the final pass.
+		if (storeEntities && !multiPass) {
+			selectRequiredEntities();
+
+			// Select all way nodes of existing ways.
+			if (completeRelations) {
+				selectWayNodes();
+			}
+
+			// Send the selected entities to the output.
+			pumpNodesToSink();
+			pumpWaysToSink();
+			pumpRelationsToSink();
+		} else if (cascadingRelations) {
+			// Select all parents of current relations.
+			selectParentRelations();
+			availableRelations.setAll(requiredRelations);
+
+			// nodes, ways, and relations *not* referencing other relations will already have
+			// been written in this mode. we only pump the remaining ones, relations that
+			// reference other relations. this may result in an un-ordered relation stream.
+			pumpRelationsToSink();
+		}
+
+		for (EntityBatchOutput output : outputs) {
+			output.complete();
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void release() {
+		if (executorService != null) {
+			// Workers may still be running if processing was aborted.
+			executorService.shutdownNow();
+			try {
+				while (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+					LOG.fine("Waiting for area filter worker threads to stop.");
+				}
+			} catch (InterruptedException e) {
+				throw new OsmosisRuntimeException("Thread was interrupted.", e);
+			}
+			executorService = null;
+		}
+		if (allNodes != null) {
+			allNodes.release();
+		}
+		if (allWays != null) {
+			allWays.release();
+		}
+		if (allRelations != null) {
+			allRelations.release();
+		}
+		for (EntityBatchOutput output : outputs) {
+			output.release();
+		}
+	}
+
+
+	/**
+	 * The passes made over the data when the source supports multiple passes.
+	 */
+	private enum Pass {
+		/**
+		 * Entities within the areas are selected along with those required to
+		 * complete them.
+		 */
+		Select,
+
+		/**
+		 * The nodes of ways selected by relations are selected.
+		 */
+		WayNodes,
+
+		/**
+		 * All selected entities are sent to the sinks.
+		 */
+		Emit
+	}
+
+
+	/**
+	 * Holds a chunk of nodes along with the pending result of checking them
+	 * against the areas.
+	 */
+	private static class NodeChunkResult {
+		private List<NodeContainer> nodes;
+		private Future<int[]> result;
+
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param nodes
+		 *            The nodes being checked.
+		 * @param result
+		 *            Provides the areas containing each node in the form
+		 *            returned by findChunkAreas.
+		 */
+		NodeChunkResult(List<NodeContainer> nodes, Future<int[]> result) {
+			this.nodes = nodes;
+			this.result = result;
+		}
+
+
+		/**
+		 * Gets the nodes being checked.
+		 *
+		 * @return The nodes.
+		 */
+		public List<NodeContainer> getNodes() {
+			return nodes;
+		}
+
+
+		/**
+		 * Gets the pending result of the check.
+		 *
+		 * @return The result.
+		 */
+		public Future<int[]> getResult() {
+			return result;
+		}
+	}
+}
@@ -52,7 +52,52 @@ public class BoundingBoxFilter extends AreaFilter {
 	        boolean completeWays,
 	        boolean completeRelations,
 	        boolean cascadingRelations) {
-		super(idTrackerType, clipIncompleteEntities, completeWays, completeRelations, cascadingRelations);
+		this(idTrackerType, left, right, top, bottom, clipIncompleteEntities, completeWays, completeRelations,
+				cascadingRelations, DEFAULT_WORKER_COUNT);
+	}
+
+
+	/**
+	 * Creates a new instance with the specified geographical coordinates. When filtering, nodes
+	 * right on the edge of the box will be included.
+	 * 
+	 * @param idTrackerType
+	 *            Defines the id tracker implementation to use.
+	 * @param left
+	 *            The longitude marking the left edge of the bounding box.
+	 * @param right
+	 *            The longitude marking the right edge of the bounding box.
+	 * @param top
+	 *            The latitude marking the top edge of the bounding box.
+	 * @param bottom
+	 *            The latitude marking the bottom edge of the bounding box.
+	 * @param clipIncompleteEntities
+	 *            If true, entities referring to non-existent entities will be
+	 *            modified to ensure referential integrity. For example, ways
+	 *            will be modified to only include nodes inside the area.
+	 * @param completeWays
+	 *            Include all nodes for ways which have at least one node inside the filtered area.
+	 * @param completeRelations
+	 *            Include all relations referenced by other relations which have members inside the
+	 *            filtered area.
+	 * @param cascadingRelations
+	 *            Include all relations that reference other relations which have members inside the
+	 *            filtered area. This is less costly than completeRelations.
+	 * @param workerCount
+	 *            The number of threads used to check whether nodes lie within the box.
+	 */
+	public BoundingBoxFilter(IdTrackerType idTrackerType,
+	        double left,
+	        double right,
+	        double top,
+	        double bottom,
+	        boolean clipIncompleteEntities,
+	        boolean completeWays,
+	        boolean completeRelations,
+	        boolean cascadingRelations,
+	        int workerCount) {
+		super(idTrackerType, clipIncompleteEntities, completeWays, completeRelations, cascadingRelations,
+				workerCount);
 		
 		this.bound = new Bound(right, left, top, bottom, "");
 	}
@@ -83,6 +83,7 @@ public class BoundingBoxFilterFactory extends AreaFilterTaskManagerFactory {
 		boolean completeRelations;
 		boolean cascadingRelations;
 		int zoom;
+		int workers;
 		
 		// Get the task arguments.
 		idTrackerType = getIdTrackerType(taskConfig);
@@ -95,6 +96,7 @@ public class BoundingBoxFilterFactory extends AreaFilterTaskManagerFactory {
 		completeWays = getBooleanArgument(taskConfig, ARG_COMPLETE_WAYS, DEFAULT_COMPLETE_WAYS);
 		completeRelations = getBooleanArgument(taskConfig, ARG_COMPLETE_RELATIONS, DEFAULT_COMPLETE_RELATIONS);
 		cascadingRelations = getBooleanArgument(taskConfig, ARG_CASCADING_RELATIONS, DEFAULT_CASCADING_RELATIONS);
+		workers = getWorkerCount(taskConfig);
 		
 		zoom = getIntegerArgument(taskConfig, ARG_ZOOM, DEFAULT_ZOOM);
 		if (doesArgumentExist(taskConfig, ARG_X1)) {
@@ -111,7 +113,7 @@ public class BoundingBoxFilterFactory extends AreaFilterTaskManagerFactory {
 		return new SinkSourceManager(
 			taskConfig.getId(),
 			new BoundingBoxFilter(idTrackerType, left, right, top, bottom, clipIncompleteEntities, completeWays,
-					completeRelations, cascadingRelations),
+					completeRelations, cascadingRelations, workers),
 			taskConfig.getPipeArgs()
 		);
 	}
@@ -0,0 +1,263 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.areafilter.v0_6;
+
+import java.awt.geom.Area;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.areafilter.common.MultiAreaIndex;
+import org.openstreetmap.osmosis.areafilter.common.PolygonFileReader;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.filter.common.IdTrackerType;
+import org.openstreetmap.osmosis.core.task.v0_6.MultiPassSink;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.core.task.v0_6.SinkMultiSource;
+import org.openstreetmap.osmosis.core.task.v0_6.Source;
+
+
+/**
+ * Filters entities into multiple areas in a single pass, sending the entities
+ * within each area to a separate output. This produces the same results as
+ * teeing the input into an individual polygon or bounding box filter per area,
+ * but nodes are located using a single index covering all areas, entities are
+ * stored once rather than once per area, and ids for all areas are tracked in
+ * a single structure.
+ * <p>
+ * Outputs are numbered with all polygons first followed by all boxes, each in
+ * the order provided.
+ *
+ * @author Brett Henderson
+ */
+public class MultiAreaFilter implements SinkMultiSource, MultiPassSink {
+	private List<Area> polygons;
+	private List<Bound> boxes;
+	private MultiAreaIndex areaIndex;
+	private AreaSelector selector;
+	private List<AreaSource> sources;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param idTrackerType
+	 *            Defines the id tracker implementation to use.
+	 * @param polygonFiles
+	 *            The files containing the polygon coordinates of each polygon
+	 *            area.
+	 * @param boxes
+	 *            The bounding box of each box area. Nodes on the edge of a box
+	 *            are included.
+	 * @param clipIncompleteEntities
+	 *            If true, entities referring to non-existent entities will be
+	 *            modified to ensure referential integrity. For example, ways
+	 *            will be modified to only include nodes inside the area.
+	 * @param completeWays
+	 *            Include all nodes for ways which have at least one node inside
+	 *            the filtered area.
+	 * @param completeRelations
+	 *            Include all relations referenced by other relations which have
+	 *            members inside the filtered area.
+	 * @param cascadingRelations
+	 *            Make sure that a relation referencing a relation which is included
+	 *            will also be included.
+	 * @param workerCount
+	 *            The number of threads used to locate nodes within the areas.
+	 */
+	public MultiAreaFilter(
+			IdTrackerType idTrackerType, List<File> polygonFiles, List<Bound> boxes, boolean clipIncompleteEntities,
+			boolean completeWays, boolean completeRelations, boolean cascadingRelations, int workerCount) {
+		int areaCount;
+
+		this.boxes = new ArrayList<Bound>(boxes);
+
+		polygons = new ArrayList<Area>(polygonFiles.size());
+		for (File polygonFile : polygonFiles) {
+			polygons.add(new PolygonFileReader(polygonFile).loadPolygon());
+		}
+
+		areaCount = polygons.size() + boxes.size();
+		if (areaCount == 0) {
+			throw new OsmosisRuntimeException("At least one polygon or bounding box must be specified.");
+		}
+
+		// The index is immutable once built so it may be shared by all workers.
+		areaIndex = new MultiAreaIndex(polygons, this.boxes);
+
+		selector = new IndexAreaSelector(
+				idTrackerType, areaCount, clipIncompleteEntities, completeWays, completeRelations,
+				cascadingRelations, workerCount);
+
+		sources = new ArrayList<AreaSource>(areaCount);
+		for (int i = 0; i < areaCount; i++) {
+			sources.add(new AreaSource(i));
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Source getSource(int index) {
+		if (index < 0 || index >= sources.size()) {
+			throw new OsmosisRuntimeException("Source index " + index
+					+ " is in the range 0 to " + (sources.size() - 1) + ".");
+		}
+
+		return sources.get(index);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getSourceCount() {
+		return sources.size();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean requestMultiPass() {
+		return selector.requestMultiPass();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean completePass() {
+		return selector.completePass();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void initialize(Map<String, Object> metaData) {
+		selector.initialize(metaData);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(EntityContainer entityContainer) {
+		// Entities may be passed to multiple downstream tasks therefore must be
+		// read-only to prevent multiple threads impacting each other.
+		entityContainer.getEntity().makeReadOnly();
+
+		selector.process(entityContainer);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void complete() {
+		selector.complete();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void release() {
+		selector.release();
+	}
+
+
+	/**
+	 * Selects the entities for all areas, locating nodes using the shared
+	 * index.
+	 */
+	private class IndexAreaSelector extends AreaSelector {
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param idTrackerType
+		 *            Defines the id tracker implementation to use.
+		 * @param areaCount
+		 *            The number of areas.
+		 * @param clipIncompleteEntities
+		 *            If true, entities referring to non-existent entities will
+		 *            be modified to ensure referential integrity.
+		 * @param completeWays
+		 *            Include all nodes for ways which have at least one node
+		 *            inside an area.
+		 * @param completeRelations
+		 *            Include all relations referenced by other relations which
+		 *            have members inside an area.
+		 * @param cascadingRelations
+		 *            Make sure that a relation referencing a relation which is
+		 *            included will also be included.
+		 * @param workerCount
+		 *            The number of threads used to locate nodes within the
+		 *            areas.
+		 */
+		IndexAreaSelector(
+				IdTrackerType idTrackerType, int areaCount, boolean clipIncompleteEntities, boolean completeWays,
+				boolean completeRelations, boolean cascadingRelations, int workerCount) {
+			super(idTrackerType, areaCount, clipIncompleteEntities, completeWays, completeRelations,
+					cascadingRelations, workerCount);
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected int findAreas(Node node, int[] areaIndexes) {
+			return areaIndex.findAreas(node.getLongitude(), node.getLatitude(), areaIndexes);
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected Bound intersectBound(int area, Bound bound) {
+			if (area < polygons.size()) {
+				return PolygonFilter.intersectBound(polygons.get(area), bound);
+			} else {
+				return bound.intersect(boxes.get(area - polygons.size()));
+			}
+		}
+	}
+
+
+	/**
+	 * The output for a single area. Instances of this class are returned via
+	 * the getSource method, one for each area.
+	 */
+	private class AreaSource implements Source {
+		private int area;
+
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param area
+		 *            The index of the area.
+		 */
+		AreaSource(int area) {
+			this.area = area;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void setSink(Sink sink) {
+			selector.setSink(area, sink);
+		}
+	}
+}
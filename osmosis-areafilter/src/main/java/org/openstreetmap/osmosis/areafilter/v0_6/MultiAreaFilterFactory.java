@@ -0,0 +1,154 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.areafilter.v0_6;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.filter.common.IdTrackerType;
+import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
+import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
+import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkMultiSourceManager;
+
+
+/**
+ * The task manager factory for a multiple area filter.
+ *
+ * @author Brett Henderson
+ */
+public class MultiAreaFilterFactory extends AreaFilterTaskManagerFactory {
+	private static final Logger LOG = Logger.getLogger(MultiAreaFilterFactory.class.getName());
+	private static final String ARG_DIRECTORY = "directory";
+	private static final String ARG_FILES = "files";
+	private static final String ARG_BOXES = "boxes";
+	private static final String ARG_CLIP_INCOMPLETE_ENTITIES = "clipIncompleteEntities";
+	private static final String ARG_COMPLETE_WAYS = "completeWays";
+	private static final String ARG_COMPLETE_RELATIONS = "completeRelations";
+	private static final String ARG_CASCADING_RELATIONS = "cascadingRelations";
+	private static final boolean DEFAULT_CLIP_INCOMPLETE_ENTITIES = false;
+	private static final boolean DEFAULT_COMPLETE_WAYS = false;
+	private static final boolean DEFAULT_COMPLETE_RELATIONS = false;
+	private static final boolean DEFAULT_CASCADING_RELATIONS = false;
+	private static final String POLYGON_FILE_SUFFIX = ".poly";
+
+
+	/**
+	 * Gets all polygon files within a directory sorted by name.
+	 */
+	private List<File> getDirectoryFiles(TaskConfiguration taskConfig, File directory) {
+		File[] files;
+
+		files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(POLYGON_FILE_SUFFIX);
+			}
+		});
+		if (files == null) {
+			throw new OsmosisRuntimeException(
+				"Argument " + ARG_DIRECTORY + " for task " + taskConfig.getId() + " must be a directory.");
+		}
+		Arrays.sort(files);
+
+		return Arrays.asList(files);
+	}
+
+
+	/**
+	 * Parses boxes in the form left,bottom,right,top with multiple boxes
+	 * separated by colons.
+	 */
+	private List<Bound> parseBoxes(TaskConfiguration taskConfig, String boxesArg) {
+		List<Bound> boxes;
+
+		boxes = new ArrayList<Bound>();
+		for (String box : boxesArg.split(":")) {
+			String[] coordinates;
+			double left;
+			double bottom;
+			double right;
+			double top;
+
+			coordinates = box.split(",");
+			if (coordinates.length != 4) {
+				throw new OsmosisRuntimeException(
+					"Argument " + ARG_BOXES + " for task " + taskConfig.getId()
+					+ " must contain boxes in the form left,bottom,right,top separated by colons.");
+			}
+			try {
+				left = Double.parseDouble(coordinates[0].trim());
+				bottom = Double.parseDouble(coordinates[1].trim());
+				right = Double.parseDouble(coordinates[2].trim());
+				top = Double.parseDouble(coordinates[3].trim());
+			} catch (NumberFormatException e) {
+				throw new OsmosisRuntimeException(
+					"Argument " + ARG_BOXES + " for task " + taskConfig.getId()
+					+ " must contain decimal numbers.", e);
+			}
+
+			boxes.add(new Bound(right, left, top, bottom, ""));
+		}
+
+		return boxes;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
+		IdTrackerType idTrackerType;
+		List<File> polygonFiles;
+		List<Bound> boxes;
+		boolean clipIncompleteEntities;
+		boolean completeWays;
+		boolean completeRelations;
+		boolean cascadingRelations;
+		int workerCount;
+
+		// Get the task arguments.
+		idTrackerType = getIdTrackerType(taskConfig);
+		polygonFiles = new ArrayList<File>();
+		if (doesArgumentExist(taskConfig, ARG_DIRECTORY)) {
+			polygonFiles.addAll(
+					getDirectoryFiles(taskConfig, new File(getStringArgument(taskConfig, ARG_DIRECTORY))));
+		}
+		if (doesArgumentExist(taskConfig, ARG_FILES)) {
+			for (String fileName : getStringArgument(taskConfig, ARG_FILES).split(",")) {
+				polygonFiles.add(new File(fileName.trim()));
+			}
+		}
+		if (doesArgumentExist(taskConfig, ARG_BOXES)) {
+			boxes = parseBoxes(taskConfig, getStringArgument(taskConfig, ARG_BOXES));
+		} else {
+			boxes = new ArrayList<Bound>();
+		}
+		clipIncompleteEntities = getBooleanArgument(
+				taskConfig, ARG_CLIP_INCOMPLETE_ENTITIES, DEFAULT_CLIP_INCOMPLETE_ENTITIES);
+		completeWays = getBooleanArgument(taskConfig, ARG_COMPLETE_WAYS, DEFAULT_COMPLETE_WAYS);
+		completeRelations = getBooleanArgument(taskConfig, ARG_COMPLETE_RELATIONS, DEFAULT_COMPLETE_RELATIONS);
+		cascadingRelations = getBooleanArgument(taskConfig, ARG_CASCADING_RELATIONS, DEFAULT_CASCADING_RELATIONS);
+		workerCount = getWorkerCount(taskConfig);
+
+		// Outputs are only identified by number so record which area each one holds.
+		for (int i = 0; i < polygonFiles.size(); i++) {
+			LOG.fine("Output " + i + " contains polygon " + polygonFiles.get(i) + ".");
+		}
+		for (int i = 0; i < boxes.size(); i++) {
+			LOG.fine("Output " + (polygonFiles.size() + i) + " contains box " + boxes.get(i) + ".");
+		}
+
+		return new SinkMultiSourceManager(
+			taskConfig.getId(),
+			new MultiAreaFilter(idTrackerType, polygonFiles, boxes, clipIncompleteEntities, completeWays,
+					completeRelations, cascadingRelations, workerCount),
+			taskConfig.getPipeArgs()
+		);
+	}
+}
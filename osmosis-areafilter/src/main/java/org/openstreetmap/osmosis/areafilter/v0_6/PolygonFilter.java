@@ -4,8 +4,10 @@ package org.openstreetmap.osmosis.areafilter.v0_6;
 import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
+import java.util.Map;
 
 import org.openstreetmap.osmosis.areafilter.common.PolygonFileReader;
+import org.openstreetmap.osmosis.areafilter.common.PolygonIndex;
 import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
@@ -22,6 +24,7 @@ public class PolygonFilter extends AreaFilter {
 	
 	private File polygonFile;
 	private Area area;
+	private volatile PolygonIndex polygonIndex;
 	
 	
 	/**
@@ -47,32 +50,105 @@ public class PolygonFilter extends AreaFilter {
 	public PolygonFilter(
 			IdTrackerType idTrackerType, File polygonFile, boolean clipIncompleteEntities, boolean completeWays,
 			boolean completeRelations, boolean cascadingRelations) {
-	    super(idTrackerType, clipIncompleteEntities, completeWays, completeRelations, cascadingRelations);
+		this(idTrackerType, polygonFile, clipIncompleteEntities, completeWays, completeRelations, cascadingRelations,
+				DEFAULT_WORKER_COUNT);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param idTrackerType
+	 *            Defines the id tracker implementation to use.
+	 * @param polygonFile
+	 *            The file containing the polygon coordinates.
+	 * @param clipIncompleteEntities
+	 *            If true, entities referring to non-existent entities will be
+	 *            modified to ensure referential integrity. For example, ways
+	 *            will be modified to only include nodes inside the area.
+	 * @param completeWays
+	 *            Include all nodes for ways which have at least one node inside the filtered area.
+	 * @param completeRelations
+	 *            Include all relations referenced by other relations which have members inside
+	 *            the filtered area.
+	 * @param cascadingRelations
+	 *            Include all relations that reference other relations which have members inside the
+	 *            filtered area. This is less costly than completeRelations.
+	 * @param workerCount
+	 *            The number of threads used to check whether nodes lie within the polygon.
+	 */
+	public PolygonFilter(
+			IdTrackerType idTrackerType, File polygonFile, boolean clipIncompleteEntities, boolean completeWays,
+			boolean completeRelations, boolean cascadingRelations, int workerCount) {
+		super(idTrackerType, clipIncompleteEntities, completeWays, completeRelations, cascadingRelations,
+				workerCount);
 		this.polygonFile = polygonFile;
 		
 		area = null;
+		polygonIndex = null;
 	}
 	
 	
 	/**
-	 * {@inheritDoc}
+	 * Gets the polygon area, loading it if it hasn't been created yet.
+	 * 
+	 * @return The area.
 	 */
-	@Override
-	public void process(BoundContainer boundContainer) {
-		Bound newBound = null;
-
-		// Configure the area if it hasn't been created yet. (Should this be in an "initialize" method?)
+	private synchronized Area getArea() {
 		if (area == null) {
 			area = new PolygonFileReader(polygonFile).loadPolygon();
 		}
 		
-		for (Bound b : boundContainer.getEntity().toSimpleBound()) {
-			if (newBound == null) {
-				newBound = simpleBoundIntersect(b);
-			} else {
-				newBound = newBound.union(simpleBoundIntersect(b));
+		return area;
+	}
+	
+	
+	/**
+	 * Gets the index used for checking nodes against the polygon, building it
+	 * if it hasn't been created yet.
+	 * 
+	 * @return The polygon index.
+	 */
+	private PolygonIndex getPolygonIndex() {
+		PolygonIndex result;
+		
+		// The index is immutable once built so only its creation needs to be
+		// synchronized.
+		result = polygonIndex;
+		if (result == null) {
+			synchronized (this) {
+				result = polygonIndex;
+				if (result == null) {
+					result = new PolygonIndex(getArea());
+					polygonIndex = result;
+				}
 			}
 		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialize(Map<String, Object> metaData) {
+		// Build the index up front rather than delaying the first node.
+		getPolygonIndex();
+		
+		super.initialize(metaData);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void process(BoundContainer boundContainer) {
+		Bound newBound;
+		
+		newBound = intersectBound(getArea(), boundContainer.getEntity());
 
 		if (newBound != null) {
 			super.process(new BoundContainer(newBound));
@@ -81,18 +157,45 @@ public class PolygonFilter extends AreaFilter {
 
 
 	/**
-	 * Get the simple intersection of this polygon with the passed Bound.
+	 * Get the intersection of a polygon with the passed Bound.
 	 * 
+	 * @param polygon
+	 *            The polygon with which to intersect. It is not modified.
+	 * @param bound
+	 *            Bound with which to intersect. It may cross the antimeridian.
+	 * @return Bound resulting rectangular area after intersection, or null if
+	 *         they don't intersect.
+	 */
+	static Bound intersectBound(Area polygon, Bound bound) {
+		Bound newBound = null;
+
+		for (Bound b : bound.toSimpleBound()) {
+			if (newBound == null) {
+				newBound = simpleBoundIntersect(polygon, b);
+			} else {
+				newBound = newBound.union(simpleBoundIntersect(polygon, b));
+			}
+		}
+
+		return newBound;
+	}
+
+
+	/**
+	 * Get the simple intersection of a polygon with the passed Bound.
+	 * 
+	 * @param polygon
+	 *            The polygon with which to intersect. It is not modified.
 	 * @param bound
 	 *            Bound with which to intersect. Must be "simple" (not cross antimeridian).
 	 * @return Bound resulting rectangular area after intersection
 	 */
-	private Bound simpleBoundIntersect(Bound bound) {
+	private static Bound simpleBoundIntersect(Area polygon, Bound bound) {
 		Rectangle2D r;
 		double width, height;
 
 		Bound newBound = null;
-		Area a2 = (Area) area.clone(); // make a copy so we don't disturb the original
+		Area a2 = (Area) polygon.clone(); // make a copy so we don't disturb the original
 
 		/*
 		 * Note that AWT uses the computer graphics convention with the origin at the top left, so
@@ -133,15 +236,14 @@ public class PolygonFilter extends AreaFilter {
 	protected boolean isNodeWithinArea(Node node) {
 		double latitude;
 		double longitude;
+		PolygonIndex index;
 		
-		// Configure the area if it hasn't been created yet.
-		if (area == null) {
-			area = new PolygonFileReader(polygonFile).loadPolygon();
-		}
+		// Configure the index if it hasn't been created yet.
+		index = getPolygonIndex();
 		
 		latitude = node.getLatitude();
 		longitude = node.getLongitude();
 		
-		return area.contains(longitude, latitude);
+		return index.contains(longitude, latitude);
 	}
 }
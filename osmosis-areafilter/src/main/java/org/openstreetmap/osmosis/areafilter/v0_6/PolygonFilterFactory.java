@@ -38,6 +38,7 @@ public class PolygonFilterFactory extends AreaFilterTaskManagerFactory {
 		boolean completeWays;
 		boolean completeRelations;
 		boolean cascadingRelations;
+		int workers;
 		
 		// Get the task arguments.
 		idTrackerType = getIdTrackerType(taskConfig);
@@ -47,6 +48,7 @@ public class PolygonFilterFactory extends AreaFilterTaskManagerFactory {
 		completeWays = getBooleanArgument(taskConfig, ARG_COMPLETE_WAYS, DEFAULT_COMPLETE_WAYS);
 		completeRelations = getBooleanArgument(taskConfig, ARG_COMPLETE_RELATIONS, DEFAULT_COMPLETE_RELATIONS);
 		cascadingRelations = getBooleanArgument(taskConfig, ARG_CASCADING_RELATIONS, DEFAULT_CASCADING_RELATIONS);
+		workers = getWorkerCount(taskConfig);
 		
 		// Create a file object from the file name provided.
 		file = new File(fileName);
@@ -54,7 +56,7 @@ public class PolygonFilterFactory extends AreaFilterTaskManagerFactory {
 		return new SinkSourceManager(
 			taskConfig.getId(),
 			new PolygonFilter(idTrackerType, file, clipIncompleteEntities, completeWays, completeRelations, 
-                cascadingRelations),
+                cascadingRelations, workers),
 			taskConfig.getPipeArgs()
 		);
 	}
@@ -0,0 +1,108 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.areafilter.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the polygon index implementation.
+ */
+public class PolygonIndexTest {
+	
+	private void checkRandomPoints(Area area, double minX, double minY, double maxX, double maxY) {
+		PolygonIndex index;
+		Random random;
+		
+		index = new PolygonIndex(area);
+		random = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			double x = minX + random.nextDouble() * (maxX - minX);
+			double y = minY + random.nextDouble() * (maxY - minY);
+			
+			assertEquals("Incorrect result for point " + x + ", " + y + ".",
+					area.contains(x, y), index.contains(x, y));
+		}
+	}
+	
+	
+	/**
+	 * Tests a simple polygon loaded from a polygon file.
+	 */
+	@Test
+	public void testPolygonFile() {
+		Area area;
+		PolygonIndex index;
+		
+		area = new PolygonFileReader(
+				new File(getClass().getResource("/org/openstreetmap/osmosis/areafilter/v0_6/testPolygon.txt")
+						.getFile())).loadPolygon();
+		index = new PolygonIndex(area);
+		
+		assertTrue("Point inside polygon not found.", index.contains(10, 5));
+		assertFalse("Point in notch found.", index.contains(15, 15));
+		assertFalse("Point on right edge found.", index.contains(10, 15));
+		assertTrue("Point on left edge not found.", index.contains(-20, 0));
+		assertFalse("Point outside bounds found.", index.contains(50, 0));
+		
+		checkRandomPoints(area, -25, -25, 25, 25);
+	}
+	
+	
+	/**
+	 * Tests a detailed polygon with a hole and many edges at differing angles.
+	 */
+	@Test
+	public void testDetailedPolygon() {
+		Path2D.Double outline;
+		Path2D.Double hole;
+		Random random;
+		Area area;
+		
+		// Build an irregular star shaped polygon.
+		random = new Random(2);
+		outline = new Path2D.Double();
+		for (int i = 0; i < 5000; i++) {
+			double angle = 2 * Math.PI * i / 5000;
+			double radius = 10 + random.nextDouble() * 5;
+			double x = 100 + radius * Math.cos(angle);
+			double y = -30 + radius * Math.sin(angle);
+			
+			if (i == 0) {
+				outline.moveTo(x, y);
+			} else {
+				outline.lineTo(x, y);
+			}
+		}
+		outline.closePath();
+		
+		hole = new Path2D.Double();
+		hole.moveTo(98, -32);
+		hole.lineTo(103, -31);
+		hole.lineTo(99, -27);
+		hole.closePath();
+		
+		area = new Area(outline);
+		area.subtract(new Area(hole));
+		
+		checkRandomPoints(area, 80, -50, 120, -10);
+		checkRandomPoints(area, 97, -33, 104, -26);
+	}
+	
+	
+	/**
+	 * Tests that an empty polygon contains no points.
+	 */
+	@Test
+	public void testEmpty() {
+		assertFalse("Empty polygon contains a point.", new PolygonIndex(new Area()).contains(0, 0));
+	}
+}
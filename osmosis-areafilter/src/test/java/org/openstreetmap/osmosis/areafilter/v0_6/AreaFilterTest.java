@@ -1,12 +1,27 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.areafilter.v0_6;
 
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
 
 import org.junit.Test;
 import org.openstreetmap.osmosis.core.Osmosis;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.filter.common.IdTrackerType;
+import org.openstreetmap.osmosis.core.sort.v0_6.TagSorter;
+import org.openstreetmap.osmosis.core.task.v0_6.MultiPassSink;
+import org.openstreetmap.osmosis.core.task.v0_6.Source;
 import org.openstreetmap.osmosis.testutil.AbstractDataTest;
+import org.openstreetmap.osmosis.testutil.v0_6.SinkEntityInspector;
+import org.openstreetmap.osmosis.xml.common.CompressionMethod;
+import org.openstreetmap.osmosis.xml.v0_6.XmlReader;
+import org.openstreetmap.osmosis.xml.v0_6.XmlWriter;
 
 
 /**
@@ -221,4 +236,524 @@ public class AreaFilterTest extends AbstractDataTest {
 		// Validate that the output file matches the input file.
 		dataUtils.compareFiles(expectedOutputFile, actualOutputFile);
 	}
+	
+	
+	/**
+	 * Performs a standard bounding box filter using multiple worker threads.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testBboxFilterWorkers() throws IOException {
+		File inputFile;
+		File expectedOutputFile;
+		File actualOutputFile;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		expectedOutputFile = dataUtils.createDataFile("v0_6/areafilter-out-standard.osm");
+		actualOutputFile = dataUtils.newFile();
+		
+		// Load the database with a dataset.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6",
+				inputFile.getPath(),
+				"--bounding-box", "workers=4", "left=-10", "top=10", "right=10", "bottom=-10",
+				"--tag-sort-0.6",
+				"--write-xml-0.6",
+				actualOutputFile.getPath()
+			}
+		);
+		
+		// Validate that the output file matches the input file.
+		dataUtils.compareFiles(expectedOutputFile, actualOutputFile);
+	}
+	
+	
+	/**
+	 * Performs a bounding box filter with the completeWays option enabled using multiple worker
+	 * threads.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testBboxFilterCompleteWaysWorkers() throws IOException {
+		File inputFile;
+		File expectedOutputFile;
+		File actualOutputFile;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		expectedOutputFile = dataUtils.createDataFile("v0_6/areafilter-out-completeways.osm");
+		actualOutputFile = dataUtils.newFile();
+		
+		// Load the database with a dataset.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6",
+				inputFile.getPath(),
+				"--bounding-box", "completeWays=yes", "workers=3", "left=-10", "top=10", "right=10", "bottom=-10",
+				"--tag-sort-0.6",
+				"--write-xml-0.6",
+				actualOutputFile.getPath()
+			}
+		);
+		
+		// Validate that the output file matches the input file.
+		dataUtils.compareFiles(expectedOutputFile, actualOutputFile);
+	}
+	
+	
+	/**
+	 * Performs a multiple area filter producing a standard bounding box extract and a complete
+	 * planet extract in a single pass.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testMultiAreaFilter() throws IOException {
+		File inputFile;
+		File expectedStandardFile;
+		File expectedWholeFile;
+		File actualStandardFile;
+		File actualWholeFile;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		expectedStandardFile = dataUtils.createDataFile("v0_6/areafilter-out-standard.osm");
+		expectedWholeFile = dataUtils.createDataFile("v0_6/areafilter-out-whole.osm");
+		actualStandardFile = dataUtils.newFile();
+		actualWholeFile = dataUtils.newFile();
+		
+		// Load the database with a dataset.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6",
+				inputFile.getPath(),
+				"--bounding-areas", "boxes=-10,-10,10,10:-180,-90,180,90", "outPipe.0=standard", "outPipe.1=whole",
+				"--tag-sort-0.6", "inPipe.0=standard",
+				"--write-xml-0.6",
+				actualStandardFile.getPath(),
+				"--tag-sort-0.6", "inPipe.0=whole",
+				"--write-xml-0.6",
+				actualWholeFile.getPath()
+			}
+		);
+		
+		// Validate that the output files match the single area filter results.
+		dataUtils.compareFiles(expectedStandardFile, actualStandardFile);
+		dataUtils.compareFiles(expectedWholeFile, actualWholeFile);
+	}
+	
+	
+	/**
+	 * Performs a multiple area filter with the completeRelations option enabled.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testMultiAreaFilterCompleteRelations() throws IOException {
+		File inputFile;
+		File expectedOutputFile;
+		File actualOutputFile1;
+		File actualOutputFile2;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		expectedOutputFile = dataUtils.createDataFile("v0_6/areafilter-out-completerelations.osm");
+		actualOutputFile1 = dataUtils.newFile();
+		actualOutputFile2 = dataUtils.newFile();
+		
+		// Load the database with a dataset.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6",
+				inputFile.getPath(),
+				"--bounding-areas", "completeRelations=yes", "boxes=-10,-10,10,10:-10,-10,10,10",
+				"outPipe.0=first", "outPipe.1=second",
+				"--tag-sort-0.6", "inPipe.0=first",
+				"--write-xml-0.6",
+				actualOutputFile1.getPath(),
+				"--tag-sort-0.6", "inPipe.0=second",
+				"--write-xml-0.6",
+				actualOutputFile2.getPath()
+			}
+		);
+		
+		// Validate that each output file matches the single area filter result.
+		dataUtils.compareFiles(expectedOutputFile, actualOutputFile1);
+		dataUtils.compareFiles(expectedOutputFile, actualOutputFile2);
+	}
+	
+	
+	/**
+	 * Writes a polygon file containing a single rectangle.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param left
+	 *            The left edge of the rectangle.
+	 * @param bottom
+	 *            The bottom edge of the rectangle.
+	 * @param right
+	 *            The right edge of the rectangle.
+	 * @param top
+	 *            The top edge of the rectangle.
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	private void writePolygonFile(File file, double left, double bottom, double right, double top)
+			throws IOException {
+		Writer writer;
+		
+		writer = new FileWriter(file);
+		try {
+			writer.write("rectangle\n1\n");
+			writer.write("  " + left + " " + top + "\n");
+			writer.write("  " + right + " " + top + "\n");
+			writer.write("  " + right + " " + bottom + "\n");
+			writer.write("  " + left + " " + bottom + "\n");
+			writer.write("  " + left + " " + top + "\n");
+			writer.write("END\nEND\n");
+		} finally {
+			writer.close();
+		}
+	}
+	
+	
+	/**
+	 * Runs the single polygon filter to produce the expected output for one
+	 * area of a multiple area filter.
+	 * 
+	 * @param inputFile
+	 *            The file containing the input data.
+	 * @param polygonFile
+	 *            The polygon file.
+	 * @param option
+	 *            An additional filter argument.
+	 * @return The tag sorted output.
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	private File runPolygonFilter(File inputFile, File polygonFile, String option) throws IOException {
+		File outputFile;
+		
+		outputFile = dataUtils.newFile();
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6", inputFile.getPath(),
+				"--bounding-polygon", "file=" + polygonFile.getPath(), option,
+				"--tag-sort-0.6",
+				"--write-xml-0.6", outputFile.getPath()
+			}
+		);
+		
+		return outputFile;
+	}
+	
+	
+	/**
+	 * Performs a multiple area filter on a list of polygon files along with a
+	 * box, verifying that each polygon output matches the single polygon
+	 * filter.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testMultiAreaFilterPolygonFiles() throws IOException {
+		File inputFile;
+		File expectedWholeFile;
+		File notchedPolygonFile;
+		File squarePolygonFile;
+		File actualNotchedFile;
+		File actualSquareFile;
+		File actualWholeFile;
+		
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		expectedWholeFile = dataUtils.createDataFile("v0_6/areafilter-out-whole.osm");
+		notchedPolygonFile = new File(getClass().getResource("testPolygon.txt").getFile());
+		squarePolygonFile = dataUtils.newFile();
+		writePolygonFile(squarePolygonFile, -10, -10, 10, 10);
+		actualNotchedFile = dataUtils.newFile();
+		actualSquareFile = dataUtils.newFile();
+		actualWholeFile = dataUtils.newFile();
+		
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6", inputFile.getPath(),
+				"--bounding-areas", "files=" + notchedPolygonFile.getPath() + "," + squarePolygonFile.getPath(),
+				"boxes=-180,-90,180,90", "outPipe.0=notched", "outPipe.1=square", "outPipe.2=whole",
+				"--tag-sort-0.6", "inPipe.0=notched",
+				"--write-xml-0.6", actualNotchedFile.getPath(),
+				"--tag-sort-0.6", "inPipe.0=square",
+				"--write-xml-0.6", actualSquareFile.getPath(),
+				"--tag-sort-0.6", "inPipe.0=whole",
+				"--write-xml-0.6", actualWholeFile.getPath()
+			}
+		);
+		
+		dataUtils.compareFiles(runPolygonFilter(inputFile, notchedPolygonFile, "completeWays=no"),
+				actualNotchedFile);
+		dataUtils.compareFiles(runPolygonFilter(inputFile, squarePolygonFile, "completeWays=no"),
+				actualSquareFile);
+		dataUtils.compareFiles(expectedWholeFile, actualWholeFile);
+	}
+	
+	
+	/**
+	 * Performs a multiple area filter on a directory of polygon files with
+	 * complete ways, verifying that only polygon files are used, in name
+	 * order, and that each output matches the single polygon filter.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testMultiAreaFilterPolygonDirectory() throws IOException {
+		File inputFile;
+		File polygonDirectory;
+		File firstPolygonFile;
+		File secondPolygonFile;
+		File actualFirstFile;
+		File actualSecondFile;
+		
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		polygonDirectory = dataUtils.newFolder();
+		firstPolygonFile = new File(polygonDirectory, "a.poly");
+		secondPolygonFile = new File(polygonDirectory, "b.poly");
+		writePolygonFile(secondPolygonFile, -10, -10, 10, 10);
+		writePolygonFile(firstPolygonFile, 0, 0, 20, 20);
+		writePolygonFile(new File(polygonDirectory, "ignored.txt"), -1, -1, 1, 1);
+		actualFirstFile = dataUtils.newFile();
+		actualSecondFile = dataUtils.newFile();
+		
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6", inputFile.getPath(),
+				"--bounding-areas", "directory=" + polygonDirectory.getPath(), "completeWays=yes",
+				"outPipe.0=first", "outPipe.1=second",
+				"--tag-sort-0.6", "inPipe.0=first",
+				"--write-xml-0.6", actualFirstFile.getPath(),
+				"--tag-sort-0.6", "inPipe.0=second",
+				"--write-xml-0.6", actualSecondFile.getPath()
+			}
+		);
+		
+		dataUtils.compareFiles(runPolygonFilter(inputFile, firstPolygonFile, "completeWays=yes"), actualFirstFile);
+		dataUtils.compareFiles(runPolygonFilter(inputFile, secondPolygonFile, "completeWays=yes"), actualSecondFile);
+	}
+	
+	
+	/**
+	 * Performs a multiple area filter with complete ways, locating nodes on
+	 * multiple worker threads, verifying that each output matches the single
+	 * area filter.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testMultiAreaFilterWorkers() throws IOException {
+		File inputFile;
+		File expectedBoxFile;
+		File notchedPolygonFile;
+		File actualNotchedFile;
+		File actualBoxFile;
+		
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		expectedBoxFile = dataUtils.createDataFile("v0_6/areafilter-out-completeways.osm");
+		notchedPolygonFile = new File(getClass().getResource("testPolygon.txt").getFile());
+		actualNotchedFile = dataUtils.newFile();
+		actualBoxFile = dataUtils.newFile();
+		
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6", inputFile.getPath(),
+				"--bounding-areas", "files=" + notchedPolygonFile.getPath(), "boxes=-10,-10,10,10",
+				"completeWays=yes", "workers=3", "outPipe.0=notched", "outPipe.1=box",
+				"--tag-sort-0.6", "inPipe.0=notched",
+				"--write-xml-0.6", actualNotchedFile.getPath(),
+				"--tag-sort-0.6", "inPipe.0=box",
+				"--write-xml-0.6", actualBoxFile.getPath()
+			}
+		);
+		
+		dataUtils.compareFiles(runPolygonFilter(inputFile, notchedPolygonFile, "completeWays=yes"),
+				actualNotchedFile);
+		dataUtils.compareFiles(expectedBoxFile, actualBoxFile);
+	}
+	
+	
+	/**
+	 * Sends the contents of a file through a filter in the same way as a
+	 * source able to read its data multiple times.
+	 * 
+	 * @param filter
+	 *            The filter to be run. Its outputs must already be connected.
+	 * @param inputFile
+	 *            The file containing the input data.
+	 */
+	private void runMultiPass(MultiPassSink filter, File inputFile) {
+		SinkEntityInspector inputInspector;
+		XmlReader reader;
+		
+		// Load the input into memory so it can be replayed.
+		inputInspector = new SinkEntityInspector();
+		reader = new XmlReader(inputFile, true, CompressionMethod.None);
+		reader.setSink(inputInspector);
+		reader.run();
+		
+		try {
+			assertTrue("Multiple passes should be requested.", filter.requestMultiPass());
+			
+			filter.initialize(Collections.<String, Object>emptyMap());
+			do {
+				for (EntityContainer entityContainer : inputInspector.getProcessedEntities()) {
+					filter.process(entityContainer);
+				}
+			} while (filter.completePass());
+			filter.complete();
+			
+		} finally {
+			filter.release();
+		}
+	}
+	
+	
+	/**
+	 * Connects a tag sorted xml writer to a source.
+	 * 
+	 * @param source
+	 *            The source to be written.
+	 * @param outputFile
+	 *            The file to receive the tag sorted output.
+	 */
+	private void writeSortedOutput(Source source, File outputFile) {
+		TagSorter tagSorter;
+		
+		tagSorter = new TagSorter();
+		tagSorter.setSink(new XmlWriter(outputFile, CompressionMethod.None));
+		source.setSink(tagSorter);
+	}
+	
+	
+	/**
+	 * Sends the contents of a file through an area filter in the same way as a
+	 * source able to read its data multiple times.
+	 * 
+	 * @param filter
+	 *            The filter to be run.
+	 * @param inputFile
+	 *            The file containing the input data.
+	 * @param outputFile
+	 *            The file to receive the tag sorted output.
+	 */
+	private void runMultiPass(AreaFilter filter, File inputFile, File outputFile) {
+		writeSortedOutput(filter, outputFile);
+		runMultiPass(filter, inputFile);
+	}
+	
+	
+	/**
+	 * Performs a bounding box filter with the completeWays option enabled using multiple passes
+	 * over the input.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testBboxFilterCompleteWaysMultiPass() throws IOException {
+		File inputFile;
+		File expectedOutputFile;
+		File actualOutputFile;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		expectedOutputFile = dataUtils.createDataFile("v0_6/areafilter-out-completeways.osm");
+		actualOutputFile = dataUtils.newFile();
+		
+		runMultiPass(
+				new BoundingBoxFilter(IdTrackerType.Roaring, -10, 10, 10, -10, false, true, false, false, 2),
+				inputFile, actualOutputFile);
+		
+		// Validate that the output file matches the single pass result.
+		dataUtils.compareFiles(expectedOutputFile, actualOutputFile);
+	}
+	
+	
+	/**
+	 * Performs a bounding box filter with the completeRelations option enabled using multiple
+	 * passes over the input.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testBboxFilterCompleteRelationsMultiPass() throws IOException {
+		File inputFile;
+		File expectedOutputFile;
+		File actualOutputFile;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		expectedOutputFile = dataUtils.createDataFile("v0_6/areafilter-out-completerelations.osm");
+		actualOutputFile = dataUtils.newFile();
+		
+		runMultiPass(
+				new BoundingBoxFilter(IdTrackerType.Roaring, -10, 10, 10, -10, false, false, true, false),
+				inputFile, actualOutputFile);
+		
+		// Validate that the output file matches the single pass result.
+		dataUtils.compareFiles(expectedOutputFile, actualOutputFile);
+	}
+	
+	
+	/**
+	 * Performs a multiple area filter with the completeRelations option enabled using multiple
+	 * passes over the input.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testMultiAreaFilterCompleteRelationsMultiPass() throws IOException {
+		File inputFile;
+		File expectedOutputFile;
+		File notchedPolygonFile;
+		File actualOutputFile;
+		File actualNotchedFile;
+		MultiAreaFilter filter;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/areafilter-in.osm");
+		expectedOutputFile = dataUtils.createDataFile("v0_6/areafilter-out-completerelations.osm");
+		notchedPolygonFile = new File(getClass().getResource("testPolygon.txt").getFile());
+		actualOutputFile = dataUtils.newFile();
+		actualNotchedFile = dataUtils.newFile();
+		
+		filter = new MultiAreaFilter(IdTrackerType.Roaring, Collections.singletonList(notchedPolygonFile),
+				Collections.singletonList(new Bound(10, -10, 10, -10, "")), false, false, true, false, 2);
+		writeSortedOutput(filter.getSource(0), actualNotchedFile);
+		writeSortedOutput(filter.getSource(1), actualOutputFile);
+		runMultiPass(filter, inputFile);
+		
+		// Validate that the output files match the single pass results.
+		dataUtils.compareFiles(runPolygonFilter(inputFile, notchedPolygonFile, "completeRelations=yes"),
+				actualNotchedFile);
+		dataUtils.compareFiles(expectedOutputFile, actualOutputFile);
+	}
 }
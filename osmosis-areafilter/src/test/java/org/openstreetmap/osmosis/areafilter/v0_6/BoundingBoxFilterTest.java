@@ -13,6 +13,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
 import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
@@ -114,6 +117,26 @@ public class BoundingBoxFilterTest {
 	}
 
 
+	/**
+	 * Test that a Bound received within a batch is clipped to the filter area.
+	 */
+	@Test
+	public final void testProcessBoundContainerBatch() {
+		Bound compareBound;
+		List<EntityContainer> entities;
+		
+		entities = new ArrayList<EntityContainer>();
+		entities.add(new BoundContainer(intersectingBound));
+		entities.add(new NodeContainer(inAreaNode));
+		simpleAreaFilter.process(new EntityBatch(entities));
+		simpleAreaFilter.complete();
+		compareBound = (Bound) entityInspector.getProcessedEntities().iterator().next().getEntity();
+		assertTrue(Double.compare(compareBound.getRight(), 20) == 0);
+		assertTrue(Double.compare(compareBound.getTop(), 20) == 0);
+		assertTrue(entityInspector.getLastEntityContainer().getEntity() == inAreaNode);
+	}
+
+
 	/**
 	 * Test a node inside the area.
 	 */
@@ -1,6 +1,7 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.areafilter.v0_6;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -14,6 +15,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
 import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
@@ -153,4 +156,47 @@ public class PolygonFilterTest {
 		        "Node lying on edge of filter area not considered inside area.",
 		        polyAreaFilter.isNodeWithinArea(edgeNode));
 	}
+
+
+	/**
+	 * Test that nodes checked by multiple worker threads are passed on in their original order.
+	 */
+	@Test
+	public final void testMultipleWorkers() {
+		AreaFilter workerAreaFilter;
+		SinkEntityInspector workerInspector;
+		OsmUser user;
+		List<Node> expectedNodes;
+		int nodeIndex;
+		
+		user = new OsmUser(12, "OsmosisTest");
+		workerInspector = new SinkEntityInspector();
+		workerAreaFilter = new PolygonFilter(IdTrackerType.Roaring, polygonFile, false, false, false, false, 4);
+		workerAreaFilter.setSink(workerInspector);
+		
+		// Spread nodes over a grid covering the polygon and its surroundings.
+		expectedNodes = new ArrayList<Node>();
+		try {
+			for (int i = 0; i < 50000; i++) {
+				Node node = new Node(
+						new CommonEntityData(i, 0, new Date(), user, 0, new ArrayList<Tag>()),
+						(i % 250) * 0.2 - 25, ((i / 250) % 200) * 0.25 - 25);
+				
+				workerAreaFilter.process(new NodeContainer(node));
+				if (polyAreaFilter.isNodeWithinArea(node)) {
+					expectedNodes.add(node);
+				}
+			}
+			workerAreaFilter.complete();
+		} finally {
+			workerAreaFilter.release();
+		}
+		
+		nodeIndex = 0;
+		for (EntityContainer entityContainer : workerInspector.getProcessedEntities()) {
+			assertEquals("Incorrect node returned.", expectedNodes.get(nodeIndex++).getId(),
+					entityContainer.getEntity().getId());
+		}
+		assertEquals("Incorrect number of nodes returned.", expectedNodes.size(), nodeIndex);
+	}
 }
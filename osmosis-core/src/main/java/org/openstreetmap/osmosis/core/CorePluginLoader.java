@@ -27,6 +27,7 @@ import org.openstreetmap.osmosis.core.sort.v0_6.EntityContainerComparator;
 import org.openstreetmap.osmosis.core.sort.v0_6.EntitySorterFactory;
 import org.openstreetmap.osmosis.core.sort.v0_6.TagSorterFactory;
 import org.openstreetmap.osmosis.core.tee.v0_6.ChangeTeeFactory;
+import org.openstreetmap.osmosis.core.tee.v0_6.DatasetTeeFactory;
 import org.openstreetmap.osmosis.core.tee.v0_6.EntityTeeFactory;
 
 
@@ -81,6 +82,8 @@ public class CorePluginLoader implements PluginLoader {
 		factoryMap.put("t", new EntityTeeFactory());
 		factoryMap.put("tee-change", new ChangeTeeFactory());
 		factoryMap.put("tc", new ChangeTeeFactory());
+		factoryMap.put("tee-dataset", new DatasetTeeFactory());
+		factoryMap.put("tdt", new DatasetTeeFactory());
 		factoryMap.put("read-empty", new EmptyReaderFactory());
 		factoryMap.put("rem", new EmptyReaderFactory());
 		factoryMap.put("read-empty-change", new EmptyChangeReaderFactory());
@@ -103,6 +106,7 @@ public class CorePluginLoader implements PluginLoader {
 		factoryMap.put("log-progress-change-0.6", new ChangeProgressLoggerFactory());
 		factoryMap.put("tee-0.6", new EntityTeeFactory());
 		factoryMap.put("tee-change-0.6", new ChangeTeeFactory());
+		factoryMap.put("tee-dataset-0.6", new DatasetTeeFactory());
 		factoryMap.put("read-empty-0.6", new EmptyReaderFactory());
 		factoryMap.put("read-empty-change-0.6", new EmptyChangeReaderFactory());
 		factoryMap.put("tag-sort-0.6", new TagSorterFactory());
@@ -4,7 +4,9 @@ package org.openstreetmap.osmosis.core.buffer.v0_6;
 import java.util.Map;
 
 import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
-import org.openstreetmap.osmosis.core.store.DataPostbox;
+import org.openstreetmap.osmosis.core.store.Postbox;
+import org.openstreetmap.osmosis.core.store.PostboxFactory;
+import org.openstreetmap.osmosis.core.store.PostboxType;
 import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
 import org.openstreetmap.osmosis.core.task.v0_6.ChangeSinkRunnableChangeSource;
 
@@ -19,7 +21,7 @@ import org.openstreetmap.osmosis.core.task.v0_6.ChangeSinkRunnableChangeSource;
  */
 public class ChangeBuffer implements ChangeSinkRunnableChangeSource {
 	private ChangeSink changeSink;
-	private DataPostbox<ChangeContainer> buffer;
+	private Postbox<ChangeContainer> buffer;
 	
 	
 	/**
@@ -29,7 +31,20 @@ public class ChangeBuffer implements ChangeSinkRunnableChangeSource {
 	 *            The size of the buffer to use.
 	 */
 	public ChangeBuffer(int bufferCapacity) {
-		buffer = new DataPostbox<ChangeContainer>(bufferCapacity);
+		this(bufferCapacity, PostboxType.Locking);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param bufferCapacity
+	 *            The size of the buffer to use.
+	 * @param postboxType
+	 *            The postbox implementation used to pass data between threads.
+	 */
+	public ChangeBuffer(int bufferCapacity, PostboxType postboxType) {
+		buffer = PostboxFactory.createInstance(postboxType, bufferCapacity);
 	}
 
 
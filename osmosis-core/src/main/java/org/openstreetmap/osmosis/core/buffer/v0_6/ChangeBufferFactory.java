@@ -5,6 +5,8 @@ import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.pipeline.v0_6.ChangeSinkRunnableChangeSourceManager;
+import org.openstreetmap.osmosis.core.store.PostboxFactory;
+import org.openstreetmap.osmosis.core.store.PostboxType;
 
 
 /**
@@ -15,6 +17,7 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.ChangeSinkRunnableChangeSour
 public class ChangeBufferFactory extends TaskManagerFactory {
 	private static final String ARG_BUFFER_CAPACITY = "bufferCapacity";
 	private static final int DEFAULT_BUFFER_CAPACITY = 20;
+	private static final String ARG_POSTBOX_TYPE = "postboxType";
 	
 	
 	/**
@@ -23,6 +26,7 @@ public class ChangeBufferFactory extends TaskManagerFactory {
 	@Override
 	protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
 		int bufferCapacity;
+		PostboxType postboxType;
 		
 		// Get the task arguments.
 		bufferCapacity = getIntegerArgument(
@@ -30,10 +34,14 @@ public class ChangeBufferFactory extends TaskManagerFactory {
 			ARG_BUFFER_CAPACITY,
 			getDefaultIntegerArgument(taskConfig, DEFAULT_BUFFER_CAPACITY)
 		);
+		postboxType = Enum.valueOf(
+			PostboxType.class,
+			getStringArgument(taskConfig, ARG_POSTBOX_TYPE, PostboxFactory.getDefaultTypeName())
+		);
 		
 		return new ChangeSinkRunnableChangeSourceManager(
 			taskConfig.getId(),
-			new ChangeBuffer(bufferCapacity),
+			new ChangeBuffer(bufferCapacity, postboxType),
 			taskConfig.getPipeArgs()
 		);
 	}
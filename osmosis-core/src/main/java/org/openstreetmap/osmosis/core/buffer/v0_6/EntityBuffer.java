@@ -1,10 +1,16 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.core.buffer.v0_6;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
-import org.openstreetmap.osmosis.core.store.DataPostbox;
+import org.openstreetmap.osmosis.core.store.Postbox;
+import org.openstreetmap.osmosis.core.store.PostboxFactory;
+import org.openstreetmap.osmosis.core.store.PostboxType;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkRunnableSource;
 
@@ -13,13 +19,14 @@ import org.openstreetmap.osmosis.core.task.v0_6.SinkRunnableSource;
  * Splits the pipeline so that it can be processed on multiple threads. The
  * input thread to this task stores data in a buffer which blocks if it fills
  * up. This task runs on a new thread which reads data from the buffer and
- * writes it to the destination.
+ * writes it to the destination. Entities are passed to the destination in
+ * batches of the size received from the buffer.
  * 
  * @author Brett Henderson
  */
-public class EntityBuffer implements SinkRunnableSource {
+public class EntityBuffer implements SinkRunnableSource, BatchSink {
 	private Sink sink;
-	private DataPostbox<EntityContainer> buffer;
+	private Postbox<EntityContainer> buffer;
 	
 	
 	/**
@@ -29,7 +36,20 @@ public class EntityBuffer implements SinkRunnableSource {
 	 *            The size of the buffer to use.
 	 */
 	public EntityBuffer(int bufferCapacity) {
-		buffer = new DataPostbox<EntityContainer>(bufferCapacity);
+		this(bufferCapacity, PostboxType.Locking);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param bufferCapacity
+	 *            The size of the buffer to use.
+	 * @param postboxType
+	 *            The postbox implementation used to pass data between threads.
+	 */
+	public EntityBuffer(int bufferCapacity, PostboxType postboxType) {
+		buffer = PostboxFactory.createInstance(postboxType, bufferCapacity);
 	}
 
 
@@ -49,6 +69,14 @@ public class EntityBuffer implements SinkRunnableSource {
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(EntityBatch batch) {
+		buffer.putAll(batch.getEntities());
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -81,7 +109,10 @@ public class EntityBuffer implements SinkRunnableSource {
 			sink.initialize(buffer.outputInitialize());
 			
 			while (buffer.hasNext()) {
-				sink.process(buffer.getNext());
+				List<EntityContainer> entities = new ArrayList<EntityContainer>();
+				
+				buffer.drainTo(entities);
+				EntityBatch.create(entities).sendTo(sink);
 			}
 			
 			sink.complete();
@@ -13,7 +13,8 @@ public interface Dataset {
 	
 	/**
 	 * Creates a new reader instance providing access to the data within this
-	 * set.
+	 * set. Implementations must allow many readers to be created and used
+	 * concurrently, each reader being used by a single thread at a time.
 	 * 
 	 * @return A new dataset reader.
 	 */
@@ -0,0 +1,99 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.container.v0_6;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+
+
+/**
+ * An ordered block of entities passed between tasks in a single call. Batches
+ * remove the per-entity call overhead between tasks supporting the BatchSink
+ * interface.
+ *
+ * @author Brett Henderson
+ */
+public class EntityBatch {
+
+	private List<EntityContainer> entities;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param entities
+	 *            The entities in the batch. The list must not be modified
+	 *            after the batch is created.
+	 */
+	public EntityBatch(List<EntityContainer> entities) {
+		this.entities = Collections.unmodifiableList(entities);
+	}
+
+
+	/**
+	 * Creates the most specific batch type for the provided entities. A node
+	 * batch is created if all entities are nodes.
+	 *
+	 * @param entities
+	 *            The entities in the batch. The list must not be modified
+	 *            after the batch is created.
+	 * @return The new batch.
+	 */
+	public static EntityBatch create(List<EntityContainer> entities) {
+		if (entities.isEmpty()) {
+			return new EntityBatch(entities);
+		}
+
+		for (EntityContainer entityContainer : entities) {
+			if (!(entityContainer instanceof NodeContainer)) {
+				return new EntityBatch(entities);
+			}
+		}
+
+		return new NodeBatch(entities);
+	}
+
+
+	/**
+	 * Gets the entities in the batch.
+	 *
+	 * @return The unmodifiable list of entities.
+	 */
+	public List<EntityContainer> getEntities() {
+		return entities;
+	}
+
+
+	/**
+	 * Gets the number of entities in the batch.
+	 *
+	 * @return The number of entities.
+	 */
+	public int size() {
+		return entities.size();
+	}
+
+
+	/**
+	 * Sends the batch to a sink. Batch sinks receive the batch in a single
+	 * call, all other sinks receive each entity in turn.
+	 *
+	 * @param sink
+	 *            The sink to receive the entities.
+	 */
+	public void sendTo(Sink sink) {
+		if (entities.isEmpty()) {
+			return;
+		}
+
+		if (sink instanceof BatchSink) {
+			((BatchSink) sink).process(this);
+		} else {
+			for (EntityContainer entityContainer : entities) {
+				sink.process(entityContainer);
+			}
+		}
+	}
+}
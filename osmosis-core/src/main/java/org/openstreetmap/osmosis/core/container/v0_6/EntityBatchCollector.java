@@ -0,0 +1,79 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.container.v0_6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+
+
+/**
+ * Collects the entities emitted by a producer so that they can be sent
+ * downstream as a single batch. Tasks passing on the output of a batch should
+ * use EntityBatchOutput instead.
+ *
+ * @author Brett Henderson
+ */
+public class EntityBatchCollector implements Sink {
+
+	private List<EntityContainer> entities;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param expectedSize
+	 *            The expected number of entities to be collected.
+	 */
+	public EntityBatchCollector(int expectedSize) {
+		entities = new ArrayList<EntityContainer>(expectedSize);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialize(Map<String, Object> metaData) {
+		throw new OsmosisRuntimeException("A batch collector cannot be initialized.");
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void process(EntityContainer entityContainer) {
+		entities.add(entityContainer);
+	}
+
+
+	/**
+	 * Creates a batch containing all entities collected so far.
+	 *
+	 * @return The batch.
+	 */
+	public EntityBatch getBatch() {
+		return EntityBatch.create(entities);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void complete() {
+		throw new OsmosisRuntimeException("A batch collector cannot be completed.");
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		// Nothing to release.
+	}
+}
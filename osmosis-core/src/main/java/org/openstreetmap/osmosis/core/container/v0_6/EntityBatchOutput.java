@@ -0,0 +1,145 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.container.v0_6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+
+
+/**
+ * Passes the output of a task to its downstream sink. Entities are passed on
+ * immediately unless a batch is in progress, in which case they are collected
+ * and sent downstream as a single batch once the batch ends. This allows tasks
+ * implementing BatchSink to re-use their per-entity processing code unchanged
+ * while preserving batches for the next task.
+ *
+ * @author Brett Henderson
+ */
+public class EntityBatchOutput implements Sink {
+
+	private Sink sink;
+	private List<EntityContainer> batchEntities;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param sink
+	 *            The downstream sink receiving the output.
+	 */
+	public EntityBatchOutput(Sink sink) {
+		this.sink = sink;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialize(Map<String, Object> metaData) {
+		sink.initialize(metaData);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void process(EntityContainer entityContainer) {
+		if (batchEntities != null) {
+			batchEntities.add(entityContainer);
+		} else {
+			sink.process(entityContainer);
+		}
+	}
+
+
+	/**
+	 * Starts collecting entities into a batch.
+	 *
+	 * @param expectedSize
+	 *            The expected number of entities in the batch.
+	 */
+	public void beginBatch(int expectedSize) {
+		if (batchEntities != null) {
+			throw new OsmosisRuntimeException("A batch is already in progress.");
+		}
+
+		batchEntities = new ArrayList<EntityContainer>(expectedSize);
+	}
+
+
+	private List<EntityContainer> takeBatch() {
+		List<EntityContainer> entities;
+
+		if (batchEntities == null) {
+			throw new OsmosisRuntimeException("No batch is in progress.");
+		}
+
+		entities = batchEntities;
+		batchEntities = null;
+
+		return entities;
+	}
+
+
+	/**
+	 * Sends all entities collected since the batch began to the downstream
+	 * sink as a single batch.
+	 */
+	public void endBatch() {
+		EntityBatch.create(takeBatch()).sendTo(sink);
+	}
+
+
+	/**
+	 * Passes each entity in a batch to a processor, sending the resulting
+	 * output downstream as a single batch.
+	 *
+	 * @param batch
+	 *            The batch to be processed.
+	 * @param processor
+	 *            The per-entity processing of the task owning this output.
+	 */
+	public void processBatch(EntityBatch batch, Sink processor) {
+		boolean processed;
+
+		beginBatch(batch.size());
+
+		processed = false;
+		try {
+			for (EntityContainer entityContainer : batch.getEntities()) {
+				processor.process(entityContainer);
+			}
+			processed = true;
+
+		} finally {
+			if (!processed) {
+				takeBatch();
+			}
+		}
+
+		endBatch();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void complete() {
+		sink.complete();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		sink.release();
+	}
+}
@@ -0,0 +1,108 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.container.v0_6;
+
+import java.util.List;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+
+
+/**
+ * A batch containing only nodes. In addition to the node entities, the ids
+ * and fixed precision coordinates are provided as parallel arrays allowing
+ * location based tasks to process the batch without visiting each entity.
+ *
+ * @author Brett Henderson
+ */
+public class NodeBatch extends EntityBatch {
+
+	private long[] ids;
+	private int[] latitudes;
+	private int[] longitudes;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param entities
+	 *            The nodes in the batch. The list must not be modified after
+	 *            the batch is created.
+	 */
+	public NodeBatch(List<EntityContainer> entities) {
+		super(entities);
+
+		for (EntityContainer entityContainer : entities) {
+			if (!(entityContainer instanceof NodeContainer)) {
+				throw new OsmosisRuntimeException("A node batch cannot contain entity "
+						+ entityContainer.getEntity() + ".");
+			}
+		}
+	}
+
+
+	/**
+	 * Builds the id and coordinate arrays the first time they are requested.
+	 * Most tasks only use the entities so the arrays are not built when the
+	 * batch is created.
+	 */
+	private synchronized void buildArrays() {
+		List<EntityContainer> entities;
+		int size;
+
+		if (ids != null) {
+			return;
+		}
+
+		entities = getEntities();
+		size = entities.size();
+		ids = new long[size];
+		latitudes = new int[size];
+		longitudes = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			Node node = ((NodeContainer) entities.get(i)).getEntity();
+
+			ids[i] = node.getId();
+			latitudes[i] = node.getFixedLatitude();
+			longitudes[i] = node.getFixedLongitude();
+		}
+	}
+
+
+	/**
+	 * Gets the node ids in batch order. The array must not be modified.
+	 *
+	 * @return The node ids.
+	 */
+	public long[] getIds() {
+		buildArrays();
+
+		return ids;
+	}
+
+
+	/**
+	 * Gets the fixed precision node latitudes in batch order. The array must
+	 * not be modified.
+	 *
+	 * @return The node latitudes.
+	 */
+	public int[] getLatitudes() {
+		buildArrays();
+
+		return latitudes;
+	}
+
+
+	/**
+	 * Gets the fixed precision node longitudes in batch order. The array must
+	 * not be modified.
+	 *
+	 * @return The node longitudes.
+	 */
+	public int[] getLongitudes() {
+		buildArrays();
+
+		return longitudes;
+	}
+}
@@ -128,6 +128,67 @@ public class CommonEntityData implements Storeable {
 	}
 
 
+	/**
+	 * Creates a new read-only instance which uses the supplied tag collection directly.
+	 *
+	 * @param id
+	 *            The unique identifier.
+	 * @param version
+	 *            The version of the entity.
+	 * @param timestampContainer
+	 *            The container holding the timestamp in an alternative
+	 *            timestamp representation.
+	 * @param user
+	 *            The user that last modified this entity.
+	 * @param changesetId
+	 *            The id of the changeset that this version of the entity was created by.
+	 * @param readOnlyTags
+	 *            The unmodifiable tags to attach to the object.
+	 */
+	private CommonEntityData(long id, int version, TimestampContainer timestampContainer, OsmUser user,
+			long changesetId, UnmodifiableTagCollection readOnlyTags) {
+		init(id, timestampContainer, user, version, changesetId);
+		this.tags = readOnlyTags;
+		metaTags = Collections.emptyMap();
+		readOnly = true;
+	}
+
+
+	/**
+	 * Creates a new read-only instance without copying the supplied tags. This is intended for
+	 * readers producing large numbers of entities where the per-entity collection allocations
+	 * dominate. The same tag collection may be shared between many entities (eg. a single empty
+	 * collection for all untagged nodes) so the caller must not modify it after this call.
+	 *
+	 * @param id
+	 *            The unique identifier.
+	 * @param version
+	 *            The version of the entity.
+	 * @param timestampContainer
+	 *            The container holding the timestamp in an alternative
+	 *            timestamp representation.
+	 * @param user
+	 *            The user that last modified this entity.
+	 * @param changesetId
+	 *            The id of the changeset that this version of the entity was created by.
+	 * @param tags
+	 *            The tags to attach to the object.
+	 * @return The read-only entity data.
+	 */
+	public static CommonEntityData createReadOnly(long id, int version, TimestampContainer timestampContainer,
+			OsmUser user, long changesetId, TagCollection tags) {
+		UnmodifiableTagCollection readOnlyTags;
+
+		if (tags instanceof UnmodifiableTagCollection) {
+			readOnlyTags = (UnmodifiableTagCollection) tags;
+		} else {
+			readOnlyTags = new UnmodifiableTagCollection(tags);
+		}
+
+		return new CommonEntityData(id, version, timestampContainer, user, changesetId, readOnlyTags);
+	}
+
+
 	/**
 	 * Initializes non-collection attributes.
 	 * 
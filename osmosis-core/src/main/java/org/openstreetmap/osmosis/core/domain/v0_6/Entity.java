@@ -120,6 +120,25 @@ public abstract class Entity implements Storeable {
 	public Entity(CommonEntityData entityData) {
 		this.entityData = entityData.getWriteableInstance();
 	}
+
+
+	/**
+	 * Creates a new instance which may share read-only entity data instead of taking a writeable copy
+	 * of it. A shared instance is itself read-only.
+	 * 
+	 * @param entityData
+	 *            The data to store in the entity.
+	 * @param shareReadOnly
+	 *            If true and the data is read-only it is used directly, otherwise this behaves the
+	 *            same as Entity(entityData).
+	 */
+	protected Entity(CommonEntityData entityData, boolean shareReadOnly) {
+		if (shareReadOnly && entityData.isReadOnly()) {
+			this.entityData = entityData;
+		} else {
+			this.entityData = entityData.getWriteableInstance();
+		}
+	}
 	
 	
 	/**
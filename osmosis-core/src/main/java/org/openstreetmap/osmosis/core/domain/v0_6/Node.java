@@ -4,6 +4,7 @@ package org.openstreetmap.osmosis.core.domain.v0_6;
 import java.util.Collection;
 import java.util.Date;
 
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.domain.common.SimpleTimestampContainer;
 import org.openstreetmap.osmosis.core.domain.common.TimestampContainer;
 import org.openstreetmap.osmosis.core.store.StoreClassRegister;
@@ -19,8 +20,14 @@ import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
  */
 public class Node extends Entity implements Comparable<Node> {
 
-	private double latitude;
-	private double longitude;
+	/*
+	 * Coordinates are held in the fixed precision form used by the stores and the PBF format. The
+	 * original doubles are only retained for the rare coordinates that form cannot represent
+	 * exactly, so a typical node carries two ints and a null reference rather than two doubles.
+	 */
+	private int fixedLatitude;
+	private int fixedLongitude;
+	private double[] exactCoordinates;
 
 
 	/**
@@ -93,6 +100,106 @@ public class Node extends Entity implements Comparable<Node> {
 	}
 
 
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param entityData
+	 *            The common entity data.
+	 * @param shareReadOnly
+	 *            If true and the data is read-only it is used directly rather than being copied.
+	 * @param latitude
+	 *            The geographic latitude.
+	 * @param longitude
+	 *            The geographic longitude.
+	 */
+	private Node(CommonEntityData entityData, boolean shareReadOnly, double latitude, double longitude) {
+		super(entityData, shareReadOnly);
+
+		init(latitude, longitude);
+	}
+
+
+	/**
+	 * Creates a new read-only node directly around read-only entity data such as that produced by
+	 * CommonEntityData.createReadOnly. Unlike Node(entityData, latitude, longitude) the data is not
+	 * copied, which avoids an allocation per node for high volume readers.
+	 *
+	 * @param readOnlyEntityData
+	 *            The read-only common entity data.
+	 * @param latitude
+	 *            The geographic latitude.
+	 * @param longitude
+	 *            The geographic longitude.
+	 * @return The read-only node.
+	 */
+	public static Node createReadOnly(CommonEntityData readOnlyEntityData, double latitude, double longitude) {
+		if (!readOnlyEntityData.isReadOnly()) {
+			throw new OsmosisRuntimeException("Entity data must be read-only to be shared by a node.");
+		}
+
+		return new Node(readOnlyEntityData, true, latitude, longitude);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param entityData
+	 *            The common entity data.
+	 * @param shareReadOnly
+	 *            If true and the data is read-only it is used directly rather than being copied.
+	 * @param fixedLatitude
+	 *            The geographic latitude in fixed precision form.
+	 * @param fixedLongitude
+	 *            The geographic longitude in fixed precision form.
+	 */
+	private Node(CommonEntityData entityData, boolean shareReadOnly, int fixedLatitude, int fixedLongitude) {
+		super(entityData, shareReadOnly);
+
+		initFixed(fixedLatitude, fixedLongitude);
+	}
+
+
+	/**
+	 * Creates a new node from coordinates already held in the fixed precision form defined by
+	 * FixedPrecisionCoordinateConvertor. The values are kept as is, avoiding the conversion to and
+	 * from doubles that Node(entityData, latitude, longitude) would incur.
+	 *
+	 * @param entityData
+	 *            The common entity data.
+	 * @param fixedLatitude
+	 *            The geographic latitude in fixed precision form.
+	 * @param fixedLongitude
+	 *            The geographic longitude in fixed precision form.
+	 * @return The node.
+	 */
+	public static Node createFixedPrecision(CommonEntityData entityData, int fixedLatitude, int fixedLongitude) {
+		return new Node(entityData, false, fixedLatitude, fixedLongitude);
+	}
+
+
+	/**
+	 * Creates a new read-only node around read-only entity data using coordinates in fixed
+	 * precision form. This combines the behaviour of createReadOnly and createFixedPrecision.
+	 *
+	 * @param readOnlyEntityData
+	 *            The read-only common entity data.
+	 * @param fixedLatitude
+	 *            The geographic latitude in fixed precision form.
+	 * @param fixedLongitude
+	 *            The geographic longitude in fixed precision form.
+	 * @return The read-only node.
+	 */
+	public static Node createReadOnlyFixedPrecision(
+			CommonEntityData readOnlyEntityData, int fixedLatitude, int fixedLongitude) {
+		if (!readOnlyEntityData.isReadOnly()) {
+			throw new OsmosisRuntimeException("Entity data must be read-only to be shared by a node.");
+		}
+
+		return new Node(readOnlyEntityData, true, fixedLatitude, fixedLongitude);
+	}
+
+
 	/**
 	 * Creates a new instance.
 	 * 
@@ -159,7 +266,10 @@ public class Node extends Entity implements Comparable<Node> {
 	private Node(Node originalNode) {
 		super(originalNode);
 		
-		init(originalNode.latitude, originalNode.longitude);
+		// The exact coordinate array is never modified in place so it can be shared.
+		this.fixedLatitude = originalNode.fixedLatitude;
+		this.fixedLongitude = originalNode.fixedLongitude;
+		this.exactCoordinates = originalNode.exactCoordinates;
 	}
 
 
@@ -172,8 +282,35 @@ public class Node extends Entity implements Comparable<Node> {
 	 *            The geographic longitude.
 	 */
 	private void init(double newLatitude, double newLongitude) {
-		this.latitude = newLatitude;
-		this.longitude = newLongitude;
+		fixedLatitude = FixedPrecisionCoordinateConvertor.convertToFixed(newLatitude);
+		fixedLongitude = FixedPrecisionCoordinateConvertor.convertToFixed(newLongitude);
+
+		if (isExact(fixedLatitude, newLatitude) && isExact(fixedLongitude, newLongitude)) {
+			exactCoordinates = null;
+		} else {
+			exactCoordinates = new double[] {newLatitude, newLongitude};
+		}
+	}
+
+
+	/**
+	 * Initializes the coordinates from values in fixed precision form.
+	 * 
+	 * @param newFixedLatitude
+	 *            The geographic latitude in fixed precision form.
+	 * @param newFixedLongitude
+	 *            The geographic longitude in fixed precision form.
+	 */
+	private void initFixed(int newFixedLatitude, int newFixedLongitude) {
+		fixedLatitude = newFixedLatitude;
+		fixedLongitude = newFixedLongitude;
+		exactCoordinates = null;
+	}
+
+
+	private static boolean isExact(int fixedValue, double value) {
+		// Double.compare also rejects NaN, negative zero and values beyond the fixed range.
+		return Double.compare(FixedPrecisionCoordinateConvertor.convertToDouble(fixedValue), value) == 0;
 	}
 
 
@@ -188,8 +325,7 @@ public class Node extends Entity implements Comparable<Node> {
 	public Node(StoreReader sr, StoreClassRegister scr) {
 		super(sr, scr);
 
-		this.latitude = FixedPrecisionCoordinateConvertor.convertToDouble(sr.readInteger());
-		this.longitude = FixedPrecisionCoordinateConvertor.convertToDouble(sr.readInteger());
+		initFixed(sr.readInteger(), sr.readInteger());
 	}
 
 
@@ -200,8 +336,8 @@ public class Node extends Entity implements Comparable<Node> {
 	public void store(StoreWriter sw, StoreClassRegister scr) {
 		super.store(sw, scr);
 
-		sw.writeInteger(FixedPrecisionCoordinateConvertor.convertToFixed(latitude));
-		sw.writeInteger(FixedPrecisionCoordinateConvertor.convertToFixed(longitude));
+		sw.writeInteger(fixedLatitude);
+		sw.writeInteger(fixedLongitude);
 	}
 
 
@@ -268,20 +404,9 @@ public class Node extends Entity implements Comparable<Node> {
 			return 1;
 		}
 
-		if (this.latitude < comparisonNode.latitude) {
-			return -1;
-		}
-
-		if (this.latitude > comparisonNode.latitude) {
-			return 1;
-		}
-
-		if (this.longitude < comparisonNode.longitude) {
-			return -1;
-		}
-
-		if (this.longitude > comparisonNode.longitude) {
-			return 1;
+		int result = compareCoordinates(comparisonNode);
+		if (result != 0) {
+			return result;
 		}
 
 		if (this.getTimestamp() == null && comparisonNode.getTimestamp() != null) {
@@ -291,8 +416,6 @@ public class Node extends Entity implements Comparable<Node> {
 			return 1;
 		}
 		if (this.getTimestamp() != null && comparisonNode.getTimestamp() != null) {
-			int result;
-
 			result = this.getTimestamp().compareTo(comparisonNode.getTimestamp());
 
 			if (result != 0) {
@@ -304,13 +427,69 @@ public class Node extends Entity implements Comparable<Node> {
 	}
 
 
+	private int compareCoordinates(Node comparisonNode) {
+		if (exactCoordinates == null && comparisonNode.exactCoordinates == null) {
+			// Fixed precision values order the same way as the doubles they represent.
+			if (fixedLatitude < comparisonNode.fixedLatitude) {
+				return -1;
+			}
+			if (fixedLatitude > comparisonNode.fixedLatitude) {
+				return 1;
+			}
+			if (fixedLongitude < comparisonNode.fixedLongitude) {
+				return -1;
+			}
+			if (fixedLongitude > comparisonNode.fixedLongitude) {
+				return 1;
+			}
+			return 0;
+		}
+
+		double latitude = getLatitude();
+		double comparisonLatitude = comparisonNode.getLatitude();
+		if (latitude < comparisonLatitude) {
+			return -1;
+		}
+		if (latitude > comparisonLatitude) {
+			return 1;
+		}
+
+		double longitude = getLongitude();
+		double comparisonLongitude = comparisonNode.getLongitude();
+		if (longitude < comparisonLongitude) {
+			return -1;
+		}
+		if (longitude > comparisonLongitude) {
+			return 1;
+		}
+
+		return 0;
+	}
+
+
 	/**
 	 * Gets the latitude.
 	 * 
 	 * @return The latitude.
 	 */
 	public double getLatitude() {
-		return latitude;
+		if (exactCoordinates != null) {
+			return exactCoordinates[0];
+		}
+
+		return FixedPrecisionCoordinateConvertor.convertToDouble(fixedLatitude);
+	}
+
+
+	/**
+	 * Gets the latitude in the fixed precision form defined by FixedPrecisionCoordinateConvertor.
+	 * If the node was created from a double that form cannot represent exactly, this is the
+	 * nearest fixed precision value.
+	 * 
+	 * @return The fixed precision latitude.
+	 */
+	public int getFixedLatitude() {
+		return fixedLatitude;
 	}
 
 
@@ -323,7 +502,7 @@ public class Node extends Entity implements Comparable<Node> {
 	public void setLatitude(double latitude) {
 		assertWriteable();
 
-		this.latitude = latitude;
+		init(latitude, getLongitude());
 	}
 
 
@@ -333,7 +512,23 @@ public class Node extends Entity implements Comparable<Node> {
 	 * @return The longitude.
 	 */
 	public double getLongitude() {
-		return longitude;
+		if (exactCoordinates != null) {
+			return exactCoordinates[1];
+		}
+
+		return FixedPrecisionCoordinateConvertor.convertToDouble(fixedLongitude);
+	}
+
+
+	/**
+	 * Gets the longitude in the fixed precision form defined by FixedPrecisionCoordinateConvertor.
+	 * If the node was created from a double that form cannot represent exactly, this is the
+	 * nearest fixed precision value.
+	 * 
+	 * @return The fixed precision longitude.
+	 */
+	public int getFixedLongitude() {
+		return fixedLongitude;
 	}
 
 
@@ -346,7 +541,7 @@ public class Node extends Entity implements Comparable<Node> {
 	public void setLongitude(double longitude) {
 		assertWriteable();
 
-		this.longitude = longitude;
+		init(getLatitude(), longitude);
 	}
 
 
@@ -28,5 +28,12 @@ public enum IdTrackerType {
 	 * either one of the two other id list implementations depending on the number of ids to be
 	 * managed.
 	 */
-	Dynamic
+	Dynamic,
+	/**
+	 * The roaring implementation breaks the id space into ranges of 65536 ids and stores each range
+	 * in use as either a sorted array, a bitmap or a list of runs of consecutive ids, whichever is
+	 * smallest. It has very little overhead per range and is the most compact implementation for
+	 * large id sets.
+	 */
+	Roaring
 }
@@ -0,0 +1,27 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+
+/**
+ * An iterator over primitive long values. Unlike Iterator&lt;Long&gt; no
+ * objects are allocated for each value returned.
+ *
+ * @author Brett Henderson
+ */
+public interface LongIterator {
+
+	/**
+	 * Indicates if more values are available.
+	 *
+	 * @return True if next may be called.
+	 */
+	boolean hasNext();
+
+
+	/**
+	 * Returns the next value.
+	 *
+	 * @return The next value.
+	 */
+	long next();
+}
@@ -0,0 +1,107 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+
+/**
+ * Tracks ids for a fixed number of independent id sets, such as the entities
+ * selected for each of several outputs. The union of all sets is maintained
+ * alongside them so that ids not belonging to any set can be rejected with a
+ * single lookup. When only one set is tracked it doubles as the union.
+ *
+ * @author Brett Henderson
+ */
+public class MultiIdTracker {
+	private IdTracker[] trackers;
+	private IdTracker union;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param idTrackerType
+	 *            Defines the id tracker implementation to use for each set.
+	 * @param trackerCount
+	 *            The number of id sets to be tracked.
+	 */
+	public MultiIdTracker(IdTrackerType idTrackerType, int trackerCount) {
+		trackers = new IdTracker[trackerCount];
+		for (int i = 0; i < trackerCount; i++) {
+			trackers[i] = IdTrackerFactory.createInstance(idTrackerType);
+		}
+		if (trackerCount == 1) {
+			union = trackers[0];
+		} else {
+			union = IdTrackerFactory.createInstance(idTrackerType);
+		}
+	}
+
+
+	/**
+	 * Gets the number of id sets being tracked.
+	 *
+	 * @return The id set count.
+	 */
+	public int getTrackerCount() {
+		return trackers.length;
+	}
+
+
+	/**
+	 * Marks the id as being set within an id set.
+	 *
+	 * @param trackerIndex
+	 *            The index of the id set.
+	 * @param id
+	 *            The identifier to be flagged.
+	 */
+	public void set(int trackerIndex, long id) {
+		trackers[trackerIndex].set(id);
+		if (union != trackers[trackerIndex]) {
+			union.set(id);
+		}
+	}
+
+
+	/**
+	 * Checks if the id is set within an id set.
+	 *
+	 * @param trackerIndex
+	 *            The index of the id set.
+	 * @param id
+	 *            The identifier to be checked.
+	 * @return True if the id is set.
+	 */
+	public boolean get(int trackerIndex, long id) {
+		return trackers[trackerIndex].get(id);
+	}
+
+
+	/**
+	 * Checks if the id is set within any of the id sets.
+	 *
+	 * @param id
+	 *            The identifier to be checked.
+	 * @return True if the id is set in at least one id set.
+	 */
+	public boolean getAny(long id) {
+		return union.get(id);
+	}
+
+
+	/**
+	 * Sets all ids of each id set in the specified tracker into the
+	 * corresponding id set of this tracker.
+	 *
+	 * @param other
+	 *            The tracker containing the ids to set. It must track the same
+	 *            number of id sets and is not modified.
+	 */
+	public void setAll(MultiIdTracker other) {
+		for (int i = 0; i < trackers.length; i++) {
+			trackers[i].setAll(other.trackers[i]);
+		}
+		if (trackers.length > 1) {
+			union.setAll(other.union);
+		}
+	}
+}
@@ -0,0 +1,224 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.Arrays;
+
+
+/**
+ * A roaring container holding a sorted array of values. This uses 16 bits per
+ * value and is used for sparse ranges. Once it exceeds MAX_SIZE values it is
+ * replaced by a bitmap container which is smaller beyond that point.
+ *
+ * @author Brett Henderson
+ */
+class RoaringArrayContainer extends RoaringContainer {
+
+	/**
+	 * The maximum number of values held before converting to a bitmap.
+	 */
+	static final int MAX_SIZE = 4096;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private char[] values;
+	private int size;
+
+
+	/**
+	 * Creates a new empty instance.
+	 */
+	RoaringArrayContainer() {
+		values = new char[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+
+	private RoaringArrayContainer(char[] values, int size) {
+		this.values = values;
+		this.size = size;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	RoaringContainer add(int value) {
+		int index;
+
+		index = Arrays.binarySearch(values, 0, size, (char) value);
+		if (index >= 0) {
+			return this;
+		}
+
+		if (size >= MAX_SIZE) {
+			return toBitmap().add(value);
+		}
+
+		index = -index - 1;
+		if (size == values.length) {
+			values = Arrays.copyOf(values, Math.min(values.length * 2, MAX_SIZE));
+		}
+		System.arraycopy(values, index, values, index + 1, size - index);
+		values[index] = (char) value;
+		size++;
+
+		return this;
+	}
+
+
+	private RoaringBitmapContainer toBitmap() {
+		long[] words;
+
+		words = new long[RoaringBitmapContainer.WORD_COUNT];
+		addTo(words);
+
+		return new RoaringBitmapContainer(words, size);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	boolean contains(int value) {
+		return Arrays.binarySearch(values, 0, size, (char) value) >= 0;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int getCardinality() {
+		return size;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int nextValue(int fromValue) {
+		int index;
+
+		if (fromValue >= RANGE) {
+			return -1;
+		}
+
+		index = Arrays.binarySearch(values, 0, size, (char) fromValue);
+		if (index < 0) {
+			index = -index - 1;
+		}
+
+		if (index < size) {
+			return values[index];
+		} else {
+			return -1;
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	long getMemoryUsage() {
+		return OBJECT_OVERHEAD + 2L * values.length;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	RoaringContainer copy() {
+		return new RoaringArrayContainer(Arrays.copyOf(values, size), size);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void addTo(long[] words) {
+		for (int i = 0; i < size; i++) {
+			int value = values[i];
+
+			words[value >>> 6] |= 1L << value;
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	RoaringContainer or(RoaringContainer other) {
+		// Small unions can be merged directly without building a bitmap.
+		if (other instanceof RoaringArrayContainer && size + other.getCardinality() <= MAX_SIZE) {
+			RoaringArrayContainer otherArray;
+			char[] merged;
+			int mergedSize;
+			int i;
+			int j;
+
+			otherArray = (RoaringArrayContainer) other;
+			merged = new char[size + otherArray.size];
+			mergedSize = 0;
+			i = 0;
+			j = 0;
+			while (i < size && j < otherArray.size) {
+				char value = values[i];
+				char otherValue = otherArray.values[j];
+
+				if (value < otherValue) {
+					merged[mergedSize++] = value;
+					i++;
+				} else if (value > otherValue) {
+					merged[mergedSize++] = otherValue;
+					j++;
+				} else {
+					merged[mergedSize++] = value;
+					i++;
+					j++;
+				}
+			}
+			while (i < size) {
+				merged[mergedSize++] = values[i++];
+			}
+			while (j < otherArray.size) {
+				merged[mergedSize++] = otherArray.values[j++];
+			}
+
+			return new RoaringArrayContainer(merged, mergedSize);
+		}
+
+		return super.or(other);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	RoaringContainer and(RoaringContainer other) {
+		char[] result;
+		int resultSize;
+
+		// The result can be no larger than this array so look up each value.
+		result = new char[size];
+		resultSize = 0;
+		for (int i = 0; i < size; i++) {
+			if (other.contains(values[i])) {
+				result[resultSize++] = values[i];
+			}
+		}
+
+		if (resultSize == 0) {
+			return null;
+		}
+
+		return new RoaringArrayContainer(Arrays.copyOf(result, resultSize), resultSize);
+	}
+}
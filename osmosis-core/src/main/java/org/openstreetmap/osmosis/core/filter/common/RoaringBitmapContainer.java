@@ -0,0 +1,161 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.Arrays;
+
+
+/**
+ * A roaring container holding a fixed size 8KB bitmap with one bit per value.
+ * This is used for dense ranges where it is smaller than an array container.
+ *
+ * @author Brett Henderson
+ */
+class RoaringBitmapContainer extends RoaringContainer {
+
+	/**
+	 * The number of 64 bit words in the bitmap.
+	 */
+	static final int WORD_COUNT = RANGE / 64;
+
+	private long[] words;
+	private int cardinality;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param words
+	 *            The bitmap containing WORD_COUNT words. It becomes owned by
+	 *            this container.
+	 * @param cardinality
+	 *            The number of bits set in the bitmap.
+	 */
+	RoaringBitmapContainer(long[] words, int cardinality) {
+		this.words = words;
+		this.cardinality = cardinality;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	RoaringContainer add(int value) {
+		int index;
+		long mask;
+
+		index = value >>> 6;
+		mask = 1L << value;
+		if ((words[index] & mask) == 0) {
+			words[index] |= mask;
+			cardinality++;
+
+			// A full range is represented by a single run.
+			if (cardinality == RANGE) {
+				return optimize();
+			}
+		}
+
+		return this;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	boolean contains(int value) {
+		return (words[value >>> 6] & (1L << value)) != 0;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int getCardinality() {
+		return cardinality;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int nextValue(int fromValue) {
+		int index;
+		long word;
+
+		if (fromValue >= RANGE) {
+			return -1;
+		}
+
+		index = fromValue >>> 6;
+		// Shift distances are modulo 64 so this clears all bits below fromValue.
+		word = words[index] & (-1L << fromValue);
+		while (word == 0) {
+			index++;
+			if (index == WORD_COUNT) {
+				return -1;
+			}
+			word = words[index];
+		}
+
+		return (index << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int nextAbsentValue(int fromValue) {
+		int index;
+		long word;
+
+		if (fromValue >= RANGE) {
+			return RANGE;
+		}
+
+		index = fromValue >>> 6;
+		word = ~words[index] & (-1L << fromValue);
+		while (word == 0) {
+			index++;
+			if (index == WORD_COUNT) {
+				return RANGE;
+			}
+			word = ~words[index];
+		}
+
+		return (index << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	long getMemoryUsage() {
+		return OBJECT_OVERHEAD + 8L * WORD_COUNT;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	RoaringContainer copy() {
+		return new RoaringBitmapContainer(Arrays.copyOf(words, WORD_COUNT), cardinality);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void addTo(long[] targetWords) {
+		for (int i = 0; i < WORD_COUNT; i++) {
+			targetWords[i] |= words[i];
+		}
+	}
+}
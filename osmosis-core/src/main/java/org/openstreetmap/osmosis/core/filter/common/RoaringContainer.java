@@ -0,0 +1,209 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+
+/**
+ * Holds the set values for a single 65536 id range within the roaring id
+ * tracker. Values are the low 16 bits of each id. Implementations trade off
+ * storage size against density and convert between each other as values are
+ * added.
+ *
+ * @author Brett Henderson
+ */
+abstract class RoaringContainer {
+
+	/**
+	 * The number of values covered by a single container.
+	 */
+	static final int RANGE = 65536;
+
+	/**
+	 * The approximate number of bytes consumed by an object header and its
+	 * array reference, used for memory reporting.
+	 */
+	static final int OBJECT_OVERHEAD = 32;
+
+
+	/**
+	 * Adds a value to the container.
+	 *
+	 * @param value
+	 *            The value between 0 and 65535.
+	 * @return The container now holding the value which may be a different
+	 *         implementation to this one.
+	 */
+	abstract RoaringContainer add(int value);
+
+
+	/**
+	 * Checks whether the specified value is set.
+	 *
+	 * @param value
+	 *            The value between 0 and 65535.
+	 * @return True if the value is set.
+	 */
+	abstract boolean contains(int value);
+
+
+	/**
+	 * Gets the number of values set.
+	 *
+	 * @return The value count.
+	 */
+	abstract int getCardinality();
+
+
+	/**
+	 * Finds the lowest set value greater than or equal to the specified value.
+	 *
+	 * @param fromValue
+	 *            The value to begin searching from, up to and including 65536.
+	 * @return The next set value, or -1 if none exists.
+	 */
+	abstract int nextValue(int fromValue);
+
+
+	/**
+	 * Finds the lowest unset value greater than or equal to the specified
+	 * value.
+	 *
+	 * @param fromValue
+	 *            The value to begin searching from.
+	 * @return The next unset value, or RANGE if all remaining values are set.
+	 */
+	int nextAbsentValue(int fromValue) {
+		int value;
+
+		value = fromValue;
+		while (value < RANGE && contains(value)) {
+			value++;
+		}
+
+		return value;
+	}
+
+
+	/**
+	 * Gets the approximate number of bytes of memory consumed.
+	 *
+	 * @return The memory size.
+	 */
+	abstract long getMemoryUsage();
+
+
+	/**
+	 * Creates an independent copy of this container.
+	 *
+	 * @return The copy.
+	 */
+	abstract RoaringContainer copy();
+
+
+	/**
+	 * Sets the bits of all set values in a bitmap of 1024 words.
+	 *
+	 * @param words
+	 *            The bitmap to be updated.
+	 */
+	void addTo(long[] words) {
+		for (int value = nextValue(0); value >= 0; value = nextValue(value + 1)) {
+			words[value >>> 6] |= 1L << value;
+		}
+	}
+
+
+	/**
+	 * Creates a container holding the union of this container and another.
+	 * Neither input is modified.
+	 *
+	 * @param other
+	 *            The container to be combined.
+	 * @return The new container.
+	 */
+	RoaringContainer or(RoaringContainer other) {
+		long[] words;
+
+		words = new long[RoaringBitmapContainer.WORD_COUNT];
+		addTo(words);
+		other.addTo(words);
+
+		return fromWords(words);
+	}
+
+
+	/**
+	 * Creates a container holding the intersection of this container and
+	 * another. Neither input is modified.
+	 *
+	 * @param other
+	 *            The container to be intersected.
+	 * @return The new container, or null if no values are common to both.
+	 */
+	RoaringContainer and(RoaringContainer other) {
+		long[] words;
+		long[] otherWords;
+
+		words = new long[RoaringBitmapContainer.WORD_COUNT];
+		otherWords = new long[RoaringBitmapContainer.WORD_COUNT];
+		addTo(words);
+		other.addTo(otherWords);
+		for (int i = 0; i < words.length; i++) {
+			words[i] &= otherWords[i];
+		}
+
+		return fromWords(words);
+	}
+
+
+	/**
+	 * Returns the smallest representation of the values in this container.
+	 *
+	 * @return This container or a smaller equivalent.
+	 */
+	RoaringContainer optimize() {
+		RoaringRunContainer runContainer;
+
+		runContainer = RoaringRunContainer.fromContainer(this);
+		if (runContainer.getMemoryUsage() < getMemoryUsage()) {
+			return runContainer;
+		}
+
+		return this;
+	}
+
+
+	/**
+	 * Creates the most appropriate container for the values set in a bitmap.
+	 *
+	 * @param words
+	 *            The bitmap containing 1024 words. It becomes owned by the
+	 *            result and must not be modified.
+	 * @return The new container, or null if no values are set.
+	 */
+	static RoaringContainer fromWords(long[] words) {
+		int cardinality;
+		RoaringContainer result;
+
+		cardinality = 0;
+		for (long word : words) {
+			cardinality += Long.bitCount(word);
+		}
+
+		if (cardinality == 0) {
+			return null;
+		}
+
+		if (cardinality <= RoaringArrayContainer.MAX_SIZE) {
+			result = new RoaringArrayContainer();
+			for (int i = 0; i < words.length; i++) {
+				for (long word = words[i]; word != 0; word &= word - 1) {
+					result = result.add((i << 6) + Long.numberOfTrailingZeros(word));
+				}
+			}
+		} else {
+			result = new RoaringBitmapContainer(words, cardinality);
+		}
+
+		return result.optimize();
+	}
+}
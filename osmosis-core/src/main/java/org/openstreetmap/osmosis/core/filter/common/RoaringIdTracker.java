@@ -0,0 +1,379 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Implements the IdTracker interface using a compressed bitmap in the style of
+ * a 64-bit roaring bitmap. The id space is broken into ranges of 65536 ids
+ * identified by the upper 48 bits of the id. Each range in use is managed by a
+ * container holding either a sorted array of values, a bitmap, or a list of
+ * runs of consecutive values depending on which is smallest. Negative ids are
+ * handled in the same way as positive ids.
+ * <p>
+ * In addition to the IdTracker methods, primitive iteration and bulk set
+ * operations are provided which avoid the boxing of individual ids.
+ *
+ * @author Brett Henderson
+ */
+public class RoaringIdTracker implements IdTracker {
+	private static final int KEY_SHIFT = 16;
+	private static final int VALUE_MASK = RoaringContainer.RANGE - 1;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+	private RoaringContainer[] containers;
+	private int containerCount;
+	private int lastIndex;
+
+
+	/**
+	 * Creates a new instance.
+	 */
+	public RoaringIdTracker() {
+		keys = new long[INITIAL_CAPACITY];
+		containers = new RoaringContainer[INITIAL_CAPACITY];
+		containerCount = 0;
+		lastIndex = 0;
+	}
+
+
+	/**
+	 * Finds the container for the specified key. Ids are usually accessed in
+	 * ascending order so the most recently used container is checked first.
+	 * The most recent index is only a hint and is read once, allowing a
+	 * tracker that is no longer modified to be queried by several threads.
+	 *
+	 * @param key
+	 *            The container key.
+	 * @return The container index if it exists, otherwise (-(insertion point)
+	 *         - 1).
+	 */
+	private int findContainer(long key) {
+		int index;
+
+		index = lastIndex;
+		if (index < containerCount && keys[index] == key) {
+			return index;
+		}
+
+		index = Arrays.binarySearch(keys, 0, containerCount, key);
+		if (index >= 0) {
+			lastIndex = index;
+		}
+
+		return index;
+	}
+
+
+	private void insertContainer(int index, long key, RoaringContainer container) {
+		if (containerCount == keys.length) {
+			int newCapacity = keys.length * 2;
+
+			keys = Arrays.copyOf(keys, newCapacity);
+			containers = Arrays.copyOf(containers, newCapacity);
+		}
+
+		System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+		System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+		keys[index] = key;
+		containers[index] = container;
+		containerCount++;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void set(long id) {
+		long key;
+		int index;
+
+		key = id >> KEY_SHIFT;
+		index = findContainer(key);
+		if (index < 0) {
+			index = -index - 1;
+			insertContainer(index, key, new RoaringArrayContainer());
+			lastIndex = index;
+		}
+
+		containers[index] = containers[index].add(((int) id) & VALUE_MASK);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean get(long id) {
+		int index;
+
+		index = findContainer(id >> KEY_SHIFT);
+		if (index < 0) {
+			return false;
+		}
+
+		return containers[index].contains(((int) id) & VALUE_MASK);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setAll(IdTracker idTracker) {
+		if (idTracker instanceof RoaringIdTracker) {
+			or((RoaringIdTracker) idTracker);
+		} else {
+			for (Long id : idTracker) {
+				set(id);
+			}
+		}
+	}
+
+
+	/**
+	 * Sets all ids contained in the specified tracker. This is performed a
+	 * container at a time rather than an id at a time.
+	 *
+	 * @param other
+	 *            The tracker containing the ids to set. It is not modified.
+	 */
+	public void or(RoaringIdTracker other) {
+		long[] newKeys;
+		RoaringContainer[] newContainers;
+		int newCount;
+		int i;
+		int j;
+
+		newKeys = new long[Math.max(containerCount + other.containerCount, INITIAL_CAPACITY)];
+		newContainers = new RoaringContainer[newKeys.length];
+		newCount = 0;
+		i = 0;
+		j = 0;
+		while (i < containerCount || j < other.containerCount) {
+			if (j >= other.containerCount || (i < containerCount && keys[i] < other.keys[j])) {
+				newKeys[newCount] = keys[i];
+				newContainers[newCount++] = containers[i++];
+			} else if (i >= containerCount || keys[i] > other.keys[j]) {
+				// Containers are modified in place so can't be shared.
+				newKeys[newCount] = other.keys[j];
+				newContainers[newCount++] = other.containers[j++].copy();
+			} else {
+				newKeys[newCount] = keys[i];
+				newContainers[newCount++] = containers[i++].or(other.containers[j++]);
+			}
+		}
+
+		keys = newKeys;
+		containers = newContainers;
+		containerCount = newCount;
+		lastIndex = 0;
+	}
+
+
+	/**
+	 * Clears all ids that are not contained in the specified tracker. This is
+	 * performed a container at a time rather than an id at a time.
+	 *
+	 * @param other
+	 *            The tracker containing the ids to retain. It is not modified.
+	 */
+	public void and(RoaringIdTracker other) {
+		int newCount;
+		int j;
+
+		// Results are written back into the existing arrays because the result
+		// can never contain more containers than this tracker.
+		newCount = 0;
+		j = 0;
+		for (int i = 0; i < containerCount; i++) {
+			while (j < other.containerCount && other.keys[j] < keys[i]) {
+				j++;
+			}
+
+			if (j < other.containerCount && other.keys[j] == keys[i]) {
+				RoaringContainer result = containers[i].and(other.containers[j]);
+
+				if (result != null) {
+					keys[newCount] = keys[i];
+					containers[newCount++] = result;
+				}
+			}
+		}
+
+		Arrays.fill(containers, newCount, containerCount, null);
+		containerCount = newCount;
+		lastIndex = 0;
+	}
+
+
+	/**
+	 * Converts each container to its smallest representation. Containers are
+	 * chosen as ids are added, but ranges that fill up with consecutive ids
+	 * may be stored more compactly as runs.
+	 */
+	public void optimize() {
+		for (int i = 0; i < containerCount; i++) {
+			containers[i] = containers[i].optimize();
+		}
+	}
+
+
+	/**
+	 * Gets the number of ids set.
+	 *
+	 * @return The id count.
+	 */
+	public long size() {
+		long result;
+
+		result = 0;
+		for (int i = 0; i < containerCount; i++) {
+			result += containers[i].getCardinality();
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Gets the approximate number of bytes of memory consumed by this tracker.
+	 *
+	 * @return The memory size.
+	 */
+	public long getMemoryUsage() {
+		long result;
+
+		// Each container has a key and a reference to it.
+		result = RoaringContainer.OBJECT_OVERHEAD + 16L * keys.length;
+		for (int i = 0; i < containerCount; i++) {
+			result += containers[i].getMemoryUsage();
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Returns an iterator over all set ids in ascending order without boxing
+	 * each id. Ids may be set while iterating, in which case new ids will be
+	 * returned if they are greater than the most recently returned id.
+	 *
+	 * @return The id iterator.
+	 */
+	public LongIterator longIterator() {
+		return new IdIterator();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterator<Long> iterator() {
+		final LongIterator ids = longIterator();
+
+		return new Iterator<Long>() {
+			@Override
+			public boolean hasNext() {
+				return ids.hasNext();
+			}
+
+			@Override
+			public Long next() {
+				return ids.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+
+	/**
+	 * Iterates over the containers in key order. The current position is held
+	 * as a key and value rather than an array index so that containers added
+	 * during iteration don't disrupt it.
+	 */
+	private class IdIterator implements LongIterator {
+		private int containerIndex;
+		private long currentKey;
+		private int nextValue;
+		private boolean nextAvailable;
+		private long nextId;
+
+
+		/**
+		 * Creates a new instance.
+		 */
+		IdIterator() {
+			// No valid key is this small so the first container will be found.
+			currentKey = Long.MIN_VALUE;
+			containerIndex = -1;
+			nextValue = 0;
+			nextAvailable = false;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			while (!nextAvailable) {
+				int value;
+
+				// Re-locate the current container if containers have moved.
+				if (containerIndex < 0 || containerIndex >= containerCount || keys[containerIndex] != currentKey) {
+					containerIndex = Arrays.binarySearch(keys, 0, containerCount, currentKey);
+					if (containerIndex < 0) {
+						containerIndex = -containerIndex - 1;
+						if (containerIndex >= containerCount) {
+							return false;
+						}
+						currentKey = keys[containerIndex];
+						nextValue = 0;
+					}
+				}
+
+				value = containers[containerIndex].nextValue(nextValue);
+				if (value >= 0) {
+					nextId = (currentKey << KEY_SHIFT) | value;
+					nextValue = value + 1;
+					nextAvailable = true;
+				} else {
+					if (containerIndex + 1 >= containerCount) {
+						return false;
+					}
+					containerIndex++;
+					currentKey = keys[containerIndex];
+					nextValue = 0;
+				}
+			}
+
+			return true;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public long next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			nextAvailable = false;
+
+			return nextId;
+		}
+	}
+}
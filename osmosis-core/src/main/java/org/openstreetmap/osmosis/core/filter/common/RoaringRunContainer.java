@@ -0,0 +1,281 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.Arrays;
+
+
+/**
+ * A roaring container holding sorted runs of consecutive values. Each run
+ * uses 32 bits regardless of its length, so this is the smallest
+ * representation for ranges consisting of long sequences of set ids. Once it
+ * exceeds MAX_RUNS runs it is replaced by a bitmap or array container.
+ *
+ * @author Brett Henderson
+ */
+class RoaringRunContainer extends RoaringContainer {
+
+	/**
+	 * The maximum number of runs held before converting to another container.
+	 * At this point the runs occupy the same space as a bitmap.
+	 */
+	static final int MAX_RUNS = RoaringBitmapContainer.WORD_COUNT * 2;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * Holds pairs of values, the first is the run start and the second is the
+	 * run length minus one.
+	 */
+	private char[] runs;
+	private int runCount;
+	private int cardinality;
+
+
+	/**
+	 * Creates a new empty instance.
+	 */
+	RoaringRunContainer() {
+		runs = new char[INITIAL_CAPACITY * 2];
+		runCount = 0;
+		cardinality = 0;
+	}
+
+
+	private RoaringRunContainer(char[] runs, int runCount, int cardinality) {
+		this.runs = runs;
+		this.runCount = runCount;
+		this.cardinality = cardinality;
+	}
+
+
+	/**
+	 * Creates a run container holding the same values as another container.
+	 *
+	 * @param container
+	 *            The container to be copied.
+	 * @return The new run container.
+	 */
+	static RoaringRunContainer fromContainer(RoaringContainer container) {
+		RoaringRunContainer result;
+
+		result = new RoaringRunContainer();
+		for (int start = container.nextValue(0); start >= 0;) {
+			int end;
+
+			end = container.nextAbsentValue(start) - 1;
+			result.insertRun(result.runCount, start, end);
+
+			start = container.nextValue(end + 1);
+		}
+		result.runs = Arrays.copyOf(result.runs, result.runCount * 2);
+
+		return result;
+	}
+
+
+	private int getStart(int runIndex) {
+		return runs[runIndex * 2];
+	}
+
+
+	private int getEnd(int runIndex) {
+		return runs[runIndex * 2] + runs[runIndex * 2 + 1];
+	}
+
+
+	private void setRun(int runIndex, int start, int end) {
+		runs[runIndex * 2] = (char) start;
+		runs[runIndex * 2 + 1] = (char) (end - start);
+	}
+
+
+	private void insertRun(int runIndex, int start, int end) {
+		if (runCount * 2 == runs.length) {
+			runs = Arrays.copyOf(runs, Math.max(runs.length * 2, INITIAL_CAPACITY * 2));
+		}
+		System.arraycopy(runs, runIndex * 2, runs, runIndex * 2 + 2, (runCount - runIndex) * 2);
+		setRun(runIndex, start, end);
+		runCount++;
+		cardinality += end - start + 1;
+	}
+
+
+	/**
+	 * Finds the last run starting at or before the specified value.
+	 *
+	 * @return The run index, or -1 if all runs start after the value.
+	 */
+	private int findRun(int value) {
+		int low;
+		int high;
+
+		low = 0;
+		high = runCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+
+			if (getStart(mid) <= value) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return high;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	RoaringContainer add(int value) {
+		int runIndex;
+		boolean joinsPrevious;
+		boolean joinsNext;
+
+		runIndex = findRun(value);
+		if (runIndex >= 0 && value <= getEnd(runIndex)) {
+			return this;
+		}
+
+		joinsPrevious = runIndex >= 0 && getEnd(runIndex) + 1 == value;
+		joinsNext = runIndex + 1 < runCount && getStart(runIndex + 1) == value + 1;
+
+		if (joinsPrevious && joinsNext) {
+			// The value fills the gap between two runs so they become one.
+			setRun(runIndex, getStart(runIndex), getEnd(runIndex + 1));
+			System.arraycopy(runs, runIndex * 2 + 4, runs, runIndex * 2 + 2, (runCount - runIndex - 2) * 2);
+			runCount--;
+			cardinality++;
+		} else if (joinsPrevious) {
+			setRun(runIndex, getStart(runIndex), value);
+			cardinality++;
+		} else if (joinsNext) {
+			setRun(runIndex + 1, value, getEnd(runIndex + 1));
+			cardinality++;
+		} else {
+			if (runCount >= MAX_RUNS) {
+				long[] words;
+
+				words = new long[RoaringBitmapContainer.WORD_COUNT];
+				addTo(words);
+				words[value >>> 6] |= 1L << value;
+
+				return fromWords(words);
+			}
+			insertRun(runIndex + 1, value, value);
+		}
+
+		return this;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	boolean contains(int value) {
+		int runIndex;
+
+		runIndex = findRun(value);
+
+		return runIndex >= 0 && value <= getEnd(runIndex);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int getCardinality() {
+		return cardinality;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int nextValue(int fromValue) {
+		int runIndex;
+
+		if (fromValue >= RANGE) {
+			return -1;
+		}
+
+		runIndex = findRun(fromValue);
+		if (runIndex >= 0 && fromValue <= getEnd(runIndex)) {
+			return fromValue;
+		}
+
+		if (runIndex + 1 < runCount) {
+			return getStart(runIndex + 1);
+		} else {
+			return -1;
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int nextAbsentValue(int fromValue) {
+		int runIndex;
+
+		if (fromValue >= RANGE) {
+			return RANGE;
+		}
+
+		// Adjacent runs are always joined so the value after a run is unset.
+		runIndex = findRun(fromValue);
+		if (runIndex >= 0 && fromValue <= getEnd(runIndex)) {
+			return getEnd(runIndex) + 1;
+		}
+
+		return fromValue;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	long getMemoryUsage() {
+		return OBJECT_OVERHEAD + 2L * runs.length;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	RoaringContainer copy() {
+		return new RoaringRunContainer(Arrays.copyOf(runs, runCount * 2), runCount, cardinality);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void addTo(long[] words) {
+		for (int i = 0; i < runCount; i++) {
+			int start = getStart(i);
+			int end = getEnd(i);
+			int startWord = start >>> 6;
+			int endWord = end >>> 6;
+
+			if (startWord == endWord) {
+				words[startWord] |= (-1L >>> (63 - (end - start))) << start;
+			} else {
+				words[startWord] |= -1L << start;
+				for (int j = startWord + 1; j < endWord; j++) {
+					words[j] = -1L;
+				}
+				words[endWord] |= -1L >>> (63 - (end & 63));
+			}
+		}
+	}
+}
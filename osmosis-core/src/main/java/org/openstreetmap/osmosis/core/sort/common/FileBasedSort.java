@@ -5,61 +5,85 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.lifecycle.Releasable;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 import org.openstreetmap.osmosis.core.store.ChunkedObjectStore;
 import org.openstreetmap.osmosis.core.store.ObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.store.PersistentIterator;
+import org.openstreetmap.osmosis.core.store.ReleasableAdaptorForIterator;
 import org.openstreetmap.osmosis.core.store.Storeable;
 
 
 /**
  * Allows a large number of objects to be sorted by writing them all to disk
  * then sorting using a merge sort algorithm.
+ * <p>
+ * Objects are collected into runs sized according to a memory budget. Each
+ * full run is sorted and written to disk by a pool of worker threads while
+ * the caller continues to add objects. All runs are then combined using a
+ * single k-way merge. If the input fits within a single run it is sorted in
+ * memory and no files are written at all.
  * 
  * @param <T>
  *            The object type to be sorted.
  * @author Brett Henderson
  */
 public class FileBasedSort<T extends Storeable> implements Releasable {
+	
+	private static final Logger LOG = Logger.getLogger(FileBasedSort.class.getName());
+	
 	/**
-	 * The maximum number of entities to perform memory-based sorting on,
-	 * amounts larger than this will be split into chunks of this size, the
-	 * chunks sorted in memory before writing to file, and all the results
-	 * merged using the merge sort algorithm.
+	 * The default amount of memory in megabytes to use for holding unsorted
+	 * objects.
 	 */
-	private static final int MAX_MEMORY_SORT_COUNT = 16384;
+	public static final int DEFAULT_MEMORY_MB = 64;
 	
 	/**
-	 * The maximum number of sources to merge together at a single level of the
-	 * merge sort hierarchy. Must be 2 or higher. A standard merge sort is 2.
+	 * The default number of threads used to sort and write runs.
 	 */
-	private static final int MAX_MERGE_SOURCE_COUNT = 2;
+	public static final int DEFAULT_WORKER_COUNT = 1;
 	
+	/**
+	 * The approximate heap size of a single object in bytes, used to convert
+	 * the memory budget into a run size. Objects vary widely in size so this
+	 * errs on the side of larger objects such as tagged entities.
+	 */
+	private static final int ESTIMATED_OBJECT_SIZE = 256;
 	
 	/**
-	 * The number of levels in the merge sort hierarchy to perform in memory
-	 * before persisting to a file. By persisting to file at regular hierarchy
-	 * levels, the number of file handles is minimised. File handle count is
-	 * likely to be an issue before memory usage due to the small number of
-	 * in-flight objects at any point in time.
-	 * <p>
-	 * The number of file handles will be MAX_MERGE_SOURCE_COUNT raised to the
-	 * power of MAX_MEMORY_SORT_DEPTH.
+	 * The maximum number of runs to merge together in a single pass. Each
+	 * source holds an open file and a read buffer, so larger numbers of runs
+	 * are first merged in groups of this size into intermediate files.
 	 */
-	private static final int MAX_MEMORY_SORT_DEPTH = 8;
+	private static final int MAX_MERGE_SOURCE_COUNT = 512;
+	
 	
-
 	private ObjectSerializationFactory serializationFactory;
 	private Comparator<T> comparator;
-	private ChunkedObjectStore<T> chunkedEntityStore;
-	private List<T> addBuffer;
 	private boolean useCompression;
+	private int workerCount;
+	private int runSize;
+	private List<T> addBuffer;
+	private ExecutorService executorService;
+	private BlockingQueue<ChunkedObjectStore<T>> idleStores;
+	private List<ChunkedObjectStore<T>> stores;
+	private List<Future<SortedRun<T>>> runs;
+	private int completedRunCount;
 	
 	
 	/**
-	 * Creates a new instance.
+	 * Creates a new instance using the default memory budget and worker count.
 	 * 
 	 * @param serializationFactory
 	 *            The factory defining the object serialisation implementation.
@@ -70,38 +94,130 @@ public class FileBasedSort<T extends Storeable> implements Releasable {
 	 */
 	public FileBasedSort(
 			ObjectSerializationFactory serializationFactory, Comparator<T> comparator, boolean useCompression) {
+		this(serializationFactory, comparator, useCompression, DEFAULT_MEMORY_MB, DEFAULT_WORKER_COUNT);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param serializationFactory
+	 *            The factory defining the object serialisation implementation.
+	 * @param comparator
+	 *            The comparator to be used for sorting the results.
+	 * @param useCompression
+	 *            If true, the storage files will be compressed.
+	 * @param memoryMB
+	 *            The approximate amount of memory in megabytes to use for
+	 *            holding objects while they are sorted. This is shared between
+	 *            the run being filled and the runs being written by workers.
+	 * @param workerCount
+	 *            The number of threads to use for sorting and writing runs.
+	 */
+	public FileBasedSort(
+			ObjectSerializationFactory serializationFactory, Comparator<T> comparator, boolean useCompression,
+			int memoryMB, int workerCount) {
+		if (memoryMB <= 0) {
+			throw new OsmosisRuntimeException("A sort memory size of " + memoryMB + "MB is invalid.");
+		}
+		if (workerCount <= 0) {
+			throw new OsmosisRuntimeException("A sort worker count of " + workerCount + " is invalid.");
+		}
+		
 		this.serializationFactory = serializationFactory;
 		this.comparator = comparator;
 		this.useCompression = useCompression;
+		this.workerCount = workerCount;
+		
+		// One run is filled by the caller while each worker holds another.
+		runSize = (int) Math.max(
+			1, (memoryMB * 1048576L) / ESTIMATED_OBJECT_SIZE / (workerCount + 1));
 		
-		chunkedEntityStore = new ChunkedObjectStore<T>(serializationFactory, "emta", "idx", useCompression);
-		addBuffer = new ArrayList<T>(MAX_MEMORY_SORT_COUNT);
+		addBuffer = new ArrayList<T>();
+		idleStores = new LinkedBlockingQueue<ChunkedObjectStore<T>>();
+		stores = Collections.synchronizedList(new ArrayList<ChunkedObjectStore<T>>());
+		runs = new ArrayList<Future<SortedRun<T>>>();
+		completedRunCount = 0;
 	}
 	
 	
 	/**
-	 * Sorts the data currently in the add buffer, writes it to the object
-	 * store, and clears the buffer.
+	 * Sorts and writes a single run to disk. This is executed on a worker
+	 * thread. Each worker takes exclusive use of a store while writing so that
+	 * stores are never accessed by more than one thread at a time.
 	 */
-	private void flushAddBuffer() {
-		if (addBuffer.size() >= 0) {
-			// Sort the chunk prior to writing.
-			Collections.sort(addBuffer, comparator);
-			
-			// Write all entities in the buffer to entity storage.
-			for (T entity : addBuffer) {
-				chunkedEntityStore.add(entity);
+	private SortedRun<T> writeRun(List<T> run) {
+		ChunkedObjectStore<T> store;
+		
+		Collections.sort(run, comparator);
+		
+		store = idleStores.poll();
+		if (store == null) {
+			store = new ChunkedObjectStore<T>(serializationFactory, "emta", "idx", useCompression);
+			stores.add(store);
+		}
+		
+		try {
+			for (T entity : run) {
+				store.add(entity);
 			}
+			store.closeChunk();
 			
-			addBuffer.clear();
+			return new SortedRun<T>(store, store.getChunkCount() - 1);
 			
-			// Close the chunk in the underlying data store so that it can be
-			// read separately.
-			chunkedEntityStore.closeChunk();
+		} finally {
+			idleStores.add(store);
+		}
+	}
+	
+	
+	/**
+	 * Waits for the specified run to be written.
+	 */
+	private SortedRun<T> getRun(int runIndex) {
+		try {
+			return runs.get(runIndex).get();
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new OsmosisRuntimeException("A sort worker thread failed, aborting.", e.getCause());
 		}
 	}
 	
 	
+	/**
+	 * Passes the data currently in the add buffer to a worker to be sorted and
+	 * written to disk, and starts a new buffer. This will block if all workers
+	 * are busy.
+	 */
+	private void flushAddBuffer() {
+		final List<T> run;
+		
+		if (addBuffer.size() == 0) {
+			return;
+		}
+		
+		if (executorService == null) {
+			executorService = Executors.newFixedThreadPool(workerCount);
+		}
+		
+		// Limit the number of runs in memory by waiting for the oldest.
+		while (runs.size() - completedRunCount >= workerCount) {
+			getRun(completedRunCount++);
+		}
+		
+		run = addBuffer;
+		addBuffer = new ArrayList<T>(runSize);
+		
+		runs.add(executorService.submit(new Callable<SortedRun<T>>() {
+			@Override
+			public SortedRun<T> call() {
+				return writeRun(run);
+			}
+		}));
+	}
+	
+	
 	/**
 	 * Adds a new object to be sorted.
 	 * 
@@ -114,7 +230,7 @@ public class FileBasedSort<T extends Storeable> implements Releasable {
 		
 		// If the add buffer is full, it must be sorted and written to entity
 		// storage.
-		if (addBuffer.size() >= MAX_MEMORY_SORT_COUNT) {
+		if (addBuffer.size() >= runSize) {
 			flushAddBuffer();
 		}
 	}
@@ -122,27 +238,26 @@ public class FileBasedSort<T extends Storeable> implements Releasable {
 	
 	/**
 	 * This is a wrapper method around the iterate method with the same argument
-	 * list that persists the sort results prior to returning. This forces all
-	 * sorting by nested recursive method calls to be performed allowing all
-	 * associated memory can be freed.
+	 * list that persists the merge results prior to returning. This allows the
+	 * underlying runs to be closed before further runs are opened, limiting the
+	 * number of open files.
 	 * 
-	 * @param nestLevel
-	 *            The current recursive nesting level of the merge sort
-	 *            operation.
-	 * @param beginChunkIndex
-	 *            The initial chunk to begin sorting from.
-	 * @param chunkCount
-	 *            The number of chunks to sort.
-	 * @return An iterator providing access to the sort result.
+	 * @param sortedRuns
+	 *            The runs to be merged.
+	 * @param beginRunIndex
+	 *            The initial run to begin merging from.
+	 * @param runCount
+	 *            The number of runs to merge.
+	 * @return An iterator providing access to the merge result.
 	 */
-	private ReleasableIterator<T> iteratePersisted(int nestLevel, long beginChunkIndex, long chunkCount) {
+	private ReleasableIterator<T> iteratePersisted(List<SortedRun<T>> sortedRuns, int beginRunIndex, int runCount) {
 		ReleasableIterator<T> persistentIterator;
 		
-		// Create a persistent iterator based on the requested underlying chunk
+		// Create a persistent iterator based on the requested underlying run
 		// iterator.
 		persistentIterator = new PersistentIterator<T>(
 			serializationFactory,
-			iterate(nestLevel, beginChunkIndex, chunkCount),
+			iterate(sortedRuns, beginRunIndex, runCount),
 			"emtb",
 			useCompression
 		);
@@ -173,20 +288,19 @@ public class FileBasedSort<T extends Storeable> implements Releasable {
 	
 	
 	/**
-	 * Sorts the specified sub-section of the overall storage contents. This
-	 * result list is not backed by a file and should be persisted prior to
-	 * being incorporated into a higher level merge operation.
+	 * Merges the specified range of runs. If there are more runs than can be
+	 * merged at once, they are split into groups which are merged and
+	 * persisted first.
 	 * 
-	 * @param nestLevel
-	 *            The current recursive nesting level of the merge sort
-	 *            operation.
-	 * @param beginChunkIndex
-	 *            The initial chunk to begin sorting from.
-	 * @param chunkCount
-	 *            The number of chunks to sort.
-	 * @return An iterator providing access to the sort result.
+	 * @param sortedRuns
+	 *            The runs to be merged.
+	 * @param beginRunIndex
+	 *            The initial run to begin merging from.
+	 * @param runCount
+	 *            The number of runs to merge.
+	 * @return An iterator providing access to the merge result.
 	 */
-	private ReleasableIterator<T> iterate(int nestLevel, long beginChunkIndex, long chunkCount) {
+	private ReleasableIterator<T> iterate(List<SortedRun<T>> sortedRuns, int beginRunIndex, int runCount) {
 		List<ReleasableIterator<T>> sources;
 		
 		sources = new ArrayList<ReleasableIterator<T>>();
@@ -194,62 +308,24 @@ public class FileBasedSort<T extends Storeable> implements Releasable {
 		try {
 			MergingIterator<T> mergingIterator;
 			
-			// If we are down to a small number of entities, we retrieve each source from file.
-			// Otherwise we recurse and split the number of entities down into smaller chunks.
-			if (chunkCount <= MAX_MERGE_SOURCE_COUNT) {
-				for (int i = 0; i < chunkCount; i++) {
-					sources.add(
-						chunkedEntityStore.iterate(beginChunkIndex + i)
-					);
+			if (runCount <= MAX_MERGE_SOURCE_COUNT) {
+				for (int i = 0; i < runCount; i++) {
+					sources.add(sortedRuns.get(beginRunIndex + i).iterate());
 				}
 				
 			} else {
-				long maxChunkIndex;
-				long subChunkCount;
+				int maxRunIndex;
+				int groupSize;
 				
-				/*
-				 * The current chunk count must be divided by
-				 * MAX_MERGE_SOURCE_COUNT and we must recurse for each of those
-				 * sub chunk counts. Where the result isn't exact, we round up
-				 * to the nearest multiple of MAX_MERGE_SOURCE_COUNT to ensure
-				 * we don't end up with more than MAX_MERGE_SOURCE_COUNT
-				 * sources.
-				 */
-				subChunkCount = chunkCount / MAX_MERGE_SOURCE_COUNT;
-				subChunkCount += chunkCount % MAX_MERGE_SOURCE_COUNT;
+				// Split the runs into no more than MAX_MERGE_SOURCE_COUNT
+				// groups, rounding the group size up where necessary.
+				groupSize = (runCount + MAX_MERGE_SOURCE_COUNT - 1) / MAX_MERGE_SOURCE_COUNT;
+				maxRunIndex = beginRunIndex + runCount;
 				
-				// We can never pass beyond the chunk boundaries specified for
-				// this function.
-				maxChunkIndex = beginChunkIndex + chunkCount;
-				
-				for (
-						long subFirstChunk = beginChunkIndex;
-						subFirstChunk < maxChunkIndex;
-						subFirstChunk += subChunkCount) {
-					
-					// The chunk count passed to the nested function should not
-					// make the nested function exceed this function's boundaries.
-					if (subFirstChunk + subChunkCount > maxChunkIndex) {
-						subChunkCount = maxChunkIndex - subFirstChunk;
-					}
-					
-					/*
-					 * Either call the persistent or standard version of the
-					 * recursive iterate based on whether this nesting level
-					 * requires persistence. If we only have one chunk left at
-					 * this point we make an exception and skip persistence
-					 * because it will only result in a single file being opened
-					 * anyway.
-					 */
-					if (((nestLevel + 1) % MAX_MEMORY_SORT_DEPTH) == 0 && subChunkCount > 1) {
-						sources.add(
-							iteratePersisted(nestLevel + 1, subFirstChunk, subChunkCount)
-						);
-					} else {
-						sources.add(
-							iterate(nestLevel + 1, subFirstChunk, subChunkCount)
-						);
-					}
+				for (int groupStart = beginRunIndex; groupStart < maxRunIndex; groupStart += groupSize) {
+					sources.add(
+						iteratePersisted(sortedRuns, groupStart, Math.min(groupSize, maxRunIndex - groupStart))
+					);
 				}
 			}
 			
@@ -276,9 +352,27 @@ public class FileBasedSort<T extends Storeable> implements Releasable {
 	 * @return An iterator providing access to the sorted entities.
 	 */
 	public ReleasableIterator<T> iterate() {
+		List<SortedRun<T>> sortedRuns;
+		
+		// Avoid the disk entirely if all data fits within a single run.
+		if (runs.size() == 0) {
+			Collections.sort(addBuffer, comparator);
+			
+			return new ReleasableAdaptorForIterator<T>(Collections.unmodifiableList(addBuffer).iterator());
+		}
+		
 		flushAddBuffer();
 		
-		return iterate(0, 0, chunkedEntityStore.getChunkCount());
+		// Wait for all runs to be written. No further runs will be written so
+		// the workers can be stopped.
+		sortedRuns = new ArrayList<SortedRun<T>>(runs.size());
+		for (int i = 0; i < runs.size(); i++) {
+			sortedRuns.add(getRun(i));
+		}
+		completedRunCount = runs.size();
+		executorService.shutdown();
+		
+		return iterate(sortedRuns, 0, sortedRuns.size());
 	}
 	
 	
@@ -286,6 +380,43 @@ public class FileBasedSort<T extends Storeable> implements Releasable {
 	 * {@inheritDoc}
 	 */
 	public void release() {
-		chunkedEntityStore.release();
+		if (executorService != null) {
+			// Workers may still be writing if sorting was aborted, the stores
+			// cannot be released until they have stopped.
+			executorService.shutdownNow();
+			try {
+				while (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+					LOG.fine("Waiting for sort worker threads to stop.");
+				}
+			} catch (InterruptedException e) {
+				throw new OsmosisRuntimeException("Thread was interrupted.", e);
+			}
+			executorService = null;
+		}
+		
+		for (ChunkedObjectStore<T> store : stores) {
+			store.release();
+		}
+		stores.clear();
+	}
+	
+	
+	/**
+	 * Identifies a single sorted run within one of the run stores.
+	 */
+	private static final class SortedRun<T extends Storeable> {
+		private ChunkedObjectStore<T> store;
+		private long chunk;
+		
+		
+		SortedRun(ChunkedObjectStore<T> store, long chunk) {
+			this.store = store;
+			this.chunk = chunk;
+		}
+		
+		
+		ReleasableIterator<T> iterate() {
+			return store.iterate(chunk);
+		}
 	}
 }
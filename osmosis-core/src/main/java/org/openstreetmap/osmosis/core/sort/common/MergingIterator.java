@@ -11,7 +11,11 @@ import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 
 /**
  * This iterator examines a list of sorted input sources and merges them into a
- * single sorted list.
+ * single sorted list. The current object of each source is held in a binary
+ * heap so that each object is returned in O(log n) comparisons regardless of
+ * the number of sources, allowing a large number of sources to be merged in a
+ * single pass. Where objects compare as equal, the object from the earliest
+ * source in the list is returned first.
  * 
  * @param <DataType>
  *            The object type to be sorted.
@@ -21,6 +25,8 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 	private List<ReleasableIterator<DataType>> sources;
 	private Comparator<DataType> comparator;
 	private List<DataType> sourceData;
+	private int[] heap;
+	private int heapSize;
 	
 	
 	/**
@@ -42,21 +48,73 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 	 */
 	private void initialize() {
 		if (sourceData == null) {
-			// Get the first entity from each source.  Delete any empty sources.
+			// Get the first entity from each source.  Release any empty sources.
 			sourceData = new ArrayList<DataType>(sources.size());
-			for (int sourceIndex = 0; sourceIndex < sources.size();) {
+			heap = new int[sources.size()];
+			heapSize = 0;
+			for (int sourceIndex = 0; sourceIndex < sources.size(); sourceIndex++) {
 				ReleasableIterator<DataType> source;
 				
 				source = sources.get(sourceIndex);
 				
 				if (source.hasNext()) {
 					sourceData.add(source.next());
-					sourceIndex++;
+					heap[heapSize++] = sourceIndex;
 				} else {
-					sources.remove(sourceIndex).release();
+					sourceData.add(null);
+					sources.set(sourceIndex, null).release();
 				}
 			}
+			
+			// Heapify by sifting down every parent node, starting with the last.
+			for (int i = heapSize / 2 - 1; i >= 0; i--) {
+				siftDown(i);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Compares the current objects of two sources, using the source order to
+	 * break ties.
+	 */
+	private boolean isLess(int sourceIndex1, int sourceIndex2) {
+		int result = comparator.compare(sourceData.get(sourceIndex1), sourceData.get(sourceIndex2));
+		
+		if (result == 0) {
+			return sourceIndex1 < sourceIndex2;
 		}
+		
+		return result < 0;
+	}
+	
+	
+	/**
+	 * Moves the source at the specified heap position down the heap until the
+	 * heap ordering is restored.
+	 */
+	private void siftDown(int position) {
+		int current = position;
+		int sourceIndex = heap[current];
+		
+		while (true) {
+			int child = current * 2 + 1;
+			
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && isLess(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isLess(heap[child], sourceIndex)) {
+				break;
+			}
+			
+			heap[current] = heap[child];
+			current = child;
+		}
+		
+		heap[current] = sourceIndex;
 	}
 	
 	
@@ -66,7 +124,7 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 	public boolean hasNext() {
 		initialize();
 		
-		return sourceData.size() > 0;
+		return heapSize > 0;
 	}
 	
 	
@@ -78,25 +136,13 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 		int indexMinimum;
 		ReleasableIterator<DataType> source;
 		
-		initialize();
-		
 		if (!hasNext()) {
 			throw new NoSuchElementException();
 		}
 		
-		dataMinimum = sourceData.get(0);
-		indexMinimum = 0;
-		
-		// Find the minimum entity.
-		for (int indexCurrent = 1; indexCurrent < sources.size(); indexCurrent++) {
-			DataType dataCurrent = sourceData.get(indexCurrent);
-			
-			// Check if the current data entity is less than the existing minimum.
-			if (comparator.compare(dataMinimum, dataCurrent) > 0) {
-				dataMinimum = dataCurrent;
-				indexMinimum = indexCurrent;
-			}
-		}
+		// The minimum entity is always at the top of the heap.
+		indexMinimum = heap[0];
+		dataMinimum = sourceData.get(indexMinimum);
 		
 		// Get the next entity from the source if available.
 		// Otherwise remove the source and its current data.
@@ -104,8 +150,12 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 		if (source.hasNext()) {
 			sourceData.set(indexMinimum, source.next());
 		} else {
-			sources.remove(indexMinimum).release();
-			sourceData.remove(indexMinimum);
+			sources.set(indexMinimum, null).release();
+			sourceData.set(indexMinimum, null);
+			heap[0] = heap[--heapSize];
+		}
+		if (heapSize > 0) {
+			siftDown(0);
 		}
 		
 		return dataMinimum;
@@ -125,7 +175,10 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 	 */
 	public void release() {
 		for (ReleasableIterator<DataType> source : sources) {
-			source.release();
+			if (source != null) {
+				source.release();
+			}
 		}
+		sources.clear();
 	}
 }
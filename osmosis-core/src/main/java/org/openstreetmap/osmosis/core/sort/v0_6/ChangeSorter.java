@@ -7,6 +7,7 @@ import java.util.Map;
 import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 import org.openstreetmap.osmosis.core.sort.common.FileBasedSort;
+import org.openstreetmap.osmosis.core.store.CompactObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
 import org.openstreetmap.osmosis.core.task.v0_6.ChangeSinkChangeSource;
@@ -24,15 +25,32 @@ public class ChangeSorter implements ChangeSinkChangeSource {
 	
 	
 	/**
-	 * Creates a new instance.
+	 * Creates a new instance using the default sort memory and worker count.
 	 * 
 	 * @param comparator
 	 *            The comparator to use for sorting.
 	 */
 	public ChangeSorter(Comparator<ChangeContainer> comparator) {
-		fileBasedSort =
-			new FileBasedSort<ChangeContainer>(
-					new SingleClassObjectSerializationFactory(ChangeContainer.class), comparator, true);
+		this(comparator, FileBasedSort.DEFAULT_MEMORY_MB, FileBasedSort.DEFAULT_WORKER_COUNT);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param comparator
+	 *            The comparator to use for sorting.
+	 * @param memoryMB
+	 *            The approximate amount of memory in megabytes to use for
+	 *            holding unsorted data.
+	 * @param workers
+	 *            The number of threads to use for sorting and writing data.
+	 */
+	public ChangeSorter(Comparator<ChangeContainer> comparator, int memoryMB, int workers) {
+		fileBasedSort = new FileBasedSort<ChangeContainer>(
+				new CompactObjectSerializationFactory(
+						new SingleClassObjectSerializationFactory(ChangeContainer.class)),
+				comparator, true, memoryMB, workers);
 	}
 
 
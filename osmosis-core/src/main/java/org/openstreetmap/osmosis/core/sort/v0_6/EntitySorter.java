@@ -7,6 +7,7 @@ import java.util.Map;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 import org.openstreetmap.osmosis.core.sort.common.FileBasedSort;
+import org.openstreetmap.osmosis.core.store.CompactObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.store.GenericObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
@@ -24,13 +25,31 @@ public class EntitySorter implements SinkSource {
 	
 	
 	/**
-	 * Creates a new instance.
+	 * Creates a new instance using the default sort memory and worker count.
 	 * 
 	 * @param comparator
 	 *            The comparator to use for sorting.
 	 */
 	public EntitySorter(Comparator<EntityContainer> comparator) {
-		fileBasedSort = new FileBasedSort<EntityContainer>(new GenericObjectSerializationFactory(), comparator, true);
+		this(comparator, FileBasedSort.DEFAULT_MEMORY_MB, FileBasedSort.DEFAULT_WORKER_COUNT);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param comparator
+	 *            The comparator to use for sorting.
+	 * @param memoryMB
+	 *            The approximate amount of memory in megabytes to use for
+	 *            holding unsorted data.
+	 * @param workers
+	 *            The number of threads to use for sorting and writing data.
+	 */
+	public EntitySorter(Comparator<EntityContainer> comparator, int memoryMB, int workers) {
+		fileBasedSort = new FileBasedSort<EntityContainer>(
+				new CompactObjectSerializationFactory(
+						new GenericObjectSerializationFactory()), comparator, true, memoryMB, workers);
 	}
 
 
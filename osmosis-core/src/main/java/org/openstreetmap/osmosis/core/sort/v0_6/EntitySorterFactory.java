@@ -11,6 +11,7 @@ import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkSourceManager;
+import org.openstreetmap.osmosis.core.sort.common.FileBasedSort;
 
 
 /**
@@ -20,6 +21,10 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkSourceManager;
  */
 public class EntitySorterFactory extends TaskManagerFactory {
 	private static final String ARG_COMPARATOR_TYPE = "type";
+	private static final String ARG_MEMORY = "memoryMB";
+	private static final String ARG_WORKERS = "workers";
+	private static final int DEFAULT_MEMORY = FileBasedSort.DEFAULT_MEMORY_MB;
+	private static final int DEFAULT_WORKERS = FileBasedSort.DEFAULT_WORKER_COUNT;
 	
 	private Map<String, Comparator<EntityContainer>> comparatorMap;
 	private String defaultComparatorType;
@@ -81,6 +86,8 @@ public class EntitySorterFactory extends TaskManagerFactory {
 	@Override
 	protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
 		Comparator<EntityContainer> comparator;
+		int memoryMB;
+		int workers;
 		
 		// Get the comparator.
 		comparator = getComparator(
@@ -90,10 +97,12 @@ public class EntitySorterFactory extends TaskManagerFactory {
 				getDefaultStringArgument(taskConfig, defaultComparatorType)
 			)
 		);
+		memoryMB = getIntegerArgument(taskConfig, ARG_MEMORY, DEFAULT_MEMORY);
+		workers = getIntegerArgument(taskConfig, ARG_WORKERS, DEFAULT_WORKERS);
 		
 		return new SinkSourceManager(
 			taskConfig.getId(),
-			new EntitySorter(comparator),
+			new EntitySorter(comparator, memoryMB, workers),
 			taskConfig.getPipeArgs()
 		);
 	}
@@ -17,7 +17,7 @@ import java.util.List;
  * 
  * @author Brett Henderson
  */
-public class BufferedRandomAccessFileInputStream extends InputStream {
+public class BufferedRandomAccessFileInputStream extends InputStream implements RandomAccessInput {
 	
 	private static final int DEFAULT_BUFFER_COUNT = 4;
 	private static final int DEFAULT_INITIAL_BUFFER_SIZE = 16;
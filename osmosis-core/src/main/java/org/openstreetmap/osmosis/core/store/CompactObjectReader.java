@@ -0,0 +1,40 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+
+/**
+ * Reads objects using an object reader configured to read from a compact
+ * store reader, marking the start of each object on the compact store reader.
+ * 
+ * @author Brett Henderson
+ */
+public class CompactObjectReader implements ObjectReader {
+	
+	private CompactStoreReader compactReader;
+	private ObjectReader objectReader;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param compactReader
+	 *            The compact store reader providing all serialised data.
+	 * @param objectReader
+	 *            The object reader loading each object from the compact store
+	 *            reader.
+	 */
+	public CompactObjectReader(CompactStoreReader compactReader, ObjectReader objectReader) {
+		this.compactReader = compactReader;
+		this.objectReader = objectReader;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Storeable readObject() {
+		compactReader.beginObject();
+		return objectReader.readObject();
+	}
+}
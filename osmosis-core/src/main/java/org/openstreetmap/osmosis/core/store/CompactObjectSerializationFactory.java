@@ -0,0 +1,60 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+
+/**
+ * An object reader and writer factory storing objects in a compact format.
+ * Objects are serialised by another factory, with the data it writes being
+ * compacted by a CompactStoreWriter. This typically reduces the size of
+ * stored entities by more than half.
+ * <p>
+ * Each object is written relative to those before it, so this may only be
+ * used by stores reading each object stream from its beginning. This is the
+ * case for simple, segmented and chunked object stores, but not for random
+ * access object stores.
+ * 
+ * @author Brett Henderson
+ */
+public class CompactObjectSerializationFactory implements ObjectSerializationFactory {
+	
+	private ObjectSerializationFactory serializationFactory;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param serializationFactory
+	 *            The factory performing the serialisation of each object.
+	 */
+	public CompactObjectSerializationFactory(ObjectSerializationFactory serializationFactory) {
+		this.serializationFactory = serializationFactory;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ObjectReader createObjectReader(StoreReader storeReader, StoreClassRegister storeClassRegister) {
+		CompactStoreReader compactReader;
+		
+		compactReader = new CompactStoreReader(storeReader);
+		
+		return new CompactObjectReader(
+				compactReader, serializationFactory.createObjectReader(compactReader, storeClassRegister));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ObjectWriter createObjectWriter(StoreWriter storeWriter, StoreClassRegister storeClassRegister) {
+		CompactStoreWriter compactWriter;
+		
+		compactWriter = new CompactStoreWriter(storeWriter);
+		
+		return new CompactObjectWriter(
+				compactWriter, serializationFactory.createObjectWriter(compactWriter, storeClassRegister));
+	}
+}
@@ -0,0 +1,40 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+
+/**
+ * Writes objects using an object writer configured to write to a compact store
+ * writer, marking the start of each object on the compact store writer.
+ * 
+ * @author Brett Henderson
+ */
+public class CompactObjectWriter implements ObjectWriter {
+	
+	private CompactStoreWriter compactWriter;
+	private ObjectWriter objectWriter;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param compactWriter
+	 *            The compact store writer receiving all serialised data.
+	 * @param objectWriter
+	 *            The object writer serialising each object to the compact
+	 *            store writer.
+	 */
+	public CompactObjectWriter(CompactStoreWriter compactWriter, ObjectWriter objectWriter) {
+		this.compactWriter = compactWriter;
+		this.objectWriter = objectWriter;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeObject(Storeable value) {
+		compactWriter.beginObject();
+		objectWriter.writeObject(value);
+	}
+}
@@ -0,0 +1,197 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * A store reader decoding data written by a CompactStoreWriter. The reader
+ * must begin at the first object written and maintains the same state as the
+ * writer while reading each object in turn.
+ * 
+ * @author Brett Henderson
+ */
+public class CompactStoreReader implements StoreReader {
+	
+	private StoreReader storeReader;
+	private int[] previousIntegers;
+	private long[] previousLongs;
+	private int integerIndex;
+	private int longIndex;
+	private List<String> dictionary;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param storeReader
+	 *            The store reader to read the compact data from.
+	 */
+	public CompactStoreReader(StoreReader storeReader) {
+		this.storeReader = storeReader;
+		
+		previousIntegers = new int[CompactStoreWriter.OBJECT_SLOT_COUNT + 1];
+		previousLongs = new long[CompactStoreWriter.OBJECT_SLOT_COUNT + 1];
+		dictionary = new ArrayList<String>();
+	}
+	
+	
+	/**
+	 * Marks the start of a new object. This must be called before each object
+	 * is read.
+	 */
+	public void beginObject() {
+		integerIndex = 0;
+		longIndex = 0;
+	}
+	
+	
+	private static int getSlot(int index) {
+		if (index < CompactStoreWriter.OBJECT_SLOT_COUNT) {
+			return index;
+		} else {
+			return CompactStoreWriter.OBJECT_SLOT_COUNT;
+		}
+	}
+	
+	
+	private long readVarLong() {
+		long result;
+		int shift;
+		byte value;
+		
+		result = 0;
+		shift = 0;
+		do {
+			if (shift > 63) {
+				throw new OsmosisRuntimeException("Invalid variable length number in the store.");
+			}
+			value = storeReader.readByte();
+			result |= (long) (value & 0x7F) << shift;
+			shift += 7;
+		} while ((value & 0x80) != 0);
+		
+		return result;
+	}
+	
+	
+	private long readSignedVarLong() {
+		long value;
+		
+		value = readVarLong();
+		
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean readBoolean() {
+		return storeReader.readBoolean();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte readByte() {
+		return storeReader.readByte();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public char readCharacter() {
+		return (char) readVarLong();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int readInteger() {
+		int slot;
+		int value;
+		
+		slot = getSlot(integerIndex++);
+		value = (int) (previousIntegers[slot] + readSignedVarLong());
+		
+		previousIntegers[slot] = value;
+		previousIntegers[CompactStoreWriter.OBJECT_SLOT_COUNT] = value;
+		
+		return value;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long readLong() {
+		int slot;
+		long value;
+		
+		slot = getSlot(longIndex++);
+		value = previousLongs[slot] + readSignedVarLong();
+		
+		previousLongs[slot] = value;
+		previousLongs[CompactStoreWriter.OBJECT_SLOT_COUNT] = value;
+		
+		return value;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double readDouble() {
+		return storeReader.readDouble();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String readString() {
+		long code;
+		int length;
+		char[] characters;
+		String value;
+		
+		code = readVarLong();
+		if (code > 0) {
+			if (code > dictionary.size()) {
+				throw new OsmosisRuntimeException("String dictionary index " + (code - 1) + " does not exist.");
+			}
+			return dictionary.get((int) (code - 1));
+		}
+		
+		length = (int) readVarLong();
+		characters = new char[length];
+		for (int i = 0; i < length; i++) {
+			characters[i] = (char) readVarLong();
+		}
+		value = new String(characters);
+		
+		// Mirror the writer's dictionary updates.
+		if (length <= CompactStoreWriter.MAX_DICTIONARY_STRING_LENGTH) {
+			if (dictionary.size() >= CompactStoreWriter.MAX_DICTIONARY_SIZE) {
+				dictionary.clear();
+			}
+			dictionary.add(value);
+		}
+		
+		return value;
+	}
+}
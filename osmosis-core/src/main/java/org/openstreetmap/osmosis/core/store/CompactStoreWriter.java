@@ -0,0 +1,209 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * A store writer producing a compact representation of the data written to an
+ * underlying store writer. Numbers are written as variable length integers
+ * containing the difference to a previously written value, and strings are
+ * replaced by references to a dictionary of recently written strings.
+ * <p>
+ * The leading numbers of each object are typically fixed fields such as ids,
+ * timestamps and coordinates, so each is written relative to the value at the
+ * same position in the previous object. Later numbers are typically members of
+ * lists such as way nodes and are written relative to the previous number in
+ * the same object.
+ * <p>
+ * The output can only be decoded by a CompactStoreReader reading the objects
+ * in the order they were written, starting with the first object.
+ * 
+ * @author Brett Henderson
+ */
+public class CompactStoreWriter implements StoreWriter {
+	
+	/**
+	 * The number of leading numbers in each object written relative to the
+	 * previous object.
+	 */
+	static final int OBJECT_SLOT_COUNT = 4;
+	
+	/**
+	 * The maximum number of strings in the dictionary. The dictionary is
+	 * cleared once it becomes full.
+	 */
+	static final int MAX_DICTIONARY_SIZE = 1 << 16;
+	
+	/**
+	 * The maximum length of strings added to the dictionary. Longer strings
+	 * are unlikely to be repeated and are always written in full.
+	 */
+	static final int MAX_DICTIONARY_STRING_LENGTH = 64;
+	
+	private StoreWriter storeWriter;
+	private int[] previousIntegers;
+	private long[] previousLongs;
+	private int integerIndex;
+	private int longIndex;
+	private Map<String, Integer> dictionary;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param storeWriter
+	 *            The store writer to write the compact data to.
+	 */
+	public CompactStoreWriter(StoreWriter storeWriter) {
+		this.storeWriter = storeWriter;
+		
+		previousIntegers = new int[OBJECT_SLOT_COUNT + 1];
+		previousLongs = new long[OBJECT_SLOT_COUNT + 1];
+		dictionary = new HashMap<String, Integer>();
+	}
+	
+	
+	/**
+	 * Marks the start of a new object. This must be called before each object
+	 * is written.
+	 */
+	public void beginObject() {
+		integerIndex = 0;
+		longIndex = 0;
+	}
+	
+	
+	/**
+	 * Gets the slot holding the value that the next number is written
+	 * relative to. Numbers beyond the leading slots share the last slot which
+	 * always holds the previous number of the object.
+	 */
+	private static int getSlot(int index) {
+		if (index < OBJECT_SLOT_COUNT) {
+			return index;
+		} else {
+			return OBJECT_SLOT_COUNT;
+		}
+	}
+	
+	
+	private void writeVarLong(long value) {
+		long remaining = value;
+		
+		while ((remaining & ~0x7FL) != 0) {
+			storeWriter.writeByte((byte) ((remaining & 0x7F) | 0x80));
+			remaining >>>= 7;
+		}
+		storeWriter.writeByte((byte) remaining);
+	}
+	
+	
+	private void writeSignedVarLong(long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeBoolean(boolean value) {
+		storeWriter.writeBoolean(value);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeByte(byte value) {
+		storeWriter.writeByte(value);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeCharacter(char value) {
+		writeVarLong(value);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeInteger(int value) {
+		int slot;
+		
+		slot = getSlot(integerIndex++);
+		writeSignedVarLong((long) value - previousIntegers[slot]);
+		
+		previousIntegers[slot] = value;
+		previousIntegers[OBJECT_SLOT_COUNT] = value;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeLong(long value) {
+		int slot;
+		
+		// The difference may overflow but wraps back to the same value when
+		// added to the previous value on read.
+		slot = getSlot(longIndex++);
+		writeSignedVarLong(value - previousLongs[slot]);
+		
+		previousLongs[slot] = value;
+		previousLongs[OBJECT_SLOT_COUNT] = value;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeDouble(double value) {
+		storeWriter.writeDouble(value);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Strings found in the dictionary are written as their dictionary index
+	 * plus one. Other strings are written as a zero followed by the length and
+	 * characters. Characters are written individually rather than being
+	 * encoded as UTF-8 so that any string is reproduced exactly.
+	 */
+	@Override
+	public void writeString(String value) {
+		Integer dictionaryIndex;
+		int length;
+		
+		dictionaryIndex = dictionary.get(value);
+		if (dictionaryIndex != null) {
+			writeVarLong(dictionaryIndex.intValue() + 1);
+			return;
+		}
+		
+		length = value.length();
+		writeVarLong(0);
+		writeVarLong(length);
+		for (int i = 0; i < length; i++) {
+			writeVarLong(value.charAt(i));
+		}
+		
+		if (length <= MAX_DICTIONARY_STRING_LENGTH) {
+			if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+				dictionary.clear();
+			}
+			dictionary.put(value, dictionary.size());
+		}
+	}
+}
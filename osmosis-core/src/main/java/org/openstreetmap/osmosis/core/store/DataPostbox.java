@@ -11,7 +11,6 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
-import org.openstreetmap.osmosis.core.task.v0_6.Initializable;
 
 
 /**
@@ -78,7 +77,7 @@ import org.openstreetmap.osmosis.core.task.v0_6.Initializable;
  * @param <T>
  *            The type of data held in the postbox.
  */
-public class DataPostbox<T> implements Initializable {
+public class DataPostbox<T> implements Postbox<T> {
 	private int bufferCapacity;
 	private int chunkSize;
 	private Lock lock;
@@ -294,6 +293,7 @@ public class DataPostbox<T> implements Initializable {
 	 * @param o
 	 *            The object to be added.
 	 */
+	@Override
 	public void put(T o) {
 		if (!inputInitialized) {
 			throw new OsmosisRuntimeException("initialize has not been called");
@@ -307,6 +307,27 @@ public class DataPostbox<T> implements Initializable {
 	}
 
 
+	/**
+	 * Adds a group of objects to the postbox. This is equivalent to calling put
+	 * for each object but avoids per-object overhead.
+	 * 
+	 * @param objects
+	 *            The objects to be added.
+	 */
+	@Override
+	public void putAll(Collection<T> objects) {
+		if (!inputInitialized) {
+			throw new OsmosisRuntimeException("initialize has not been called");
+		}
+
+		inboundQueue.addAll(objects);
+
+		if (inboundQueue.size() >= chunkSize) {
+			populateCentralQueue();
+		}
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -393,6 +414,7 @@ public class DataPostbox<T> implements Initializable {
 	 * 
 	 * @return The initialization data.
 	 */
+	@Override
 	public Map<String, Object> outputInitialize() {
 		if (outputInitialized) {
 			throw new OsmosisRuntimeException("outputInitialize has already been called");
@@ -428,6 +450,7 @@ public class DataPostbox<T> implements Initializable {
 	 * 
 	 * @return True if data is available.
 	 */
+	@Override
 	public boolean hasNext() {
 		int queueSize;
 
@@ -452,6 +475,7 @@ public class DataPostbox<T> implements Initializable {
 	 * 
 	 * @return The next available object.
 	 */
+	@Override
 	public T getNext() {
 		if (hasNext()) {
 			T result;
@@ -466,11 +490,37 @@ public class DataPostbox<T> implements Initializable {
 	}
 
 
+	/**
+	 * Moves all currently available objects into the target collection. This
+	 * blocks in the same way as hasNext, and moves nothing once all data has
+	 * been consumed.
+	 * 
+	 * @param target
+	 *            The collection to receive the objects.
+	 * @return The number of objects moved.
+	 */
+	@Override
+	public int drainTo(Collection<T> target) {
+		if (hasNext()) {
+			int count = outboundQueue.size();
+
+			target.addAll(outboundQueue);
+			outboundQueue.clear();
+
+			return count;
+
+		} else {
+			return 0;
+		}
+	}
+
+
 	/**
 	 * Notifies that the output thread has completed processing. This will block
 	 * until either the input thread has called complete, or an input error
 	 * occurs.
 	 */
+	@Override
 	public void outputComplete() {
 		if (!outputInitialized) {
 			throw new OsmosisRuntimeException("outputInitialize has not been called");
@@ -501,6 +551,7 @@ public class DataPostbox<T> implements Initializable {
 	 * Notifies that the output thread has released. This will block until the
 	 * input thread has also released and the object has been reset.
 	 */
+	@Override
 	public void outputRelease() {
 		lock.lock();
 
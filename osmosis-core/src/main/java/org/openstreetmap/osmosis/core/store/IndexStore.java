@@ -24,6 +24,7 @@ import org.openstreetmap.osmosis.core.sort.common.FileBasedSort;
 public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 	
 	private ObjectSerializationFactory serializationFactory;
+	private MappedIndexKeyComparator<K> mappedKeyComparator;
 	private RandomAccessObjectStore<T> indexStore;
 	private Comparator<K> ordering;
 	private String tempFilePrefix;
@@ -51,6 +52,7 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 		this.indexFile = indexFile;
 		
 		serializationFactory = new SingleClassObjectSerializationFactory(elementType);
+		mappedKeyComparator = createMappedKeyComparator(elementType, ordering);
 		
 		indexStore = new RandomAccessObjectStore<T>(serializationFactory, indexFile);
 		
@@ -78,6 +80,7 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 		this.tempFilePrefix = tempFilePrefix;
 		
 		serializationFactory = new SingleClassObjectSerializationFactory(elementType);
+		mappedKeyComparator = createMappedKeyComparator(elementType, ordering);
 		
 		indexStore = new RandomAccessObjectStore<T>(serializationFactory, tempFilePrefix);
 		
@@ -88,6 +91,32 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 	}
 	
 	
+	/**
+	 * Creates a comparator able to search the stored form of the standard
+	 * index element types directly. Other element types are searched by
+	 * loading each element compared.
+	 * 
+	 * @return The comparator, or null if the element type isn't supported.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <K> MappedIndexKeyComparator<K> createMappedKeyComparator(
+			Class<?> elementType, Comparator<K> ordering) {
+		if (elementType.equals(LongLongIndexElement.class) && ordering instanceof ComparableComparator) {
+			return (MappedIndexKeyComparator) new LongKeyComparator();
+		}
+		if (elementType.equals(IntegerLongIndexElement.class)) {
+			if (ordering instanceof ComparableComparator) {
+				return (MappedIndexKeyComparator) new IntegerKeyComparator(false);
+			}
+			if (ordering instanceof UnsignedIntegerComparator) {
+				return (MappedIndexKeyComparator) new IntegerKeyComparator(true);
+			}
+		}
+		
+		return null;
+	}
+	
+	
 	/**
 	 * Writes the specified element to the index.
 	 * 
@@ -148,7 +177,12 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 	 * @return A store reader.
 	 */
 	public IndexStoreReader<K, T> createReader() {
-		return new IndexStoreReader<K, T>(indexStore.createReader(), ordering);
+		if (mappedKeyComparator != null) {
+			return new IndexStoreReader<K, T>(
+					indexStore.createReader(), ordering, indexStore.getMappedFile(), mappedKeyComparator);
+		} else {
+			return new IndexStoreReader<K, T>(indexStore.createReader(), ordering);
+		}
 	}
 	
 	
@@ -165,7 +199,8 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 				FileBasedSort<T> fileSort;
 				
 				// Create a new file based sort instance ordering elements by their
-				// identifiers.
+				// identifiers. Index elements are small and the sort blocks the
+				// caller so all available processors are used for writing runs.
 				fileSort = new FileBasedSort<T>(
 					serializationFactory,
 					new Comparator<T>() {
@@ -176,7 +211,9 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 							return elementKeyOrdering.compare(o1.getKey(), o2.getKey());
 						}
 					},
-					true
+					true,
+					FileBasedSort.DEFAULT_MEMORY_MB,
+					Runtime.getRuntime().availableProcessors()
 				);
 				
 				try {
@@ -214,6 +251,7 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 					} finally {
 						sortIterator.release();
 					}
+					indexStore.complete();
 					
 				} finally {
 					fileSort.release();
@@ -231,4 +269,65 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 	public void release() {
 		indexStore.release();
 	}
+	
+	
+	/**
+	 * Compares long keys in their natural order with the stored keys of long
+	 * index elements.
+	 */
+	private static class LongKeyComparator implements MappedIndexKeyComparator<Long> {
+		
+		@Override
+		public int compare(Long key, MappedFile indexFile, long elementOffset) {
+			long keyValue = key.longValue();
+			long elementValue = indexFile.getLong(elementOffset);
+			
+			if (keyValue < elementValue) {
+				return -1;
+			} else if (keyValue > elementValue) {
+				return 1;
+			} else {
+				return 0;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Compares integer keys with the stored keys of integer index elements.
+	 */
+	private static class IntegerKeyComparator implements MappedIndexKeyComparator<Integer> {
+		private boolean unsigned;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param unsigned
+		 *            If true, keys are compared as unsigned values.
+		 */
+		IntegerKeyComparator(boolean unsigned) {
+			this.unsigned = unsigned;
+		}
+		
+		
+		@Override
+		public int compare(Integer key, MappedFile indexFile, long elementOffset) {
+			long keyValue = key.intValue();
+			long elementValue = indexFile.getInt(elementOffset);
+			
+			if (unsigned) {
+				keyValue &= 0xFFFFFFFFL;
+				elementValue &= 0xFFFFFFFFL;
+			}
+			
+			if (keyValue < elementValue) {
+				return -1;
+			} else if (keyValue > elementValue) {
+				return 1;
+			} else {
+				return 0;
+			}
+		}
+	}
 }
@@ -31,6 +31,8 @@ public class IndexStoreReader<K, T extends IndexElement<K>> implements Releasabl
 	private long binarySearchElementCount;
 	private int binarySearchDepth;
 	private List<ComparisonElement<K>> binarySearchCache;
+	private MappedFile indexFile;
+	private MappedIndexKeyComparator<K> mappedKeyComparator;
 	
 	
 	/**
@@ -50,6 +52,30 @@ public class IndexStoreReader<K, T extends IndexElement<K>> implements Releasabl
 	}
 	
 	
+	/**
+	 * Creates a new instance searching the index directly within a memory
+	 * mapping of the index file. Searches create no objects.
+	 * 
+	 * @param indexStoreReader
+	 *            Provides access to the index data.
+	 * @param ordering
+	 *            A comparator that sorts index elements desired index key
+	 *            ordering.
+	 * @param indexFile
+	 *            The mapped index file.
+	 * @param mappedKeyComparator
+	 *            Compares keys with the stored index elements using the same
+	 *            ordering as the ordering comparator.
+	 */
+	public IndexStoreReader(RandomAccessObjectStoreReader<T> indexStoreReader, Comparator<K> ordering,
+			MappedFile indexFile, MappedIndexKeyComparator<K> mappedKeyComparator) {
+		this(indexStoreReader, ordering);
+		
+		this.indexFile = indexFile;
+		this.mappedKeyComparator = mappedKeyComparator;
+	}
+	
+	
 	/**
 	 * Initialises the element count and element size required for performing
 	 * binary searches within the index.
@@ -107,6 +133,10 @@ public class IndexStoreReader<K, T extends IndexElement<K>> implements Releasabl
 			initializeElementDetails();
 		}
 		
+		if (mappedKeyComparator != null) {
+			return getMappedKeyIndex(searchKey);
+		}
+		
 		intervalBegin = -1;
 		intervalEnd = binarySearchElementCount;
 		currentSearchDepth = 0;
@@ -169,6 +199,36 @@ public class IndexStoreReader<K, T extends IndexElement<K>> implements Releasabl
 	}
 	
 	
+	/**
+	 * Returns the index of the first index element with a key greater than or
+	 * equal to the specified key by comparing keys within the mapped index
+	 * file.
+	 * 
+	 * @param searchKey
+	 *            The key to search for.
+	 * @return The matching index.
+	 */
+	private long getMappedKeyIndex(K searchKey) {
+		long intervalBegin;
+		long intervalEnd;
+		
+		intervalBegin = 0;
+		intervalEnd = elementCount;
+		while (intervalBegin < intervalEnd) {
+			long intervalMid;
+			
+			intervalMid = (intervalBegin + intervalEnd) >>> 1;
+			if (mappedKeyComparator.compare(searchKey, indexFile, intervalMid * elementSize) > 0) {
+				intervalBegin = intervalMid + 1;
+			} else {
+				intervalEnd = intervalMid;
+			}
+		}
+		
+		return intervalBegin;
+	}
+	
+	
 	/**
 	 * Returns the index element identified by id.
 	 * 
@@ -0,0 +1,172 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Provides read-only access to the contents of a file through memory mapping.
+ * The file is mapped in segments to allow files larger than a single mapping,
+ * and data is only accessed by absolute position so a single instance may be
+ * shared by any number of threads. Values are read in the big endian order
+ * written by DataOutput implementations.
+ * <p>
+ * The file must not be modified while mapped. Mappings are released by the
+ * garbage collector once no longer referenced.
+ * 
+ * @author Brett Henderson
+ */
+public class MappedFile {
+	
+	private static final Logger LOG = Logger.getLogger(MappedFile.class.getName());
+	
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	private static final int SEGMENT_MASK = (int) (SEGMENT_SIZE - 1);
+	
+	private MappedByteBuffer[] segments;
+	private long length;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to be mapped.
+	 */
+	public MappedFile(File file) {
+		RandomAccessFile randomFile = null;
+		
+		try {
+			FileChannel channel;
+			int segmentCount;
+			
+			randomFile = new RandomAccessFile(file, "r");
+			channel = randomFile.getChannel();
+			
+			length = channel.size();
+			segmentCount = (int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+			segments = new MappedByteBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				long segmentOffset = i * SEGMENT_SIZE;
+				
+				segments[i] = channel.map(
+						FileChannel.MapMode.READ_ONLY, segmentOffset, Math.min(SEGMENT_SIZE, length - segmentOffset));
+			}
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to map file " + file + ".", e);
+		} finally {
+			// Mappings remain valid once the file is closed.
+			if (randomFile != null) {
+				try {
+					randomFile.close();
+				} catch (IOException e) {
+					// We are already in an error condition so log and continue.
+					LOG.log(Level.WARNING, "Unable to close file " + file + ".", e);
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Returns the length of the file.
+	 * 
+	 * @return The file length in bytes.
+	 */
+	public long length() {
+		return length;
+	}
+	
+	
+	/**
+	 * Reads a single byte.
+	 * 
+	 * @param position
+	 *            The position of the byte within the file.
+	 * @return The byte value.
+	 */
+	public byte getByte(long position) {
+		return segments[(int) (position >>> SEGMENT_BITS)].get((int) position & SEGMENT_MASK);
+	}
+	
+	
+	/**
+	 * Reads a range of bytes.
+	 * 
+	 * @param position
+	 *            The position of the first byte within the file.
+	 * @param buffer
+	 *            Receives the bytes.
+	 * @param offset
+	 *            The offset within the buffer to write the first byte.
+	 * @param count
+	 *            The number of bytes to read.
+	 */
+	public void getBytes(long position, byte[] buffer, int offset, int count) {
+		for (int i = 0; i < count; i++) {
+			buffer[offset + i] = getByte(position + i);
+		}
+	}
+	
+	
+	/**
+	 * Reads an integer.
+	 * 
+	 * @param position
+	 *            The position of the integer within the file.
+	 * @return The integer value.
+	 */
+	public int getInt(long position) {
+		int segmentOffset;
+		int result;
+		
+		segmentOffset = (int) position & SEGMENT_MASK;
+		if (segmentOffset <= SEGMENT_SIZE - 4) {
+			return segments[(int) (position >>> SEGMENT_BITS)].getInt(segmentOffset);
+		}
+		
+		// The value spans two segments.
+		result = 0;
+		for (int i = 0; i < 4; i++) {
+			result = (result << 8) | (getByte(position + i) & 0xFF);
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Reads a long.
+	 * 
+	 * @param position
+	 *            The position of the long within the file.
+	 * @return The long value.
+	 */
+	public long getLong(long position) {
+		int segmentOffset;
+		long result;
+		
+		segmentOffset = (int) position & SEGMENT_MASK;
+		if (segmentOffset <= SEGMENT_SIZE - 8) {
+			return segments[(int) (position >>> SEGMENT_BITS)].getLong(segmentOffset);
+		}
+		
+		// The value spans two segments.
+		result = 0;
+		for (int i = 0; i < 8; i++) {
+			result = (result << 8) | (getByte(position + i) & 0xFF);
+		}
+		
+		return result;
+	}
+}
@@ -0,0 +1,125 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.InputStream;
+
+
+/**
+ * Reads the contents of a memory mapped file as a stream. Seeking only updates
+ * the current position so random access is as cheap as sequential access.
+ * Each thread must use its own stream, but streams may share a mapped file.
+ * 
+ * @author Brett Henderson
+ */
+public class MappedFileInputStream extends InputStream implements RandomAccessInput {
+	
+	private MappedFile mappedFile;
+	private long position;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param mappedFile
+	 *            The mapped file to read from.
+	 */
+	public MappedFileInputStream(MappedFile mappedFile) {
+		this.mappedFile = mappedFile;
+		
+		position = 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read() {
+		if (position >= mappedFile.length()) {
+			return -1;
+		}
+		
+		return mappedFile.getByte(position++) & 0xFF;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) {
+		int count;
+		
+		if (len == 0) {
+			return 0;
+		}
+		if (position >= mappedFile.length()) {
+			return -1;
+		}
+		
+		count = (int) Math.min(len, mappedFile.length() - position);
+		mappedFile.getBytes(position, b, off, count);
+		position += count;
+		
+		return count;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long skip(long n) {
+		long count;
+		
+		count = Math.max(0, Math.min(n, mappedFile.length() - position));
+		position += count;
+		
+		return count;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int available() {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(0, mappedFile.length() - position));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void seek(long pos) {
+		position = pos;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long length() {
+		return mappedFile.length();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long position() {
+		return position;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		// The mapping is shared so nothing is released here.
+	}
+}
@@ -0,0 +1,29 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+
+/**
+ * Compares index keys with the keys of index elements stored in a memory
+ * mapped index file. This allows an index to be searched without loading the
+ * index elements being compared.
+ * 
+ * @param <K>
+ *            The index key type.
+ * @author Brett Henderson
+ */
+public interface MappedIndexKeyComparator<K> {
+	
+	/**
+	 * Compares a key with the key of a stored index element.
+	 * 
+	 * @param key
+	 *            The key to be compared.
+	 * @param indexFile
+	 *            The mapped index file.
+	 * @param elementOffset
+	 *            The offset of the index element within the file.
+	 * @return 0 if equal, &lt; 0 if the key is considered "smaller", and &gt;
+	 *         0 if the key is considered "bigger".
+	 */
+	int compare(K key, MappedFile indexFile, long elementOffset);
+}
@@ -0,0 +1,312 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+
+
+/**
+ * Stores node locations in a temporary memory mapped file indexed directly by
+ * node id. Each node occupies a single 8 byte slot holding its fixed precision
+ * longitude and latitude packed into a long. The file is mapped in segments
+ * which are only created when a node within them is written, and the operating
+ * system allocates file space lazily, so sparse id ranges consume little disk.
+ * Data lives outside the JVM heap and is paged in and out by the operating
+ * system, so the store may be much larger than the heap.
+ * <p>
+ * Locations are retrieved in packed form to avoid allocating objects for each
+ * lookup. The static methods of this class decode the packed form.
+ * <p>
+ * This store is only suitable for single-threaded use.
+ *
+ * @author Brett Henderson
+ */
+public class MappedNodeLocationStore implements Releasable {
+
+	private static final Logger LOG = Logger.getLogger(MappedNodeLocationStore.class.getName());
+
+	/**
+	 * The packed location value returned for nodes that don't exist. This
+	 * corresponds to a longitude outside the valid range so cannot conflict
+	 * with a real location.
+	 */
+	public static final long INVALID_LOCATION = Long.MIN_VALUE;
+
+	private static final int SLOT_SIZE = 8;
+	private static final int SEGMENT_SLOT_BITS = 24;
+	private static final int SEGMENT_SLOT_COUNT = 1 << SEGMENT_SLOT_BITS;
+	private static final long SEGMENT_SIZE = ((long) SEGMENT_SLOT_COUNT) * SLOT_SIZE;
+
+
+	private File file;
+	private RandomAccessFile randomFile;
+	private MappedByteBuffer[] segments;
+	private int segmentCount;
+
+
+	/**
+	 * Creates a new instance.
+	 */
+	public MappedNodeLocationStore() {
+		segments = new MappedByteBuffer[16];
+		segmentCount = 0;
+	}
+
+
+	/**
+	 * Packs a location into the form returned by getPackedLocation.
+	 *
+	 * @param longitude
+	 *            The longitude.
+	 * @param latitude
+	 *            The latitude.
+	 * @return The packed location.
+	 */
+	public static long pack(double longitude, double latitude) {
+		return packFixed(
+			FixedPrecisionCoordinateConvertor.convertToFixed(longitude),
+			FixedPrecisionCoordinateConvertor.convertToFixed(latitude));
+	}
+
+
+	/**
+	 * Packs a location already in fixed precision form into the form returned
+	 * by getPackedLocation.
+	 *
+	 * @param fixedLongitude
+	 *            The longitude in fixed precision form.
+	 * @param fixedLatitude
+	 *            The latitude in fixed precision form.
+	 * @return The packed location.
+	 */
+	public static long packFixed(int fixedLongitude, int fixedLatitude) {
+		return (((long) fixedLongitude) << 32) | (fixedLatitude & 0xFFFFFFFFL);
+	}
+
+
+	/**
+	 * Indicates if a packed location refers to an existing node.
+	 *
+	 * @param packedLocation
+	 *            The packed location.
+	 * @return True if the location is valid.
+	 */
+	public static boolean isValid(long packedLocation) {
+		return packedLocation != INVALID_LOCATION;
+	}
+
+
+	/**
+	 * Gets the longitude of a packed location.
+	 *
+	 * @param packedLocation
+	 *            The packed location.
+	 * @return The longitude.
+	 */
+	public static double getLongitude(long packedLocation) {
+		return FixedPrecisionCoordinateConvertor.convertToDouble(getFixedLongitude(packedLocation));
+	}
+
+
+	/**
+	 * Gets the longitude of a packed location in fixed precision form.
+	 *
+	 * @param packedLocation
+	 *            The packed location.
+	 * @return The fixed precision longitude.
+	 */
+	public static int getFixedLongitude(long packedLocation) {
+		return (int) (packedLocation >> 32);
+	}
+
+
+	/**
+	 * Gets the latitude of a packed location.
+	 *
+	 * @param packedLocation
+	 *            The packed location.
+	 * @return The latitude.
+	 */
+	public static double getLatitude(long packedLocation) {
+		return FixedPrecisionCoordinateConvertor.convertToDouble(getFixedLatitude(packedLocation));
+	}
+
+
+	/**
+	 * Gets the latitude of a packed location in fixed precision form.
+	 *
+	 * @param packedLocation
+	 *            The packed location.
+	 * @return The fixed precision latitude.
+	 */
+	public static int getFixedLatitude(long packedLocation) {
+		return (int) packedLocation;
+	}
+
+
+	/**
+	 * Maps the specified segment of the file, creating the file if this is the
+	 * first segment to be written.
+	 */
+	private MappedByteBuffer mapSegment(int segmentIndex) {
+		MappedByteBuffer segment;
+
+		try {
+			if (file == null) {
+				file = File.createTempFile("nodelocation", null);
+				randomFile = new RandomAccessFile(file, "rw");
+			}
+
+			// Mapping beyond the end of the file extends it without writing the
+			// intervening data.
+			segment = randomFile.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, segmentIndex * SEGMENT_SIZE, SEGMENT_SIZE);
+			segment.order(ByteOrder.nativeOrder());
+
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to map node location file " + file + ".", e);
+		}
+
+		if (segmentIndex >= segments.length) {
+			MappedByteBuffer[] newSegments;
+
+			newSegments = new MappedByteBuffer[Math.max(segments.length * 2, segmentIndex + 1)];
+			System.arraycopy(segments, 0, newSegments, 0, segmentCount);
+			segments = newSegments;
+		}
+		segments[segmentIndex] = segment;
+		if (segmentIndex >= segmentCount) {
+			segmentCount = segmentIndex + 1;
+		}
+
+		return segment;
+	}
+
+
+	/**
+	 * Adds the specified node location.
+	 *
+	 * @param nodeId
+	 *            The node identifier. Must not be negative.
+	 * @param longitude
+	 *            The longitude of the node.
+	 * @param latitude
+	 *            The latitude of the node.
+	 */
+	public void addLocation(long nodeId, double longitude, double latitude) {
+		addPackedLocation(nodeId, pack(longitude, latitude));
+	}
+
+
+	/**
+	 * Adds the specified node location in fixed precision form.
+	 *
+	 * @param nodeId
+	 *            The node identifier. Must not be negative.
+	 * @param fixedLongitude
+	 *            The longitude of the node in fixed precision form.
+	 * @param fixedLatitude
+	 *            The latitude of the node in fixed precision form.
+	 */
+	public void addFixedLocation(long nodeId, int fixedLongitude, int fixedLatitude) {
+		addPackedLocation(nodeId, packFixed(fixedLongitude, fixedLatitude));
+	}
+
+
+	private void addPackedLocation(long nodeId, long packedLocation) {
+		int segmentIndex;
+		MappedByteBuffer segment;
+
+		if (nodeId < 0) {
+			throw new OsmosisRuntimeException("Node " + nodeId + " cannot be stored, negative ids are not supported.");
+		}
+
+		if (packedLocation == INVALID_LOCATION) {
+			throw new OsmosisRuntimeException("Node " + nodeId + " has an invalid longitude of "
+				+ getLongitude(packedLocation) + ".");
+		}
+
+		segmentIndex = (int) (nodeId >>> SEGMENT_SLOT_BITS);
+		segment = null;
+		if (segmentIndex < segmentCount) {
+			segment = segments[segmentIndex];
+		}
+		if (segment == null) {
+			segment = mapSegment(segmentIndex);
+		}
+
+		// Unwritten file space reads as zero, so the stored value is offset
+		// to ensure zero decodes to an invalid location.
+		segment.putLong(((int) (nodeId & (SEGMENT_SLOT_COUNT - 1))) * SLOT_SIZE, packedLocation ^ INVALID_LOCATION);
+	}
+
+
+	/**
+	 * Gets the packed location of the specified node. The values may be
+	 * extracted using the static methods of this class.
+	 *
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The packed location, or INVALID_LOCATION if the node doesn't
+	 *         exist.
+	 */
+	public long getPackedLocation(long nodeId) {
+		int segmentIndex;
+		MappedByteBuffer segment;
+
+		if (nodeId < 0) {
+			return INVALID_LOCATION;
+		}
+
+		segmentIndex = (int) (nodeId >>> SEGMENT_SLOT_BITS);
+		if (segmentIndex >= segmentCount) {
+			return INVALID_LOCATION;
+		}
+		segment = segments[segmentIndex];
+		if (segment == null) {
+			return INVALID_LOCATION;
+		}
+
+		return segment.getLong(((int) (nodeId & (SEGMENT_SLOT_COUNT - 1))) * SLOT_SIZE) ^ INVALID_LOCATION;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		// Mapped buffers can't be explicitly unmapped, they are unmapped once
+		// garbage collected. Deleting the file only removes its directory entry
+		// on most platforms so this is safe to do while mappings remain.
+		segments = new MappedByteBuffer[0];
+		segmentCount = 0;
+
+		if (randomFile != null) {
+			try {
+				randomFile.close();
+			} catch (IOException e) {
+				// We cannot throw an exception within a release statement.
+				LOG.log(Level.WARNING, "Unable to close node location file.", e);
+			}
+			randomFile = null;
+		}
+
+		if (file != null) {
+			if (!file.delete()) {
+				LOG.warning("Unable to delete file " + file);
+			}
+			file = null;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.task.v0_6.Initializable;
+
+
+/**
+ * Passes data from a single input thread to a single output thread. The
+ * initialize, complete and release methods are called by the input thread, all
+ * output methods are called by the output thread. Refer to DataPostbox for the
+ * full lifecycle contract which all implementations must follow.
+ *
+ * @param <T>
+ *            The type of data held in the postbox.
+ * @author Brett Henderson
+ */
+public interface Postbox<T> extends Initializable {
+
+	/**
+	 * Adds a new object to the postbox.
+	 *
+	 * @param o
+	 *            The object to be added.
+	 */
+	void put(T o);
+
+
+	/**
+	 * Adds a group of objects to the postbox. This is equivalent to calling put
+	 * for each object.
+	 *
+	 * @param objects
+	 *            The objects to be added.
+	 */
+	void putAll(Collection<T> objects);
+
+
+	/**
+	 * Notifies that the output thread has begun processing, and gets the
+	 * initialization data set by the input thread.
+	 *
+	 * @return The initialization data.
+	 */
+	Map<String, Object> outputInitialize();
+
+
+	/**
+	 * Indicates if data is available for output. This will block until either
+	 * data is available, input processing has completed, or an input error
+	 * occurs.
+	 *
+	 * @return True if data is available.
+	 */
+	boolean hasNext();
+
+
+	/**
+	 * Returns the next available object from the postbox. This should be
+	 * preceeded by a call to hasNext.
+	 *
+	 * @return The next available object.
+	 */
+	T getNext();
+
+
+	/**
+	 * Moves all currently available objects into the target collection. This
+	 * blocks in the same way as hasNext, and moves nothing once all data has
+	 * been consumed.
+	 *
+	 * @param target
+	 *            The collection to receive the objects.
+	 * @return The number of objects moved.
+	 */
+	int drainTo(Collection<T> target);
+
+
+	/**
+	 * Notifies that the output thread has completed processing.
+	 */
+	void outputComplete();
+
+
+	/**
+	 * Notifies that the output thread has released.
+	 */
+	void outputRelease();
+}
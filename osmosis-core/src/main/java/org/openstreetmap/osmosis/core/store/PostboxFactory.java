@@ -0,0 +1,62 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Creates Postbox implementation instances depending on the requested postbox
+ * type.
+ * 
+ * @author Brett Henderson
+ */
+public final class PostboxFactory {
+	
+	/**
+	 * The system property allowing the default postbox type to be overridden
+	 * for all buffer tasks in the JVM.
+	 */
+	public static final String DEFAULT_TYPE_PROPERTY = "osmosis.postboxType";
+	
+	
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private PostboxFactory() {
+	}
+	
+	
+	/**
+	 * Gets the name of the postbox type to use when a task doesn't specify one.
+	 * This is Locking unless overridden by the osmosis.postboxType system
+	 * property.
+	 * 
+	 * @return The default postbox type name.
+	 */
+	public static String getDefaultTypeName() {
+		return System.getProperty(DEFAULT_TYPE_PROPERTY, PostboxType.Locking.name());
+	}
+	
+	
+	/**
+	 * Creates the requested postbox type.
+	 * 
+	 * @param <T>
+	 *            The type of data held in the postbox.
+	 * @param postboxType
+	 *            The type of postbox to instantiate.
+	 * @param capacity
+	 *            The maximum number of objects to hold in the postbox before
+	 *            blocking.
+	 * @return The new postbox.
+	 */
+	public static <T> Postbox<T> createInstance(PostboxType postboxType, int capacity) {
+		if (PostboxType.Locking.equals(postboxType)) {
+			return new DataPostbox<T>(capacity);
+		} else if (PostboxType.Ring.equals(postboxType)) {
+			return new RingDataPostbox<T>(capacity);
+		} else {
+			throw new OsmosisRuntimeException("The PostboxType " + postboxType + " is not recognised.");
+		}
+	}
+}
@@ -0,0 +1,24 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+/**
+ * Defines the different postbox implementations available for passing data
+ * between threads.
+ * 
+ * @author Brett Henderson
+ */
+public enum PostboxType {
+	/**
+	 * The locking implementation passes data in chunks between queues guarded
+	 * by a lock. Waiting threads block on a condition and consume no CPU. This
+	 * is the default.
+	 */
+	Locking,
+	/**
+	 * The ring implementation passes data through a lock-free single producer,
+	 * single consumer ring buffer. Waiting threads spin briefly before parking.
+	 * This reduces hand-off overhead in heavily buffered pipelines where both
+	 * threads are busy, and benefits from larger buffer capacities.
+	 */
+	Ring
+}
@@ -0,0 +1,45 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+
+/**
+ * Implemented by input streams supporting changes to the current read
+ * position.
+ * 
+ * @author Brett Henderson
+ */
+public interface RandomAccessInput extends Closeable {
+	
+	/**
+	 * Seeks to the specified position in the data.
+	 * 
+	 * @param pos
+	 *            The position to seek to.
+	 * @throws IOException
+	 *             if an error occurs during seeking.
+	 */
+	void seek(long pos) throws IOException;
+	
+	
+	/**
+	 * Returns the length of the data.
+	 * 
+	 * @return The data length in bytes.
+	 * @throws IOException
+	 *             if an error occurs during the length operation.
+	 */
+	long length() throws IOException;
+	
+	
+	/**
+	 * Returns the current read position in the data.
+	 * 
+	 * @return The data offset in bytes.
+	 * @throws IOException
+	 *             if an error occurs during the position operation.
+	 */
+	long position() throws IOException;
+}
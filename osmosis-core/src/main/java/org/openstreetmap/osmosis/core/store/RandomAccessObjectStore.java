@@ -5,7 +5,6 @@ import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.logging.Level;
@@ -35,6 +34,7 @@ public class RandomAccessObjectStore<T extends Storeable> implements Completable
 	private OffsetTrackingOutputStream offsetTrackingStream;
 	private StoreClassRegister storeClassRegister;
 	private ObjectWriter objectWriter;
+	private MappedFile mappedFile;
 	
 	
 	/**
@@ -178,24 +178,32 @@ public class RandomAccessObjectStore<T extends Storeable> implements Completable
 	 * @return A store reader.
 	 */
 	public RandomAccessObjectStoreReader<T> createReader() {
+		MappedFileInputStream mappedInput;
+		
+		mappedInput = new MappedFileInputStream(getMappedFile());
+		
+		return new RandomAccessObjectStoreReader<T>(
+			mappedInput,
+			serializationFactory.createObjectReader(
+					new DataInputStoreReader(new DataInputStream(mappedInput)), storeClassRegister)
+		);
+	}
+	
+	
+	/**
+	 * Returns a memory mapping of the storage file. The file is mapped once
+	 * when first required and the mapping is shared by all readers.
+	 * 
+	 * @return The mapped storage file.
+	 */
+	synchronized MappedFile getMappedFile() {
 		initializeReadingStage();
 		
-		try {
-			BufferedRandomAccessFileInputStream randomFileReader;
-			
-			randomFileReader = new BufferedRandomAccessFileInputStream(storageFile);
-			
-			return new RandomAccessObjectStoreReader<T>(
-				randomFileReader,
-				serializationFactory.createObjectReader(
-						new DataInputStoreReader(
-								new DataInputStream(randomFileReader)), storeClassRegister)
-			);
-			
-		} catch (FileNotFoundException e) {
-			throw new OsmosisRuntimeException(
-					"Unable to create object stream reading from file " + storageFile + ".", e);
+		if (mappedFile == null) {
+			mappedFile = new MappedFile(storageFile);
 		}
+		
+		return mappedFile;
 	}
 	
 	
@@ -238,6 +246,9 @@ public class RandomAccessObjectStore<T extends Storeable> implements Completable
 			offsetTrackingStream = null;
 		}
 		
+		// The mapping is released once all readers are garbage collected.
+		mappedFile = null;
+		
 		if (tempFile != null) {
 			if (!tempFile.delete()) {
 				// We cannot throw an exception within a release statement.
@@ -24,7 +24,7 @@ import org.openstreetmap.osmosis.core.lifecycle.Releasable;
 public class RandomAccessObjectStoreReader<T> implements Releasable {
 	private static final Logger LOG = Logger.getLogger(RandomAccessObjectStoreReader.class.getName());
 	
-	private BufferedRandomAccessFileInputStream randomFile;
+	private RandomAccessInput randomFile;
 	private ObjectReader objectReader;
 	
 	
@@ -32,11 +32,11 @@ public class RandomAccessObjectStoreReader<T> implements Releasable {
 	 * Creates a new instance.
 	 * 
 	 * @param randomFile
-	 *            A read-only random access file opened on the store file.
+	 *            A read-only random access input opened on the store file.
 	 * @param objectReader
 	 *            The reader containing the objects to be deserialized.
 	 */
-	public RandomAccessObjectStoreReader(BufferedRandomAccessFileInputStream randomFile, ObjectReader objectReader) {
+	public RandomAccessObjectStoreReader(RandomAccessInput randomFile, ObjectReader objectReader) {
 		this.randomFile = randomFile;
 		this.objectReader = objectReader;
 	}
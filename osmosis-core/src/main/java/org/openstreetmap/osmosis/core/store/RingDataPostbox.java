@@ -0,0 +1,493 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * A postbox implementation passing data through a preallocated single
+ * producer, single consumer ring buffer. Unlike DataPostbox no locks are used,
+ * each object is published to the output thread as soon as it is added and
+ * waiting threads busy-spin briefly before parking. This avoids lock hand-offs
+ * and context switches when both threads are running, at the cost of some CPU
+ * while a thread is waiting.
+ * <p>
+ * The lifecycle and error propagation semantics are identical to DataPostbox.
+ * All lifecycle flags have a single writing thread which allows them to be
+ * shared using volatile fields alone.
+ *
+ * @param <T>
+ *            The type of data held in the postbox.
+ * @author Brett Henderson
+ */
+public class RingDataPostbox<T> implements Postbox<T> {
+	private static final int SPIN_LIMIT = 1000;
+	private static final int YIELD_LIMIT = 1100;
+	// Parking is bounded so that a missed wake-up only causes a short delay.
+	private static final long PARK_NANOS = 100000;
+
+	private int capacity;
+	private int mask;
+	private Object[] ring;
+	private AtomicLong writePosition;
+	private AtomicLong readPosition;
+	private long inputCachedReadPosition;
+	private long outputReadPosition;
+	private long outputCachedWritePosition;
+	private volatile Map<String, Object> processingMetaData;
+	private volatile Thread inputThread;
+	private volatile Thread outputThread;
+	private volatile boolean inputWaiting;
+	private volatile boolean outputWaiting;
+	private volatile boolean inputInitialized;
+	private volatile boolean outputInitialized;
+	private volatile boolean inputComplete;
+	private volatile boolean outputComplete;
+	private volatile boolean inputReleased;
+	private volatile boolean outputReleased;
+	private volatile boolean inputExit;
+	private volatile boolean outputExit;
+	private volatile boolean inputOkay;
+	private volatile boolean outputOkay;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param capacity
+	 *            The maximum number of objects to hold in the postbox before
+	 *            blocking. This is rounded up to the next power of two.
+	 */
+	public RingDataPostbox(int capacity) {
+		if (capacity <= 0) {
+			throw new OsmosisRuntimeException("A capacity of " + capacity + " is invalid, must be greater than 0.");
+		}
+
+		this.capacity = Integer.highestOneBit(capacity);
+		if (this.capacity < capacity) {
+			this.capacity <<= 1;
+		}
+		mask = this.capacity - 1;
+		ring = new Object[this.capacity];
+		writePosition = new AtomicLong();
+		readPosition = new AtomicLong();
+
+		inputInitialized = false;
+		outputInitialized = false;
+		inputComplete = false;
+		outputComplete = false;
+		inputReleased = false;
+		outputReleased = false;
+		inputExit = true;
+		outputExit = true;
+		inputOkay = true;
+		outputOkay = true;
+	}
+
+
+	private void resetRing() {
+		Arrays.fill(ring, null);
+		writePosition.set(0);
+		readPosition.set(0);
+		inputCachedReadPosition = 0;
+		outputReadPosition = 0;
+		outputCachedWritePosition = 0;
+	}
+
+
+	/**
+	 * This is called by the input thread to validate that no errors have
+	 * occurred on the output thread.
+	 */
+	private void checkForOutputErrors() {
+		if (!outputOkay) {
+			throw new OsmosisRuntimeException("An output error has occurred, aborting.");
+		}
+	}
+
+
+	/**
+	 * This is called by the output thread to validate that no errors have
+	 * occurred on the input thread.
+	 */
+	private void checkForInputErrors() {
+		if (!inputOkay) {
+			throw new OsmosisRuntimeException("An input error has occurred, aborting.");
+		}
+	}
+
+
+	/**
+	 * Waits a short time for the other thread to make progress. The wait
+	 * escalates from busy spinning to yielding and finally parking as the
+	 * number of unsuccessful attempts increases.
+	 *
+	 * @param idleCount
+	 *            The number of times the caller has already waited.
+	 * @param input
+	 *            True if called by the input thread.
+	 * @return The updated idle count.
+	 */
+	private int idle(int idleCount, boolean input) {
+		if (idleCount >= YIELD_LIMIT) {
+			if (input) {
+				inputWaiting = true;
+				LockSupport.parkNanos(this, PARK_NANOS);
+				inputWaiting = false;
+			} else {
+				outputWaiting = true;
+				LockSupport.parkNanos(this, PARK_NANOS);
+				outputWaiting = false;
+			}
+
+			if (Thread.interrupted()) {
+				throw new OsmosisRuntimeException("Thread was interrupted.");
+			}
+
+			return idleCount;
+
+		} else if (idleCount >= SPIN_LIMIT) {
+			Thread.yield();
+		}
+
+		return idleCount + 1;
+	}
+
+
+	private void unpark(Thread thread) {
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialize(Map<String, Object> metaData) {
+		if (inputInitialized) {
+			throw new OsmosisRuntimeException("initialize has already been called");
+		}
+
+		inputThread = Thread.currentThread();
+		checkForOutputErrors();
+
+		// Set the processing metadata, and flag that we have initialized.
+		processingMetaData = metaData;
+		inputInitialized = true;
+		unpark(outputThread);
+
+		// Now we must wait until the output thread initializes or encounters
+		// an error.
+		int idleCount = 0;
+		while (!outputInitialized) {
+			idleCount = idle(idleCount, true);
+			checkForOutputErrors();
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void put(T o) {
+		if (!inputInitialized) {
+			throw new OsmosisRuntimeException("initialize has not been called");
+		}
+		checkForOutputErrors();
+
+		// Only this thread updates the write position so it can be read
+		// without synchronisation concerns.
+		long position = writePosition.get();
+
+		// Wait until the output thread has freed a slot.
+		if (position - inputCachedReadPosition >= capacity) {
+			inputCachedReadPosition = readPosition.get();
+
+			int idleCount = 0;
+			while (position - inputCachedReadPosition >= capacity) {
+				idleCount = idle(idleCount, true);
+				checkForOutputErrors();
+				inputCachedReadPosition = readPosition.get();
+			}
+		}
+
+		ring[(int) (position & mask)] = o;
+		writePosition.set(position + 1);
+
+		if (outputWaiting) {
+			unpark(outputThread);
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void putAll(Collection<T> objects) {
+		for (T o : objects) {
+			put(o);
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void complete() {
+		if (!inputInitialized) {
+			throw new OsmosisRuntimeException("initialize has not been called");
+		}
+		checkForOutputErrors();
+
+		inputComplete = true;
+		unpark(outputThread);
+
+		// Now we must wait until the output thread completes or encounters an
+		// error.
+		int idleCount = 0;
+		while (!outputComplete) {
+			idleCount = idle(idleCount, true);
+			checkForOutputErrors();
+		}
+	}
+
+
+	/**
+	 * This method conforms to the
+	 * {@link org.openstreetmap.osmosis.core.lifecycle.Releasable} contract,
+	 * however there are limitations around calling it multiple times. Each call
+	 * to this method must be matched by a call to the outputRelease method in a
+	 * separate thread or deadlock will occur.
+	 */
+	@Override
+	public void release() {
+		// If release is being called without having completed successfully,
+		// it is an error condition.
+		if (!inputComplete) {
+			inputOkay = false;
+		}
+
+		// The exit flag must be cleared before the released flag is visible.
+		inputExit = false;
+		inputReleased = true;
+		unpark(outputThread);
+
+		// Wait until the output thread releases.
+		int idleCount = 0;
+		while (!outputReleased) {
+			idleCount = idle(idleCount, true);
+		}
+
+		// At this point both threads have reached a release state and the
+		// output thread is waiting for us to exit so we can reset our state.
+		resetRing();
+		inputInitialized = false;
+		inputComplete = false;
+		inputReleased = false;
+		inputOkay = true;
+		inputExit = true;
+		unpark(outputThread);
+
+		// Wait for the output thread to exit.
+		idleCount = 0;
+		while (!outputExit) {
+			idleCount = idle(idleCount, true);
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, Object> outputInitialize() {
+		if (outputInitialized) {
+			throw new OsmosisRuntimeException("outputInitialize has already been called");
+		}
+
+		outputThread = Thread.currentThread();
+		checkForInputErrors();
+
+		// We must wait until the input thread initializes or encounters an
+		// error.
+		int idleCount = 0;
+		while (!inputInitialized) {
+			idleCount = idle(idleCount, false);
+			checkForInputErrors();
+		}
+
+		outputInitialized = true;
+		unpark(inputThread);
+
+		return processingMetaData;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() {
+		if (!outputInitialized) {
+			throw new OsmosisRuntimeException("outputInitialize has not been called");
+		}
+
+		if (outputReadPosition < outputCachedWritePosition) {
+			return true;
+		}
+
+		int idleCount = 0;
+		outputCachedWritePosition = writePosition.get();
+		while (outputReadPosition >= outputCachedWritePosition) {
+			if (inputComplete) {
+				// The input thread publishes all data before flagging
+				// completion so one final check is required.
+				outputCachedWritePosition = writePosition.get();
+				return outputReadPosition < outputCachedWritePosition;
+			}
+
+			checkForInputErrors();
+			idleCount = idle(idleCount, false);
+			outputCachedWritePosition = writePosition.get();
+		}
+
+		return true;
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private T takeNext() {
+		int index = (int) (outputReadPosition & mask);
+		T result = (T) ring[index];
+
+		ring[index] = null;
+		outputReadPosition++;
+
+		return result;
+	}
+
+
+	private void publishReadPosition() {
+		readPosition.set(outputReadPosition);
+
+		if (inputWaiting) {
+			unpark(inputThread);
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public T getNext() {
+		if (hasNext()) {
+			T result = takeNext();
+
+			publishReadPosition();
+
+			return result;
+
+		} else {
+			throw new OsmosisRuntimeException("No data is available, should call hasNext first.");
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int drainTo(Collection<T> target) {
+		if (hasNext()) {
+			int count = 0;
+
+			while (outputReadPosition < outputCachedWritePosition) {
+				target.add(takeNext());
+				count++;
+			}
+
+			publishReadPosition();
+
+			return count;
+
+		} else {
+			return 0;
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void outputComplete() {
+		if (!outputInitialized) {
+			throw new OsmosisRuntimeException("outputInitialize has not been called");
+		}
+		checkForInputErrors();
+
+		// We must wait until the input thread completes or encounters an error.
+		int idleCount = 0;
+		while (!inputComplete) {
+			idleCount = idle(idleCount, false);
+			checkForInputErrors();
+		}
+
+		outputComplete = true;
+		unpark(inputThread);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void outputRelease() {
+		// If release is being called without having completed successfully,
+		// it is an error condition.
+		if (!outputComplete) {
+			outputOkay = false;
+			unpark(inputThread);
+		}
+
+		// Wait until the input thread is released.
+		int idleCount = 0;
+		while (!inputReleased) {
+			idleCount = idle(idleCount, false);
+		}
+
+		// At this point both threads have reached a release state so we can
+		// set our state as released but waiting for exit. The exit flag must
+		// be cleared before the released flag is visible.
+		outputInitialized = false;
+		outputComplete = false;
+		outputOkay = true;
+		outputExit = false;
+		outputReleased = true;
+		unpark(inputThread);
+
+		// Wait until the input thread has reached the exit point.
+		idleCount = 0;
+		while (!inputExit) {
+			idleCount = idle(idleCount, false);
+		}
+
+		// The input thread has reached exit, so now we can clear the release
+		// flag and flag that we've reached exit.
+		outputReleased = false;
+		outputExit = true;
+		unpark(inputThread);
+	}
+}
@@ -0,0 +1,25 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.task.v0_6;
+
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
+
+
+/**
+ * Extends the sink interface for tasks able to consume a block of entities in
+ * a single call. Producers should use EntityBatch.sendTo which falls back to
+ * per-entity processing for sinks not implementing this interface.
+ *
+ * @author Brett Henderson
+ */
+public interface BatchSink extends Sink {
+
+	/**
+	 * Process a batch of entities. The batch is equivalent to calling
+	 * process(entityContainer) for each of its entities in order. The batch
+	 * may be shared between several sinks and must not be modified.
+	 *
+	 * @param batch
+	 *            The entities to be processed.
+	 */
+	void process(EntityBatch batch);
+}
@@ -0,0 +1,14 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.task.v0_6;
+
+/**
+ * Defines the interface for combining DatasetSink and MultiDatasetSource
+ * functionality. This is primarily intended for tasks sharing a single dataset
+ * between several consumers.
+ * 
+ * @author Brett Henderson
+ */
+public interface DatasetSinkMultiDatasetSource extends DatasetSink, MultiDatasetSource {
+	// This interface combines DatasetSink and MultiDatasetSource but doesn't
+	// introduce methods of its own.
+}
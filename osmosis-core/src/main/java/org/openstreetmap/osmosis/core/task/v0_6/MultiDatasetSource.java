@@ -0,0 +1,31 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.task.v0_6;
+
+import org.openstreetmap.osmosis.core.task.common.Task;
+
+
+/**
+ * Defines the interface for tasks producing multiple dataset outputs.
+ * 
+ * @author Brett Henderson
+ */
+public interface MultiDatasetSource extends Task {
+	
+	/**
+	 * Retrieves a specific dataset source that can then have a dataset sink
+	 * attached.
+	 * 
+	 * @param index
+	 *            The index of the dataset source to retrieve.
+	 * @return The requested dataset source.
+	 */
+	DatasetSource getDatasetSource(int index);
+	
+	
+	/**
+	 * Indicates the number of dataset sources that the task provides.
+	 * 
+	 * @return The number of dataset sources.
+	 */
+	int getDatasetSourceCount();
+}
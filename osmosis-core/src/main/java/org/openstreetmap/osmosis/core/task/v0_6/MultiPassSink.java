@@ -0,0 +1,37 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.task.v0_6;
+
+
+/**
+ * Extends the sink interface for tasks able to make use of their input being
+ * sent more than once. Sources able to re-read their data, such as those
+ * reading from a file, check whether their sink implements this interface and
+ * if so ask whether multiple passes are wanted. This allows a sink to collect
+ * information in an initial pass rather than storing the entire input.
+ * <p>
+ * A source supporting multiple passes calls requestMultiPass before
+ * initialize. If it returns true, completePass is called after the last
+ * entity of each pass and the source sends all of its data again while it
+ * returns true. The complete method is only called after the final pass.
+ *
+ * @author Brett Henderson
+ */
+public interface MultiPassSink extends Sink {
+
+	/**
+	 * Informs the sink that the source is able to send its data multiple
+	 * times.
+	 *
+	 * @return True if the sink wishes to receive multiple passes. If false,
+	 *         the source sends its data once as normal.
+	 */
+	boolean requestMultiPass();
+
+
+	/**
+	 * Marks the end of a pass over the data.
+	 *
+	 * @return True if the sink requires another pass.
+	 */
+	boolean completePass();
+}
@@ -0,0 +1,182 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.tee.v0_6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.Dataset;
+import org.openstreetmap.osmosis.core.task.v0_6.DatasetSink;
+import org.openstreetmap.osmosis.core.task.v0_6.DatasetSinkMultiDatasetSource;
+import org.openstreetmap.osmosis.core.task.v0_6.DatasetSource;
+
+
+/**
+ * Shares a single dataset between several output destinations. Each
+ * destination processes the dataset on its own thread with its own dataset
+ * reader, allowing operations such as multiple bounding box extractions to run
+ * concurrently against one dataset.
+ * 
+ * @author Brett Henderson
+ */
+public class DatasetTee implements DatasetSinkMultiDatasetSource {
+	
+	private static final Logger LOG = Logger.getLogger(DatasetTee.class.getName());
+	
+	private List<ProxyDatasetSinkSource> sinkList;
+	private ExecutorService executorService;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param outputCount
+	 *            The number of output destinations to write to.
+	 */
+	public DatasetTee(int outputCount) {
+		sinkList = new ArrayList<ProxyDatasetSinkSource>();
+		
+		for (int i = 0; i < outputCount; i++) {
+			sinkList.add(new ProxyDatasetSinkSource());
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public DatasetSource getDatasetSource(int index) {
+		if (index < 0 || index >= sinkList.size()) {
+			throw new OsmosisRuntimeException("Dataset source index " + index
+					+ " is not in the range 0 to " + (sinkList.size() - 1) + ".");
+		}
+		
+		return sinkList.get(index);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getDatasetSourceCount() {
+		return sinkList.size();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void process(final Dataset dataset) {
+		List<Future<?>> futures;
+		
+		// A single output doesn't justify a separate thread.
+		if (sinkList.size() <= 1) {
+			for (ProxyDatasetSinkSource sink : sinkList) {
+				sink.process(dataset);
+			}
+			return;
+		}
+		
+		executorService = Executors.newFixedThreadPool(sinkList.size());
+		
+		futures = new ArrayList<Future<?>>();
+		for (final ProxyDatasetSinkSource sink : sinkList) {
+			futures.add(executorService.submit(new Runnable() {
+				@Override
+				public void run() {
+					sink.process(dataset);
+				}
+			}));
+		}
+		
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				throw new OsmosisRuntimeException("Thread was interrupted.", e);
+			} catch (ExecutionException e) {
+				throw new OsmosisRuntimeException("A dataset tee worker thread failed, aborting.", e.getCause());
+			}
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		if (executorService != null) {
+			// Outputs may still be reading if another output failed, they must
+			// stop before their resources are released.
+			executorService.shutdownNow();
+			try {
+				while (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+					LOG.fine("Waiting for dataset tee worker threads to stop.");
+				}
+			} catch (InterruptedException e) {
+				throw new OsmosisRuntimeException("Thread was interrupted.", e);
+			}
+			executorService = null;
+		}
+		
+		for (ProxyDatasetSinkSource sink : sinkList) {
+			sink.release();
+		}
+	}
+	
+	
+	/**
+	 * Instances of this class are returned via the parent class
+	 * getDatasetSource method.
+	 * 
+	 * @author Brett Henderson
+	 */
+	private static class ProxyDatasetSinkSource implements DatasetSink, DatasetSource {
+		private DatasetSink datasetSink;
+		
+		
+		/**
+		 * Creates a new instance.
+		 */
+		public ProxyDatasetSinkSource() {
+			// Nothing to do.
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setDatasetSink(DatasetSink datasetSink) {
+			this.datasetSink = datasetSink;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void process(Dataset dataset) {
+			datasetSink.process(dataset);
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void release() {
+			datasetSink.release();
+		}
+	}
+}
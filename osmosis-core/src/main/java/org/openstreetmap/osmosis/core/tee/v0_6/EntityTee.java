@@ -6,7 +6,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkMultiSource;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
@@ -18,7 +20,7 @@ import org.openstreetmap.osmosis.core.task.v0_6.Source;
  * 
  * @author Brett Henderson
  */
-public class EntityTee implements SinkMultiSource {
+public class EntityTee implements SinkMultiSource, BatchSink {
 	
 	private List<ProxySinkSource> sinkList;
 	
@@ -83,6 +85,21 @@ public class EntityTee implements SinkMultiSource {
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(EntityBatch batch) {
+		// As per single entities, the entities must be made read-only before being shared.
+		for (EntityContainer entityContainer : batch.getEntities()) {
+			entityContainer.getEntity().makeReadOnly();
+		}
+		
+		for (ProxySinkSource sink : sinkList) {
+			sink.process(batch);
+		}
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -108,7 +125,7 @@ public class EntityTee implements SinkMultiSource {
 	 * 
 	 * @author Brett Henderson
 	 */
-	private static class ProxySinkSource implements SinkSource {
+	private static class ProxySinkSource implements SinkSource, BatchSink {
 		private Sink sink;
 		
 		
@@ -144,6 +161,14 @@ public class EntityTee implements SinkMultiSource {
 		}
 		
 		
+		/**
+		 * {@inheritDoc}
+		 */
+		public void process(EntityBatch batch) {
+			batch.sendTo(sink);
+		}
+		
+		
 		/**
 		 * {@inheritDoc}
 		 */
@@ -0,0 +1,319 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+
+/**
+ * A single compressed block of a bzip2 stream. bzip2 blocks are not byte
+ * aligned so the block bits are held shifted to start at the first bit of the
+ * data array. A block is decompressed by wrapping it in a synthetic stream
+ * containing only that block, which allows blocks to be decompressed
+ * independently of each other.
+ *
+ * @author Brett Henderson
+ */
+class BZip2Block {
+
+	/**
+	 * The 48-bit signature marking the start of each block.
+	 */
+	static final long BLOCK_MAGIC = 0x314159265359L;
+
+	/**
+	 * The 48-bit signature marking the end of a stream.
+	 */
+	static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+	/**
+	 * The number of bits in a block or end of stream signature.
+	 */
+	static final int MAGIC_BITS = 48;
+
+	/**
+	 * The number of bits in a block or stream CRC.
+	 */
+	static final int CRC_BITS = 32;
+
+	private static final int BLOCK_SIZE_UNIT = 100000;
+
+	private byte[] data;
+	private int bitLength;
+	private int level;
+	private int streamNumber;
+	private int blockNumber;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param data
+	 *            The block bits, starting with the block signature at the first
+	 *            bit of the array.
+	 * @param bitLength
+	 *            The number of valid bits in the data.
+	 * @param level
+	 *            The block size level (1 to 9) of the stream containing the
+	 *            block.
+	 * @param streamNumber
+	 *            The position of the stream containing the block within the
+	 *            input.
+	 * @param blockNumber
+	 *            The position of the block within its stream.
+	 */
+	BZip2Block(byte[] data, int bitLength, int level, int streamNumber, int blockNumber) {
+		this.data = data;
+		this.bitLength = bitLength;
+		this.level = level;
+		this.streamNumber = streamNumber;
+		this.blockNumber = blockNumber;
+	}
+
+
+	/**
+	 * Creates a block from the bits of two consecutive blocks. This is used when
+	 * a block was incorrectly split at a block signature that occurred by chance
+	 * within the compressed data.
+	 *
+	 * @param first
+	 *            The first block.
+	 * @param second
+	 *            The block immediately following the first.
+	 * @return The combined block.
+	 */
+	static BZip2Block merge(BZip2Block first, BZip2Block second) {
+		BitWriter writer;
+
+		writer = new BitWriter(first.data.length + second.data.length);
+		writer.writeBits(first.data, first.bitLength);
+		writer.writeBits(second.data, second.bitLength);
+
+		return new BZip2Block(writer.getBuffer(), writer.getBitLength(), first.level, first.streamNumber,
+				first.blockNumber);
+	}
+
+
+	/**
+	 * Copies a range of bits into a new array starting at the first bit.
+	 *
+	 * @param source
+	 *            The array containing the bits.
+	 * @param startBit
+	 *            The index of the first bit to copy.
+	 * @param bitCount
+	 *            The number of bits to copy.
+	 * @return The copied bits.
+	 */
+	static byte[] extractBits(byte[] source, int startBit, int bitCount) {
+		byte[] result;
+		int sourceIndex;
+		int shift;
+
+		result = new byte[(bitCount + 7) >>> 3];
+		sourceIndex = startBit >>> 3;
+		shift = startBit & 7;
+
+		if (shift == 0) {
+			System.arraycopy(source, sourceIndex, result, 0, result.length);
+		} else {
+			for (int i = 0; i < result.length; i++, sourceIndex++) {
+				int value;
+
+				value = (source[sourceIndex] & 0xFF) << shift;
+				if (sourceIndex + 1 < source.length) {
+					value |= (source[sourceIndex + 1] & 0xFF) >>> (8 - shift);
+				}
+				result[i] = (byte) value;
+			}
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Gets the number of bits in the block.
+	 *
+	 * @return The bit count.
+	 */
+	int getBitLength() {
+		return bitLength;
+	}
+
+
+	/**
+	 * Gets the position of the stream containing the block within the input.
+	 *
+	 * @return The stream number.
+	 */
+	int getStreamNumber() {
+		return streamNumber;
+	}
+
+
+	/**
+	 * Gets the position of the block within its stream. A merged block keeps
+	 * the position of its first part.
+	 *
+	 * @return The block number.
+	 */
+	int getBlockNumber() {
+		return blockNumber;
+	}
+
+
+	/**
+	 * Indicates if the block is larger than any valid block of its stream could
+	 * be. Used to stop merging blocks when the data is genuinely corrupt.
+	 *
+	 * @return True if the block cannot be valid.
+	 */
+	boolean isOversized() {
+		// Compressed blocks can only exceed their uncompressed size by a small margin.
+		return (bitLength >>> 3) > 2 * level * BLOCK_SIZE_UNIT;
+	}
+
+
+	/**
+	 * Gets the CRC of the uncompressed block data stored in the block header.
+	 *
+	 * @return The block CRC.
+	 */
+	int getBlockCrc() {
+		int crc;
+
+		crc = 0;
+		for (int i = MAGIC_BITS / 8; i < (MAGIC_BITS + CRC_BITS) / 8 && i < data.length; i++) {
+			crc = (crc << 8) | (data[i] & 0xFF);
+		}
+
+		return crc;
+	}
+
+
+	/**
+	 * Decompresses the block.
+	 *
+	 * @return The uncompressed data.
+	 * @throws IOException
+	 *             if the block is not a valid bzip2 block.
+	 */
+	byte[] decompress() throws IOException {
+		BitWriter writer;
+		InputStream blockStream;
+		ByteArrayOutputStream result;
+		byte[] buffer;
+		int count;
+
+		// A single block stream has a stream CRC equal to its block CRC.
+		writer = new BitWriter(data.length + 16);
+		writer.writeValue('B', 8);
+		writer.writeValue('Z', 8);
+		writer.writeValue('h', 8);
+		writer.writeValue('0' + level, 8);
+		writer.writeBits(data, bitLength);
+		writer.writeValue(END_OF_STREAM_MAGIC, MAGIC_BITS);
+		writer.writeValue(getBlockCrc(), CRC_BITS);
+
+		blockStream = new BZip2CompressorInputStream(
+				new ByteArrayInputStream(writer.getBuffer(), 0, (writer.getBitLength() + 7) >>> 3));
+		try {
+			result = new ByteArrayOutputStream(level * BLOCK_SIZE_UNIT);
+			buffer = new byte[65536];
+			while ((count = blockStream.read(buffer)) >= 0) {
+				result.write(buffer, 0, count);
+			}
+		} finally {
+			blockStream.close();
+		}
+
+		return result.toByteArray();
+	}
+
+
+	/**
+	 * Appends bits to a growable array, most significant bit first.
+	 */
+	private static class BitWriter {
+		private byte[] buffer;
+		private int bitLength;
+
+
+		BitWriter(int initialCapacity) {
+			buffer = new byte[initialCapacity + 1];
+		}
+
+
+		private void ensureCapacity(int additionalBits) {
+			int requiredBytes;
+
+			requiredBytes = ((bitLength + additionalBits) >>> 3) + 2;
+			if (requiredBytes > buffer.length) {
+				byte[] newBuffer;
+
+				newBuffer = new byte[Math.max(requiredBytes, buffer.length * 2)];
+				System.arraycopy(buffer, 0, newBuffer, 0, buffer.length);
+				buffer = newBuffer;
+			}
+		}
+
+
+		void writeValue(long value, int count) {
+			ensureCapacity(count);
+
+			for (int i = count - 1; i >= 0; i--) {
+				if (((value >>> i) & 1) != 0) {
+					buffer[bitLength >>> 3] |= 0x80 >>> (bitLength & 7);
+				}
+				bitLength++;
+			}
+		}
+
+
+		void writeBits(byte[] source, int count) {
+			int fullBytes;
+			int remainingBits;
+			int position;
+			int shift;
+
+			ensureCapacity(count);
+
+			fullBytes = count >>> 3;
+			remainingBits = count & 7;
+			position = bitLength >>> 3;
+			shift = bitLength & 7;
+
+			if (shift == 0) {
+				System.arraycopy(source, 0, buffer, position, fullBytes);
+			} else {
+				// Bytes beyond the current length are always zero so the low bits can be assigned.
+				for (int i = 0; i < fullBytes; i++) {
+					int value = source[i] & 0xFF;
+
+					buffer[position + i] |= value >>> shift;
+					buffer[position + i + 1] = (byte) (value << (8 - shift));
+				}
+			}
+			bitLength += fullBytes << 3;
+
+			if (remainingBits > 0) {
+				writeValue((source[fullBytes] & 0xFF) >>> (8 - remainingBits), remainingBits);
+			}
+		}
+
+
+		byte[] getBuffer() {
+			return buffer;
+		}
+
+
+		int getBitLength() {
+			return bitLength;
+		}
+	}
+}
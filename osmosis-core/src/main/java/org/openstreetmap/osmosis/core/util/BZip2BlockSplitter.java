@@ -0,0 +1,441 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Splits a bzip2 input stream into its compressed blocks without decompressing
+ * them. Block boundaries are found by scanning for the bit aligned block and
+ * end of stream signatures. Concatenated streams are supported.
+ * <p>
+ * A block signature may occur by chance within compressed data, in which case
+ * a block will be incorrectly split in two. Such blocks fail to decompress and
+ * must be merged by the caller, which reports each merged block so that it is
+ * excluded from the stream CRC. End of stream signatures are only accepted if
+ * they are followed by the end of input or another stream, or if the stream CRC
+ * matches, so the stream structure itself is not affected by chance signatures.
+ *
+ * @author Brett Henderson
+ */
+class BZip2BlockSplitter {
+
+	private static final long MAGIC_MASK = 0xFFFFFFFFFFFFL;
+	private static final int INPUT_BUFFER_SIZE = 65536;
+	private static final int INITIAL_BLOCK_BUFFER_SIZE = 1024 * 1024;
+	private static final int INITIAL_BLOCK_COUNT = 16;
+
+	private InputStream source;
+	private byte[] inputBuffer;
+	private int inputPosition;
+	private int inputLimit;
+	private boolean sourceExhausted;
+	private byte[] blockBuffer;
+	private int blockLength;
+	private int blockStartBit;
+	private boolean blockStarted;
+	private long window;
+	private int level;
+	private int streamNumber;
+	private int[] blockCrcs;
+	private boolean[] mergedBlocks;
+	private int blockCount;
+	private boolean inStream;
+	private boolean streamFound;
+	private boolean finished;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param source
+	 *            The stream providing the compressed data.
+	 */
+	BZip2BlockSplitter(InputStream source) {
+		this.source = source;
+
+		inputBuffer = new byte[INPUT_BUFFER_SIZE];
+		blockBuffer = new byte[INITIAL_BLOCK_BUFFER_SIZE];
+		blockCrcs = new int[INITIAL_BLOCK_COUNT];
+		mergedBlocks = new boolean[INITIAL_BLOCK_COUNT];
+		streamNumber = -1;
+	}
+
+
+	/**
+	 * Gets the next compressed block.
+	 *
+	 * @return The next block, or null if all streams have been read.
+	 * @throws IOException
+	 *             if the input cannot be read or is not in the bzip2 format.
+	 */
+	BZip2Block nextBlock() throws IOException {
+		while (!finished) {
+			int value;
+			int totalBits;
+
+			if (!inStream) {
+				if (!readStreamHeader()) {
+					finished = true;
+				}
+				continue;
+			}
+
+			value = readByte();
+			if (value < 0) {
+				throw new IOException("Unexpected end of BZip2 stream.");
+			}
+			appendBlockByte(value);
+			window = (window << 8) | value;
+			totalBits = blockLength << 3;
+
+			// Check every bit alignment ending within this byte, earliest first.
+			for (int shift = 7; shift >= 0; shift--) {
+				int magicStart;
+				long candidate;
+
+				magicStart = totalBits - shift - BZip2Block.MAGIC_BITS;
+				if (blockStarted) {
+					if (magicStart < blockStartBit + BZip2Block.MAGIC_BITS) {
+						continue;
+					}
+				} else if (magicStart != blockStartBit) {
+					continue;
+				}
+
+				candidate = (window >>> shift) & MAGIC_MASK;
+				if (candidate == BZip2Block.BLOCK_MAGIC) {
+					if (blockStarted) {
+						return takeBlock(magicStart);
+					}
+					blockStarted = true;
+
+				} else if (candidate == BZip2Block.END_OF_STREAM_MAGIC && isEndOfStream(magicStart)) {
+					BZip2Block block;
+
+					block = null;
+					if (blockStarted) {
+						block = extractBlock(magicStart);
+					}
+					finishStream(magicStart);
+
+					if (block != null) {
+						return block;
+					}
+					break;
+				}
+			}
+
+			if (inStream && !blockStarted && totalBits - blockStartBit >= BZip2Block.MAGIC_BITS) {
+				throw new IOException("BZip2 stream does not begin with a block.");
+			}
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Records that a block was incorrectly split from its predecessor at a
+	 * chance block signature and has been merged back into it. The header of
+	 * such a block contains arbitrary data in place of a CRC so it must not be
+	 * included in the stream CRC.
+	 *
+	 * @param block
+	 *            The block which was merged into its predecessor.
+	 */
+	void blockMerged(BZip2Block block) {
+		// Blocks from earlier streams no longer affect end of stream detection.
+		if (block.getStreamNumber() == streamNumber && block.getBlockNumber() < blockCount) {
+			mergedBlocks[block.getBlockNumber()] = true;
+		}
+	}
+
+
+	/**
+	 * Closes the underlying stream.
+	 *
+	 * @throws IOException
+	 *             if the stream cannot be closed.
+	 */
+	void close() throws IOException {
+		source.close();
+	}
+
+
+	private int peek(int offset) throws IOException {
+		while (inputPosition + offset >= inputLimit) {
+			int count;
+
+			if (sourceExhausted) {
+				return -1;
+			}
+
+			if (inputPosition > 0) {
+				System.arraycopy(inputBuffer, inputPosition, inputBuffer, 0, inputLimit - inputPosition);
+				inputLimit -= inputPosition;
+				inputPosition = 0;
+			}
+
+			count = source.read(inputBuffer, inputLimit, inputBuffer.length - inputLimit);
+			if (count < 0) {
+				sourceExhausted = true;
+			} else {
+				inputLimit += count;
+			}
+		}
+
+		return inputBuffer[inputPosition + offset] & 0xFF;
+	}
+
+
+	private int readByte() throws IOException {
+		int value;
+
+		if (inputPosition < inputLimit) {
+			return inputBuffer[inputPosition++] & 0xFF;
+		}
+
+		value = peek(0);
+		if (value >= 0) {
+			inputPosition++;
+		}
+
+		return value;
+	}
+
+
+	private void appendBlockByte(int value) {
+		if (blockLength >= blockBuffer.length) {
+			byte[] newBuffer;
+
+			newBuffer = new byte[blockBuffer.length * 2];
+			System.arraycopy(blockBuffer, 0, newBuffer, 0, blockLength);
+			blockBuffer = newBuffer;
+		}
+
+		blockBuffer[blockLength++] = (byte) value;
+	}
+
+
+	private boolean readStreamHeader() throws IOException {
+		int levelChar;
+
+		levelChar = peek(3);
+		if (peek(0) != 'B' || peek(1) != 'Z' || peek(2) != 'h' || levelChar < '1' || levelChar > '9') {
+			if (!streamFound) {
+				throw new IOException("Stream is not in the BZip2 format.");
+			}
+
+			// Like bzip2 itself, any trailing data after the last stream is ignored.
+			return false;
+		}
+
+		for (int i = 0; i < 4; i++) {
+			readByte();
+		}
+
+		level = levelChar - '0';
+		streamNumber++;
+		blockCount = 0;
+		blockLength = 0;
+		blockStartBit = 0;
+		blockStarted = false;
+		inStream = true;
+		streamFound = true;
+
+		return true;
+	}
+
+
+	/**
+	 * Gets a bit relative to the start of the block buffer, looking ahead into
+	 * unread input if required.
+	 */
+	private int getBit(int bitIndex) throws IOException {
+		int byteIndex;
+		int value;
+
+		byteIndex = bitIndex >>> 3;
+		if (byteIndex < blockLength) {
+			value = blockBuffer[byteIndex] & 0xFF;
+		} else {
+			value = peek(byteIndex - blockLength);
+			if (value < 0) {
+				return 0;
+			}
+		}
+
+		return (value >>> (7 - (bitIndex & 7))) & 1;
+	}
+
+
+	private int getBits(int startBit, int count) throws IOException {
+		int result;
+
+		result = 0;
+		for (int i = 0; i < count; i++) {
+			result = (result << 1) | getBit(startBit + i);
+		}
+
+		return result;
+	}
+
+
+	private boolean matchesBytes(int offset, long value, int byteCount) throws IOException {
+		for (int i = 0; i < byteCount; i++) {
+			if (peek(offset + i) != (int) ((value >>> ((byteCount - 1 - i) * 8)) & 0xFF)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	private boolean isEndOfStream(int magicStart) throws IOException {
+		int crcStart;
+		int nextStreamOffset;
+		int levelChar;
+		boolean isMatch;
+
+		crcStart = magicStart + BZip2Block.MAGIC_BITS;
+		nextStreamOffset = ((crcStart + BZip2Block.CRC_BITS + 7) >>> 3) - blockLength;
+
+		// A genuine end of stream is followed by the end of input or the next stream.
+		if (peek(nextStreamOffset) < 0) {
+			return true;
+		}
+		levelChar = peek(nextStreamOffset + 3);
+		if (matchesBytes(nextStreamOffset, 0x425A68, 3) && levelChar >= '1' && levelChar <= '9'
+				&& (matchesBytes(nextStreamOffset + 4, BZip2Block.BLOCK_MAGIC, 6)
+				|| matchesBytes(nextStreamOffset + 4, BZip2Block.END_OF_STREAM_MAGIC, 6))) {
+			return true;
+		}
+
+		// Otherwise fall back to checking the stream CRC, which allows trailing data.
+		if (blockStarted) {
+			addBlockCrc(getBits(blockStartBit + BZip2Block.MAGIC_BITS, BZip2Block.CRC_BITS));
+		}
+		isMatch = isStreamCrcMatch(getBits(crcStart, BZip2Block.CRC_BITS));
+		if (blockStarted) {
+			blockCount--;
+		}
+
+		return isMatch;
+	}
+
+
+	/**
+	 * Checks a stream CRC against the CRCs of the blocks in the stream. Blocks
+	 * are only merged after failing to decompress, so recent blocks may include
+	 * a chance split that hasn't been reported yet. If the combined CRC doesn't
+	 * match, it is recomputed with each remaining block in turn treated as
+	 * merged into its predecessor.
+	 */
+	private boolean isStreamCrcMatch(int streamCrc) {
+		int[] crcs;
+		int count;
+		int combinedCrc;
+		int precedingCrc;
+
+		crcs = new int[blockCount];
+		count = 0;
+		for (int i = 0; i < blockCount; i++) {
+			if (!mergedBlocks[i]) {
+				crcs[count++] = blockCrcs[i];
+			}
+		}
+
+		combinedCrc = 0;
+		for (int i = 0; i < count; i++) {
+			combinedCrc = Integer.rotateLeft(combinedCrc, 1) ^ crcs[i];
+		}
+		if (combinedCrc == streamCrc) {
+			return true;
+		}
+
+		// The combined CRC is the XOR of each block CRC rotated once per
+		// following block. Removing a block leaves the blocks preceding it
+		// rotated one place too far.
+		precedingCrc = 0;
+		for (int i = 0; i < count; i++) {
+			int blockTerm;
+			int followingCrc;
+
+			blockTerm = Integer.rotateLeft(crcs[i], count - 1 - i);
+			followingCrc = combinedCrc ^ precedingCrc ^ blockTerm;
+			if (i > 0 && (Integer.rotateRight(precedingCrc, 1) ^ followingCrc) == streamCrc) {
+				return true;
+			}
+			precedingCrc ^= blockTerm;
+		}
+
+		return false;
+	}
+
+
+	private void addBlockCrc(int blockCrc) {
+		if (blockCount >= blockCrcs.length) {
+			int[] newCrcs;
+			boolean[] newMergedBlocks;
+
+			newCrcs = new int[blockCrcs.length * 2];
+			System.arraycopy(blockCrcs, 0, newCrcs, 0, blockCount);
+			blockCrcs = newCrcs;
+
+			newMergedBlocks = new boolean[mergedBlocks.length * 2];
+			System.arraycopy(mergedBlocks, 0, newMergedBlocks, 0, blockCount);
+			mergedBlocks = newMergedBlocks;
+		}
+
+		blockCrcs[blockCount] = blockCrc;
+		mergedBlocks[blockCount] = false;
+		blockCount++;
+	}
+
+
+	private BZip2Block extractBlock(int endBit) {
+		BZip2Block block;
+		int bitCount;
+
+		bitCount = endBit - blockStartBit;
+		block = new BZip2Block(BZip2Block.extractBits(blockBuffer, blockStartBit, bitCount), bitCount, level,
+				streamNumber, blockCount);
+		addBlockCrc(block.getBlockCrc());
+
+		return block;
+	}
+
+
+	private BZip2Block takeBlock(int nextBlockStart) {
+		BZip2Block block;
+		int keepFrom;
+
+		block = extractBlock(nextBlockStart);
+
+		// The next block begins part way through the bytes already read.
+		keepFrom = nextBlockStart >>> 3;
+		System.arraycopy(blockBuffer, keepFrom, blockBuffer, 0, blockLength - keepFrom);
+		blockLength -= keepFrom;
+		blockStartBit = nextBlockStart & 7;
+
+		return block;
+	}
+
+
+	private void finishStream(int magicStart) throws IOException {
+		int remainingBytes;
+
+		remainingBytes = ((magicStart + BZip2Block.MAGIC_BITS + BZip2Block.CRC_BITS + 7) >>> 3) - blockLength;
+		for (int i = 0; i < remainingBytes; i++) {
+			readByte();
+		}
+
+		blockLength = 0;
+		blockStartBit = 0;
+		blockStarted = false;
+		inStream = false;
+	}
+}
@@ -0,0 +1,222 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Decompresses bzip2 data using multiple threads. The compressed input is split
+ * into its independent blocks which are decompressed on a worker pool, and the
+ * results are returned in their original order. Concatenated streams such as
+ * those produced by parallel compressors are supported.
+ *
+ * @author Brett Henderson
+ */
+public class ParallelBZip2InputStream extends InputStream {
+
+	private static final int PENDING_BLOCKS_PER_WORKER = 2;
+
+	private BZip2BlockSplitter splitter;
+	private ExecutorService executorService;
+	private int maxPendingBlocks;
+	private Queue<PendingBlock> pendingBlocks;
+	private boolean splitterExhausted;
+	private byte[] currentData;
+	private int currentPosition;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param source
+	 *            The stream providing the compressed data. It will be closed
+	 *            when this stream is closed.
+	 * @param workerCount
+	 *            The number of threads to use for decompression.
+	 */
+	public ParallelBZip2InputStream(InputStream source, int workerCount) {
+		splitter = new BZip2BlockSplitter(source);
+		executorService = Executors.newFixedThreadPool(workerCount);
+		maxPendingBlocks = workerCount * PENDING_BLOCKS_PER_WORKER;
+		pendingBlocks = new LinkedList<PendingBlock>();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read() throws IOException {
+		if (!ensureData()) {
+			return -1;
+		}
+
+		return currentData[currentPosition++] & 0xFF;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		int count;
+
+		if (length == 0) {
+			return 0;
+		}
+		if (!ensureData()) {
+			return -1;
+		}
+
+		count = Math.min(length, currentData.length - currentPosition);
+		System.arraycopy(currentData, currentPosition, buffer, offset, count);
+		currentPosition += count;
+
+		return count;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int available() {
+		if (currentData == null) {
+			return 0;
+		}
+
+		return currentData.length - currentPosition;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		executorService.shutdownNow();
+		pendingBlocks.clear();
+		currentData = null;
+
+		splitter.close();
+	}
+
+
+	private boolean ensureData() throws IOException {
+		while (currentData == null || currentPosition >= currentData.length) {
+			PendingBlock pendingBlock;
+
+			fillPendingBlocks();
+
+			pendingBlock = pendingBlocks.poll();
+			if (pendingBlock == null) {
+				currentData = null;
+				return false;
+			}
+
+			currentData = waitForBlock(pendingBlock);
+			currentPosition = 0;
+		}
+
+		return true;
+	}
+
+
+	private void fillPendingBlocks() throws IOException {
+		while (!splitterExhausted && pendingBlocks.size() < maxPendingBlocks) {
+			final BZip2Block block;
+
+			block = splitter.nextBlock();
+			if (block == null) {
+				splitterExhausted = true;
+			} else {
+				pendingBlocks.add(new PendingBlock(block, executorService.submit(new Callable<byte[]>() {
+					@Override
+					public byte[] call() throws IOException {
+						return block.decompress();
+					}
+				})));
+			}
+		}
+	}
+
+
+	private byte[] waitForBlock(PendingBlock pendingBlock) throws IOException {
+		IOException failure;
+		BZip2Block mergedBlock;
+		List<BZip2Block> absorbedBlocks;
+
+		try {
+			return pendingBlock.result.get();
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof IOException)) {
+				throw new OsmosisRuntimeException("A bzip2 worker thread failed, aborting.", e.getCause());
+			}
+			failure = (IOException) e.getCause();
+		}
+
+		// A block signature occurring by chance within the compressed data splits
+		// a block in two, neither of which can be decompressed. Rejoin the block
+		// with its successors until it decompresses or is too large to be valid.
+		mergedBlock = pendingBlock.block;
+		absorbedBlocks = new ArrayList<BZip2Block>();
+		while (true) {
+			PendingBlock nextBlock;
+			byte[] data;
+
+			fillPendingBlocks();
+
+			nextBlock = pendingBlocks.poll();
+			if (nextBlock == null || mergedBlock.isOversized()) {
+				throw new IOException("Unable to decompress BZip2 block.", failure);
+			}
+			nextBlock.result.cancel(true);
+
+			mergedBlock = BZip2Block.merge(mergedBlock, nextBlock.block);
+			absorbedBlocks.add(nextBlock.block);
+			try {
+				data = mergedBlock.decompress();
+			} catch (IOException e) {
+				failure = e;
+				continue;
+			}
+
+			// The absorbed blocks began at false signatures so their CRCs are invalid.
+			for (BZip2Block absorbedBlock : absorbedBlocks) {
+				splitter.blockMerged(absorbedBlock);
+			}
+
+			return data;
+		}
+	}
+
+
+	/**
+	 * A block submitted for decompression.
+	 */
+	private static class PendingBlock {
+		private BZip2Block block;
+		private Future<byte[]> result;
+
+
+		PendingBlock(BZip2Block block, Future<byte[]> result) {
+			this.block = block;
+			this.result = result;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+
+/**
+ * Produces bzip2 output consisting of concatenated streams, compressing each
+ * stream on a worker pool in the same way as pbzip2. The output can be read by
+ * bzip2 itself and by {@link ParallelBZip2InputStream}.
+ *
+ * @author Brett Henderson
+ */
+public class ParallelBZip2OutputStream extends ParallelCompressionOutputStream {
+
+	/**
+	 * The number of bytes in each stream. This is just under the size of the
+	 * largest bzip2 block so that each stream holds a single full size block.
+	 */
+	private static final int STREAM_SIZE = 899000;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param destination
+	 *            The stream to receive compressed data. It will be closed when
+	 *            this stream is closed.
+	 * @param workerCount
+	 *            The number of threads to use for compression.
+	 */
+	public ParallelBZip2OutputStream(OutputStream destination, int workerCount) {
+		super(destination, workerCount, STREAM_SIZE);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected byte[] compress(byte[] data, int length) throws IOException {
+		ByteArrayOutputStream result;
+		BZip2CompressorOutputStream compressorStream;
+
+		result = new ByteArrayOutputStream(length / 4 + 64);
+		compressorStream = new BZip2CompressorOutputStream(result);
+		compressorStream.write(data, 0, length);
+		compressorStream.close();
+
+		return result.toByteArray();
+	}
+}
@@ -0,0 +1,202 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Base class for output streams compressing data on a worker pool. Data is
+ * collected into fixed size chunks, each of which is compressed independently
+ * into a self-contained unit of the compression format. The compressed chunks
+ * are written to the destination in their original order, producing output
+ * consisting of many concatenated members.
+ *
+ * @author Brett Henderson
+ */
+public abstract class ParallelCompressionOutputStream extends OutputStream {
+
+	private static final int PENDING_CHUNKS_PER_WORKER = 2;
+
+	private OutputStream destination;
+	private ExecutorService executorService;
+	private int chunkSize;
+	private int maxPendingChunks;
+	private Queue<Future<byte[]>> pendingChunks;
+	private byte[] buffer;
+	private int bufferLength;
+	private boolean chunkSubmitted;
+	private boolean closed;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param destination
+	 *            The stream to receive compressed data. It will be closed when
+	 *            this stream is closed.
+	 * @param workerCount
+	 *            The number of threads to use for compression.
+	 * @param chunkSize
+	 *            The number of bytes to compress as a single unit.
+	 */
+	protected ParallelCompressionOutputStream(OutputStream destination, int workerCount, int chunkSize) {
+		this.destination = destination;
+		this.chunkSize = chunkSize;
+
+		executorService = Executors.newFixedThreadPool(workerCount);
+		maxPendingChunks = workerCount * PENDING_CHUNKS_PER_WORKER;
+		pendingChunks = new LinkedList<Future<byte[]>>();
+		buffer = new byte[chunkSize];
+	}
+
+
+	/**
+	 * Compresses a chunk of data into a self-contained unit of the compression
+	 * format. This is called concurrently from multiple worker threads.
+	 *
+	 * @param data
+	 *            The data to compress.
+	 * @param length
+	 *            The number of bytes of data to compress.
+	 * @return The compressed data.
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	protected abstract byte[] compress(byte[] data, int length) throws IOException;
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(int value) throws IOException {
+		buffer[bufferLength++] = (byte) value;
+
+		if (bufferLength == chunkSize) {
+			submitChunk();
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(byte[] data, int offset, int length) throws IOException {
+		while (length > 0) {
+			int count;
+
+			count = Math.min(length, chunkSize - bufferLength);
+			System.arraycopy(data, offset, buffer, bufferLength, count);
+			bufferLength += count;
+			offset += count;
+			length -= count;
+
+			if (bufferLength == chunkSize) {
+				submitChunk();
+			}
+		}
+	}
+
+
+	/**
+	 * Compresses and writes all buffered data. Each flush ends the current
+	 * chunk so frequent flushing reduces the compression ratio.
+	 *
+	 * @throws IOException
+	 *             if the data cannot be written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		submitChunk();
+		while (!pendingChunks.isEmpty()) {
+			writeChunk();
+		}
+
+		destination.flush();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			// The output must contain at least one member to be valid.
+			if (!chunkSubmitted) {
+				submitChunk(true);
+			}
+			flush();
+		} finally {
+			executorService.shutdownNow();
+			destination.close();
+		}
+	}
+
+
+	private void submitChunk() throws IOException {
+		submitChunk(false);
+	}
+
+
+	private void submitChunk(boolean allowEmpty) throws IOException {
+		final byte[] data;
+		final int length;
+
+		if (bufferLength == 0 && !allowEmpty) {
+			return;
+		}
+
+		// Limit the amount of data in memory by waiting for the oldest chunk.
+		while (pendingChunks.size() >= maxPendingChunks) {
+			writeChunk();
+		}
+
+		data = buffer;
+		length = bufferLength;
+		buffer = new byte[chunkSize];
+		bufferLength = 0;
+
+		pendingChunks.add(executorService.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				return compress(data, length);
+			}
+		}));
+		chunkSubmitted = true;
+	}
+
+
+	private void writeChunk() throws IOException {
+		byte[] compressed;
+
+		try {
+			compressed = pendingChunks.remove().get();
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new OsmosisRuntimeException("A compression worker thread failed, aborting.", e.getCause());
+		}
+
+		destination.write(compressed);
+	}
+}
@@ -0,0 +1,56 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Produces multi-member gzip output, compressing each member on a worker pool.
+ * The output can be read by any gzip implementation supporting concatenated
+ * members such as {@link MultiMemberGZIPInputStream}.
+ *
+ * @author Brett Henderson
+ */
+public class ParallelGZIPOutputStream extends ParallelCompressionOutputStream {
+
+	/**
+	 * The number of bytes in each member. Members are compressed independently
+	 * so this is large relative to the 32KB deflate window to keep the
+	 * compression ratio close to that of a single member.
+	 */
+	private static final int MEMBER_SIZE = 1024 * 1024;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param destination
+	 *            The stream to receive compressed data. It will be closed when
+	 *            this stream is closed.
+	 * @param workerCount
+	 *            The number of threads to use for compression.
+	 */
+	public ParallelGZIPOutputStream(OutputStream destination, int workerCount) {
+		super(destination, workerCount, MEMBER_SIZE);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected byte[] compress(byte[] data, int length) throws IOException {
+		ByteArrayOutputStream result;
+		GZIPOutputStream memberStream;
+
+		result = new ByteArrayOutputStream(length / 4 + 64);
+		memberStream = new GZIPOutputStream(result);
+		memberStream.write(data, 0, length);
+		memberStream.close();
+
+		return result.toByteArray();
+	}
+}
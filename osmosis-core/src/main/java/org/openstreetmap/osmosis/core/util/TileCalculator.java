@@ -17,6 +17,17 @@ package org.openstreetmap.osmosis.core.util;
  */
 public class TileCalculator {
 	
+	/*
+	 * Fixed precision coordinate offsets and ranges used to reproduce the double based calculation
+	 * with integer arithmetic.
+	 */
+	private static final long FIXED_LATITUDE_OFFSET = 900000000L;
+	private static final long FIXED_LATITUDE_RANGE = 1800000000L;
+	private static final long FIXED_LONGITUDE_OFFSET = 1800000000L;
+	private static final long FIXED_LONGITUDE_RANGE = 3600000000L;
+	private static final int TILE_SCALE = 65535;
+	
+	
 	/**
 	 * Calculates a tile index based upon the supplied coordinates.
 	 * 
@@ -29,10 +40,63 @@ public class TileCalculator {
 	public long calculateTile(double latitude, double longitude) {
 		int x;
 		int y;
-		long tile;
 		
-		x = (int) Math.round((longitude + 180) * 65535 / 360);
-		y = (int) Math.round((latitude + 90) * 65535 / 180);
+		x = (int) Math.round((longitude + 180) * TILE_SCALE / 360);
+		y = (int) Math.round((latitude + 90) * TILE_SCALE / 180);
+		
+		return interleave(x, y);
+	}
+	
+	
+	/**
+	 * Calculates a tile index based upon coordinates in the fixed precision form defined by
+	 * FixedPrecisionCoordinateConvertor. The calculation uses integer arithmetic but always
+	 * produces the same result as calculateTile for the equivalent double coordinates, so the two
+	 * may be mixed when building and querying tile indexes.
+	 * 
+	 * @param fixedLatitude
+	 *            The coordinate latitude in fixed precision form.
+	 * @param fixedLongitude
+	 *            The coordinate longitude in fixed precision form.
+	 * @return The tile index value.
+	 */
+	public long calculateTileFromFixed(int fixedLatitude, int fixedLongitude) {
+		long xNumerator;
+		long yNumerator;
+		
+		xNumerator = (fixedLongitude + FIXED_LONGITUDE_OFFSET) * TILE_SCALE;
+		yNumerator = (fixedLatitude + FIXED_LATITUDE_OFFSET) * TILE_SCALE;
+		
+		/*
+		 * Exact half way values are rounded according to the floating point error of the double
+		 * calculation, and negative values round differently under integer division. Both are rare
+		 * so they are delegated to the double calculation rather than being reproduced here.
+		 */
+		if (xNumerator < 0 || yNumerator < 0
+				|| isHalfWay(xNumerator, FIXED_LONGITUDE_RANGE) || isHalfWay(yNumerator, FIXED_LATITUDE_RANGE)) {
+			return calculateTile(
+					FixedPrecisionCoordinateConvertor.convertToDouble(fixedLatitude),
+					FixedPrecisionCoordinateConvertor.convertToDouble(fixedLongitude));
+		}
+		
+		return interleave(
+				(int) roundedDivide(xNumerator, FIXED_LONGITUDE_RANGE),
+				(int) roundedDivide(yNumerator, FIXED_LATITUDE_RANGE));
+	}
+	
+	
+	private static boolean isHalfWay(long numerator, long denominator) {
+		return (numerator % denominator) * 2 == denominator;
+	}
+	
+	
+	private static long roundedDivide(long numerator, long denominator) {
+		return (numerator * 2 + denominator) / (denominator * 2);
+	}
+	
+	
+	private static long interleave(int x, int y) {
+		long tile;
 		
 		tile = 0;
 		
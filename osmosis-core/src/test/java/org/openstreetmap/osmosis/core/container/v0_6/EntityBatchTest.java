@@ -0,0 +1,159 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.container.v0_6;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+
+
+/**
+ * Tests the entity batch classes.
+ */
+public class EntityBatchTest {
+
+	private NodeContainer buildNode(long id, double latitude, double longitude) {
+		return new NodeContainer(
+				new Node(new CommonEntityData(id, 1, new Date(0), OsmUser.NONE, 1), latitude, longitude));
+	}
+
+
+	private WayContainer buildWay(long id) {
+		return new WayContainer(
+				new Way(new CommonEntityData(id, 1, new Date(0), OsmUser.NONE, 1), new ArrayList<WayNode>()));
+	}
+
+
+	/**
+	 * Verifies that batches containing only nodes provide node columns.
+	 */
+	@Test
+	public void testNodeBatchCreation() {
+		List<EntityContainer> entities = new ArrayList<EntityContainer>();
+		entities.add(buildNode(10, 1.5, -2.5));
+		entities.add(buildNode(11, -45, 170));
+
+		EntityBatch batch = EntityBatch.create(entities);
+		Assert.assertTrue("A node batch was not created", batch instanceof NodeBatch);
+
+		NodeBatch nodeBatch = (NodeBatch) batch;
+		Assert.assertArrayEquals("Incorrect ids", new long[] {10, 11}, nodeBatch.getIds());
+		Assert.assertEquals("Incorrect latitude", FixedPrecisionCoordinateConvertor.convertToFixed(-45),
+				nodeBatch.getLatitudes()[1]);
+		Assert.assertEquals("Incorrect longitude", FixedPrecisionCoordinateConvertor.convertToFixed(-2.5),
+				nodeBatch.getLongitudes()[0]);
+
+		entities = new ArrayList<EntityContainer>(entities);
+		entities.add(buildWay(20));
+		Assert.assertFalse("A node batch was created for mixed entities",
+				EntityBatch.create(entities) instanceof NodeBatch);
+	}
+
+
+	/**
+	 * Verifies that batches are passed natively to batch sinks and entity by
+	 * entity to all other sinks.
+	 */
+	@Test
+	public void testSendTo() {
+		List<EntityContainer> entities = new ArrayList<EntityContainer>();
+		entities.add(buildNode(10, 1, 1));
+		entities.add(buildWay(20));
+		EntityBatch batch = EntityBatch.create(entities);
+
+		// The collector is not a batch sink so receives the entities individually.
+		EntityBatchCollector collector = new EntityBatchCollector(2);
+		batch.sendTo(collector);
+		Assert.assertEquals("Incorrect entities received", entities, collector.getBatch().getEntities());
+
+		final List<EntityBatch> receivedBatches = new ArrayList<EntityBatch>();
+		batch.sendTo(new BatchSink() {
+			@Override
+			public void initialize(Map<String, Object> metaData) {
+				// Do nothing.
+			}
+
+			@Override
+			public void process(EntityContainer entityContainer) {
+				Assert.fail("Entity was not passed as a batch");
+			}
+
+			@Override
+			public void process(EntityBatch entityBatch) {
+				receivedBatches.add(entityBatch);
+			}
+
+			@Override
+			public void complete() {
+				// Do nothing.
+			}
+
+			@Override
+			public void release() {
+				// Do nothing.
+			}
+		});
+		Assert.assertEquals("Batch was not received", 1, receivedBatches.size());
+		Assert.assertSame("Incorrect batch received", batch, receivedBatches.get(0));
+	}
+
+
+	/**
+	 * Verifies that the output collects entities into a batch only while a
+	 * batch is in progress.
+	 */
+	@Test
+	public void testOutput() {
+		EntityBatchCollector downstream = new EntityBatchCollector(3);
+		EntityBatchOutput output = new EntityBatchOutput(downstream);
+		NodeContainer node = buildNode(10, 1, 1);
+		WayContainer way = buildWay(20);
+
+		output.process(node);
+		Assert.assertEquals("Entity was not passed on", 1, downstream.getBatch().size());
+
+		List<EntityContainer> entities = new ArrayList<EntityContainer>();
+		entities.add(node);
+		entities.add(way);
+		output.processBatch(EntityBatch.create(entities), output);
+		Assert.assertEquals("Incorrect entities received", 3, downstream.getBatch().size());
+		Assert.assertSame("Incorrect entity received", way, downstream.getBatch().getEntities().get(2));
+	}
+
+
+	/**
+	 * Verifies that the output rejects a batch starting within another batch.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testOutputNestedBatch() {
+		EntityBatchOutput output = new EntityBatchOutput(new EntityBatchCollector(1));
+
+		output.beginBatch(1);
+		output.beginBatch(1);
+	}
+
+
+	/**
+	 * Verifies that node batch arrays are only built when requested.
+	 */
+	@Test
+	public void testNodeBatchLazyArrays() {
+		List<EntityContainer> entities = new ArrayList<EntityContainer>();
+		entities.add(buildNode(10, 1.5, -2.5));
+
+		NodeBatch nodeBatch = new NodeBatch(entities);
+		Assert.assertSame("Arrays were rebuilt", nodeBatch.getIds(), nodeBatch.getIds());
+		Assert.assertEquals("Incorrect id", 10, nodeBatch.getIds()[0]);
+	}
+}
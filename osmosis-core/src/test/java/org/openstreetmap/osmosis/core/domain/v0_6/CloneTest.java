@@ -7,6 +7,7 @@ import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openstreetmap.osmosis.core.domain.common.SimpleTimestampContainer;
 
 
 /**
@@ -38,6 +39,28 @@ public class CloneTest {
 	}
 
 
+	/**
+	 * Shared read-only node cloning test.
+	 */
+	@Test
+	public void testSharedNodeClone() {
+		// Build the original entity around shared read-only data.
+		TagCollection tags = new TagCollectionImpl();
+		tags.add(new Tag("myKey", "myValue"));
+		CommonEntityData entityData = CommonEntityData.createReadOnly(
+				1, 2, new SimpleTimestampContainer(new Date(0)), OsmUser.NONE, 3, tags);
+		Node entity = Node.createReadOnly(entityData, 4, 5);
+
+		Assert.assertTrue("Entity is not read-only", entity.isReadOnly());
+
+		// Get a cloned entity and make sure it can be updated independently.
+		Node clonedEntity = entity.getWriteableInstance();
+		Assert.assertNotSame("Entity was not cloned", entity, clonedEntity);
+		clonedEntity.getTags().add(new Tag("otherKey", "otherValue"));
+		Assert.assertEquals("Shared tags were modified", 1, entity.getTags().size());
+	}
+
+
 	/**
 	 * Way cloning test.
 	 */
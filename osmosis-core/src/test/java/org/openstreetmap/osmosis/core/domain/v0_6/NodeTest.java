@@ -0,0 +1,58 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.domain.v0_6;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the node coordinate handling.
+ * 
+ * @author Brett Henderson
+ */
+public class NodeTest {
+	
+	private CommonEntityData buildEntityData() {
+		return new CommonEntityData(1, 2, new Date(0), OsmUser.NONE, 3);
+	}
+	
+	
+	/**
+	 * Verifies that fixed precision and double coordinates are interchangeable.
+	 */
+	@Test
+	public void testFixedPrecisionCoordinates() {
+		Node doubleNode = new Node(buildEntityData(), -33.8688197, 151.2092955);
+		Node fixedNode = Node.createFixedPrecision(buildEntityData(), -338688197, 1512092955);
+		
+		Assert.assertEquals("Incorrect fixed latitude", -338688197, doubleNode.getFixedLatitude());
+		Assert.assertEquals("Incorrect fixed longitude", 1512092955, doubleNode.getFixedLongitude());
+		Assert.assertEquals("Incorrect latitude", -33.8688197, fixedNode.getLatitude(), 0);
+		Assert.assertEquals("Incorrect longitude", 151.2092955, fixedNode.getLongitude(), 0);
+		Assert.assertEquals("Nodes are not equal", 0, doubleNode.compareTo(fixedNode));
+	}
+	
+	
+	/**
+	 * Verifies that coordinates beyond fixed precision are returned unchanged.
+	 */
+	@Test
+	public void testExactCoordinates() {
+		Node node = new Node(buildEntityData(), 10.123456789, -0.0);
+		Node roundedNode = new Node(buildEntityData(), 10.1234568, 0);
+		
+		Assert.assertEquals("Latitude was rounded", 10.123456789, node.getLatitude(), 0);
+		Assert.assertEquals("Incorrect fixed latitude", 101234568, node.getFixedLatitude());
+		Assert.assertTrue("Negative zero was not retained", 1 / node.getLongitude() < 0);
+		Assert.assertTrue("Nodes compared equal", node.compareTo(roundedNode) < 0);
+		
+		node.setLatitude(20);
+		Assert.assertEquals("Latitude was not updated", 20, node.getLatitude(), 0);
+		Assert.assertTrue("Longitude was not retained", 1 / node.getLongitude() < 0);
+		
+		Assert.assertEquals("Clone coordinates differ", 0,
+				node.getWriteableInstance().compareTo(node));
+	}
+}
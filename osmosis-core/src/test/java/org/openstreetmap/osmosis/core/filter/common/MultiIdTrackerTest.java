@@ -0,0 +1,77 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the multiple id set tracker.
+ */
+public class MultiIdTrackerTest {
+
+	/**
+	 * Verifies that ids are tracked independently for each set and in the union of all sets.
+	 */
+	@Test
+	public void testSetAndGet() {
+		MultiIdTracker idTracker;
+
+		idTracker = new MultiIdTracker(IdTrackerType.Roaring, 3);
+		idTracker.set(0, 10);
+		idTracker.set(2, -10);
+		idTracker.set(2, 10);
+
+		assertTrue("Id not set in first tracker.", idTracker.get(0, 10));
+		assertFalse("Id set in wrong tracker.", idTracker.get(1, 10));
+		assertTrue("Negative id not set.", idTracker.get(2, -10));
+		assertFalse("Negative id set in wrong tracker.", idTracker.get(0, -10));
+		assertTrue("Id not found in union.", idTracker.getAny(-10));
+		assertFalse("Unset id found in union.", idTracker.getAny(11));
+	}
+
+
+	/**
+	 * Verifies that all ids of another tracker can be merged in.
+	 */
+	@Test
+	public void testSetAll() {
+		MultiIdTracker idTracker;
+		MultiIdTracker otherTracker;
+
+		idTracker = new MultiIdTracker(IdTrackerType.Dynamic, 2);
+		otherTracker = new MultiIdTracker(IdTrackerType.Dynamic, 2);
+		idTracker.set(0, 1);
+		otherTracker.set(1, 100000);
+
+		idTracker.setAll(otherTracker);
+
+		assertTrue("Original id lost.", idTracker.get(0, 1));
+		assertTrue("Merged id not set.", idTracker.get(1, 100000));
+		assertFalse("Merged id set in wrong tracker.", idTracker.get(0, 100000));
+		assertTrue("Merged id not found in union.", idTracker.getAny(100000));
+	}
+
+
+	/**
+	 * Verifies that a single id set is also used as the union.
+	 */
+	@Test
+	public void testSingleSet() {
+		MultiIdTracker idTracker;
+		MultiIdTracker otherTracker;
+
+		idTracker = new MultiIdTracker(IdTrackerType.Roaring, 1);
+		otherTracker = new MultiIdTracker(IdTrackerType.Roaring, 1);
+		idTracker.set(0, 5);
+		otherTracker.set(0, 7);
+
+		idTracker.setAll(otherTracker);
+
+		assertTrue("Id not found in union.", idTracker.getAny(5));
+		assertTrue("Merged id not found in union.", idTracker.getAny(7));
+		assertFalse("Unset id found in union.", idTracker.getAny(6));
+	}
+}
@@ -0,0 +1,202 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the roaring id tracker implementation.
+ */
+public class RoaringIdTrackerTest extends IdTrackerBase {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected IdTracker getImplementation() {
+		return new RoaringIdTracker();
+	}
+	
+	
+	private void checkContents(TreeSet<Long> expected, RoaringIdTracker idTracker) {
+		LongIterator ids;
+		
+		assertEquals("Incorrect size.", expected.size(), idTracker.size());
+		
+		ids = idTracker.longIterator();
+		for (long expectedId : expected) {
+			assertTrue("Iterator ended early.", ids.hasNext());
+			assertEquals("Incorrect id returned.", expectedId, ids.next());
+			assertTrue("Id is not set.", idTracker.get(expectedId));
+		}
+		assertFalse("Iterator returned too many ids.", ids.hasNext());
+	}
+	
+	
+	/**
+	 * Verifies that randomly set ids spanning negative and positive ranges are
+	 * returned in ascending order.
+	 */
+	@Test
+	public final void testRandomIds() {
+		RoaringIdTracker idTracker;
+		TreeSet<Long> expected;
+		Random random;
+		
+		idTracker = new RoaringIdTracker();
+		expected = new TreeSet<Long>();
+		random = new Random(1);
+		for (int i = 0; i < 20000; i++) {
+			long id = random.nextInt(2000000) - 1000000;
+			
+			idTracker.set(id);
+			expected.add(id);
+		}
+		idTracker.set(Long.MAX_VALUE);
+		expected.add(Long.MAX_VALUE);
+		idTracker.set(Long.MIN_VALUE);
+		expected.add(Long.MIN_VALUE);
+		
+		checkContents(expected, idTracker);
+		assertFalse("Unset id is reported as set.", idTracker.get(1000001));
+	}
+	
+	
+	/**
+	 * Verifies that containers convert correctly as a range moves between sparse,
+	 * dense and consecutive values.
+	 */
+	@Test
+	public final void testContainerConversion() {
+		RoaringIdTracker idTracker;
+		TreeSet<Long> expected;
+		long sparseMemory;
+		
+		idTracker = new RoaringIdTracker();
+		expected = new TreeSet<Long>();
+		
+		// Every third id overflows an array container into a bitmap.
+		for (long id = 0; id < 65536; id += 3) {
+			idTracker.set(id);
+			expected.add(id);
+		}
+		checkContents(expected, idTracker);
+		sparseMemory = idTracker.getMemoryUsage();
+		
+		// Filling the gaps turns the bitmap into a single run.
+		for (long id = 0; id < 65536; id++) {
+			idTracker.set(id);
+			expected.add(id);
+		}
+		checkContents(expected, idTracker);
+		assertTrue("Full range should be stored as a run.", idTracker.getMemoryUsage() < sparseMemory);
+		
+		// Consecutive runs in the next range.
+		for (long id = 70000; id < 80000; id++) {
+			idTracker.set(id);
+			expected.add(id);
+		}
+		for (long id = 90000; id > 85000; id--) {
+			idTracker.set(id);
+			expected.add(id);
+		}
+		idTracker.set(85000);
+		expected.add(85000L);
+		idTracker.set(82000);
+		expected.add(82000L);
+		idTracker.optimize();
+		checkContents(expected, idTracker);
+		
+		// Many short runs force a run container back to a bitmap.
+		for (long id = 90002; id < 131072; id += 2) {
+			idTracker.set(id);
+			expected.add(id);
+		}
+		checkContents(expected, idTracker);
+	}
+	
+	
+	/**
+	 * Verifies the bulk union and intersection operations.
+	 */
+	@Test
+	public final void testSetOperations() {
+		RoaringIdTracker first;
+		RoaringIdTracker second;
+		TreeSet<Long> union;
+		TreeSet<Long> intersection;
+		
+		first = new RoaringIdTracker();
+		second = new RoaringIdTracker();
+		union = new TreeSet<Long>();
+		intersection = new TreeSet<Long>();
+		for (long id = -200000; id < 200000; id += 7) {
+			first.set(id);
+			union.add(id);
+			if (id % 5 == 0) {
+				intersection.add(id);
+			}
+		}
+		for (long id = -100000; id < 400000; id += 5) {
+			second.set(id);
+			union.add(id);
+		}
+		for (long id = 300000; id < 300100; id++) {
+			second.set(id);
+			union.add(id);
+		}
+		// Only the overlapping portion of the second tracker is common.
+		for (long id = -200000; id < -100000; id += 35) {
+			intersection.remove(id);
+		}
+		
+		RoaringIdTracker unionTracker = new RoaringIdTracker();
+		unionTracker.setAll(first);
+		unionTracker.setAll(second);
+		checkContents(union, unionTracker);
+		
+		first.and(second);
+		checkContents(intersection, first);
+		
+		// The source of the union must not be affected by later changes.
+		unionTracker.set(1000001);
+		assertFalse("Union shares containers with its source.", second.get(1000001));
+	}
+	
+	
+	/**
+	 * Verifies that ids set during iteration are returned if they lie beyond
+	 * the current position.
+	 */
+	@Test
+	public final void testSetDuringIteration() {
+		RoaringIdTracker idTracker;
+		LongIterator ids;
+		int count;
+		
+		idTracker = new RoaringIdTracker();
+		idTracker.set(1);
+		
+		count = 0;
+		ids = idTracker.longIterator();
+		while (ids.hasNext()) {
+			long id = ids.next();
+			
+			count++;
+			if (id < 1000000) {
+				idTracker.set(id * 10);
+				idTracker.set(-id);
+			}
+		}
+		
+		assertEquals("Incorrect number of ids iterated.", 7, count);
+		assertEquals("Incorrect number of ids set.", 13, idTracker.size());
+	}
+}
@@ -15,23 +15,8 @@ import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactor
  */
 public class FileBasedSortTest {
 
-	/**
-	 * Stores a large number of items into the file-based sorter and verifies
-	 * that they are returned in the correct sequence. It exceeds the in-memory
-	 * sorting limit, but doesn't trigger additional persistence at sub-levels
-	 * in the merge sort to minimise file handles as this would take too much
-	 * time for a unit test. The item count must be greater than
-	 * (MAX_MEMORY_SORT_COUNT * (MAX_MERGE_SOURCE_COUNT ^
-	 * MAX_MEMORY_SORT_DEPTH)) to trigger intermediate persistence.
-	 */
-	@Test
-	public void test() {
-		final long itemCount = 10000;
-
-		// Create a new file-based sorter for the TestStoreable type.
-		SingleClassObjectSerializationFactory objectFactory = new SingleClassObjectSerializationFactory(
-				SampleStoreable.class);
-		Comparator<SampleStoreable> comparator = new Comparator<SampleStoreable>() {
+	private Comparator<SampleStoreable> buildComparator() {
+		return new Comparator<SampleStoreable>() {
 			@Override
 			public int compare(SampleStoreable o1, SampleStoreable o2) {
 				long value1 = o1.getValue();
@@ -46,9 +31,10 @@ public class FileBasedSortTest {
 				}
 			}
 		};
-		FileBasedSort<SampleStoreable> fileBasedSort =
-				new FileBasedSort<SampleStoreable>(objectFactory, comparator, true);
+	}
+
 
+	private void checkSort(FileBasedSort<SampleStoreable> fileBasedSort, long itemCount) {
 		try {
 			// Add randomly generated test values into the sorter.
 			Random random = new Random();
@@ -61,11 +47,14 @@ public class FileBasedSortTest {
 			ReleasableIterator<SampleStoreable> resultIterator = fileBasedSort.iterate();
 			try {
 				int lastValue = Integer.MIN_VALUE;
+				long resultCount = 0;
 				while (resultIterator.hasNext()) {
 					int currentValue = resultIterator.next().getValue();
 					Assert.assertTrue(currentValue >= lastValue);
 					lastValue = currentValue;
+					resultCount++;
 				}
+				Assert.assertEquals("Incorrect number of items returned", itemCount, resultCount);
 			} finally {
 				resultIterator.release();
 			}
@@ -74,4 +63,34 @@ public class FileBasedSortTest {
 			fileBasedSort.release();
 		}
 	}
+
+
+	/**
+	 * Stores items into the file-based sorter using the default settings and
+	 * verifies that they are returned in the correct sequence. The items fit
+	 * within the default memory size so are sorted in memory.
+	 */
+	@Test
+	public void test() {
+		SingleClassObjectSerializationFactory objectFactory = new SingleClassObjectSerializationFactory(
+				SampleStoreable.class);
+
+		checkSort(new FileBasedSort<SampleStoreable>(objectFactory, buildComparator(), true), 10000);
+	}
+
+
+	/**
+	 * Stores a large number of items into a file-based sorter with a small
+	 * memory size and multiple workers, and verifies that they are returned in
+	 * the correct sequence. Enough runs are written to exceed the maximum
+	 * number of sources merged in a single pass, forcing intermediate merges.
+	 */
+	@Test
+	public void testMultipleRuns() {
+		SingleClassObjectSerializationFactory objectFactory = new SingleClassObjectSerializationFactory(
+				SampleStoreable.class);
+
+		// A 1MB budget shared between 4 buffers gives runs of 1024 items.
+		checkSort(new FileBasedSort<SampleStoreable>(objectFactory, buildComparator(), true, 1, 3), 600000);
+	}
 }
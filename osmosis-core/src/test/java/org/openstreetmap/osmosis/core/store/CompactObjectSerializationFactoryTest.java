@@ -0,0 +1,170 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+
+
+/**
+ * Tests the compact object serialisation implementation.
+ */
+public class CompactObjectSerializationFactoryTest {
+	
+	private static final int ENTITY_COUNT = 20000;
+	
+	
+	private String buildString(Random random, int maxLength) {
+		StringBuilder builder;
+		int length;
+		
+		builder = new StringBuilder();
+		length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			builder.append((char) random.nextInt(Character.MAX_VALUE + 1));
+		}
+		
+		return builder.toString();
+	}
+	
+	
+	private List<EntityContainer> buildEntities() {
+		Random random;
+		List<EntityContainer> entities;
+		long[] extremeIds = new long[] {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1};
+		
+		random = new Random(7);
+		entities = new ArrayList<EntityContainer>();
+		for (int i = 0; i < ENTITY_COUNT; i++) {
+			List<Tag> tags;
+			CommonEntityData entityData;
+			long id;
+			
+			// Mostly sequential ids with occasional jumps to extreme values.
+			if (i % 1000 < extremeIds.length) {
+				id = extremeIds[i % 1000];
+			} else {
+				id = i * 3L;
+			}
+			
+			// Use a mixture of common and unique strings, including strings
+			// containing unpaired surrogates.
+			tags = new ArrayList<Tag>();
+			for (int j = random.nextInt(4); j > 0; j--) {
+				tags.add(new Tag("key" + random.nextInt(5), buildString(random, 100)));
+			}
+			tags.add(new Tag("unique", "value" + i));
+			
+			entityData = new CommonEntityData(id, random.nextInt(), new Date(random.nextLong() >> 20),
+					new OsmUser(random.nextInt(50), "user" + random.nextInt(50)), random.nextInt(), tags);
+			
+			// Nodes store coordinates with fixed precision so generate them
+			// with that precision.
+			if (random.nextBoolean()) {
+				entities.add(new NodeContainer(new Node(entityData,
+						FixedPrecisionCoordinateConvertor.convertToDouble(random.nextInt(1800000000) - 900000000),
+						FixedPrecisionCoordinateConvertor.convertToDouble(random.nextInt()))));
+			} else {
+				List<WayNode> wayNodes;
+				
+				wayNodes = new ArrayList<WayNode>();
+				for (int j = random.nextInt(20); j > 0; j--) {
+					wayNodes.add(new WayNode(random.nextLong()));
+				}
+				entities.add(new WayContainer(new Way(entityData, wayNodes)));
+			}
+		}
+		
+		return entities;
+	}
+	
+	
+	private void checkEntities(List<EntityContainer> expected, ReleasableIterator<EntityContainer> actual) {
+		try {
+			for (EntityContainer expectedContainer : expected) {
+				Assert.assertTrue("Entities are missing.", actual.hasNext());
+				Assert.assertEquals("Entity is incorrect.", expectedContainer.getEntity(), actual.next().getEntity());
+			}
+			Assert.assertFalse("Too many entities were returned.", actual.hasNext());
+		} finally {
+			actual.release();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that entities are read back unchanged from a simple object store.
+	 */
+	@Test
+	public void testSimpleObjectStore() {
+		List<EntityContainer> entities;
+		SimpleObjectStore<EntityContainer> store;
+		
+		entities = buildEntities();
+		store = new SimpleObjectStore<EntityContainer>(
+				new CompactObjectSerializationFactory(new GenericObjectSerializationFactory()), "cost", false);
+		try {
+			for (EntityContainer entity : entities) {
+				store.add(entity);
+			}
+			
+			// The store must be readable more than once.
+			checkEntities(entities, store.iterate());
+			checkEntities(entities, store.iterate());
+		} finally {
+			store.release();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that each chunk of a chunked object store can be read
+	 * independently.
+	 */
+	@Test
+	public void testChunkedObjectStore() {
+		List<EntityContainer> entities;
+		ChunkedObjectStore<EntityContainer> store;
+		int chunkSize;
+		
+		entities = buildEntities();
+		chunkSize = 777;
+		store = new ChunkedObjectStore<EntityContainer>(
+				new CompactObjectSerializationFactory(new GenericObjectSerializationFactory()), "cost", "cosi", true);
+		try {
+			for (int i = 0; i < entities.size(); i++) {
+				store.add(entities.get(i));
+				if ((i + 1) % chunkSize == 0) {
+					store.closeChunk();
+				}
+			}
+			store.closeChunk();
+			
+			// Read the chunks in reverse order to ensure no state is carried
+			// between them.
+			for (long chunk = store.getChunkCount() - 1; chunk >= 0; chunk--) {
+				int begin = (int) chunk * chunkSize;
+				int end = Math.min(begin + chunkSize, entities.size());
+				
+				checkEntities(entities.subList(begin, end), store.iterate(chunk));
+			}
+		} finally {
+			store.release();
+		}
+	}
+}
@@ -0,0 +1,137 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the index store implementation.
+ */
+public class IndexStoreTest {
+	
+	private static final int ELEMENT_COUNT = 10000;
+	
+	
+	private <K> boolean contains(IndexStoreReader<K, ?> reader, K key) {
+		boolean found;
+		
+		try {
+			reader.get(key);
+			found = true;
+		} catch (NoSuchIndexElementException e) {
+			found = false;
+		}
+		
+		return found;
+	}
+	
+	
+	/**
+	 * Verifies that long keyed elements written out of order can be retrieved.
+	 */
+	@Test
+	public void testLongIndex() {
+		IndexStore<Long, LongLongIndexElement> store;
+		List<Long> ids;
+		
+		// Use every second id so that missing keys can be searched for.
+		ids = new ArrayList<Long>();
+		for (long i = -ELEMENT_COUNT; i < ELEMENT_COUNT; i += 2) {
+			ids.add(i);
+		}
+		Collections.shuffle(ids, new Random(3));
+		
+		store = new IndexStore<Long, LongLongIndexElement>(
+				LongLongIndexElement.class, new ComparableComparator<Long>(), "idxtest");
+		try {
+			IndexStoreReader<Long, LongLongIndexElement> reader;
+			Iterator<LongLongIndexElement> range;
+			long expectedId;
+			
+			for (Long id : ids) {
+				store.write(new LongLongIndexElement(id, id * 10));
+			}
+			store.complete();
+			
+			reader = store.createReader();
+			try {
+				for (long i = -ELEMENT_COUNT; i < ELEMENT_COUNT; i += 2) {
+					Assert.assertEquals("Incorrect value.", i * 10, reader.get(i).getValue());
+				}
+				
+				for (long missingId : new long[] {-ELEMENT_COUNT - 1, -1, 1, ELEMENT_COUNT}) {
+					Assert.assertFalse("Element " + missingId + " should not exist.", contains(reader, missingId));
+				}
+				
+				range = reader.getRange(-5L, 5L);
+				expectedId = -4;
+				while (range.hasNext()) {
+					Assert.assertEquals("Incorrect range element.", expectedId, range.next().getId());
+					expectedId += 2;
+				}
+				Assert.assertEquals("Incorrect range length.", 6, expectedId);
+				
+				Assert.assertFalse("Range should be empty.",
+						reader.getRange((long) ELEMENT_COUNT, Long.MAX_VALUE).hasNext());
+			} finally {
+				reader.release();
+			}
+		} finally {
+			store.release();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that integer keyed elements can be retrieved using an unsigned
+	 * ordering.
+	 */
+	@Test
+	public void testUnsignedIntegerIndex() {
+		IndexStore<Integer, IntegerLongIndexElement> store;
+		int[] ids = new int[] {-1, Integer.MIN_VALUE, 0, 5, Integer.MAX_VALUE, -7};
+		
+		store = new IndexStore<Integer, IntegerLongIndexElement>(
+				IntegerLongIndexElement.class, new UnsignedIntegerComparator(), "idxtest");
+		try {
+			IndexStoreReader<Integer, IntegerLongIndexElement> reader;
+			Iterator<IntegerLongIndexElement> range;
+			List<Integer> rangeIds;
+			
+			for (int id : ids) {
+				store.write(new IntegerLongIndexElement(id, id + 1L));
+			}
+			store.complete();
+			
+			reader = store.createReader();
+			try {
+				for (int id : ids) {
+					Assert.assertEquals("Incorrect value.", id + 1L, reader.get(id).getValue());
+				}
+				
+				Assert.assertFalse("Element should not exist.", contains(reader, 6));
+				
+				// Negative numbers sort after positive numbers when unsigned.
+				rangeIds = new ArrayList<Integer>();
+				range = reader.getRange(Integer.MAX_VALUE, -2);
+				while (range.hasNext()) {
+					rangeIds.add(range.next().getId());
+				}
+				Assert.assertEquals(
+						"Incorrect range.", Arrays.asList(Integer.MAX_VALUE, Integer.MIN_VALUE, -7), rangeIds);
+			} finally {
+				reader.release();
+			}
+		} finally {
+			store.release();
+		}
+	}
+}
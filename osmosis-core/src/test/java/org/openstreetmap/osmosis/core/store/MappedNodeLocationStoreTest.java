@@ -0,0 +1,54 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link MappedNodeLocationStore} class.
+ */
+public class MappedNodeLocationStoreTest {
+
+	/**
+	 * Verifies that locations are returned in packed form, including locations
+	 * at zero and nodes spread across distant segments of the file.
+	 */
+	@Test
+	public void testPackedLocations() {
+		MappedNodeLocationStore store = new MappedNodeLocationStore();
+
+		try {
+			Assert.assertFalse("Empty store returned a location", MappedNodeLocationStore.isValid(
+					store.getPackedLocation(5)));
+
+			store.addLocation(0, 0, 0);
+			store.addLocation(1, -180, 90);
+			store.addLocation(5000000000L, 151.2093, -33.8688);
+
+			long packedLocation = store.getPackedLocation(0);
+			Assert.assertTrue("Zero location is not valid", MappedNodeLocationStore.isValid(packedLocation));
+			Assert.assertEquals("Incorrect longitude", 0, MappedNodeLocationStore.getLongitude(packedLocation), 0);
+			Assert.assertEquals("Incorrect latitude", 0, MappedNodeLocationStore.getLatitude(packedLocation), 0);
+
+			packedLocation = store.getPackedLocation(1);
+			Assert.assertEquals("Incorrect longitude", -180, MappedNodeLocationStore.getLongitude(packedLocation), 0);
+			Assert.assertEquals("Incorrect latitude", 90, MappedNodeLocationStore.getLatitude(packedLocation), 0);
+
+			packedLocation = store.getPackedLocation(5000000000L);
+			Assert.assertEquals("Incorrect longitude", 151.2093,
+					MappedNodeLocationStore.getLongitude(packedLocation), 0.0000001);
+			Assert.assertEquals("Incorrect latitude", -33.8688,
+					MappedNodeLocationStore.getLatitude(packedLocation), 0.0000001);
+
+			Assert.assertFalse("Unwritten node returned a location", MappedNodeLocationStore.isValid(
+					store.getPackedLocation(2)));
+			Assert.assertFalse("Unwritten segment returned a location", MappedNodeLocationStore.isValid(
+					store.getPackedLocation(100000000L)));
+			Assert.assertFalse("Negative id returned a location", MappedNodeLocationStore.isValid(
+					store.getPackedLocation(-1)));
+		} finally {
+			store.release();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Tests the ring buffer postbox implementation.
+ */
+public class RingDataPostboxTest {
+
+	private static final int OBJECT_COUNT = 100000;
+
+
+	/**
+	 * Runs the input side of a postbox on a separate thread.
+	 */
+	private static class Producer extends Thread {
+		private Postbox<Integer> postbox;
+		private int count;
+		private boolean complete;
+		private volatile Throwable error;
+
+
+		Producer(Postbox<Integer> postbox, int count, boolean complete) {
+			this.postbox = postbox;
+			this.count = count;
+			this.complete = complete;
+		}
+
+
+		@Override
+		public void run() {
+			try {
+				postbox.initialize(Collections.<String, Object>emptyMap());
+				for (int i = 0; i < count; i++) {
+					postbox.put(i);
+				}
+				if (complete) {
+					postbox.complete();
+				}
+			} catch (Throwable e) {
+				error = e;
+			} finally {
+				postbox.release();
+			}
+		}
+	}
+
+
+	/**
+	 * Verifies that all objects are passed between threads in order, and that
+	 * the postbox can be re-used afterwards.
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted.
+	 */
+	@Test
+	public void testTransfer() throws InterruptedException {
+		Postbox<Integer> postbox = new RingDataPostbox<Integer>(64);
+
+		for (int run = 0; run < 2; run++) {
+			Producer producer = new Producer(postbox, OBJECT_COUNT, true);
+			producer.start();
+
+			List<Integer> received = new ArrayList<Integer>();
+			try {
+				postbox.outputInitialize();
+				while (postbox.hasNext()) {
+					received.add(postbox.getNext());
+					postbox.drainTo(received);
+				}
+				postbox.outputComplete();
+			} finally {
+				postbox.outputRelease();
+			}
+			producer.join();
+
+			Assert.assertNull("Producer failed", producer.error);
+			Assert.assertEquals("Incorrect number of objects received", OBJECT_COUNT, received.size());
+			for (int i = 0; i < OBJECT_COUNT; i++) {
+				Assert.assertEquals("Objects received out of order", i, received.get(i).intValue());
+			}
+		}
+	}
+
+
+	/**
+	 * Verifies that an input failure is reported to the output thread.
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted.
+	 */
+	@Test
+	public void testInputError() throws InterruptedException {
+		Postbox<Integer> postbox = new RingDataPostbox<Integer>(64);
+		Producer producer = new Producer(postbox, 10, false);
+		producer.start();
+
+		boolean failed = false;
+		try {
+			postbox.outputInitialize();
+			while (postbox.hasNext()) {
+				postbox.getNext();
+			}
+		} catch (OsmosisRuntimeException e) {
+			failed = true;
+		} finally {
+			postbox.outputRelease();
+		}
+		producer.join();
+
+		Assert.assertTrue("The input error was not reported", failed);
+	}
+
+
+	/**
+	 * Verifies that an output failure is reported to the input thread.
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted.
+	 */
+	@Test
+	public void testOutputError() throws InterruptedException {
+		Postbox<Integer> postbox = new RingDataPostbox<Integer>(64);
+		Producer producer = new Producer(postbox, OBJECT_COUNT, true);
+		producer.start();
+
+		// Consume a single object then abort.
+		try {
+			postbox.outputInitialize();
+			postbox.getNext();
+		} finally {
+			postbox.outputRelease();
+		}
+		producer.join();
+
+		Assert.assertTrue("The output error was not reported", producer.error instanceof OsmosisRuntimeException);
+	}
+}
@@ -0,0 +1,170 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the parallel bzip2 input stream.
+ * 
+ * @author Brett Henderson
+ */
+public class ParallelBZip2InputStreamTest {
+	
+	private byte[] buildData(long seed, int length) {
+		Random random = new Random(seed);
+		byte[] data = new byte[length];
+		
+		// Limit the alphabet so the data compresses, with runs to exercise run length encoding.
+		for (int i = 0; i < length; i++) {
+			if (random.nextInt(20) == 0) {
+				int runLength = Math.min(random.nextInt(300), length - i);
+				Arrays.fill(data, i, i + runLength, (byte) 'x');
+				i += runLength;
+			} else {
+				data[i] = (byte) ('a' + random.nextInt(16));
+			}
+		}
+		
+		return data;
+	}
+	
+	
+	private byte[] buildSignatureData(long seed, int length) {
+		// bzip2 blocks list the byte values in use as a bit map following the
+		// block header. These values produce a map whose bits spell out the
+		// 48-bit block signature, so every block contains the signature within
+		// its data. The map starts with a 16-bit mask of the used 16 byte
+		// ranges (0x2x, 0x3x, 0x7x, 0x9x and 0xFx), followed by the values used
+		// within the first two ranges.
+		byte[] alphabet = new byte[] {
+			0x21, 0x23, 0x24, 0x27, 0x2A, 0x2D, 0x2E,
+			0x31, 0x33, 0x36, 0x37, 0x39, 0x3B, 0x3C, 0x3F,
+			0x70, (byte) 0x90, (byte) 0xF0};
+		Random random = new Random(seed);
+		byte[] data = new byte[length];
+		
+		// Repeated bytes are avoided because the run length encoding of four or
+		// more would add its run length values to the map.
+		for (int i = 0; i < length; i++) {
+			do {
+				data[i] = alphabet[random.nextInt(alphabet.length)];
+			} while (i > 0 && data[i] == data[i - 1]);
+		}
+		
+		return data;
+	}
+	
+	
+	private void compress(ByteArrayOutputStream destination, byte[] data) throws IOException {
+		// The smallest block size ensures the data spans many blocks.
+		BZip2CompressorOutputStream out = new BZip2CompressorOutputStream(destination, 1);
+		out.write(data);
+		out.close();
+	}
+	
+	
+	private byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int count;
+		
+		try {
+			while ((count = in.read(buffer, 0, buffer.length)) >= 0) {
+				result.write(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+		}
+		
+		return result.toByteArray();
+	}
+	
+	
+	/**
+	 * Verifies that a multi-block stream is decompressed in order.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	@Test
+	public void testMultipleBlocks() throws IOException {
+		byte[] data = buildData(1, 1000000);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		compress(compressed, data);
+		
+		byte[] result = readAll(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed.toByteArray()), 3));
+		
+		Assert.assertArrayEquals("Decompressed data differs", data, result);
+	}
+	
+	
+	/**
+	 * Verifies that concatenated streams, including an empty one, are all decompressed.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	@Test
+	public void testConcatenatedStreams() throws IOException {
+		byte[] first = buildData(2, 250000);
+		byte[] second = buildData(3, 10);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		compress(compressed, first);
+		compress(compressed, new byte[0]);
+		compress(compressed, second);
+		
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(first);
+		expected.write(second);
+		
+		byte[] result = readAll(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed.toByteArray()), 2));
+		
+		Assert.assertArrayEquals("Decompressed data differs", expected.toByteArray(), result);
+	}
+	
+	
+	/**
+	 * Verifies that blocks containing the block signature within their data are
+	 * rejoined after being split at the signature. Trailing data after the
+	 * stream means the end of stream can only be recognised by its CRC, which
+	 * must not include the false blocks.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	@Test
+	public void testChanceBlockSignature() throws IOException {
+		// Two blocks are split. With a single worker the first is merged before
+		// the end of stream is reached, and the second is still pending.
+		byte[] data = buildSignatureData(4, 150000);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		compress(compressed, data);
+		compressed.write("trailing data".getBytes("UTF-8"));
+		
+		byte[] result = readAll(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed.toByteArray()), 1));
+		
+		Assert.assertArrayEquals("Decompressed data differs", data, result);
+	}
+	
+	
+	/**
+	 * Verifies that input which isn't bzip2 data is rejected.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	@Test(expected = IOException.class)
+	public void testInvalidInput() throws IOException {
+		readAll(new ParallelBZip2InputStream(new ByteArrayInputStream("<osm/>".getBytes("UTF-8")), 2));
+	}
+}
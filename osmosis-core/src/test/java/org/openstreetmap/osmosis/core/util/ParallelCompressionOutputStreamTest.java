@@ -0,0 +1,113 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the parallel compression output streams.
+ * 
+ * @author Brett Henderson
+ */
+public class ParallelCompressionOutputStreamTest {
+	
+	private byte[] buildData(int length) {
+		Random random = new Random(length);
+		byte[] data = new byte[length];
+		
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) ('a' + random.nextInt(10));
+		}
+		
+		return data;
+	}
+	
+	
+	private void writeData(OutputStream out, byte[] data) throws IOException {
+		// Mix single byte and block writes.
+		out.write(data[0]);
+		out.write(data, 1, data.length - 1);
+		out.close();
+	}
+	
+	
+	private byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		
+		try {
+			while ((count = in.read(buffer)) >= 0) {
+				result.write(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+		}
+		
+		return result.toByteArray();
+	}
+	
+	
+	/**
+	 * Verifies that multi-member gzip output can be read back.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	@Test
+	public void testGZip() throws IOException {
+		byte[] data = buildData(3500000);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		
+		writeData(new ParallelGZIPOutputStream(compressed, 3), data);
+		
+		Assert.assertArrayEquals("Decompressed data differs", data,
+				readAll(new MultiMemberGZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))));
+	}
+	
+	
+	/**
+	 * Verifies that multi-stream bzip2 output can be read back.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	@Test
+	public void testBZip2() throws IOException {
+		byte[] data = buildData(2000000);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		
+		writeData(new ParallelBZip2OutputStream(compressed, 3), data);
+		
+		Assert.assertArrayEquals("Decompressed data differs", data,
+				readAll(new BZip2CompressorInputStream(new ByteArrayInputStream(compressed.toByteArray()), true)));
+		Assert.assertArrayEquals("Parallel decompressed data differs", data,
+				readAll(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed.toByteArray()), 2)));
+	}
+	
+	
+	/**
+	 * Verifies that empty output is still a valid compressed stream.
+	 * 
+	 * @throws IOException
+	 *             if an IO error occurs.
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		
+		new ParallelGZIPOutputStream(compressed, 2).close();
+		
+		Assert.assertEquals("Data was returned", 0,
+				readAll(new MultiMemberGZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))).length);
+	}
+}
@@ -0,0 +1,46 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the tile calculator.
+ * 
+ * @author Brett Henderson
+ */
+public class TileCalculatorTest {
+	
+	private void checkTile(TileCalculator calculator, int fixedLatitude, int fixedLongitude) {
+		Assert.assertEquals("Fixed precision tile differs for " + fixedLatitude + ", " + fixedLongitude,
+				calculator.calculateTile(
+						FixedPrecisionCoordinateConvertor.convertToDouble(fixedLatitude),
+						FixedPrecisionCoordinateConvertor.convertToDouble(fixedLongitude)),
+				calculator.calculateTileFromFixed(fixedLatitude, fixedLongitude));
+	}
+	
+	
+	/**
+	 * Verifies that fixed precision coordinates produce the same tiles as doubles.
+	 */
+	@Test
+	public void testFixedPrecisionMatchesDouble() {
+		TileCalculator calculator = new TileCalculator();
+		
+		// Boundaries, values beyond the valid range, and exact half way points between tiles.
+		int[] latitudes = {0, -900000000, 900000000, -900000001, 1000000000, -840000000, -720000000};
+		int[] longitudes = {0, -1800000000, 1800000000, -1800000001, Integer.MAX_VALUE, -1680000000, -1440000000};
+		for (int latitude : latitudes) {
+			for (int longitude : longitudes) {
+				checkTile(calculator, latitude, longitude);
+			}
+		}
+		
+		// A spread of values across the full range.
+		for (long value = -1800000000L; value <= 1800000000L; value += 7654321) {
+			checkTile(calculator, (int) (value / 2), (int) value);
+			checkTile(calculator, (int) (value / 2) + 1, (int) value - 1);
+		}
+	}
+}
@@ -6,9 +6,11 @@ import java.util.Map;
 
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.plugin.PluginLoader;
+import org.openstreetmap.osmosis.dataset.v0_6.CompactDatasetFactory;
 import org.openstreetmap.osmosis.dataset.v0_6.DatasetBoundingBoxFilterFactory;
 import org.openstreetmap.osmosis.dataset.v0_6.DumpDatasetFactory;
 import org.openstreetmap.osmosis.dataset.v0_6.ReadDatasetFactory;
+import org.openstreetmap.osmosis.dataset.v0_6.WriteDatasetChangeFactory;
 import org.openstreetmap.osmosis.dataset.v0_6.WriteDatasetFactory;
 
 
@@ -30,6 +32,10 @@ public class DatasetPluginLoader implements PluginLoader {
 		
 		factoryMap.put("write-customdb", new WriteDatasetFactory());
 		factoryMap.put("wc", new WriteDatasetFactory());
+		factoryMap.put("write-customdb-change", new WriteDatasetChangeFactory());
+		factoryMap.put("wcc", new WriteDatasetChangeFactory());
+		factoryMap.put("compact-customdb", new CompactDatasetFactory());
+		factoryMap.put("cc", new CompactDatasetFactory());
 		factoryMap.put("dataset-dump", new DumpDatasetFactory());
 		factoryMap.put("dd", new DumpDatasetFactory());
 		factoryMap.put("read-customdb", new ReadDatasetFactory());
@@ -38,6 +44,8 @@ public class DatasetPluginLoader implements PluginLoader {
 		factoryMap.put("dbb", new DatasetBoundingBoxFilterFactory());
 		
 		factoryMap.put("write-customdb-0.6", new WriteDatasetFactory());
+		factoryMap.put("write-customdb-change-0.6", new WriteDatasetChangeFactory());
+		factoryMap.put("compact-customdb-0.6", new CompactDatasetFactory());
 		factoryMap.put("dataset-dump-0.6", new DumpDatasetFactory());
 		factoryMap.put("read-customdb-0.6", new ReadDatasetFactory());
 		factoryMap.put("dataset-bounding-box-0.6", new DatasetBoundingBoxFilterFactory());
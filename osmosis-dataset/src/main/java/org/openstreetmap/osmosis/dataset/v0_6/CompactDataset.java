@@ -0,0 +1,153 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.container.v0_6.DatasetContext;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.task.common.RunnableTask;
+import org.openstreetmap.osmosis.core.util.FileBasedLock;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DatasetDirectory;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DatasetStore;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DatasetStoreFileManager;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DeltaDataset;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.PermanentFileDatasetStoreFileManager;
+
+
+/**
+ * Folds the changes applied to a dataset into a new base store and removes the
+ * delta. This is intended to be run periodically, separately from the
+ * application of changes, to stop the delta growing without bound.
+ * <p>
+ * The dataset is locked while it is compacted, so this fails rather than
+ * running at the same time as a change being applied to the same dataset.
+ * 
+ * @author Brett Henderson
+ */
+public class CompactDataset implements RunnableTask {
+	
+	private static final Logger LOG = Logger.getLogger(CompactDataset.class.getName());
+	
+	
+	private File directory;
+	private boolean enableWayTileIndex;
+	private int workerCount;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param directory
+	 *            The directory containing the dataset.
+	 * @param enableWayTileIndex
+	 *            If true a tile index is created for ways, otherwise a node-way
+	 *            index is used.
+	 * @param workerCount
+	 *            The number of worker threads used to build and sort the
+	 *            indexes of the new base store.
+	 */
+	public CompactDataset(File directory, boolean enableWayTileIndex, int workerCount) {
+		this.directory = directory;
+		this.enableWayTileIndex = enableWayTileIndex;
+		this.workerCount = workerCount;
+	}
+	
+	
+	/**
+	 * Writes the current contents of the dataset to a new base store.
+	 * 
+	 * @param dataset
+	 *            The dataset.
+	 * @param newBaseDirectory
+	 *            The directory to write the new base store to.
+	 */
+	private void writeNewBase(DeltaDataset dataset, File newBaseDirectory) {
+		DatasetStoreFileManager fileManager;
+		
+		fileManager = new PermanentFileDatasetStoreFileManager(newBaseDirectory);
+		try {
+			DatasetStore store;
+			
+			store = new DatasetStore(fileManager, enableWayTileIndex, workerCount, 0);
+			try {
+				DatasetContext reader;
+				
+				store.initialize(Collections.<String, Object>emptyMap());
+				
+				reader = dataset.createReader();
+				try {
+					ReleasableIterator<EntityContainer> entities;
+					
+					entities = reader.iterate();
+					try {
+						while (entities.hasNext()) {
+							store.process(entities.next());
+						}
+					} finally {
+						entities.release();
+					}
+				} finally {
+					reader.release();
+				}
+				
+				store.complete();
+				
+			} finally {
+				store.release();
+			}
+		} finally {
+			fileManager.release();
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void run() {
+		FileBasedLock lock;
+		
+		// Prevent changes being applied to the dataset while it is compacted.
+		lock = new FileBasedLock(DatasetDirectory.getLockFile(directory));
+		try {
+			DatasetDirectory datasetDirectory;
+			DeltaDataset dataset;
+			File newBaseDirectory;
+			
+			lock.lock();
+			
+			datasetDirectory = new DatasetDirectory(directory);
+			datasetDirectory.deleteUnusedFiles();
+			
+			dataset = new DeltaDataset(datasetDirectory, enableWayTileIndex, 0);
+			try {
+				if (!dataset.hasDelta()) {
+					LOG.fine("The dataset has no delta, there is nothing to compact.");
+					return;
+				}
+				
+				LOG.fine("Writing the new base store.");
+				newBaseDirectory = datasetDirectory.createBaseDirectory();
+				writeNewBase(dataset, newBaseDirectory);
+				
+			} finally {
+				dataset.release();
+			}
+			
+			// The existing base store and delta remain in use until the state
+			// file naming the new base store is in place, only then are they
+			// deleted.
+			LOG.fine("Replacing the base store.");
+			datasetDirectory.switchTo(newBaseDirectory, null);
+			
+			lock.unlock();
+			
+		} finally {
+			lock.release();
+		}
+	}
+}
@@ -9,6 +9,7 @@ import org.openstreetmap.osmosis.core.container.v0_6.DatasetContext;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 import org.openstreetmap.osmosis.core.task.v0_6.DatasetSinkSource;
+import org.openstreetmap.osmosis.core.task.v0_6.MultiPassSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 
 
@@ -37,6 +38,7 @@ public class DumpDataset implements DatasetSinkSource {
 	@Override
 	public void process(Dataset dataset) {
 		ReleasableIterator<EntityContainer> bboxData;
+		boolean multiPass;
 		
 		if (datasetReader != null) {
 			throw new OsmosisRuntimeException("process may only be invoked once.");
@@ -44,20 +46,28 @@ public class DumpDataset implements DatasetSinkSource {
 		
 		datasetReader = dataset.createReader();
 		
+		// The dataset can be iterated any number of times so offer the sink
+		// multiple passes if it is able to use them.
+		multiPass = false;
+		if (sink instanceof MultiPassSink) {
+			multiPass = ((MultiPassSink) sink).requestMultiPass();
+		}
+		
+		sink.initialize(Collections.<String, Object>emptyMap());
+		
 		// Pass all data within the dataset to the sink.
-		bboxData = datasetReader.iterate();
-		try {
-			sink.initialize(Collections.<String, Object>emptyMap());
-			
-			while (bboxData.hasNext()) {
-				sink.process(bboxData.next());
+		do {
+			bboxData = datasetReader.iterate();
+			try {
+				while (bboxData.hasNext()) {
+					sink.process(bboxData.next());
+				}
+			} finally {
+				bboxData.release();
 			}
-			
-			sink.complete();
-			
-		} finally {
-			bboxData.release();
-		}
+		} while (multiPass && ((MultiPassSink) sink).completePass());
+		
+		sink.complete();
 	}
 	
 	
@@ -3,23 +3,21 @@ package org.openstreetmap.osmosis.dataset.v0_6;
 
 import java.io.File;
 
-import org.openstreetmap.osmosis.dataset.v0_6.impl.DatasetStore;
-import org.openstreetmap.osmosis.dataset.v0_6.impl.DatasetStoreFileManager;
-import org.openstreetmap.osmosis.dataset.v0_6.impl.PermanentFileDatasetStoreFileManager;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DeltaDataset;
 import org.openstreetmap.osmosis.core.task.v0_6.DatasetSink;
 import org.openstreetmap.osmosis.core.task.v0_6.RunnableDatasetSource;
 
 
 /**
  * An OSM dataset source exposing read-only access to a custom DB database.
+ * Any changes applied to the database since it was written are included.
  * 
  * @author Brett Henderson
  */
 public class ReadDataset implements RunnableDatasetSource {
 	
 	private DatasetSink datasetSink;
-	private DatasetStoreFileManager fileManager;
-	private DatasetStore store;
+	private DeltaDataset dataset;
 	
 	
 	/**
@@ -30,10 +28,12 @@ public class ReadDataset implements RunnableDatasetSource {
 	 * @param enableWayTileIndex
 	 *            If true a tile index is created for ways, otherwise a node-way
 	 *            index is used.
+	 * @param cacheSize
+	 *            The number of entities of each type to keep in memory once
+	 *            loaded.
 	 */
-	public ReadDataset(File directory, boolean enableWayTileIndex) {
-		fileManager = new PermanentFileDatasetStoreFileManager(directory);
-		store = new DatasetStore(fileManager, enableWayTileIndex);
+	public ReadDataset(File directory, boolean enableWayTileIndex, int cacheSize) {
+		dataset = new DeltaDataset(directory, enableWayTileIndex, cacheSize);
 	}
 	
 	
@@ -52,11 +52,11 @@ public class ReadDataset implements RunnableDatasetSource {
 	@Override
 	public void run() {
 		try {
-			datasetSink.process(store);
+			datasetSink.process(dataset);
 			
 		} finally {
 			datasetSink.release();
-			store.release();
+			dataset.release();
 		}
 	}
 }
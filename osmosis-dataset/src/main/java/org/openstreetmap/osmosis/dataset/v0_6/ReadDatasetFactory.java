@@ -17,8 +17,10 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.RunnableDatasetSourceManager
 public class ReadDatasetFactory extends TaskManagerFactory {
 	private static final String ARG_DIRECTORY_NAME = "directory";
 	private static final String ARG_ENABLE_WAY_TILE_INDEX = "enableWayTileIndex";
+	private static final String ARG_CACHE_SIZE = "cacheSize";
 	private static final String DEFAULT_DIRECTORY_NAME = "dataset";
 	private static final boolean DEFAULT_ENABLE_WAY_TILE_INDEX = false;
+	private static final int DEFAULT_CACHE_SIZE = 20000;
 	
 	/**
 	 * {@inheritDoc}
@@ -28,6 +30,7 @@ public class ReadDatasetFactory extends TaskManagerFactory {
 		String directoryName;
 		File directory;
 		boolean enableWayTileIndex;
+		int cacheSize;
 		ReadDataset task;
 		
 		// Get the task arguments.
@@ -41,12 +44,13 @@ public class ReadDatasetFactory extends TaskManagerFactory {
 			ARG_ENABLE_WAY_TILE_INDEX,
 			DEFAULT_ENABLE_WAY_TILE_INDEX
 		);
+		cacheSize = getIntegerArgument(taskConfig, ARG_CACHE_SIZE, DEFAULT_CACHE_SIZE);
 		
 		// Create a file object from the directory name provided.
 		directory = new File(directoryName);
 		
 		// Build the task object.
-		task = new ReadDataset(directory, enableWayTileIndex);
+		task = new ReadDataset(directory, enableWayTileIndex, cacheSize);
 		
 		return new RunnableDatasetSourceManager(
 			taskConfig.getId(),
@@ -31,10 +31,13 @@ public class WriteDataset implements Sink {
 	 * @param enableWayTileIndex
 	 *            If true a tile index is created for ways, otherwise a node-way
 	 *            index is used.
+	 * @param workerCount
+	 *            The number of worker threads used to build and sort the
+	 *            indexes.
 	 */
-	public WriteDataset(File directory, boolean enableWayTileIndex) {
+	public WriteDataset(File directory, boolean enableWayTileIndex, int workerCount) {
 		fileManager = new PermanentFileDatasetStoreFileManager(directory);
-		store = new DatasetStore(fileManager, enableWayTileIndex);
+		store = new DatasetStore(fileManager, enableWayTileIndex, workerCount, 0);
 	}
 
 
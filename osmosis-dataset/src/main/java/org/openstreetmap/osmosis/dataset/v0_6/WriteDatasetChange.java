@@ -0,0 +1,361 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.DatasetContext;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainerIterator;
+import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.RelationContainerIterator;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainerIterator;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.filter.common.RoaringIdTracker;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.store.EmptyIterator;
+import org.openstreetmap.osmosis.core.store.PeekableIterator;
+import org.openstreetmap.osmosis.core.store.ReleasableAdaptorForIterator;
+import org.openstreetmap.osmosis.core.store.UpcastIterator;
+import org.openstreetmap.osmosis.core.task.common.ChangeAction;
+import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
+import org.openstreetmap.osmosis.core.util.FileBasedLock;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DatasetDirectory;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DatasetStore;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DatasetStoreFileManager;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DeltaDataset;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.PermanentFileDatasetStoreFileManager;
+
+
+/**
+ * Applies a change stream to an existing dataset. The base dataset store is
+ * left untouched, instead the delta holding all changes applied since the base
+ * store was written is rebuilt with the new changes merged into it. The cost
+ * of applying changes is proportional to the size of the delta rather than the
+ * size of the dataset. The delta can be folded back into the base store using
+ * the compaction task.
+ * <p>
+ * Changes are held in memory until the change stream is complete. The dataset
+ * is locked while the new delta is written, so this fails rather than running
+ * at the same time as another change or compaction of the same dataset.
+ * 
+ * @author Brett Henderson
+ */
+public class WriteDatasetChange implements ChangeSink {
+	
+	private static final Logger LOG = Logger.getLogger(WriteDatasetChange.class.getName());
+	
+	
+	private File directory;
+	private boolean enableWayTileIndex;
+	private int workerCount;
+	private SortedMap<Long, ChangeContainer> nodeChanges;
+	private SortedMap<Long, ChangeContainer> wayChanges;
+	private SortedMap<Long, ChangeContainer> relationChanges;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param directory
+	 *            The directory containing the dataset.
+	 * @param enableWayTileIndex
+	 *            If true a tile index is created for ways, otherwise a node-way
+	 *            index is used.
+	 * @param workerCount
+	 *            The number of worker threads used to build and sort the
+	 *            indexes of the delta.
+	 */
+	public WriteDatasetChange(File directory, boolean enableWayTileIndex, int workerCount) {
+		this.directory = directory;
+		this.enableWayTileIndex = enableWayTileIndex;
+		this.workerCount = workerCount;
+		
+		nodeChanges = new TreeMap<Long, ChangeContainer>();
+		wayChanges = new TreeMap<Long, ChangeContainer>();
+		relationChanges = new TreeMap<Long, ChangeContainer>();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialize(Map<String, Object> metaData) {
+		// Do nothing.
+	}
+	
+	
+	private SortedMap<Long, ChangeContainer> getChanges(EntityType entityType) {
+		if (EntityType.Node.equals(entityType)) {
+			return nodeChanges;
+		} else if (EntityType.Way.equals(entityType)) {
+			return wayChanges;
+		} else if (EntityType.Relation.equals(entityType)) {
+			return relationChanges;
+		} else {
+			return null;
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void process(ChangeContainer change) {
+		Entity entity;
+		SortedMap<Long, ChangeContainer> changes;
+		ChangeContainer existingChange;
+		
+		entity = change.getEntityContainer().getEntity();
+		
+		// Bounds and other non-entity data aren't held by the dataset.
+		changes = getChanges(entity.getType());
+		if (changes == null) {
+			return;
+		}
+		
+		// If an entity is changed more than once, only the latest version is
+		// kept.
+		existingChange = changes.get(entity.getId());
+		if (existingChange == null
+				|| existingChange.getEntityContainer().getEntity().getVersion() <= entity.getVersion()) {
+			changes.put(entity.getId(), change);
+		}
+	}
+	
+	
+	/**
+	 * Writes the entities of a single type to the new delta. The entities in
+	 * the existing delta are merged with the new changes, the new changes
+	 * taking precedence.
+	 * 
+	 * @param existingEntities
+	 *            The entities in the existing delta in id order.
+	 * @param changes
+	 *            The new changes.
+	 * @param supersededIds
+	 *            Updated with the ids of all changed entities.
+	 * @param newDelta
+	 *            The store receiving the new delta.
+	 */
+	private void writeEntities(ReleasableIterator<EntityContainer> existingEntities,
+			SortedMap<Long, ChangeContainer> changes, RoaringIdTracker supersededIds, DatasetStore newDelta) {
+		PeekableIterator<EntityContainer> existing;
+		PeekableIterator<ChangeContainer> changeIterator;
+		
+		existing = new PeekableIterator<EntityContainer>(existingEntities);
+		try {
+			changeIterator = new PeekableIterator<ChangeContainer>(
+					new ReleasableAdaptorForIterator<ChangeContainer>(changes.values().iterator()));
+			
+			while (existing.hasNext() || changeIterator.hasNext()) {
+				long existingId;
+				long changeId;
+				
+				existingId = 0;
+				if (existing.hasNext()) {
+					existingId = existing.peekNext().getEntity().getId();
+				}
+				changeId = 0;
+				if (changeIterator.hasNext()) {
+					changeId = changeIterator.peekNext().getEntityContainer().getEntity().getId();
+				}
+				
+				if (changeIterator.hasNext() && (!existing.hasNext() || changeId <= existingId)) {
+					ChangeContainer change;
+					
+					change = changeIterator.next();
+					
+					// The change replaces any earlier version in the delta.
+					if (existing.hasNext() && changeId == existingId) {
+						existing.next();
+					}
+					
+					supersededIds.set(changeId);
+					
+					// Deleted entities are only recorded as superseded.
+					if (!ChangeAction.Delete.equals(change.getAction())) {
+						newDelta.process(change.getEntityContainer());
+					}
+					
+				} else {
+					newDelta.process(existing.next());
+				}
+			}
+			
+		} finally {
+			existing.release();
+		}
+	}
+	
+	
+	/**
+	 * Writes the existing delta with the pending changes merged into it to a
+	 * new delta directory.
+	 * 
+	 * @param datasetDirectory
+	 *            The directory containing the dataset.
+	 * @param newDeltaDirectory
+	 *            The directory to write the new delta to.
+	 */
+	private void writeDelta(DatasetDirectory datasetDirectory, File newDeltaDirectory) {
+		DeltaDataset dataset;
+		
+		dataset = new DeltaDataset(datasetDirectory, enableWayTileIndex, 0);
+		try {
+			DatasetStore existingDelta;
+			DatasetContext existingDeltaReader;
+			RoaringIdTracker supersededNodeIds;
+			RoaringIdTracker supersededWayIds;
+			RoaringIdTracker supersededRelationIds;
+			DatasetStoreFileManager newDeltaFileManager;
+			DatasetStore newDelta;
+			
+			// Entities superseded by the existing delta remain superseded.
+			supersededNodeIds = new RoaringIdTracker();
+			supersededNodeIds.setAll(dataset.getSupersededIds(EntityType.Node));
+			supersededWayIds = new RoaringIdTracker();
+			supersededWayIds.setAll(dataset.getSupersededIds(EntityType.Way));
+			supersededRelationIds = new RoaringIdTracker();
+			supersededRelationIds.setAll(dataset.getSupersededIds(EntityType.Relation));
+			
+			existingDelta = dataset.getDeltaStore();
+			existingDeltaReader = null;
+			if (existingDelta != null) {
+				existingDeltaReader = existingDelta.createReader();
+			}
+			try {
+				newDeltaFileManager = new PermanentFileDatasetStoreFileManager(newDeltaDirectory);
+				try {
+					// Ways in the delta may refer to nodes only held by the
+					// base store.
+					newDelta = new DatasetStore(
+							newDeltaFileManager, enableWayTileIndex, workerCount, 0, dataset.getBaseStore());
+					try {
+						newDelta.initialize(Collections.<String, Object>emptyMap());
+						
+						writeEntities(
+								iterateNodes(existingDeltaReader), nodeChanges, supersededNodeIds, newDelta);
+						writeEntities(
+								iterateWays(existingDeltaReader), wayChanges, supersededWayIds, newDelta);
+						writeEntities(
+								iterateRelations(existingDeltaReader), relationChanges, supersededRelationIds,
+								newDelta);
+						
+						newDelta.complete();
+						
+					} finally {
+						newDelta.release();
+					}
+				} finally {
+					newDeltaFileManager.release();
+				}
+			} finally {
+				if (existingDeltaReader != null) {
+					existingDeltaReader.release();
+				}
+			}
+			
+			DeltaDataset.writeIds(
+					DeltaDataset.getSupersededIdFile(newDeltaDirectory, EntityType.Node), supersededNodeIds);
+			DeltaDataset.writeIds(
+					DeltaDataset.getSupersededIdFile(newDeltaDirectory, EntityType.Way), supersededWayIds);
+			DeltaDataset.writeIds(
+					DeltaDataset.getSupersededIdFile(newDeltaDirectory, EntityType.Relation), supersededRelationIds);
+			
+		} finally {
+			dataset.release();
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void complete() {
+		FileBasedLock lock;
+		
+		// Prevent the dataset being compacted or changed by another task at
+		// the same time.
+		lock = new FileBasedLock(DatasetDirectory.getLockFile(directory));
+		try {
+			DatasetDirectory datasetDirectory;
+			File newDeltaDirectory;
+			
+			lock.lock();
+			
+			datasetDirectory = new DatasetDirectory(directory);
+			datasetDirectory.deleteUnusedFiles();
+			
+			LOG.fine("Building the new delta.");
+			newDeltaDirectory = datasetDirectory.createDeltaDirectory();
+			writeDelta(datasetDirectory, newDeltaDirectory);
+			
+			// The existing delta remains in use until the state file naming
+			// the new delta is in place, only then is it deleted.
+			LOG.fine("Replacing the existing delta.");
+			datasetDirectory.switchTo(datasetDirectory.getBaseDirectory(), newDeltaDirectory);
+			
+			lock.unlock();
+			
+		} finally {
+			lock.release();
+		}
+		
+		nodeChanges.clear();
+		wayChanges.clear();
+		relationChanges.clear();
+	}
+	
+	
+	private ReleasableIterator<EntityContainer> iterateNodes(DatasetContext reader) {
+		if (reader == null) {
+			return new EmptyIterator<EntityContainer>();
+		}
+		
+		return new UpcastIterator<EntityContainer, NodeContainer>(
+				new NodeContainerIterator(reader.getNodeManager().iterate()));
+	}
+	
+	
+	private ReleasableIterator<EntityContainer> iterateWays(DatasetContext reader) {
+		if (reader == null) {
+			return new EmptyIterator<EntityContainer>();
+		}
+		
+		return new UpcastIterator<EntityContainer, WayContainer>(
+				new WayContainerIterator(reader.getWayManager().iterate()));
+	}
+	
+	
+	private ReleasableIterator<EntityContainer> iterateRelations(DatasetContext reader) {
+		if (reader == null) {
+			return new EmptyIterator<EntityContainer>();
+		}
+		
+		return new UpcastIterator<EntityContainer, RelationContainer>(
+				new RelationContainerIterator(reader.getRelationManager().iterate()));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		nodeChanges.clear();
+		wayChanges.clear();
+		relationChanges.clear();
+	}
+}
@@ -17,8 +17,10 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkManager;
 public class WriteDatasetFactory extends TaskManagerFactory {
 	private static final String ARG_DIRECTORY_NAME = "directory";
 	private static final String ARG_ENABLE_WAY_TILE_INDEX = "enableWayTileIndex";
+	private static final String ARG_WORKERS = "workers";
 	private static final String DEFAULT_DIRECTORY_NAME = "dataset";
 	private static final boolean DEFAULT_ENABLE_WAY_TILE_INDEX = false;
+	private static final int DEFAULT_WORKERS = 1;
 	
 	/**
 	 * {@inheritDoc}
@@ -28,6 +30,7 @@ public class WriteDatasetFactory extends TaskManagerFactory {
 		String directoryName;
 		File directory;
 		boolean enableWayTileIndex;
+		int workers;
 		WriteDataset task;
 		
 		// Get the task arguments.
@@ -41,12 +44,13 @@ public class WriteDatasetFactory extends TaskManagerFactory {
 			ARG_ENABLE_WAY_TILE_INDEX,
 			DEFAULT_ENABLE_WAY_TILE_INDEX
 		);
+		workers = getIntegerArgument(taskConfig, ARG_WORKERS, DEFAULT_WORKERS);
 		
 		// Create a file object from the directory name provided.
 		directory = new File(directoryName);
 		
 		// Build the task object.
-		task = new WriteDataset(directory, enableWayTileIndex);
+		task = new WriteDataset(directory, enableWayTileIndex, workers);
 		
 		return new SinkManager(
 			taskConfig.getId(),
@@ -4,8 +4,7 @@ package org.openstreetmap.osmosis.dataset.v0_6.impl;
 import java.awt.geom.Rectangle2D;
 import java.util.Comparator;
 
-import org.openstreetmap.osmosis.core.filter.common.DynamicIdTracker;
-import org.openstreetmap.osmosis.core.filter.common.IdTracker;
+import org.openstreetmap.osmosis.core.filter.common.RoaringIdTracker;
 import org.openstreetmap.osmosis.core.store.UnsignedIntegerComparator;
 import org.openstreetmap.osmosis.core.util.TileCalculator;
 
@@ -32,19 +31,19 @@ public class BoundingBoxContext {
 	/**
 	 * All node ids are stored within this tracker.
 	 */
-	public final IdTracker nodeIdTracker;
+	public final RoaringIdTracker nodeIdTracker;
 	/**
 	 * All way ids are stored within this tracker.
 	 */
-	public final IdTracker wayIdTracker;
+	public final RoaringIdTracker wayIdTracker;
 	/**
 	 * All relation ids are stored within this tracker.
 	 */
-	public final IdTracker relationIdTracker;
+	public final RoaringIdTracker relationIdTracker;
 	/**
 	 * All nodes outside the bounding box are stored within this tracker.
 	 */
-	public final IdTracker externalNodeIdTracker;
+	public final RoaringIdTracker externalNodeIdTracker;
 	
 	
 	/**
@@ -117,9 +116,9 @@ public class BoundingBoxContext {
 		minimumTile = tmpMinimumTile;
 		
 		// Create the id trackers.
-		nodeIdTracker = new DynamicIdTracker();
-		wayIdTracker = new DynamicIdTracker();
-		relationIdTracker = new DynamicIdTracker();
-		externalNodeIdTracker = new DynamicIdTracker();
+		nodeIdTracker = new RoaringIdTracker();
+		wayIdTracker = new RoaringIdTracker();
+		relationIdTracker = new RoaringIdTracker();
+		externalNodeIdTracker = new RoaringIdTracker();
 	}
 }
@@ -0,0 +1,333 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6.impl;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.util.AtomicFileCreator;
+import org.openstreetmap.osmosis.core.util.PropertiesPersister;
+
+
+/**
+ * Tracks the layout of a dataset directory, identifying which sub-directories
+ * hold the current base store and delta.
+ * <p>
+ * Each new base store and delta is written to its own generation directory and
+ * only becomes part of the dataset once a state file naming it has been
+ * written and renamed into place. A failure part way through writing leaves
+ * the previous state in effect. Directories no longer named by the state file
+ * are deleted once the state file has been replaced. A directory without a
+ * state file holds its base store directly, with any delta held in the
+ * "delta" sub-directory.
+ * <p>
+ * Tasks modifying the dataset must hold the lock file returned by
+ * getLockFile while doing so.
+ *
+ * @author Brett Henderson
+ */
+public class DatasetDirectory {
+
+	private static final Logger LOG = Logger.getLogger(DatasetDirectory.class.getName());
+
+	private static final String STATE_FILE_NAME = "dataset.state";
+	private static final String LOCK_FILE_NAME = "dataset.lock";
+	private static final String LEGACY_DELTA_DIRECTORY_NAME = "delta";
+	private static final String BASE_PREFIX = "base.";
+	private static final String DELTA_PREFIX = "delta.";
+	private static final String STORE_FILE_PREFIX = "ds";
+	private static final String KEY_GENERATION = "generation";
+	private static final String KEY_BASE = "base";
+	private static final String KEY_DELTA = "delta";
+
+
+	private File directory;
+	private AtomicFileCreator stateFile;
+	private long generation;
+	private File baseDirectory;
+	private File deltaDirectory;
+
+
+	/**
+	 * Creates a new instance and loads the current state of the directory.
+	 *
+	 * @param directory
+	 *            The directory containing the dataset.
+	 */
+	public DatasetDirectory(File directory) {
+		this.directory = directory;
+
+		stateFile = new AtomicFileCreator(new File(directory, STATE_FILE_NAME));
+
+		load();
+	}
+
+
+	/**
+	 * Returns the file locked by tasks modifying a dataset.
+	 *
+	 * @param directory
+	 *            The directory containing the dataset.
+	 * @return The lock file.
+	 */
+	public static File getLockFile(File directory) {
+		return new File(directory, LOCK_FILE_NAME);
+	}
+
+
+	private void loadLegacy() {
+		File legacyDeltaDirectory;
+
+		generation = 0;
+		baseDirectory = directory;
+
+		legacyDeltaDirectory = new File(directory, LEGACY_DELTA_DIRECTORY_NAME);
+		if (legacyDeltaDirectory.exists()) {
+			deltaDirectory = legacyDeltaDirectory;
+		} else {
+			deltaDirectory = null;
+		}
+	}
+
+
+	private boolean loadState(File file) {
+		Properties properties;
+		String generationValue;
+		String baseName;
+		String deltaName;
+
+		properties = new PropertiesPersister(file).load();
+		generationValue = properties.getProperty(KEY_GENERATION);
+		baseName = properties.getProperty(KEY_BASE);
+		deltaName = properties.getProperty(KEY_DELTA);
+		if (generationValue == null || baseName == null || deltaName == null) {
+			return false;
+		}
+
+		try {
+			generation = Long.parseLong(generationValue);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+
+		if (baseName.length() > 0) {
+			baseDirectory = new File(directory, baseName);
+		} else {
+			baseDirectory = directory;
+		}
+		if (deltaName.length() > 0) {
+			deltaDirectory = new File(directory, deltaName);
+		} else {
+			deltaDirectory = null;
+		}
+
+		return baseDirectory.isDirectory() && (deltaDirectory == null || deltaDirectory.isDirectory());
+	}
+
+
+	private void load() {
+		File file;
+		File tmpFile;
+
+		file = stateFile.getFile();
+		tmpFile = stateFile.getTmpFile();
+
+		if (file.exists()) {
+			if (!loadState(file)) {
+				throw new OsmosisRuntimeException("The dataset state file " + file + " is invalid.");
+			}
+		} else if (tmpFile.exists() && loadState(tmpFile)) {
+			// The state file is replaced by deleting it and renaming the
+			// temporary file, a failure between the two leaves only the
+			// complete temporary file.
+			LOG.fine("Using the dataset state from temporary file " + tmpFile + ".");
+		} else {
+			loadLegacy();
+		}
+	}
+
+
+	/**
+	 * Gets the directory holding the base store.
+	 *
+	 * @return The base store directory.
+	 */
+	public File getBaseDirectory() {
+		return baseDirectory;
+	}
+
+
+	/**
+	 * Gets the directory holding the delta.
+	 *
+	 * @return The delta directory, or null if there is no delta.
+	 */
+	public File getDeltaDirectory() {
+		return deltaDirectory;
+	}
+
+
+	private File createGenerationDirectory(String prefix) {
+		File newDirectory;
+
+		newDirectory = new File(directory, prefix + (generation + 1));
+
+		// Remove any partial directory left by an earlier failure.
+		DeltaDataset.deleteDirectory(newDirectory);
+		if (!newDirectory.mkdirs()) {
+			throw new OsmosisRuntimeException("Unable to create directory " + newDirectory + ".");
+		}
+
+		return newDirectory;
+	}
+
+
+	/**
+	 * Creates an empty directory to write a new base store to. It does not
+	 * become part of the dataset until passed to switchTo.
+	 *
+	 * @return The new directory.
+	 */
+	public File createBaseDirectory() {
+		return createGenerationDirectory(BASE_PREFIX);
+	}
+
+
+	/**
+	 * Creates an empty directory to write a new delta to. It does not become
+	 * part of the dataset until passed to switchTo.
+	 *
+	 * @return The new directory.
+	 */
+	public File createDeltaDirectory() {
+		return createGenerationDirectory(DELTA_PREFIX);
+	}
+
+
+	private String getRelativeName(File file) {
+		if (file == null || file.equals(directory)) {
+			return "";
+		}
+
+		return file.getName();
+	}
+
+
+	/**
+	 * Makes the specified base store and delta the current contents of the
+	 * dataset by replacing the state file, then deletes the base store and
+	 * delta they replace.
+	 *
+	 * @param newBaseDirectory
+	 *            The directory holding the base store.
+	 * @param newDeltaDirectory
+	 *            The directory holding the delta, or null if there is no
+	 *            delta.
+	 */
+	public void switchTo(File newBaseDirectory, File newDeltaDirectory) {
+		Properties properties;
+		File oldBaseDirectory;
+		File oldDeltaDirectory;
+
+		properties = new Properties();
+		properties.setProperty(KEY_GENERATION, Long.toString(generation + 1));
+		properties.setProperty(KEY_BASE, getRelativeName(newBaseDirectory));
+		properties.setProperty(KEY_DELTA, getRelativeName(newDeltaDirectory));
+
+		new PropertiesPersister(stateFile.getFile()).store(properties);
+
+		oldBaseDirectory = baseDirectory;
+		oldDeltaDirectory = deltaDirectory;
+
+		generation++;
+		baseDirectory = newBaseDirectory;
+		deltaDirectory = newDeltaDirectory;
+
+		if (oldDeltaDirectory != null && !oldDeltaDirectory.equals(deltaDirectory)) {
+			DeltaDataset.deleteDirectory(oldDeltaDirectory);
+		}
+		if (!oldBaseDirectory.equals(baseDirectory)) {
+			deleteBase(oldBaseDirectory);
+		}
+	}
+
+
+	private void deleteStoreFiles() {
+		File[] files;
+
+		// A base store held directly in the dataset directory shares it with
+		// the state and lock files.
+		files = directory.listFiles();
+		if (files == null) {
+			throw new OsmosisRuntimeException("Unable to list the files in directory " + directory + ".");
+		}
+		for (File file : files) {
+			if (file.isFile() && file.getName().startsWith(STORE_FILE_PREFIX) && !file.delete()) {
+				throw new OsmosisRuntimeException("Unable to delete file " + file + ".");
+			}
+		}
+	}
+
+
+	private void deleteBase(File oldBaseDirectory) {
+		if (oldBaseDirectory.equals(directory)) {
+			deleteStoreFiles();
+		} else {
+			DeltaDataset.deleteDirectory(oldBaseDirectory);
+		}
+	}
+
+
+	private boolean isGenerationDirectory(String name) {
+		String suffix;
+
+		if (name.startsWith(BASE_PREFIX)) {
+			suffix = name.substring(BASE_PREFIX.length());
+		} else if (name.startsWith(DELTA_PREFIX)) {
+			suffix = name.substring(DELTA_PREFIX.length());
+		} else {
+			return false;
+		}
+
+		if (suffix.length() == 0) {
+			return false;
+		}
+		for (int i = 0; i < suffix.length(); i++) {
+			if (!Character.isDigit(suffix.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Deletes base stores and deltas left behind by a failure which are not
+	 * part of the current dataset.
+	 */
+	public void deleteUnusedFiles() {
+		File[] files;
+
+		files = directory.listFiles();
+		if (files == null) {
+			throw new OsmosisRuntimeException("Unable to list the files in directory " + directory + ".");
+		}
+		for (File file : files) {
+			boolean unused;
+
+			unused = isGenerationDirectory(file.getName())
+					|| (LEGACY_DELTA_DIRECTORY_NAME.equals(file.getName()) && !baseDirectory.equals(directory));
+
+			if (unused && file.isDirectory() && !file.equals(baseDirectory) && !file.equals(deltaDirectory)) {
+				LOG.fine("Deleting unused directory " + file + ".");
+				DeltaDataset.deleteDirectory(file);
+			}
+		}
+
+		if (!baseDirectory.equals(directory)) {
+			deleteStoreFiles();
+		}
+	}
+}
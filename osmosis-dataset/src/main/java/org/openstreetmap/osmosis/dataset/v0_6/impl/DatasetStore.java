@@ -1,7 +1,17 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.dataset.v0_6.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,6 +30,7 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
 import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
 import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.lifecycle.Completable;
 import org.openstreetmap.osmosis.core.lifecycle.CompletableContainer;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableContainer;
 import org.openstreetmap.osmosis.core.sort.v0_6.SortedEntityPipeValidator;
@@ -39,6 +50,15 @@ import org.openstreetmap.osmosis.core.util.TileCalculator;
 
 /**
  * Provides a file based storage mechanism for implementing a dataset.
+ * <p>
+ * Entities are written to the object stores on the calling thread. The
+ * secondary indexes such as the tile indexes and the indexes of entities
+ * referring to other entities are built from batches of entities and can be
+ * built on a pool of worker threads. The indexes are also sorted concurrently
+ * during completion.
+ * <p>
+ * Readers share caches of recently loaded entities so that repeated queries
+ * over the same area avoid decoding the same entities again.
  * 
  * @author Brett Henderson
  */
@@ -46,12 +66,30 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 	
 	private static final Logger LOG = Logger.getLogger(DatasetStore.class.getName());
 	
+	/**
+	 * The number of entities passed to a worker in a single batch.
+	 */
+	private static final int BATCH_SIZE = 10000;
+	
 	
 	private SortedEntityPipeValidator sortedPipeValidator;
 	private TileCalculator tileCalculator;
 	private UnsignedIntegerComparator uintComparator;
 	
 	private boolean enableWayTileIndex;
+	private int workerCount;
+	private Dataset referenceDataset;
+	
+	private ExecutorService executorService;
+	private Queue<Future<?>> pendingBatches;
+	private List<Node> nodeBatch;
+	private List<Way> wayBatch;
+	private List<Relation> relationBatch;
+	private boolean nodeStoresComplete;
+	
+	private EntityCache<Node> nodeCache;
+	private EntityCache<Way> wayCache;
+	private EntityCache<Relation> relationCache;
 	
 	private CompletableContainer storeContainer;
 	private RandomAccessObjectStore<Node> nodeObjectStore;
@@ -60,6 +98,7 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 	private RandomAccessObjectStore<Way> wayObjectStore;
 	private IndexStore<Long, LongLongIndexElement> wayObjectOffsetIndexWriter;
 	private WayTileAreaIndex wayTileIndexWriter;
+	private WayBoxIndex wayBoxIndexWriter;
 	private IndexStore<Long, LongLongIndexElement> nodeWayIndexWriter;
 	private RandomAccessObjectStore<Relation> relationObjectStore;
 	private IndexStore<Long, LongLongIndexElement> relationObjectOffsetIndexWriter;
@@ -67,8 +106,19 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 	private IndexStore<Long, LongLongIndexElement> wayRelationIndexWriter;
 	private IndexStore<Long, LongLongIndexElement> relationRelationIndexWriter;
 	
-	private RandomAccessObjectStoreReader<Node> nodeObjectReader;
-	private IndexStoreReader<Long, LongLongIndexElement> nodeObjectOffsetIndexReader;
+	
+	/**
+	 * Creates a new instance building all indexes on the calling thread.
+	 * 
+	 * @param fileManager
+	 *            The manager providing access to store files.
+	 * @param enableWayTileIndex
+	 *            If true a tile index is created for ways, otherwise a node-way
+	 *            index is used.
+	 */
+	public DatasetStore(DatasetStoreFileManager fileManager, boolean enableWayTileIndex) {
+		this(fileManager, enableWayTileIndex, 1, 0);
+	}
 	
 	
 	/**
@@ -79,9 +129,61 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 	 * @param enableWayTileIndex
 	 *            If true a tile index is created for ways, otherwise a node-way
 	 *            index is used.
+	 * @param workerCount
+	 *            The number of worker threads used to build and sort indexes.
+	 *            If 1, all work is performed on the calling thread.
+	 * @param entityCacheSize
+	 *            The number of entities of each type kept in memory once
+	 *            loaded by readers. The caches are shared by all readers.
 	 */
-	public DatasetStore(DatasetStoreFileManager fileManager, boolean enableWayTileIndex) {
+	public DatasetStore(
+			DatasetStoreFileManager fileManager, boolean enableWayTileIndex, int workerCount, int entityCacheSize) {
+		this(fileManager, enableWayTileIndex, workerCount, entityCacheSize, null);
+	}
+	
+	
+	/**
+	 * Creates a new instance whose ways may refer to nodes held by another
+	 * dataset.
+	 * 
+	 * @param fileManager
+	 *            The manager providing access to store files.
+	 * @param enableWayTileIndex
+	 *            If true a tile index is created for ways, otherwise a node-way
+	 *            index is used.
+	 * @param workerCount
+	 *            The number of worker threads used to build and sort indexes.
+	 *            If 1, all work is performed on the calling thread.
+	 * @param entityCacheSize
+	 *            The number of entities of each type kept in memory once
+	 *            loaded by readers. The caches are shared by all readers.
+	 * @param referenceDataset
+	 *            The dataset searched for way nodes missing from this store
+	 *            when calculating way tiles, or null if ways only refer to
+	 *            nodes within this store.
+	 */
+	public DatasetStore(
+			DatasetStoreFileManager fileManager, boolean enableWayTileIndex, int workerCount, int entityCacheSize,
+			Dataset referenceDataset) {
+		if (workerCount <= 0) {
+			throw new OsmosisRuntimeException("A worker count of " + workerCount + " is invalid.");
+		}
+		if (entityCacheSize < 0) {
+			throw new OsmosisRuntimeException("An entity cache size of " + entityCacheSize + " is invalid.");
+		}
+		
+		nodeCache = new EntityCache<Node>(entityCacheSize);
+		wayCache = new EntityCache<Way>(entityCacheSize);
+		relationCache = new EntityCache<Relation>(entityCacheSize);
+		
 		this.enableWayTileIndex = enableWayTileIndex;
+		this.workerCount = workerCount;
+		this.referenceDataset = referenceDataset;
+		
+		pendingBatches = new LinkedList<Future<?>>();
+		nodeBatch = new ArrayList<Node>(BATCH_SIZE);
+		wayBatch = new ArrayList<Way>(BATCH_SIZE);
+		relationBatch = new ArrayList<Relation>(BATCH_SIZE);
 		
 		storeContainer = new CompletableContainer();
 		
@@ -147,6 +249,7 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 			)
 		);
 		wayTileIndexWriter = storeContainer.add(new WayTileAreaIndex(fileManager));
+		wayBoxIndexWriter = storeContainer.add(new WayBoxIndex(fileManager.getWayBoxIndexFile()));
 		nodeWayIndexWriter = storeContainer.add(
 			new IndexStore<Long, LongLongIndexElement>(
 				LongLongIndexElement.class,
@@ -235,24 +338,22 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 	 */
 	public void process(NodeContainer nodeContainer) {
 		Node node;
-		long nodeId;
 		long objectOffset;
 		
 		node = nodeContainer.getEntity();
-		nodeId = node.getId();
 		
 		// Write the node to the object store and save the file offset in an
 		// index keyed by node id.
 		objectOffset = nodeObjectStore.add(node);
 		nodeObjectOffsetIndexWriter.write(
-			new LongLongIndexElement(nodeId, objectOffset)
+			new LongLongIndexElement(node.getId(), objectOffset)
 		);
 		
-		// Write the node id to an index keyed by tile.
-		nodeTileIndexWriter.write(
-			new IntegerLongIndexElement((int) tileCalculator.calculateTile(node.getLatitude(), node.getLongitude()),
-			nodeId)
-		);
+		// The tile index is built from batches of nodes.
+		nodeBatch.add(node);
+		if (nodeBatch.size() >= BATCH_SIZE) {
+			submitNodeBatch();
+		}
 	}
 	
 	
@@ -261,126 +362,414 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 	 */
 	public void process(WayContainer wayContainer) {
 		Way way;
-		long wayId;
 		long objectOffset;
-		int minimumTile;
-		int maximumTile;
-		boolean tilesFound;
 		
-		if (nodeObjectReader == null) {
+		// All nodes have been received so the node stores can be completed to
+		// allow way tiles to be calculated.
+		if (!nodeStoresComplete) {
 			nodeObjectStore.complete();
-			nodeObjectReader = nodeObjectStore.createReader();
-		}
-		if (nodeObjectOffsetIndexReader == null) {
 			nodeObjectOffsetIndexWriter.complete();
-			nodeObjectOffsetIndexReader = nodeObjectOffsetIndexWriter.createReader();
+			nodeStoresComplete = true;
 		}
 		
 		way = wayContainer.getEntity();
-		wayId = way.getId();
 		
 		// Write the way to the object store and save the file offset in an
 		// index keyed by way id.
 		objectOffset = wayObjectStore.add(way);
 		wayObjectOffsetIndexWriter.write(
-			new LongLongIndexElement(wayId, objectOffset)
+			new LongLongIndexElement(way.getId(), objectOffset)
+		);
+		
+		// The tile or node-way index is built from batches of ways.
+		wayBatch.add(way);
+		if (wayBatch.size() >= BATCH_SIZE) {
+			submitWayBatch();
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(RelationContainer relationContainer) {
+		Relation relation;
+		long objectOffset;
+		
+		relation = relationContainer.getEntity();
+		
+		// Write the relation to the object store and save the file offset in an
+		// index keyed by relation id.
+		objectOffset = relationObjectStore.add(relation);
+		relationObjectOffsetIndexWriter.write(
+			new LongLongIndexElement(relation.getId(), objectOffset)
 		);
 		
+		// The member indexes are built from batches of relations.
+		relationBatch.add(relation);
+		if (relationBatch.size() >= BATCH_SIZE) {
+			submitRelationBatch();
+		}
+	}
+	
+	
+	/**
+	 * Runs a unit of index work. If multiple workers are in use it is passed to
+	 * the worker pool, otherwise it is run immediately.
+	 * 
+	 * @param work
+	 *            The work to be performed.
+	 */
+	private void submit(Runnable work) {
+		if (workerCount <= 1) {
+			work.run();
+			return;
+		}
+		
+		if (executorService == null) {
+			executorService = Executors.newFixedThreadPool(workerCount);
+		}
+		
+		// Limit the number of batches held in memory by waiting for the oldest
+		// once every worker has a batch queued.
+		while (pendingBatches.size() >= workerCount * 2) {
+			waitForBatch(pendingBatches.remove());
+		}
+		
+		pendingBatches.add(executorService.submit(work));
+	}
+	
+	
+	/**
+	 * Waits for a unit of index work to finish.
+	 * 
+	 * @param batch
+	 *            The result of the work.
+	 */
+	private void waitForBatch(Future<?> batch) {
+		try {
+			batch.get();
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new OsmosisRuntimeException("A dataset index worker thread failed, aborting.", e.getCause());
+		}
+	}
+	
+	
+	/**
+	 * Waits for all index work submitted so far to finish.
+	 */
+	private void waitForAllBatches() {
+		while (!pendingBatches.isEmpty()) {
+			waitForBatch(pendingBatches.remove());
+		}
+	}
+	
+	
+	private void submitNodeBatch() {
+		final List<Node> nodes;
+		
+		if (nodeBatch.isEmpty()) {
+			return;
+		}
+		
+		nodes = nodeBatch;
+		nodeBatch = new ArrayList<Node>(BATCH_SIZE);
+		
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				writeNodeIndexes(nodes);
+			}
+		});
+	}
+	
+	
+	private void submitWayBatch() {
+		final List<Way> ways;
+		
+		if (wayBatch.isEmpty()) {
+			return;
+		}
+		
+		ways = wayBatch;
+		wayBatch = new ArrayList<Way>(BATCH_SIZE);
+		
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				writeWayIndexes(ways);
+			}
+		});
+	}
+	
+	
+	private void submitRelationBatch() {
+		final List<Relation> relations;
+		
+		if (relationBatch.isEmpty()) {
+			return;
+		}
+		
+		relations = relationBatch;
+		relationBatch = new ArrayList<Relation>(BATCH_SIZE);
+		
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				writeRelationIndexes(relations);
+			}
+		});
+	}
+	
+	
+	/**
+	 * Writes a batch of nodes to the node tile index. This may be called by
+	 * multiple workers at once, the tiles are calculated concurrently and the
+	 * index is locked while they are written.
+	 * 
+	 * @param nodes
+	 *            The nodes to be indexed.
+	 */
+	private void writeNodeIndexes(List<Node> nodes) {
+		List<IntegerLongIndexElement> tileElements;
+		
+		tileElements = new ArrayList<IntegerLongIndexElement>(nodes.size());
+		for (Node node : nodes) {
+			tileElements.add(new IntegerLongIndexElement(
+					(int) tileCalculator.calculateTileFromFixed(node.getFixedLatitude(), node.getFixedLongitude()),
+					node.getId()));
+		}
+		
+		synchronized (nodeTileIndexWriter) {
+			for (IntegerLongIndexElement element : tileElements) {
+				nodeTileIndexWriter.write(element);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Writes a batch of ways to either the way tile index or the node-way
+	 * index. This may be called by multiple workers at once.
+	 * 
+	 * @param ways
+	 *            The ways to be indexed.
+	 */
+	private void writeWayIndexes(List<Way> ways) {
 		if (enableWayTileIndex) {
-		// Calculate the minimum and maximum tile indexes for the way.
-		tilesFound = false;
-		minimumTile = 0;
-		maximumTile = 0;
+			RandomAccessObjectStoreReader<Node> nodeObjectReader;
+			IndexStoreReader<Long, LongLongIndexElement> nodeObjectOffsetIndexReader;
+			List<Long> wayIds;
+			List<int[]> wayExtents;
+			
+			wayIds = new ArrayList<Long>(ways.size());
+			wayExtents = new ArrayList<int[]>(ways.size());
+			
+			// Each batch has its own readers, they are cheap to create because
+			// the stores share a single mapping of their files.
+			nodeObjectReader = nodeObjectStore.createReader();
+			try {
+				nodeObjectOffsetIndexReader = nodeObjectOffsetIndexWriter.createReader();
+				try {
+					DatasetContext referenceContext;
+					
+					referenceContext = null;
+					if (referenceDataset != null) {
+						referenceContext = referenceDataset.createReader();
+					}
+					try {
+						for (Way way : ways) {
+							int[] extent;
+							
+							extent = calculateWayExtent(
+									way, nodeObjectReader, nodeObjectOffsetIndexReader, referenceContext);
+							
+							// Only ways with at least one existing node are indexed.
+							if (extent != null) {
+								wayIds.add(way.getId());
+								wayExtents.add(extent);
+							}
+						}
+					} finally {
+						if (referenceContext != null) {
+							referenceContext.release();
+						}
+					}
+				} finally {
+					nodeObjectOffsetIndexReader.release();
+				}
+			} finally {
+				nodeObjectReader.release();
+			}
+			
+			synchronized (wayTileIndexWriter) {
+				for (int i = 0; i < wayIds.size(); i++) {
+					wayTileIndexWriter.write(wayIds.get(i), wayExtents.get(i)[0], wayExtents.get(i)[1]);
+				}
+			}
+			synchronized (wayBoxIndexWriter) {
+				for (int i = 0; i < wayIds.size(); i++) {
+					int[] extent = wayExtents.get(i);
+					
+					wayBoxIndexWriter.write(
+							new WayBoxElement(wayIds.get(i), extent[2], extent[3], extent[4], extent[5]));
+				}
+			}
+			
+		} else {
+			List<LongLongIndexElement> nodeWayElements;
+			
+			nodeWayElements = new ArrayList<LongLongIndexElement>();
+			for (Way way : ways) {
+				for (WayNode wayNode : way.getWayNodes()) {
+					nodeWayElements.add(new LongLongIndexElement(wayNode.getNodeId(), way.getId()));
+				}
+			}
+			
+			synchronized (nodeWayIndexWriter) {
+				for (LongLongIndexElement element : nodeWayElements) {
+					nodeWayIndexWriter.write(element);
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Calculates the minimum and maximum tiles of the nodes within a way, and
+	 * the bounding box of the nodes.
+	 * 
+	 * @param way
+	 *            The way.
+	 * @param nodeObjectReader
+	 *            The reader for the node object store.
+	 * @param nodeObjectOffsetIndexReader
+	 *            The reader for the node object offset index.
+	 * @param referenceContext
+	 *            The reader for the reference dataset, or null if there is
+	 *            no reference dataset.
+	 * @return The minimum tile, maximum tile, minimum longitude, minimum
+	 *         latitude, maximum longitude and maximum latitude with
+	 *         coordinates in fixed precision, or null if none of the way nodes
+	 *         exist.
+	 */
+	private int[] calculateWayExtent(Way way, RandomAccessObjectStoreReader<Node> nodeObjectReader,
+			IndexStoreReader<Long, LongLongIndexElement> nodeObjectOffsetIndexReader,
+			DatasetContext referenceContext) {
+		int[] extent;
+		
+		extent = null;
 		for (WayNode wayNode : way.getWayNodes()) {
 			long nodeId;
 			Node node;
 			int tile;
+			int longitude;
+			int latitude;
 			
 			nodeId = wayNode.getNodeId();
 			
 			try {
-			node = nodeObjectReader.get(
-				nodeObjectOffsetIndexReader.get(nodeId).getValue()
-			);
-			
-			tile = (int) tileCalculator.calculateTile(node.getLatitude(), node.getLongitude());
+				node = nodeObjectReader.get(
+					nodeObjectOffsetIndexReader.get(nodeId).getValue()
+				);
+				
+			} catch (NoSuchIndexElementException e) {
+				node = null;
+			}
 			
-			if (tilesFound) {
-				if (uintComparator.compare(tile, minimumTile) < 0) {
-					minimumTile = tile;
+			// Nodes not held by this store may be held by the reference
+			// dataset.
+			if (node == null && referenceContext != null) {
+				try {
+					node = referenceContext.getNodeManager().getEntity(nodeId);
+				} catch (NoSuchIndexElementException e) {
+					node = null;
 				}
-				if (uintComparator.compare(maximumTile, tile) < 0) {
-					maximumTile = tile;
-				}
-				
-			} else {
-				minimumTile = tile;
-				maximumTile = tile;
-				
-				tilesFound = true;
 			}
-				
-			} catch (NoSuchIndexElementException e) {
+			
+			if (node == null) {
 				// Ignore any referential integrity problems.
 				if (LOG.isLoggable(Level.FINER)) {
 					LOG.finest(
-						"Ignoring referential integrity problem where way " + wayId
+						"Ignoring referential integrity problem where way " + way.getId()
 						+ " refers to non-existent node " + nodeId + "."
 					);
-		}
-			}
-		}
-		
-		// Write the way id to an index keyed by tile but only if tiles were
-		// actually found.
-		if (tilesFound) {
-		wayTileIndexWriter.write(wayId, minimumTile, maximumTile);
+				}
+				continue;
 			}
 			
-		} else {
-			for (WayNode wayNode : way.getWayNodes()) {
-				long nodeId;
-				
-				nodeId = wayNode.getNodeId();
-				
-				nodeWayIndexWriter.write(new LongLongIndexElement(nodeId, wayId));
+			longitude = node.getFixedLongitude();
+			latitude = node.getFixedLatitude();
+			tile = (int) tileCalculator.calculateTileFromFixed(latitude, longitude);
+			
+			if (extent != null) {
+				if (uintComparator.compare(tile, extent[0]) < 0) {
+					extent[0] = tile;
+				}
+				if (uintComparator.compare(extent[1], tile) < 0) {
+					extent[1] = tile;
+				}
+				extent[2] = Math.min(extent[2], longitude);
+				extent[3] = Math.min(extent[3], latitude);
+				extent[4] = Math.max(extent[4], longitude);
+				extent[5] = Math.max(extent[5], latitude);
+			} else {
+				extent = new int[] {tile, tile, longitude, latitude, longitude, latitude};
 			}
-	}
+		}
+		
+		return extent;
 	}
 	
 	
 	/**
-	 * {@inheritDoc}
+	 * Writes a batch of relations to the indexes keyed by relation member.
+	 * This may be called by multiple workers at once.
+	 * 
+	 * @param relations
+	 *            The relations to be indexed.
 	 */
-	public void process(RelationContainer relationContainer) {
-		Relation relation;
-		long relationId;
-		long objectOffset;
+	private void writeRelationIndexes(List<Relation> relations) {
+		List<LongLongIndexElement> nodeElements;
+		List<LongLongIndexElement> wayElements;
+		List<LongLongIndexElement> relationElements;
 		
-		relation = relationContainer.getEntity();
-		relationId = relation.getId();
+		nodeElements = new ArrayList<LongLongIndexElement>();
+		wayElements = new ArrayList<LongLongIndexElement>();
+		relationElements = new ArrayList<LongLongIndexElement>();
 		
-		// Write the relation to the object store and save the file offset in an
-		// index keyed by relation id.
-		objectOffset = relationObjectStore.add(relation);
-		relationObjectOffsetIndexWriter.write(
-			new LongLongIndexElement(relationId, objectOffset)
-		);
+		for (Relation relation : relations) {
+			for (RelationMember member : relation.getMembers()) {
+				EntityType memberType;
+				LongLongIndexElement element;
+				
+				memberType = member.getMemberType();
+				element = new LongLongIndexElement(member.getMemberId(), relation.getId());
+				
+				if (memberType.equals(EntityType.Node)) {
+					nodeElements.add(element);
+				} else if (memberType.equals(EntityType.Way)) {
+					wayElements.add(element);
+				} else if (memberType.equals(EntityType.Relation)) {
+					relationElements.add(element);
+				} else {
+					throw new OsmosisRuntimeException("Member type " + memberType + " is not recognised.");
+				}
+			}
+		}
 		
-		// Write the relation id to indexes keyed by each of the relation members.
-		for (RelationMember member : relation.getMembers()) {
-			EntityType memberType;
-			
-			memberType = member.getMemberType();
-			
-			if (memberType.equals(EntityType.Node)) {
-				nodeRelationIndexWriter.write(new LongLongIndexElement(member.getMemberId(), relationId));
-			} else if (memberType.equals(EntityType.Way)) {
-				wayRelationIndexWriter.write(new LongLongIndexElement(member.getMemberId(), relationId));
-			} else if (memberType.equals(EntityType.Relation)) {
-				relationRelationIndexWriter.write(new LongLongIndexElement(member.getMemberId(), relationId));
-			} else {
-				throw new OsmosisRuntimeException("Member type " + memberType + " is not recognised.");
+		writeIndexElements(nodeRelationIndexWriter, nodeElements);
+		writeIndexElements(wayRelationIndexWriter, wayElements);
+		writeIndexElements(relationRelationIndexWriter, relationElements);
+	}
+	
+	
+	private void writeIndexElements(IndexStore<Long, LongLongIndexElement> index, List<LongLongIndexElement> elements) {
+		synchronized (index) {
+			for (LongLongIndexElement element : elements) {
+				index.write(element);
 			}
 		}
 	}
@@ -390,20 +779,58 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 	 * {@inheritDoc}
 	 */
 	public void complete() {
+		List<Completable> indexes;
+		
+		// Build the indexes from any remaining entities.
+		submitNodeBatch();
+		submitWayBatch();
+		submitRelationBatch();
+		waitForAllBatches();
+		
+		// Indexes not written in key order are sorted during completion which
+		// is the most expensive part of building the dataset. Sort them all
+		// concurrently.
+		indexes = Arrays.<Completable>asList(
+			nodeObjectOffsetIndexWriter,
+			nodeTileIndexWriter,
+			wayObjectOffsetIndexWriter,
+			wayTileIndexWriter,
+			wayBoxIndexWriter,
+			nodeWayIndexWriter,
+			relationObjectOffsetIndexWriter,
+			nodeRelationIndexWriter,
+			wayRelationIndexWriter,
+			relationRelationIndexWriter
+		);
+		for (final Completable index : indexes) {
+			submit(new Runnable() {
+				@Override
+				public void run() {
+					index.complete();
+				}
+			});
+		}
+		waitForAllBatches();
+		
+		if (executorService != null) {
+			executorService.shutdown();
+		}
+		
 		// Complete all the stores to ensure their data is fully persisted.
 		storeContainer.complete();
 	}
 	
 	
 	/**
-	 * {@inheritDoc}
+	 * {@inheritDoc} Readers share the underlying file mappings and hold only
+	 * their own positions, so any number may be active on different threads.
 	 */
 	@Override
-	public DatasetContext createReader() {
+	public synchronized DatasetStoreReader createReader() {
 		ReleasableContainer releasableContainer = new ReleasableContainer();
 		
 		try {
-			DatasetContext reader;
+			DatasetStoreReader reader;
 			
 			reader = new DatasetStoreReader(
 					new NodeStorageContainer(
@@ -416,11 +843,15 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 							releasableContainer.add(wayObjectStore.createReader()),
 							releasableContainer.add(wayObjectOffsetIndexWriter.createReader()),
 							releasableContainer.add(wayTileIndexWriter.createReader()),
-							releasableContainer.add(wayRelationIndexWriter.createReader())),
+							releasableContainer.add(wayRelationIndexWriter.createReader()),
+							wayBoxIndexWriter.createReader()),
 					new RelationStorageContainer(
 							releasableContainer.add(relationObjectStore.createReader()),
 							releasableContainer.add(relationObjectOffsetIndexWriter.createReader()),
 							releasableContainer.add(relationRelationIndexWriter.createReader())),
+					nodeCache,
+					wayCache,
+					relationCache,
 					enableWayTileIndex
 			);
 			
@@ -439,11 +870,17 @@ public class DatasetStore implements Sink, EntityProcessor, Dataset {
 	 * {@inheritDoc}
 	 */
 	public void release() {
-		if (nodeObjectReader != null) {
-			nodeObjectReader.release();
-		}
-		if (nodeObjectOffsetIndexReader != null) {
-			nodeObjectOffsetIndexReader.release();
+		if (executorService != null) {
+			// Workers may still be running if processing was aborted.
+			executorService.shutdownNow();
+			try {
+				while (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+					LOG.fine("Waiting for dataset index worker threads to stop.");
+				}
+			} catch (InterruptedException e) {
+				throw new OsmosisRuntimeException("Thread was interrupted.", e);
+			}
+			executorService = null;
 		}
 		
 		storeContainer.release();
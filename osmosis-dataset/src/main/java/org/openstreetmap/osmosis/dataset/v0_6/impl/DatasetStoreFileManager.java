@@ -66,6 +66,15 @@ public interface DatasetStoreFileManager extends Releasable {
 	File getWayTileIndexFile(int instance);
 	
 	
+	/**
+	 * Returns the file to be used for storing the hierarchical index of way
+	 * bounding boxes.
+	 * 
+	 * @return The way box index file.
+	 */
+	File getWayBoxIndexFile();
+	
+	
 	/**
 	 * Returns the file to be used for storing relationships between nodes and
 	 * ways.
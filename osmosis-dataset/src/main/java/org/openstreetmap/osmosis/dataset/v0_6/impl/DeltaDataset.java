@@ -0,0 +1,322 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.Dataset;
+import org.openstreetmap.osmosis.core.container.v0_6.DatasetContext;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.filter.common.LongIterator;
+import org.openstreetmap.osmosis.core.filter.common.RoaringIdTracker;
+import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+
+
+/**
+ * A dataset held in a directory, consisting of a base dataset store and an
+ * optional delta containing changes applied since the base store was written.
+ * <p>
+ * The delta is a complete dataset store in its own directory holding the latest
+ * version of every entity created or modified since the base store was
+ * written. It is accompanied by files listing the ids of all entities the
+ * delta supersedes, including deleted entities which are not present in the
+ * delta. The base store is never modified when changes are applied, the delta
+ * is rebuilt instead and is periodically compacted into a new base store.
+ * The directories holding the current base store and delta are tracked by
+ * DatasetDirectory.
+ * 
+ * @author Brett Henderson
+ */
+public class DeltaDataset implements Dataset, Releasable {
+	
+	private static final Logger LOG = Logger.getLogger(DeltaDataset.class.getName());
+	
+	private DatasetStoreFileManager baseFileManager;
+	private DatasetStore baseStore;
+	private DatasetStoreFileManager deltaFileManager;
+	private DatasetStore deltaStore;
+	private RoaringIdTracker supersededNodeIds;
+	private RoaringIdTracker supersededWayIds;
+	private RoaringIdTracker supersededRelationIds;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param directory
+	 *            The directory containing the dataset.
+	 * @param enableWayTileIndex
+	 *            If true a tile index is created for ways, otherwise a node-way
+	 *            index is used.
+	 * @param cacheSize
+	 *            The number of entities of each type to keep in memory once
+	 *            loaded.
+	 */
+	public DeltaDataset(File directory, boolean enableWayTileIndex, int cacheSize) {
+		this(new DatasetDirectory(directory), enableWayTileIndex, cacheSize);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param datasetDirectory
+	 *            The directory containing the dataset.
+	 * @param enableWayTileIndex
+	 *            If true a tile index is created for ways, otherwise a node-way
+	 *            index is used.
+	 * @param cacheSize
+	 *            The number of entities of each type to keep in memory once
+	 *            loaded.
+	 */
+	public DeltaDataset(DatasetDirectory datasetDirectory, boolean enableWayTileIndex, int cacheSize) {
+		File deltaDirectory;
+		
+		baseFileManager = new PermanentFileDatasetStoreFileManager(datasetDirectory.getBaseDirectory());
+		baseStore = new DatasetStore(baseFileManager, enableWayTileIndex, 1, cacheSize);
+		
+		deltaDirectory = datasetDirectory.getDeltaDirectory();
+		if (deltaDirectory != null) {
+			deltaFileManager = new PermanentFileDatasetStoreFileManager(deltaDirectory);
+			deltaStore = new DatasetStore(deltaFileManager, enableWayTileIndex, 1, cacheSize);
+			
+			supersededNodeIds = readIds(getSupersededIdFile(deltaDirectory, EntityType.Node));
+			supersededWayIds = readIds(getSupersededIdFile(deltaDirectory, EntityType.Way));
+			supersededRelationIds = readIds(getSupersededIdFile(deltaDirectory, EntityType.Relation));
+		} else {
+			supersededNodeIds = new RoaringIdTracker();
+			supersededWayIds = new RoaringIdTracker();
+			supersededRelationIds = new RoaringIdTracker();
+		}
+	}
+	
+	
+	/**
+	 * Returns the file listing the ids of entities of a single type superseded
+	 * by a delta.
+	 * 
+	 * @param deltaDirectory
+	 *            The directory containing the delta.
+	 * @param entityType
+	 *            The type of entity.
+	 * @return The superseded id file.
+	 */
+	public static File getSupersededIdFile(File deltaDirectory, EntityType entityType) {
+		if (EntityType.Node.equals(entityType)) {
+			return new File(deltaDirectory, "dssn");
+		} else if (EntityType.Way.equals(entityType)) {
+			return new File(deltaDirectory, "dssw");
+		} else if (EntityType.Relation.equals(entityType)) {
+			return new File(deltaDirectory, "dssr");
+		} else {
+			throw new OsmosisRuntimeException("Entity type " + entityType + " is not supported.");
+		}
+	}
+	
+	
+	/**
+	 * Reads a set of ids written by writeIds.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @return The ids.
+	 */
+	private static RoaringIdTracker readIds(File file) {
+		DataInputStream dataIn = null;
+		
+		try {
+			RoaringIdTracker ids;
+			long count;
+			
+			dataIn = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+			
+			ids = new RoaringIdTracker();
+			count = dataIn.readLong();
+			for (long i = 0; i < count; i++) {
+				ids.set(dataIn.readLong());
+			}
+			
+			dataIn.close();
+			dataIn = null;
+			
+			return ids;
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to read ids from file " + file + ".", e);
+		} finally {
+			if (dataIn != null) {
+				try {
+					dataIn.close();
+				} catch (IOException e) {
+					LOG.log(Level.WARNING, "Unable to close id file " + file + ".", e);
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Writes a set of ids to a file as a count followed by the ids in
+	 * ascending order.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param ids
+	 *            The ids.
+	 */
+	public static void writeIds(File file, RoaringIdTracker ids) {
+		DataOutputStream dataOut = null;
+		
+		try {
+			dataOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+			
+			dataOut.writeLong(ids.size());
+			for (LongIterator idIterator = ids.longIterator(); idIterator.hasNext();) {
+				dataOut.writeLong(idIterator.next());
+			}
+			
+			dataOut.close();
+			dataOut = null;
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to write ids to file " + file + ".", e);
+		} finally {
+			if (dataOut != null) {
+				try {
+					dataOut.close();
+				} catch (IOException e) {
+					LOG.log(Level.WARNING, "Unable to close id file " + file + ".", e);
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Deletes a directory and the files within it.
+	 * 
+	 * @param directory
+	 *            The directory to delete.
+	 */
+	public static void deleteDirectory(File directory) {
+		File[] files;
+		
+		files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (!file.delete()) {
+					throw new OsmosisRuntimeException("Unable to delete file " + file + ".");
+				}
+			}
+		}
+		
+		if (directory.exists() && !directory.delete()) {
+			throw new OsmosisRuntimeException("Unable to delete directory " + directory + ".");
+		}
+	}
+	
+	
+	/**
+	 * Indicates whether changes have been applied since the base store was
+	 * written.
+	 * 
+	 * @return True if a delta exists.
+	 */
+	public boolean hasDelta() {
+		return deltaStore != null;
+	}
+	
+	
+	/**
+	 * Gets the base store.
+	 * 
+	 * @return The base store.
+	 */
+	public DatasetStore getBaseStore() {
+		return baseStore;
+	}
+	
+	
+	/**
+	 * Gets the delta store.
+	 * 
+	 * @return The delta store, or null if there is no delta.
+	 */
+	public DatasetStore getDeltaStore() {
+		return deltaStore;
+	}
+	
+	
+	/**
+	 * Gets the ids of entities of a single type superseded by the delta. The
+	 * returned ids must not be modified.
+	 * 
+	 * @param entityType
+	 *            The type of entity.
+	 * @return The superseded ids, empty if there is no delta.
+	 */
+	public RoaringIdTracker getSupersededIds(EntityType entityType) {
+		if (EntityType.Node.equals(entityType)) {
+			return supersededNodeIds;
+		} else if (EntityType.Way.equals(entityType)) {
+			return supersededWayIds;
+		} else if (EntityType.Relation.equals(entityType)) {
+			return supersededRelationIds;
+		} else {
+			throw new OsmosisRuntimeException("Entity type " + entityType + " is not supported.");
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized DatasetContext createReader() {
+		DatasetStoreReader baseReader;
+		
+		baseReader = baseStore.createReader();
+		if (deltaStore == null) {
+			return baseReader;
+		}
+		
+		try {
+			DatasetContext reader;
+			
+			reader = new DeltaDatasetReader(baseReader, deltaStore.createReader(),
+					supersededNodeIds, supersededWayIds, supersededRelationIds);
+			baseReader = null;
+			
+			return reader;
+			
+		} finally {
+			if (baseReader != null) {
+				baseReader.release();
+			}
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		if (deltaStore != null) {
+			deltaStore.release();
+			deltaFileManager.release();
+		}
+		
+		baseStore.release();
+		baseFileManager.release();
+	}
+}
@@ -0,0 +1,294 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openstreetmap.osmosis.core.container.v0_6.EntityManager;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.filter.common.IdTracker;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.store.MultipleSourceIterator;
+
+
+/**
+ * Provides read-only access to a dataset store with a delta of later changes
+ * applied to it. Index queries are answered by both the base store and the
+ * delta, with results for superseded entities removed from the base store
+ * results.
+ * <p>
+ * If the way tile index is in use, ways are located by the extent they had
+ * when last written. A way left unchanged by the delta whose nodes were moved
+ * is still located by its original extent until the delta is compacted into
+ * the base store.
+ * 
+ * @author Brett Henderson
+ */
+public class DeltaDatasetReader extends BaseDatasetReader {
+	
+	private DatasetStoreReader baseReader;
+	private DatasetStoreReader deltaReader;
+	private IdTracker supersededNodeIds;
+	private IdTracker supersededWayIds;
+	private IdTracker supersededRelationIds;
+	private EntityManager<Node> nodeManager;
+	private EntityManager<Way> wayManager;
+	private EntityManager<Relation> relationManager;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param baseReader
+	 *            The reader for the base store.
+	 * @param deltaReader
+	 *            The reader for the delta.
+	 * @param supersededNodeIds
+	 *            The ids of all nodes created, modified or deleted by the
+	 *            delta.
+	 * @param supersededWayIds
+	 *            The ids of all ways created, modified or deleted by the
+	 *            delta.
+	 * @param supersededRelationIds
+	 *            The ids of all relations created, modified or deleted by the
+	 *            delta.
+	 */
+	public DeltaDatasetReader(DatasetStoreReader baseReader, DatasetStoreReader deltaReader,
+			IdTracker supersededNodeIds, IdTracker supersededWayIds, IdTracker supersededRelationIds) {
+		this.baseReader = baseReader;
+		this.deltaReader = deltaReader;
+		this.supersededNodeIds = supersededNodeIds;
+		this.supersededWayIds = supersededWayIds;
+		this.supersededRelationIds = supersededRelationIds;
+		
+		nodeManager = new DeltaEntityManager<Node>(
+				baseReader.getNodeManager(), deltaReader.getNodeManager(), supersededNodeIds);
+		wayManager = new DeltaEntityManager<Way>(
+				baseReader.getWayManager(), deltaReader.getWayManager(), supersededWayIds);
+		relationManager = new DeltaEntityManager<Relation>(
+				baseReader.getRelationManager(), deltaReader.getRelationManager(), supersededRelationIds);
+	}
+	
+	
+	/**
+	 * Combines the base store results not superseded by the delta with the
+	 * delta results.
+	 * 
+	 * @param baseIds
+	 *            The ids returned by the base store.
+	 * @param supersededIds
+	 *            The ids superseded by the delta.
+	 * @param deltaIds
+	 *            The ids returned by the delta.
+	 * @return The combined ids.
+	 */
+	private ReleasableIterator<Long> combine(
+			ReleasableIterator<Long> baseIds, IdTracker supersededIds, ReleasableIterator<Long> deltaIds) {
+		List<ReleasableIterator<Long>> sources;
+		
+		sources = new ArrayList<ReleasableIterator<Long>>(2);
+		sources.add(new CurrentIdIterator(baseIds, supersededIds));
+		sources.add(deltaIds);
+		
+		return new MultipleSourceIterator<Long>(sources);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected ReleasableIterator<Long> getNodeIdsForTileRange(int minimumTile, int maximumTile) {
+		return combine(
+				baseReader.getNodeIdsForTileRange(minimumTile, maximumTile),
+				supersededNodeIds,
+				deltaReader.getNodeIdsForTileRange(minimumTile, maximumTile));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected ReleasableIterator<Long> getWayIdsForBoundingBox(BoundingBoxContext bboxCtx) {
+		return combine(
+				baseReader.getWayIdsForBoundingBox(bboxCtx),
+				supersededWayIds,
+				deltaReader.getWayIdsForBoundingBox(bboxCtx));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected ReleasableIterator<Long> getWayIdsOwningNode(long nodeId) {
+		return combine(
+				baseReader.getWayIdsOwningNode(nodeId),
+				supersededWayIds,
+				deltaReader.getWayIdsOwningNode(nodeId));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected ReleasableIterator<Long> getRelationIdsOwningNode(long nodeId) {
+		return combine(
+				baseReader.getRelationIdsOwningNode(nodeId),
+				supersededRelationIds,
+				deltaReader.getRelationIdsOwningNode(nodeId));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected ReleasableIterator<Long> getRelationIdsOwningWay(long wayId) {
+		return combine(
+				baseReader.getRelationIdsOwningWay(wayId),
+				supersededRelationIds,
+				deltaReader.getRelationIdsOwningWay(wayId));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected ReleasableIterator<Long> getRelationIdsOwningRelation(long relationId) {
+		return combine(
+				baseReader.getRelationIdsOwningRelation(relationId),
+				supersededRelationIds,
+				deltaReader.getRelationIdsOwningRelation(relationId));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean isTileWayIndexAvailable() {
+		return baseReader.isTileWayIndexAvailable();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public EntityManager<Node> getNodeManager() {
+		return nodeManager;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public EntityManager<Way> getWayManager() {
+		return wayManager;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public EntityManager<Relation> getRelationManager() {
+		return relationManager;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		deltaReader.release();
+		baseReader.release();
+	}
+	
+	
+	/**
+	 * Removes the ids of superseded entities from a stream of ids.
+	 */
+	private static class CurrentIdIterator implements ReleasableIterator<Long> {
+		private ReleasableIterator<Long> source;
+		private IdTracker supersededIds;
+		private Long nextId;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param source
+		 *            The ids to be filtered.
+		 * @param supersededIds
+		 *            The ids to be removed.
+		 */
+		public CurrentIdIterator(ReleasableIterator<Long> source, IdTracker supersededIds) {
+			this.source = source;
+			this.supersededIds = supersededIds;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			while (nextId == null && source.hasNext()) {
+				Long id;
+				
+				id = source.next();
+				if (!supersededIds.get(id)) {
+					nextId = id;
+				}
+			}
+			
+			return nextId != null;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Long next() {
+			Long result;
+			
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			result = nextId;
+			nextId = null;
+			
+			return result;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void release() {
+			source.release();
+		}
+	}
+}
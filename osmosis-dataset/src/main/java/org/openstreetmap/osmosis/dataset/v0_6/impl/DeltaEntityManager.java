@@ -0,0 +1,208 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6.impl;
+
+import java.util.NoSuchElementException;
+
+import org.openstreetmap.osmosis.core.container.v0_6.EntityManager;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.filter.common.IdTracker;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.store.PeekableIterator;
+
+
+/**
+ * Provides access to entities of a single type within a dataset store with a
+ * delta applied to it. Entities superseded by the delta are loaded from the
+ * delta, all others are loaded from the base store.
+ * 
+ * @param <T>
+ *            The type of entity being managed.
+ * @author Brett Henderson
+ */
+public class DeltaEntityManager<T extends Entity> implements EntityManager<T> {
+	
+	private EntityManager<T> baseManager;
+	private EntityManager<T> deltaManager;
+	private IdTracker supersededIds;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param baseManager
+	 *            The manager for the entities within the base store.
+	 * @param deltaManager
+	 *            The manager for the entities within the delta.
+	 * @param supersededIds
+	 *            The ids of all entities created, modified or deleted by the
+	 *            delta.
+	 */
+	public DeltaEntityManager(EntityManager<T> baseManager, EntityManager<T> deltaManager, IdTracker supersededIds) {
+		this.baseManager = baseManager;
+		this.deltaManager = deltaManager;
+		this.supersededIds = supersededIds;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addEntity(T entity) {
+		throw new UnsupportedOperationException();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean exists(long id) {
+		if (supersededIds.get(id)) {
+			return deltaManager.exists(id);
+		} else {
+			return baseManager.exists(id);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public T getEntity(long id) {
+		// Deleted entities are superseded but don't exist in the delta, the
+		// delta will report them as missing.
+		if (supersededIds.get(id)) {
+			return deltaManager.getEntity(id);
+		} else {
+			return baseManager.getEntity(id);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ReleasableIterator<T> iterate() {
+		return new MergingIterator(baseManager.iterate(), deltaManager.iterate());
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void modifyEntity(T entity) {
+		throw new UnsupportedOperationException();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeEntity(long entityId) {
+		throw new UnsupportedOperationException();
+	}
+	
+	
+	/**
+	 * Combines the base and delta entities into a single stream ordered by id.
+	 * Both stores are written in id order so a single merge pass is
+	 * sufficient.
+	 */
+	private class MergingIterator implements ReleasableIterator<T> {
+		private PeekableIterator<T> baseEntities;
+		private PeekableIterator<T> deltaEntities;
+		private T nextEntity;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param baseEntities
+		 *            The entities within the base store.
+		 * @param deltaEntities
+		 *            The entities within the delta.
+		 */
+		public MergingIterator(ReleasableIterator<T> baseEntities, ReleasableIterator<T> deltaEntities) {
+			this.baseEntities = new PeekableIterator<T>(baseEntities);
+			this.deltaEntities = new PeekableIterator<T>(deltaEntities);
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			while (nextEntity == null) {
+				boolean baseAvailable;
+				boolean deltaAvailable;
+				
+				// Superseded base entities are replaced by the delta.
+				while (baseEntities.hasNext() && supersededIds.get(baseEntities.peekNext().getId())) {
+					baseEntities.next();
+				}
+				
+				baseAvailable = baseEntities.hasNext();
+				deltaAvailable = deltaEntities.hasNext();
+				
+				if (baseAvailable && deltaAvailable) {
+					if (baseEntities.peekNext().getId() < deltaEntities.peekNext().getId()) {
+						nextEntity = baseEntities.next();
+					} else {
+						nextEntity = deltaEntities.next();
+					}
+				} else if (baseAvailable) {
+					nextEntity = baseEntities.next();
+				} else if (deltaAvailable) {
+					nextEntity = deltaEntities.next();
+				} else {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public T next() {
+			T result;
+			
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			result = nextEntity;
+			nextEntity = null;
+			
+			return result;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void release() {
+			baseEntities.release();
+			deltaEntities.release();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+
+
+/**
+ * Caches recently decoded entities keyed by their offset within an object
+ * store. Once the cache is full the least recently used entity is discarded.
+ * A single cache is shared by all readers of a dataset so that overlapping
+ * queries avoid decoding the same entities again. Cached entities are made
+ * read-only so that they can be shared safely.
+ * 
+ * @param <T>
+ *            The type of entity being cached.
+ * @author Brett Henderson
+ */
+public class EntityCache<T extends Entity> {
+	
+	private int capacity;
+	private Map<Long, T> entities;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param capacity
+	 *            The maximum number of entities to hold. If 0, no entities
+	 *            are cached.
+	 */
+	public EntityCache(final int capacity) {
+		this.capacity = capacity;
+		
+		entities = new LinkedHashMap<Long, T>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	
+	/**
+	 * Gets a cached entity.
+	 * 
+	 * @param offset
+	 *            The offset of the entity within its object store.
+	 * @return The entity, or null if it isn't cached.
+	 */
+	public synchronized T get(long offset) {
+		return entities.get(offset);
+	}
+	
+	
+	/**
+	 * Adds an entity to the cache. The entity is made read-only.
+	 * 
+	 * @param offset
+	 *            The offset of the entity within its object store.
+	 * @param entity
+	 *            The entity.
+	 */
+	public void put(long offset, T entity) {
+		if (capacity > 0) {
+			entity.makeReadOnly();
+			
+			synchronized (this) {
+				entities.put(offset, entity);
+			}
+		}
+	}
+}
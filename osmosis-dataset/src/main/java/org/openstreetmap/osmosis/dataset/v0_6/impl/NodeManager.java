@@ -16,6 +16,7 @@ import org.openstreetmap.osmosis.core.store.ReleasableAdaptorForIterator;
 public class NodeManager implements EntityManager<Node> {
 	
 	private NodeStorageContainer storageContainer;
+	private EntityCache<Node> cache;
 	
 	
 	/**
@@ -23,9 +24,12 @@ public class NodeManager implements EntityManager<Node> {
 	 * 
 	 * @param storageContainer
 	 *            The storage container containing the entities.
+	 * @param cache
+	 *            The cache of recently loaded entities.
 	 */
-	public NodeManager(NodeStorageContainer storageContainer) {
+	public NodeManager(NodeStorageContainer storageContainer, EntityCache<Node> cache) {
 		this.storageContainer = storageContainer;
+		this.cache = cache;
 	}
 	
 	
@@ -60,9 +64,18 @@ public class NodeManager implements EntityManager<Node> {
 	 */
 	@Override
 	public Node getEntity(long id) {
-		return storageContainer.getNodeObjectReader().get(
-				storageContainer.getNodeObjectOffsetIndexReader().get(id).getValue()
-		);
+		long offset;
+		Node entity;
+		
+		offset = storageContainer.getNodeObjectOffsetIndexReader().get(id).getValue();
+		
+		entity = cache.get(offset);
+		if (entity == null) {
+			entity = storageContainer.getNodeObjectReader().get(offset);
+			cache.put(offset, entity);
+		}
+		
+		return entity;
 	}
 
 	
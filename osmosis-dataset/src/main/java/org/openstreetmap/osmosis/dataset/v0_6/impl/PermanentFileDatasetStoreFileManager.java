@@ -20,6 +20,7 @@ public class PermanentFileDatasetStoreFileManager implements DatasetStoreFileMan
 	private File wayObjectFile;
 	private File wayObjectOffsetIndexFile;
 	private Map<Integer, File> wayTileIndexFileMap;
+	private File wayBoxIndexFile;
 	private File nodeWayIndexFile;
 	private File relationObjectFile;
 	private File relationObjectOffsetIndexFile;
@@ -132,6 +133,19 @@ public class PermanentFileDatasetStoreFileManager implements DatasetStoreFileMan
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public File getWayBoxIndexFile() {
+		if (wayBoxIndexFile == null) {
+			wayBoxIndexFile = createDataFile("dswbi");
+		}
+		
+		return wayBoxIndexFile;
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -16,6 +16,7 @@ import org.openstreetmap.osmosis.core.store.ReleasableAdaptorForIterator;
 public class RelationManager implements EntityManager<Relation> {
 	
 	private RelationStorageContainer storageContainer;
+	private EntityCache<Relation> cache;
 	
 	
 	/**
@@ -23,9 +24,12 @@ public class RelationManager implements EntityManager<Relation> {
 	 * 
 	 * @param storageContainer
 	 *            The storage container containing the entities.
+	 * @param cache
+	 *            The cache of recently loaded entities.
 	 */
-	public RelationManager(RelationStorageContainer storageContainer) {
+	public RelationManager(RelationStorageContainer storageContainer, EntityCache<Relation> cache) {
 		this.storageContainer = storageContainer;
+		this.cache = cache;
 	}
 	
 	
@@ -60,9 +64,18 @@ public class RelationManager implements EntityManager<Relation> {
 	 */
 	@Override
 	public Relation getEntity(long id) {
-		return storageContainer.getRelationObjectReader().get(
-				storageContainer.getRelationObjectOffsetIndexReader().get(id).getValue()
-		);
+		long offset;
+		Relation entity;
+		
+		offset = storageContainer.getRelationObjectOffsetIndexReader().get(id).getValue();
+		
+		entity = cache.get(offset);
+		if (entity == null) {
+			entity = storageContainer.getRelationObjectReader().get(offset);
+			cache.put(offset, entity);
+		}
+		
+		return entity;
 	}
 
 	
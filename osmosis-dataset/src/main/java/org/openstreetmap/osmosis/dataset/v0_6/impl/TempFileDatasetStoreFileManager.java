@@ -29,6 +29,7 @@ public class TempFileDatasetStoreFileManager implements DatasetStoreFileManager
 	private File wayObjectFile;
 	private File wayObjectOffsetIndexFile;
 	private Map<Integer, File> wayTileIndexFileMap;
+	private File wayBoxIndexFile;
 	private File nodeWayIndexFile;
 	private File relationObjectFile;
 	private File relationObjectOffsetIndexFile;
@@ -147,6 +148,19 @@ public class TempFileDatasetStoreFileManager implements DatasetStoreFileManager
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public File getWayBoxIndexFile() {
+		if (wayBoxIndexFile == null) {
+			wayBoxIndexFile = createTempFile("dswbi");
+		}
+		
+		return wayBoxIndexFile;
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
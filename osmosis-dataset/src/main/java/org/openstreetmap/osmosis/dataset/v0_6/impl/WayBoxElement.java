@@ -0,0 +1,152 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6.impl;
+
+import org.openstreetmap.osmosis.core.store.StoreClassRegister;
+import org.openstreetmap.osmosis.core.store.StoreReader;
+import org.openstreetmap.osmosis.core.store.StoreWriter;
+import org.openstreetmap.osmosis.core.store.Storeable;
+import org.openstreetmap.osmosis.core.util.TileCalculator;
+
+
+/**
+ * The bounding box of a single way. Coordinates are held in fixed precision.
+ * 
+ * @author Brett Henderson
+ */
+public class WayBoxElement implements Storeable {
+	
+	private static final TileCalculator TILE_CALCULATOR = new TileCalculator();
+	
+	private long wayId;
+	private int minimumLongitude;
+	private int minimumLatitude;
+	private int maximumLongitude;
+	private int maximumLatitude;
+	private long centreTile;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param wayId
+	 *            The way identifier.
+	 * @param minimumLongitude
+	 *            The minimum longitude of the way.
+	 * @param minimumLatitude
+	 *            The minimum latitude of the way.
+	 * @param maximumLongitude
+	 *            The maximum longitude of the way.
+	 * @param maximumLatitude
+	 *            The maximum latitude of the way.
+	 */
+	public WayBoxElement(
+			long wayId, int minimumLongitude, int minimumLatitude, int maximumLongitude, int maximumLatitude) {
+		this.wayId = wayId;
+		this.minimumLongitude = minimumLongitude;
+		this.minimumLatitude = minimumLatitude;
+		this.maximumLongitude = maximumLongitude;
+		this.maximumLatitude = maximumLatitude;
+		
+		centreTile = calculateCentreTile();
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param sr
+	 *            The store to read state from.
+	 * @param scr
+	 *            Maintains the mapping between classes and their identifiers
+	 *            within the store.
+	 */
+	public WayBoxElement(StoreReader sr, StoreClassRegister scr) {
+		this(sr.readLong(), sr.readInteger(), sr.readInteger(), sr.readInteger(), sr.readInteger());
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void store(StoreWriter writer, StoreClassRegister storeClassRegister) {
+		writer.writeLong(wayId);
+		writer.writeInteger(minimumLongitude);
+		writer.writeInteger(minimumLatitude);
+		writer.writeInteger(maximumLongitude);
+		writer.writeInteger(maximumLatitude);
+	}
+	
+	
+	private long calculateCentreTile() {
+		int centreLongitude;
+		int centreLatitude;
+		
+		centreLongitude = (int) (((long) minimumLongitude + maximumLongitude) / 2);
+		centreLatitude = (int) (((long) minimumLatitude + maximumLatitude) / 2);
+		
+		return TILE_CALCULATOR.calculateTileFromFixed(centreLatitude, centreLongitude);
+	}
+	
+	
+	/**
+	 * Gets the tile containing the centre of the box. Tiles interleave the bits
+	 * of the coordinates so sorting boxes by tile keeps boxes that are close to
+	 * each other together.
+	 * 
+	 * @return The tile of the box centre.
+	 */
+	public long getCentreTile() {
+		return centreTile;
+	}
+	
+	
+	/**
+	 * Gets the way identifier.
+	 * 
+	 * @return The way identifier.
+	 */
+	public long getWayId() {
+		return wayId;
+	}
+	
+	
+	/**
+	 * Gets the minimum longitude.
+	 * 
+	 * @return The minimum longitude.
+	 */
+	public int getMinimumLongitude() {
+		return minimumLongitude;
+	}
+	
+	
+	/**
+	 * Gets the minimum latitude.
+	 * 
+	 * @return The minimum latitude.
+	 */
+	public int getMinimumLatitude() {
+		return minimumLatitude;
+	}
+	
+	
+	/**
+	 * Gets the maximum longitude.
+	 * 
+	 * @return The maximum longitude.
+	 */
+	public int getMaximumLongitude() {
+		return maximumLongitude;
+	}
+	
+	
+	/**
+	 * Gets the maximum latitude.
+	 * 
+	 * @return The maximum latitude.
+	 */
+	public int getMaximumLatitude() {
+		return maximumLatitude;
+	}
+}
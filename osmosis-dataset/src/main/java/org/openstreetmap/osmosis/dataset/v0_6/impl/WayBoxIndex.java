@@ -0,0 +1,381 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.lifecycle.Completable;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.sort.common.FileBasedSort;
+import org.openstreetmap.osmosis.core.store.CompactObjectSerializationFactory;
+import org.openstreetmap.osmosis.core.store.MappedFile;
+import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
+
+
+/**
+ * A packed hierarchical index of way bounding boxes. Ways are sorted by the
+ * tile of their box centre and written as fixed size leaf entries. Each higher
+ * level of the hierarchy holds one box for every group of entries in the level
+ * below, up to a single root box. A search only visits the groups whose boxes
+ * intersect the search area.
+ * <p>
+ * The file begins with a header containing an identifier, the number of
+ * entries per group, and the number of ways. The levels follow starting with
+ * the leaves. Leaf entries contain the way id followed by the minimum
+ * longitude, minimum latitude, maximum longitude and maximum latitude, higher
+ * level entries contain only the box.
+ * 
+ * @author Brett Henderson
+ */
+public class WayBoxIndex implements Completable {
+	
+	private static final Logger LOG = Logger.getLogger(WayBoxIndex.class.getName());
+	
+	/**
+	 * Identifies a way box index file.
+	 */
+	static final int FILE_IDENTIFIER = 0x57424931;
+	
+	/**
+	 * The number of entries grouped under a single entry of the level above.
+	 */
+	static final int GROUP_SIZE = 64;
+	
+	/**
+	 * The size of the file header in bytes.
+	 */
+	static final int HEADER_SIZE = 16;
+	
+	/**
+	 * The size of a leaf entry in bytes.
+	 */
+	static final int LEAF_ENTRY_SIZE = 24;
+	
+	/**
+	 * The size of a higher level entry in bytes.
+	 */
+	static final int BOX_ENTRY_SIZE = 16;
+	
+	private File indexFile;
+	private FileBasedSort<WayBoxElement> boxSort;
+	private boolean complete;
+	private MappedFile mappedFile;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param indexFile
+	 *            The file to write the index to.
+	 */
+	public WayBoxIndex(File indexFile) {
+		this.indexFile = indexFile;
+		
+		boxSort = new FileBasedSort<WayBoxElement>(
+			new CompactObjectSerializationFactory(new SingleClassObjectSerializationFactory(WayBoxElement.class)),
+			new Comparator<WayBoxElement>() {
+				@Override
+				public int compare(WayBoxElement o1, WayBoxElement o2) {
+					long tile1 = o1.getCentreTile();
+					long tile2 = o2.getCentreTile();
+					
+					if (tile1 < tile2) {
+						return -1;
+					} else if (tile1 > tile2) {
+						return 1;
+					} else if (o1.getWayId() < o2.getWayId()) {
+						return -1;
+					} else if (o1.getWayId() > o2.getWayId()) {
+						return 1;
+					} else {
+						return 0;
+					}
+				}
+			},
+			true
+		);
+	}
+	
+	
+	/**
+	 * Adds the bounding box of a way to the index.
+	 * 
+	 * @param element
+	 *            The way box.
+	 */
+	public void write(WayBoxElement element) {
+		boxSort.add(element);
+	}
+	
+	
+	/**
+	 * Calculates the number of entries in each level of an index.
+	 * 
+	 * @param wayCount
+	 *            The number of ways in the index.
+	 * @return The entry counts beginning with the leaf level.
+	 */
+	static long[] calculateLevelSizes(long wayCount) {
+		int levelCount;
+		long[] levelSizes;
+		
+		if (wayCount == 0) {
+			return new long[0];
+		}
+		
+		// Add levels until a level contains a single entry.
+		levelCount = 1;
+		for (long size = wayCount; size > 1; size = (size + GROUP_SIZE - 1) / GROUP_SIZE) {
+			levelCount++;
+		}
+		
+		levelSizes = new long[levelCount];
+		levelSizes[0] = wayCount;
+		for (int i = 1; i < levelCount; i++) {
+			levelSizes[i] = (levelSizes[i - 1] + GROUP_SIZE - 1) / GROUP_SIZE;
+		}
+		
+		return levelSizes;
+	}
+	
+	
+	/**
+	 * Calculates the file offsets of each level of an index.
+	 * 
+	 * @param levelSizes
+	 *            The entry counts of each level.
+	 * @return The file offsets beginning with the leaf level.
+	 */
+	static long[] calculateLevelOffsets(long[] levelSizes) {
+		long[] levelOffsets;
+		
+		levelOffsets = new long[levelSizes.length];
+		for (int i = 0; i < levelSizes.length; i++) {
+			if (i == 0) {
+				levelOffsets[i] = HEADER_SIZE;
+			} else if (i == 1) {
+				levelOffsets[i] = levelOffsets[i - 1] + levelSizes[i - 1] * LEAF_ENTRY_SIZE;
+			} else {
+				levelOffsets[i] = levelOffsets[i - 1] + levelSizes[i - 1] * BOX_ENTRY_SIZE;
+			}
+		}
+		
+		return levelOffsets;
+	}
+	
+	
+	/**
+	 * Writes the sorted way boxes as the leaf level of the index.
+	 * 
+	 * @return The number of ways written.
+	 */
+	private long writeLeaves() throws IOException {
+		DataOutputStream output;
+		long wayCount;
+		
+		output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 65536));
+		try {
+			ReleasableIterator<WayBoxElement> boxIterator;
+			
+			// The way count is filled in once known.
+			output.writeInt(FILE_IDENTIFIER);
+			output.writeInt(GROUP_SIZE);
+			output.writeLong(0);
+			
+			wayCount = 0;
+			boxIterator = boxSort.iterate();
+			try {
+				while (boxIterator.hasNext()) {
+					WayBoxElement element = boxIterator.next();
+					
+					output.writeLong(element.getWayId());
+					output.writeInt(element.getMinimumLongitude());
+					output.writeInt(element.getMinimumLatitude());
+					output.writeInt(element.getMaximumLongitude());
+					output.writeInt(element.getMaximumLatitude());
+					wayCount++;
+				}
+			} finally {
+				boxIterator.release();
+			}
+			
+			output.close();
+			
+		} finally {
+			try {
+				output.close();
+			} catch (IOException e) {
+				LOG.log(Level.WARNING, "Unable to close the way box index file.", e);
+			}
+		}
+		
+		return wayCount;
+	}
+	
+	
+	/**
+	 * Writes a level of the index containing the boxes of the groups of
+	 * entries in the level below. The level is appended to the file.
+	 * 
+	 * @param childOffset
+	 *            The file offset of the level below.
+	 * @param childCount
+	 *            The number of entries in the level below.
+	 * @param childEntrySize
+	 *            The size of entries in the level below.
+	 */
+	private void writeBoxLevel(long childOffset, long childCount, int childEntrySize) throws IOException {
+		FileInputStream fileInput;
+		DataInputStream input;
+		DataOutputStream output;
+		
+		fileInput = new FileInputStream(indexFile);
+		try {
+			fileInput.getChannel().position(childOffset);
+			input = new DataInputStream(new BufferedInputStream(fileInput, 65536));
+			
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true), 65536));
+			try {
+				for (long groupBegin = 0; groupBegin < childCount; groupBegin += GROUP_SIZE) {
+					long groupEnd;
+					int minimumLongitude = Integer.MAX_VALUE;
+					int minimumLatitude = Integer.MAX_VALUE;
+					int maximumLongitude = Integer.MIN_VALUE;
+					int maximumLatitude = Integer.MIN_VALUE;
+					
+					groupEnd = Math.min(groupBegin + GROUP_SIZE, childCount);
+					for (long i = groupBegin; i < groupEnd; i++) {
+						if (childEntrySize == LEAF_ENTRY_SIZE) {
+							input.readLong();
+						}
+						minimumLongitude = Math.min(minimumLongitude, input.readInt());
+						minimumLatitude = Math.min(minimumLatitude, input.readInt());
+						maximumLongitude = Math.max(maximumLongitude, input.readInt());
+						maximumLatitude = Math.max(maximumLatitude, input.readInt());
+					}
+					
+					output.writeInt(minimumLongitude);
+					output.writeInt(minimumLatitude);
+					output.writeInt(maximumLongitude);
+					output.writeInt(maximumLatitude);
+				}
+				
+				output.close();
+				
+			} finally {
+				try {
+					output.close();
+				} catch (IOException e) {
+					LOG.log(Level.WARNING, "Unable to close the way box index file.", e);
+				}
+			}
+			
+		} finally {
+			try {
+				fileInput.close();
+			} catch (IOException e) {
+				LOG.log(Level.WARNING, "Unable to close the way box index file.", e);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Writes the way count into the file header.
+	 * 
+	 * @param wayCount
+	 *            The number of ways.
+	 */
+	private void writeWayCount(long wayCount) throws IOException {
+		RandomAccessFile file;
+		
+		file = new RandomAccessFile(indexFile, "rw");
+		try {
+			file.seek(HEADER_SIZE - 8);
+			file.writeLong(wayCount);
+			
+		} finally {
+			file.close();
+		}
+	}
+	
+	
+	/**
+	 * Creates a new reader capable of searching this index. A reader is only
+	 * available if the index file has been written. All readers share a
+	 * single mapping of the index file.
+	 * 
+	 * @return The index reader, or null if no index exists.
+	 */
+	public synchronized WayBoxIndexReader createReader() {
+		if (mappedFile == null) {
+			if (indexFile.length() == 0) {
+				return null;
+			}
+			
+			mappedFile = new MappedFile(indexFile);
+		}
+		
+		return new WayBoxIndexReader(mappedFile);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void complete() {
+		if (!complete) {
+			try {
+				long[] levelSizes;
+				long[] levelOffsets;
+				long wayCount;
+				
+				wayCount = writeLeaves();
+				
+				levelSizes = calculateLevelSizes(wayCount);
+				levelOffsets = calculateLevelOffsets(levelSizes);
+				for (int i = 1; i < levelSizes.length; i++) {
+					int childEntrySize;
+					
+					if (i == 1) {
+						childEntrySize = LEAF_ENTRY_SIZE;
+					} else {
+						childEntrySize = BOX_ENTRY_SIZE;
+					}
+					
+					writeBoxLevel(levelOffsets[i - 1], levelSizes[i - 1], childEntrySize);
+				}
+				
+				writeWayCount(wayCount);
+				
+			} catch (IOException e) {
+				throw new OsmosisRuntimeException("Unable to write the way box index file " + indexFile + ".", e);
+			}
+			
+			boxSort.release();
+			complete = true;
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		boxSort.release();
+		mappedFile = null;
+	}
+}
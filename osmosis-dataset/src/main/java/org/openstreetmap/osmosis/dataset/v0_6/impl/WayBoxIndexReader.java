@@ -0,0 +1,202 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6.impl;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+import org.openstreetmap.osmosis.core.store.MappedFile;
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+
+
+/**
+ * Searches a way box index. The index is read directly from a memory mapping
+ * of the index file so searches create no objects other than the way ids
+ * returned. Readers may be shared between threads.
+ * 
+ * @author Brett Henderson
+ */
+public class WayBoxIndexReader implements Releasable {
+	
+	private MappedFile indexFile;
+	private int groupSize;
+	private long[] levelSizes;
+	private long[] levelOffsets;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param indexFile
+	 *            The mapped index file.
+	 */
+	public WayBoxIndexReader(MappedFile indexFile) {
+		this.indexFile = indexFile;
+		
+		if (indexFile.length() < WayBoxIndex.HEADER_SIZE
+				|| indexFile.getInt(0) != WayBoxIndex.FILE_IDENTIFIER) {
+			throw new OsmosisRuntimeException("The way box index file is not valid.");
+		}
+		
+		groupSize = indexFile.getInt(4);
+		if (groupSize != WayBoxIndex.GROUP_SIZE) {
+			throw new OsmosisRuntimeException("Way box index group size " + groupSize + " is not supported.");
+		}
+		
+		levelSizes = WayBoxIndex.calculateLevelSizes(indexFile.getLong(8));
+		levelOffsets = WayBoxIndex.calculateLevelOffsets(levelSizes);
+	}
+	
+	
+	/**
+	 * Returns the ids of all ways with a bounding box intersecting the
+	 * specified area. The ways themselves may lie outside the area.
+	 * 
+	 * @param left
+	 *            The longitude marking the left edge of the area.
+	 * @param right
+	 *            The longitude marking the right edge of the area.
+	 * @param top
+	 *            The latitude marking the top edge of the area.
+	 * @param bottom
+	 *            The latitude marking the bottom edge of the area.
+	 * @return An iterator over the matching way ids.
+	 */
+	public Iterator<Long> getRange(double left, double right, double top, double bottom) {
+		return new ResultIterator(
+			FixedPrecisionCoordinateConvertor.convertToFixed(left),
+			FixedPrecisionCoordinateConvertor.convertToFixed(bottom),
+			FixedPrecisionCoordinateConvertor.convertToFixed(right),
+			FixedPrecisionCoordinateConvertor.convertToFixed(top)
+		);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		// The mapping is released once it is no longer referenced.
+	}
+	
+	
+	/**
+	 * Walks the index depth first, returning the ways of all leaf entries
+	 * reachable through entries intersecting the search area.
+	 */
+	private class ResultIterator implements Iterator<Long> {
+		private int minimumLongitude;
+		private int minimumLatitude;
+		private int maximumLongitude;
+		private int maximumLatitude;
+		private long[] nextEntries;
+		private long[] endEntries;
+		private int level;
+		private boolean nextAvailable;
+		private long nextWayId;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param minimumLongitude
+		 *            The minimum longitude of the search area.
+		 * @param minimumLatitude
+		 *            The minimum latitude of the search area.
+		 * @param maximumLongitude
+		 *            The maximum longitude of the search area.
+		 * @param maximumLatitude
+		 *            The maximum latitude of the search area.
+		 */
+		ResultIterator(int minimumLongitude, int minimumLatitude, int maximumLongitude, int maximumLatitude) {
+			this.minimumLongitude = minimumLongitude;
+			this.minimumLatitude = minimumLatitude;
+			this.maximumLongitude = maximumLongitude;
+			this.maximumLatitude = maximumLatitude;
+			
+			// Each level tracks the range of entries still to be visited
+			// within the current group, beginning with the root level.
+			nextEntries = new long[levelSizes.length];
+			endEntries = new long[levelSizes.length];
+			if (levelSizes.length > 0) {
+				level = levelSizes.length - 1;
+				endEntries[level] = levelSizes[level];
+			} else {
+				level = 0;
+			}
+		}
+		
+		
+		private boolean intersects(long boxOffset) {
+			return indexFile.getInt(boxOffset) <= maximumLongitude
+				&& indexFile.getInt(boxOffset + 4) <= maximumLatitude
+				&& indexFile.getInt(boxOffset + 8) >= minimumLongitude
+				&& indexFile.getInt(boxOffset + 12) >= minimumLatitude;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			while (!nextAvailable) {
+				long entry;
+				
+				if (level >= levelSizes.length) {
+					return false;
+				}
+				if (nextEntries[level] >= endEntries[level]) {
+					// Return to the parent level once a group is exhausted.
+					level++;
+					continue;
+				}
+				
+				entry = nextEntries[level]++;
+				
+				if (level == 0) {
+					long entryOffset = levelOffsets[0] + entry * WayBoxIndex.LEAF_ENTRY_SIZE;
+					
+					if (intersects(entryOffset + 8)) {
+						nextWayId = indexFile.getLong(entryOffset);
+						nextAvailable = true;
+					}
+					
+				} else if (intersects(levelOffsets[level] + entry * WayBoxIndex.BOX_ENTRY_SIZE)) {
+					// Descend into the group of entries covered by this entry.
+					level--;
+					nextEntries[level] = entry * groupSize;
+					endEntries[level] = Math.min(nextEntries[level] + groupSize, levelSizes[level]);
+				}
+			}
+			
+			return true;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Long next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			nextAvailable = false;
+			
+			return nextWayId;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -16,6 +16,7 @@ import org.openstreetmap.osmosis.core.store.ReleasableAdaptorForIterator;
 public class WayManager implements EntityManager<Way> {
 	
 	private WayStorageContainer storageContainer;
+	private EntityCache<Way> cache;
 	
 	
 	/**
@@ -23,9 +24,12 @@ public class WayManager implements EntityManager<Way> {
 	 * 
 	 * @param storageContainer
 	 *            The storage container containing the entities.
+	 * @param cache
+	 *            The cache of recently loaded entities.
 	 */
-	public WayManager(WayStorageContainer storageContainer) {
+	public WayManager(WayStorageContainer storageContainer, EntityCache<Way> cache) {
 		this.storageContainer = storageContainer;
+		this.cache = cache;
 	}
 	
 	
@@ -60,9 +64,18 @@ public class WayManager implements EntityManager<Way> {
 	 */
 	@Override
 	public Way getEntity(long id) {
-		return storageContainer.getWayObjectReader().get(
-				storageContainer.getWayObjectOffsetIndexReader().get(id).getValue()
-		);
+		long offset;
+		Way entity;
+		
+		offset = storageContainer.getWayObjectOffsetIndexReader().get(id).getValue();
+		
+		entity = cache.get(offset);
+		if (entity == null) {
+			entity = storageContainer.getWayObjectReader().get(offset);
+			cache.put(offset, entity);
+		}
+		
+		return entity;
 	}
 
 	
@@ -20,6 +20,7 @@ public class WayStorageContainer implements Releasable {
 	private IndexStoreReader<Long, LongLongIndexElement> wayObjectOffsetIndexReader;
 	private WayTileAreaIndexReader wayTileIndexReader;
 	private IndexStoreReader<Long, LongLongIndexElement> wayRelationIndexReader;
+	private WayBoxIndexReader wayBoxIndexReader;
 
 
 	/**
@@ -33,11 +34,14 @@ public class WayStorageContainer implements Releasable {
 	 *            The tile to way index.
 	 * @param wayRelationIndexReader
 	 *            The way to relation index.
+	 * @param wayBoxIndexReader
+	 *            The way bounding box index, or null if not available.
 	 */
 	public WayStorageContainer(RandomAccessObjectStoreReader<Way> wayObjectReader,
 			IndexStoreReader<Long, LongLongIndexElement> wayObjectOffsetIndexReader,
 			WayTileAreaIndexReader wayTileIndexReader,
-			IndexStoreReader<Long, LongLongIndexElement> wayRelationIndexReader) {
+			IndexStoreReader<Long, LongLongIndexElement> wayRelationIndexReader,
+			WayBoxIndexReader wayBoxIndexReader) {
 		
 		releasableContainer = new ReleasableContainer();
 		
@@ -45,6 +49,9 @@ public class WayStorageContainer implements Releasable {
 		this.wayObjectOffsetIndexReader = releasableContainer.add(wayObjectOffsetIndexReader);
 		this.wayTileIndexReader = releasableContainer.add(wayTileIndexReader);
 		this.wayRelationIndexReader = releasableContainer.add(wayRelationIndexReader);
+		if (wayBoxIndexReader != null) {
+			this.wayBoxIndexReader = releasableContainer.add(wayBoxIndexReader);
+		}
 	}
 
 
@@ -88,6 +95,17 @@ public class WayStorageContainer implements Releasable {
 	}
 
 
+	/**
+	 * Gets the way bounding box index reader.
+	 * 
+	 * @return The way bounding box index reader, or null if the dataset has no
+	 *         bounding box index.
+	 */
+	public WayBoxIndexReader getWayBoxIndexReader() {
+		return wayBoxIndexReader;
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -4,8 +4,12 @@ package org.openstreetmap.osmosis.dataset.v0_6;
 import java.io.File;
 import java.io.IOException;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.openstreetmap.osmosis.core.Osmosis;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.util.FileBasedLock;
+import org.openstreetmap.osmosis.dataset.v0_6.impl.DatasetDirectory;
 import org.openstreetmap.osmosis.testutil.AbstractDataTest;
 
 
@@ -61,4 +65,359 @@ public class CustomDbTest extends AbstractDataTest {
 		// Validate that the output file matches the input file.
 		dataUtils.compareFiles(inputFile, outputFile);
 	}
+	
+	
+	/**
+	 * Loads an osm file into a dataset using multiple index workers, then dumps
+	 * it again and verifies that it is identical.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testLoadAndDumpWithWorkers() throws IOException {
+		File inputFile;
+		File outputFile;
+		File dataDir;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/customdb-snapshot.osm");
+		outputFile = File.createTempFile("test", ".osm");
+		dataDir = dataUtils.newFolder();
+		
+		// Load the database with a dataset.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6",
+				inputFile.getPath(),
+				"--write-customdb-0.6",
+				"directory=" + dataDir,
+				"enableWayTileIndex=true",
+				"workers=4"
+			}
+		);
+		
+		// Dump the database to an osm file.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-customdb-0.6",
+				"directory=" + dataDir,
+				"enableWayTileIndex=true",
+				"--dataset-dump-0.6",
+				"--tag-sort-0.6",
+				"--write-xml-0.6",
+				outputFile.getPath()
+			}
+		);
+		
+		// Validate that the output file matches the input file.
+		dataUtils.compareFiles(inputFile, outputFile);
+	}
+	
+	
+	/**
+	 * Tests dumping a single dataset to several destinations concurrently.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testConcurrentDump() throws IOException {
+		File inputFile;
+		File outputFile1;
+		File outputFile2;
+		File dataDir;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/customdb-snapshot.osm");
+		outputFile1 = File.createTempFile("test", ".osm");
+		outputFile2 = File.createTempFile("test", ".osm");
+		dataDir = dataUtils.newFolder();
+		
+		// Load the database with a dataset.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6",
+				inputFile.getPath(),
+				"--write-customdb-0.6",
+				"directory=" + dataDir
+			}
+		);
+		
+		// Dump the database to two osm files from a single dataset.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-customdb-0.6",
+				"directory=" + dataDir,
+				"--tee-dataset-0.6",
+				"outputCount=2",
+				"--dataset-dump-0.6",
+				"--tag-sort-0.6",
+				"--write-xml-0.6",
+				outputFile1.getPath(),
+				"--dataset-dump-0.6",
+				"--tag-sort-0.6",
+				"--write-xml-0.6",
+				outputFile2.getPath()
+			}
+		);
+		
+		// Validate that both output files match the input file.
+		dataUtils.compareFiles(inputFile, outputFile1);
+		dataUtils.compareFiles(inputFile, outputFile2);
+	}
+	
+	
+	/**
+	 * Applies two change files to a dataset, verifying the dataset contents
+	 * and bounding box queries both before and after compaction.
+	 * 
+	 * @param enableWayTileIndex
+	 *            If true a tile index is used for ways, otherwise a node-way
+	 *            index is used.
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	private void checkApplyChanges(boolean enableWayTileIndex) throws IOException {
+		File inputFile;
+		File changeFile1;
+		File changeFile2;
+		File expectedFile;
+		File outputFile;
+		File deltaBoxFile;
+		File compactedBoxFile;
+		File dataDir;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/customdb-snapshot.osm");
+		changeFile1 = dataUtils.createDataFile("v0_6/customdb-change1.osc");
+		changeFile2 = dataUtils.createDataFile("v0_6/customdb-change2.osc");
+		expectedFile = File.createTempFile("test", ".osm");
+		outputFile = File.createTempFile("test", ".osm");
+		deltaBoxFile = File.createTempFile("test", ".osm");
+		compactedBoxFile = File.createTempFile("test", ".osm");
+		dataDir = dataUtils.newFolder();
+		
+		// Apply the changes to the snapshot to produce the expected result.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6", inputFile.getPath(), "outPipe.0=snapshot",
+				"--read-xml-change-0.6", changeFile1.getPath(), "outPipe.0=change1",
+				"--apply-change-0.6", "inPipe.0=snapshot", "inPipe.1=change1", "outPipe.0=applied1",
+				"--read-xml-change-0.6", changeFile2.getPath(), "outPipe.0=change2",
+				"--apply-change-0.6", "inPipe.0=applied1", "inPipe.1=change2",
+				"--tag-sort-0.6",
+				"--write-xml-0.6", expectedFile.getPath()
+			}
+		);
+		
+		// Load the database and apply each change file to it.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6", inputFile.getPath(),
+				"--write-customdb-0.6", "directory=" + dataDir, "enableWayTileIndex=" + enableWayTileIndex
+			}
+		);
+		for (File changeFile : new File[] {changeFile1, changeFile2}) {
+			Osmosis.run(
+				new String [] {
+					"-q",
+					"--read-xml-change-0.6", changeFile.getPath(),
+					"--write-customdb-change-0.6", "directory=" + dataDir,
+					"enableWayTileIndex=" + enableWayTileIndex
+				}
+			);
+		}
+		
+		// Verify the dataset and extract a bounding box containing changed data.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-customdb-0.6", "directory=" + dataDir, "enableWayTileIndex=" + enableWayTileIndex,
+				"--dataset-dump-0.6",
+				"--tag-sort-0.6",
+				"--write-xml-0.6", outputFile.getPath()
+			}
+		);
+		dataUtils.compareFiles(expectedFile, outputFile);
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-customdb-0.6", "directory=" + dataDir, "enableWayTileIndex=" + enableWayTileIndex,
+				"--dataset-bounding-box-0.6", "left=-5", "right=-3", "top=-2", "bottom=-4",
+				"--tag-sort-0.6",
+				"--write-xml-0.6", deltaBoxFile.getPath()
+			}
+		);
+		
+		// Compact the database, the results must be unchanged.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--compact-customdb-0.6", "directory=" + dataDir, "enableWayTileIndex=" + enableWayTileIndex
+			}
+		);
+		Assert.assertNull("The delta was not removed.", new DatasetDirectory(dataDir).getDeltaDirectory());
+		Assert.assertEquals("Old stores were not removed.", 3, dataDir.list().length);
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-customdb-0.6", "directory=" + dataDir, "enableWayTileIndex=" + enableWayTileIndex,
+				"--dataset-dump-0.6",
+				"--tag-sort-0.6",
+				"--write-xml-0.6", outputFile.getPath()
+			}
+		);
+		dataUtils.compareFiles(expectedFile, outputFile);
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-customdb-0.6", "directory=" + dataDir, "enableWayTileIndex=" + enableWayTileIndex,
+				"--dataset-bounding-box-0.6", "left=-5", "right=-3", "top=-2", "bottom=-4",
+				"--tag-sort-0.6",
+				"--write-xml-0.6", compactedBoxFile.getPath()
+			}
+		);
+		dataUtils.compareFiles(compactedBoxFile, deltaBoxFile);
+	}
+	
+	
+	/**
+	 * Tests applying changes to a dataset using the node-way index.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testApplyChanges() throws IOException {
+		checkApplyChanges(false);
+	}
+	
+	
+	/**
+	 * Tests applying changes to a dataset using the way tile index.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testApplyChangesWithWayTileIndex() throws IOException {
+		checkApplyChanges(true);
+	}
+	
+	
+	/**
+	 * Tests that files left by an interrupted change are ignored and removed
+	 * when the next change is applied.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testApplyChangesAfterFailure() throws IOException {
+		File inputFile;
+		File changeFile;
+		File expectedFile;
+		File outputFile;
+		File dataDir;
+		File partialDeltaDirectory;
+		
+		inputFile = dataUtils.createDataFile("v0_6/customdb-snapshot.osm");
+		changeFile = dataUtils.createDataFile("v0_6/customdb-change1.osc");
+		expectedFile = File.createTempFile("test", ".osm");
+		outputFile = File.createTempFile("test", ".osm");
+		dataDir = dataUtils.newFolder();
+		
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6", inputFile.getPath(), "outPipe.0=snapshot",
+				"--read-xml-change-0.6", changeFile.getPath(), "outPipe.0=change",
+				"--apply-change-0.6", "inPipe.0=snapshot", "inPipe.1=change",
+				"--tag-sort-0.6",
+				"--write-xml-0.6", expectedFile.getPath()
+			}
+		);
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6", inputFile.getPath(),
+				"--write-customdb-0.6", "directory=" + dataDir
+			}
+		);
+		
+		// Simulate a failure part way through writing a delta.
+		partialDeltaDirectory = new File(dataDir, "delta.1");
+		Assert.assertTrue(partialDeltaDirectory.mkdir());
+		Assert.assertTrue(new File(partialDeltaDirectory, "dsno").createNewFile());
+		Assert.assertTrue(new File(dataDir, "base.7").mkdir());
+		
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-customdb-0.6", "directory=" + dataDir,
+				"--dataset-dump-0.6",
+				"--tag-sort-0.6",
+				"--write-xml-0.6", outputFile.getPath()
+			}
+		);
+		dataUtils.compareFiles(inputFile, outputFile);
+		
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-change-0.6", changeFile.getPath(),
+				"--write-customdb-change-0.6", "directory=" + dataDir
+			}
+		);
+		Assert.assertFalse("The unused base was not removed.", new File(dataDir, "base.7").exists());
+		
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-customdb-0.6", "directory=" + dataDir,
+				"--dataset-dump-0.6",
+				"--tag-sort-0.6",
+				"--write-xml-0.6", outputFile.getPath()
+			}
+		);
+		dataUtils.compareFiles(expectedFile, outputFile);
+	}
+	
+	
+	/**
+	 * Tests that a dataset can't be compacted while it is locked by another
+	 * task.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testCompactLockedDataset() throws IOException {
+		File dataDir;
+		FileBasedLock lock;
+		
+		dataDir = dataUtils.newFolder();
+		
+		lock = new FileBasedLock(DatasetDirectory.getLockFile(dataDir));
+		try {
+			lock.lock();
+			
+			Osmosis.run(
+				new String [] {
+					"-q",
+					"--compact-customdb-0.6", "directory=" + dataDir
+				}
+			);
+			
+		} finally {
+			lock.release();
+		}
+	}
 }
@@ -0,0 +1,137 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.dataset.v0_6.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+
+
+/**
+ * Tests the way box index.
+ */
+public class WayBoxIndexTest {
+	
+	private int toFixed(double coordinate) {
+		return FixedPrecisionCoordinateConvertor.convertToFixed(coordinate);
+	}
+	
+	
+	private Set<Long> search(WayBoxIndexReader reader, double left, double right, double top, double bottom) {
+		Set<Long> wayIds;
+		Iterator<Long> iterator;
+		
+		wayIds = new TreeSet<Long>();
+		iterator = reader.getRange(left, right, top, bottom);
+		while (iterator.hasNext()) {
+			Assert.assertTrue("Way returned more than once.", wayIds.add(iterator.next()));
+		}
+		
+		return wayIds;
+	}
+	
+	
+	/**
+	 * Verifies that searches return exactly the ways with intersecting boxes.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testSearch() throws IOException {
+		File indexFile;
+		WayBoxIndex index;
+		List<WayBoxElement> elements;
+		Random random;
+		
+		// Enough ways to create three levels of groups.
+		random = new Random(11);
+		elements = new ArrayList<WayBoxElement>();
+		for (long wayId = 0; wayId < 5000; wayId++) {
+			double longitude = random.nextDouble() * 20 - 10;
+			double latitude = random.nextDouble() * 20 - 10;
+			double size = random.nextDouble() * random.nextDouble();
+			
+			elements.add(new WayBoxElement(wayId, toFixed(longitude), toFixed(latitude),
+					toFixed(longitude + size), toFixed(latitude + size)));
+		}
+		
+		indexFile = File.createTempFile("waybox", null);
+		index = new WayBoxIndex(indexFile);
+		try {
+			WayBoxIndexReader reader;
+			
+			for (WayBoxElement element : elements) {
+				index.write(element);
+			}
+			index.complete();
+			
+			reader = index.createReader();
+			try {
+				for (int i = 0; i < 100; i++) {
+					double left = random.nextDouble() * 24 - 12;
+					double bottom = random.nextDouble() * 24 - 12;
+					double right = left + random.nextDouble() * 3;
+					double top = bottom + random.nextDouble() * 3;
+					Set<Long> expected;
+					
+					expected = new TreeSet<Long>();
+					for (WayBoxElement element : elements) {
+						if (element.getMinimumLongitude() <= toFixed(right)
+								&& element.getMaximumLongitude() >= toFixed(left)
+								&& element.getMinimumLatitude() <= toFixed(top)
+								&& element.getMaximumLatitude() >= toFixed(bottom)) {
+							expected.add(element.getWayId());
+						}
+					}
+					
+					Assert.assertEquals("Incorrect search result.", expected, search(reader, left, right, top, bottom));
+				}
+				
+				Assert.assertEquals("All ways should be found.", elements.size(),
+						search(reader, -180, 180, 90, -90).size());
+			} finally {
+				reader.release();
+			}
+			
+		} finally {
+			index.release();
+			indexFile.delete();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that an index without any ways can be searched.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testEmptyIndex() throws IOException {
+		File indexFile;
+		WayBoxIndex index;
+		
+		indexFile = File.createTempFile("waybox", null);
+		index = new WayBoxIndex(indexFile);
+		try {
+			Assert.assertNull("No reader should exist before the index is written.", index.createReader());
+			
+			index.complete();
+			
+			Assert.assertTrue("No ways should be found.", search(index.createReader(), -180, 180, 90, -90).isEmpty());
+			
+		} finally {
+			index.release();
+			indexFile.delete();
+		}
+	}
+}
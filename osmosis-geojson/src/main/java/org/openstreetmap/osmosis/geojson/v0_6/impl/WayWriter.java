@@ -2,12 +2,11 @@
 package org.openstreetmap.osmosis.geojson.v0_6.impl;
 
 import org.openstreetmap.osmosis.core.domain.v0_6.*;
-import org.openstreetmap.osmosis.pgsnapshot.common.NodeLocation;
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
 import org.openstreetmap.osmosis.pgsnapshot.v0_6.impl.*;
 import org.openstreetmap.osmosis.pgsnapshot.v0_6.impl.WayGeometryBuilder;
 
 import java.io.Writer;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -79,7 +78,8 @@ public class WayWriter extends EntityWriter {
         }
 
         wayNodes = way.getWayNodes();
-        List<NodeLocation> locations = new ArrayList<NodeLocation>();
+        long[] locations = new long[wayNodes.size()];
+        int locationCount = 0;
 
         if (wayNodeList)
         {
@@ -89,7 +89,7 @@ public class WayWriter extends EntityWriter {
 
             for (WayNode wayNode : wayNodes) {
                 wayNodeWriter.processWayNode(wayNode);
-                locations.add(wayGeometryBuilder.getNodeLocation(wayNode.getNodeId()));
+                locations[locationCount++] = wayGeometryBuilder.getPackedLocation(wayNode.getNodeId());
             }
 
             wayNodeWriter.reset();
@@ -98,7 +98,7 @@ public class WayWriter extends EntityWriter {
         else
         {
             for (WayNode wayNode : wayNodes) {
-                locations.add(wayGeometryBuilder.getNodeLocation(wayNode.getNodeId()));
+                locations[locationCount++] = wayGeometryBuilder.getPackedLocation(wayNode.getNodeId());
             }
         }
 
@@ -126,8 +126,8 @@ public class WayWriter extends EntityWriter {
         startList();
 
         boolean firstLocation = true;
-        for (NodeLocation location : locations) {
-            if (location.isValid())
+        for (long location : locations) {
+            if (MappedNodeLocationStore.isValid(location))
             {
                 if (!firstLocation)
                 {
@@ -135,8 +135,8 @@ public class WayWriter extends EntityWriter {
                 }
 
                 startList();
-                appendToList(location.getLongitude(), true);
-                appendToList(location.getLatitude(), false);
+                appendToList(MappedNodeLocationStore.getLongitude(location), true);
+                appendToList(MappedNodeLocationStore.getLatitude(location), false);
                 endList();
 
                 if (firstLocation)
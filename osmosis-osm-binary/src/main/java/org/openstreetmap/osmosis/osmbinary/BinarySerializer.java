@@ -108,27 +108,7 @@ public class BinarySerializer {
         // System.out.format("Batch of %d groups: ",groups.size());
         if (groups.size() == 0)
             return;
-        Osmformat.PrimitiveBlock.Builder primblock = Osmformat.PrimitiveBlock
-                .newBuilder();
-        stringtable.clear();
-        // Preprocessing: Figure out the stringtable.
-        for (PrimGroupWriterInterface i : groups)
-            i.addStringsToStringtable();
-
-        stringtable.finish();
-        // Now, start serializing.
-        for (PrimGroupWriterInterface i : groups) {
-         PrimitiveGroup group = i.serialize();
-         if (group != null)
-           primblock.addPrimitivegroup(group);
-        }
-        primblock.setStringtable(stringtable.serialize());
-        primblock.setGranularity(this.granularity);
-        primblock.setDateGranularity(this.date_granularity);
-
-        // Only generate data with offset (0,0)
-        // 
-        Osmformat.PrimitiveBlock message = primblock.build();
+        Osmformat.PrimitiveBlock message = buildPrimitiveBlock(groups, stringtable);
 
         // System.out.println(message);
         debug_bytes += message.getSerializedSize();
@@ -149,6 +129,37 @@ public class BinarySerializer {
         // System.out.format("\n");
     }
 
+    /**
+     * Build a primitive block from a batch of groups. The groups must take
+     * their string indexes from the supplied string table. This method does
+     * not touch any other serializer state, so blocks with separate string
+     * tables may be built concurrently.
+     */
+    protected Osmformat.PrimitiveBlock buildPrimitiveBlock(List<PrimGroupWriterInterface> blockGroups,
+            StringTable blockStringTable) {
+        Osmformat.PrimitiveBlock.Builder primblock = Osmformat.PrimitiveBlock
+                .newBuilder();
+        blockStringTable.clear();
+        // Preprocessing: Figure out the stringtable.
+        for (PrimGroupWriterInterface i : blockGroups)
+            i.addStringsToStringtable();
+
+        blockStringTable.finish();
+        // Now, start serializing.
+        for (PrimGroupWriterInterface i : blockGroups) {
+         PrimitiveGroup group = i.serialize();
+         if (group != null)
+           primblock.addPrimitivegroup(group);
+        }
+        primblock.setStringtable(blockStringTable.serialize());
+        primblock.setGranularity(this.granularity);
+        primblock.setDateGranularity(this.date_granularity);
+
+        // Only generate data with offset (0,0)
+        // 
+        return primblock.build();
+    }
+
     /** Convert from a degrees represented as a double into the serialized offset in nanodegrees.. */
     public long mapRawDegrees(double degrees) {
         return (long) ((degrees / .000000001));
@@ -17,6 +17,7 @@
 
 package org.openstreetmap.osmosis.osmbinary.file;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -59,6 +60,22 @@ public class BlockOutputStream {
         writtenblocks.add(ref);
     }
 
+    /**
+     * Serialize and compress a block with the stream's default compression
+     * flag without writing it. The result can later be passed to writeEncoded.
+     * This may be called from any thread.
+     */
+    public byte[] encode(FileBlock block) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        block.writeTo(buffer, compression);
+        return buffer.toByteArray();
+    }
+
+    /** Write a block previously serialized by encode */
+    public void writeEncoded(byte[] encodedBlock) throws IOException {
+        outwrite.write(encodedBlock);
+    }
+
     public void flush() throws IOException {
         outwrite.flush();
     }
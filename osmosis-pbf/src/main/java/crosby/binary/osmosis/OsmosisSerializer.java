@@ -4,8 +4,15 @@ package crosby.binary.osmosis;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,6 +49,9 @@ import org.openstreetmap.osmosis.osmbinary.file.FileBlock;
  */
 public class OsmosisSerializer extends BinarySerializer implements Sink {
 	private static final Logger LOG = Logger.getLogger(OsmosisSerializer.class.getName());
+
+  /** The granularity, in nanodegrees, at which serialized coordinates equal fixed precision ones. */
+  private static final int FIXED_PRECISION_GRANULARITY = 100;
 	
   /** Additional configuration flag for whether to serialize into DenseNodes/DenseInfo? */
   protected boolean useDense = true;
@@ -54,6 +64,24 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
    */
   static int warncount = 0;
 
+  /**
+   * The pool of threads encoding and compressing blocks, or null if blocks are
+   * encoded on the calling thread.
+   */
+  private ExecutorService workerPool;
+
+  /** The maximum number of blocks to have in progress at any point in time. */
+  private int maxPendingBlocks;
+
+  /** Blocks submitted to the worker pool in the order they must be written. */
+  private Queue<Future<byte[]>> pendingBlocks = new LinkedList<Future<byte[]>>();
+
+  /**
+   * The string table that groups of the current batch draw their indexes from.
+   * Each batch gets its own table when encoding on worker threads.
+   */
+  private StringTable batchStringTable = getStringTable();
+
 	/**
 	 * Construct a serializer that writes to the target BlockOutputStream.
 	 * 
@@ -74,11 +102,37 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
     this.useDense = useDense;
   }
 
+  /**
+	 * Configure the number of worker threads used to build, encode and
+	 * compress blocks. A value of 1 or less encodes blocks on the pipeline
+	 * thread.
+	 * 
+	 * @param workers
+	 *            The number of worker threads.
+	 */
+  public void configWorkers(int workers) {
+    if (workers > 1) {
+      workerPool = Executors.newFixedThreadPool(workers);
+      // Allow an extra block to be queued so a worker doesn't sit idle
+      // while the pipeline thread is writing a completed block.
+      maxPendingBlocks = workers + 1;
+    }
+  }
+
   /** Base class containing common code needed for serializing each type of primitives. */
     private abstract class Prim<T extends Entity> {
       /** Queue that tracks the list of all primitives. */
       ArrayList<T> contents = new ArrayList<T>();
 
+      /** The string table of the block this group will be serialized into. */
+      private StringTable stringTable = batchStringTable;
+
+      /** Get the string table of the block this group belongs to.
+       * @return The string table. */
+      public StringTable getStringTable() {
+        return stringTable;
+      }
+
       /** Add to the queue.
        * @param item The entity to add */
         public void add(T item) {
@@ -152,6 +206,25 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
         }
     }
 
+    /**
+     * Maps a node latitude into the serialized offset. With the default granularity the
+     * serialized value is the node's fixed precision latitude, which is used as is.
+     */
+    private int mapLatitude(Node node) {
+        if (granularity == FIXED_PRECISION_GRANULARITY) {
+            return node.getFixedLatitude();
+        }
+        return mapDegrees(node.getLatitude());
+    }
+
+    /** Maps a node longitude into the serialized offset, see mapLatitude. */
+    private int mapLongitude(Node node) {
+        if (granularity == FIXED_PRECISION_GRANULARITY) {
+            return node.getFixedLongitude();
+        }
+        return mapDegrees(node.getLongitude());
+    }
+
     private class NodeGroup extends Prim<Node> implements PrimGroupWriterInterface {
 
       public Osmformat.PrimitiveGroup serialize() {
@@ -189,8 +262,8 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
               
               for (Node i : contents) {
                 long id = i.getId();
-                int lat = mapDegrees(i.getLatitude());
-                int lon = mapDegrees(i.getLongitude());
+                int lat = mapLatitude(i);
+                int lon = mapLongitude(i);
                 bi.addId(id - lastid);
                 lastid = id;
                 bi.addLon(lon - lastlon);
@@ -226,8 +299,8 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
           .newBuilder();
           for (Node i : contents) {
             long id = i.getId();
-            int lat = mapDegrees(i.getLatitude());
-            int lon = mapDegrees(i.getLongitude());
+            int lat = mapLatitude(i);
+            int lon = mapLongitude(i);
             Osmformat.Node.Builder bi = Osmformat.Node.newBuilder();
             bi.setId(id);
             bi.setLon(lon);
@@ -343,6 +416,34 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
 
     private Processor processor = new Processor();
 
+    /**
+     * Builds, encodes and compresses a single block of groups on a worker thread.
+     */
+    private class BlockEncoder implements Callable<byte[]> {
+        private List<PrimGroupWriterInterface> blockGroups;
+        private StringTable blockStringTable;
+
+        /**
+         * Creates a new instance.
+         * 
+         * @param blockGroups
+         *            The groups to be written to the block.
+         * @param blockStringTable
+         *            The string table shared by all groups of the block.
+         */
+        public BlockEncoder(List<PrimGroupWriterInterface> blockGroups, StringTable blockStringTable) {
+            this.blockGroups = blockGroups;
+            this.blockStringTable = blockStringTable;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            Osmformat.PrimitiveBlock message = buildPrimitiveBlock(blockGroups, blockStringTable);
+
+            return output.encode(FileBlock.newInstance("OSMData", message.toByteString(), null));
+        }
+    }
+
     /**
      * Buffer up events into groups that are all of the same type, or all of the
      * same length, then process each buffer.
@@ -443,6 +544,62 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
         finishHeader(headerblock);
     }
 
+    /**
+     * Hands the current batch to the worker pool if one is configured,
+     * otherwise encodes and writes it immediately.
+     */
+    @Override
+    public void processBatch() {
+        if (workerPool == null) {
+            super.processBatch();
+            return;
+        }
+        if (groups.size() == 0) {
+            return;
+        }
+
+        // Give the batch to a worker along with its string table, and start a
+        // new table for the groups of the next batch.
+        List<PrimGroupWriterInterface> blockGroups = new ArrayList<PrimGroupWriterInterface>(groups);
+        pendingBlocks.add(workerPool.submit(new BlockEncoder(blockGroups, batchStringTable)));
+        batchStringTable = new StringTable();
+        batch_size = 0;
+        groups.clear();
+
+        // If the number of pending blocks has reached capacity we must begin
+        // writing completed blocks. This blocks until the oldest is encoded.
+        writePendingBlocks(maxPendingBlocks - 1);
+    }
+
+    /**
+     * Writes encoded blocks in submission order until no more than the
+     * specified number of blocks remain in progress.
+     * 
+     * @param targetQueueSize
+     *            The number of blocks that may remain in progress.
+     */
+    private void writePendingBlocks(int targetQueueSize) {
+        while (pendingBlocks.size() > targetQueueSize) {
+            Future<byte[]> pendingBlock = pendingBlocks.remove();
+            try {
+                output.writeEncoded(pendingBlock.get());
+            } catch (InterruptedException e) {
+                throw new OsmosisRuntimeException("Thread was interrupted.", e);
+            } catch (ExecutionException e) {
+                throw new OsmosisRuntimeException("A PBF encoding worker thread failed, aborting.", e.getCause());
+            } catch (IOException e) {
+                throw new OsmosisRuntimeException("Unable to write PBF block.", e);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        processBatch();
+        writePendingBlocks(0);
+        output.flush();
+    }
+
     /** Write empty header block when there's no bounds entity. */
     public void writeEmptyHeaderIfNeeded() {
       if (headerWritten) {
@@ -463,6 +620,8 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
         headerblock.addRequiredFeatures("DenseNodes");
       }
       Osmformat.HeaderBlock message = headerblock.build();
+      // Blocks still being encoded precede the header in the stream.
+      writePendingBlocks(0);
       try {
           output.write(FileBlock.newInstance("OSMHeader", message
                   .toByteString(), null));
@@ -501,6 +660,14 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
 
     @Override
     public void release() {
+        if (workerPool != null) {
+            // A successful complete has already written all blocks, so
+            // anything still in progress or unsubmitted is discarded.
+            workerPool.shutdownNow();
+            workerPool = null;
+            pendingBlocks.clear();
+            groups.clear();
+        }
         try {
             close();
         } catch (IOException e) {
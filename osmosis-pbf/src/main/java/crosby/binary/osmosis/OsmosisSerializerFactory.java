@@ -19,6 +19,8 @@ import org.openstreetmap.osmosis.osmbinary.file.BlockOutputStream;
 public class OsmosisSerializerFactory extends TaskManagerFactory {
     private static final String ARG_FILE_NAME = "file";
     private static final String DEFAULT_FILE_NAME = "dump.osm.pbf";
+    private static final String ARG_WORKERS = "workers";
+    private static final int DEFAULT_WORKERS = 1;
 
     @Override
     protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
@@ -47,6 +49,8 @@ public class OsmosisSerializerFactory extends TaskManagerFactory {
                 true));
             task.configGranularity(this.getIntegerArgument(taskConfig,
                     "granularity", 100));
+            task.configWorkers(this.getIntegerArgument(taskConfig, ARG_WORKERS,
+                    DEFAULT_WORKERS));
 
             output.setCompress(this.getStringArgument(taskConfig, "compress",
                     "deflate"));
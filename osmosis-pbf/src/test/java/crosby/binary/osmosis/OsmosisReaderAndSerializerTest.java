@@ -49,4 +49,43 @@ public class OsmosisReaderAndSerializerTest extends AbstractDataTest {
         // Validate that the output file matches the input file.
         dataUtils.compareFiles(inputXmlFile, outputXmlFile);
 	}
+
+
+	/**
+	 * Tests writing to PBF files using multiple worker threads. A small batch
+	 * limit is used to ensure many blocks are encoded concurrently.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testWriteWithWorkersAndRead() throws IOException {
+		// Generate data files.
+		File inputXmlFile = dataUtils.createDataFile("v0_6/data-snapshot.osm");
+		File pbfFile = dataUtils.newFile();
+		File outputXmlFile = dataUtils.newFile();
+
+        // Read the XML and write to PBF.
+        Osmosis.run(new String[] {
+        		"-q",
+        		"--read-xml-0.6",
+        		inputXmlFile.getPath(),
+        		"--write-pbf-0.6",
+        		"file=" + pbfFile.getPath(),
+        		"workers=4",
+        		"batchlimit=2"
+                });
+        
+        // Read the PBF and write to XML.
+        Osmosis.run(new String[] {
+        		"-q",
+        		"--read-pbf-0.6",
+        		pbfFile.getPath(),
+        		"--write-xml-0.6",
+        		outputXmlFile.getPath()
+                });
+
+        // Validate that the output file matches the input file.
+        dataUtils.compareFiles(inputXmlFile, outputXmlFile);
+	}
 }
@@ -6,6 +6,7 @@ import java.util.Map;
 
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.plugin.PluginLoader;
+import org.openstreetmap.osmosis.pbf2.v0_6.PbfIndexWriterFactory;
 import org.openstreetmap.osmosis.pbf2.v0_6.PbfReaderFactory;
 
 
@@ -21,12 +22,17 @@ public class PbfPluginLoader implements PluginLoader {
 		Map<String, TaskManagerFactory> factoryMap;
 
 		PbfReaderFactory reader = new PbfReaderFactory();
+		PbfIndexWriterFactory indexWriter = new PbfIndexWriterFactory();
 
 		factoryMap = new HashMap<String, TaskManagerFactory>();
 		factoryMap.put("read-pbf-fast", reader);
 		factoryMap.put("rbf", reader);
 
+		factoryMap.put("index-pbf", indexWriter);
+		factoryMap.put("ip", indexWriter);
+
 		factoryMap.put("read-pbf-fast-0.6", reader);
+		factoryMap.put("index-pbf-0.6", indexWriter);
 
 		return factoryMap;
 	}
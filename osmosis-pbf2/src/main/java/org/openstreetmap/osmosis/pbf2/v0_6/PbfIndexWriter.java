@@ -0,0 +1,168 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.task.common.RunnableTask;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobDecoder;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobDecoderBuffers;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobDecoderListener;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobIndex;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobIndexEntry;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfMappedFileSplitter;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfRawBlob;
+
+
+/**
+ * Builds the blob index for a PBF file. Every blob is decoded once to record
+ * its location, the types and id range of its entities, and the bounding box
+ * of its nodes. The index is written alongside the PBF file where it is used
+ * by the PBF reader to skip blobs.
+ * 
+ * @author Brett Henderson
+ */
+public class PbfIndexWriter implements RunnableTask {
+
+	private static Logger log = Logger.getLogger(PbfIndexWriter.class.getName());
+
+	private File file;
+	private int workers;
+	private ThreadLocal<PbfBlobDecoderBuffers> decoderBuffers;
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The PBF file to be indexed.
+	 * @param workers
+	 *            The number of worker threads for decoding PBF blocks.
+	 */
+	public PbfIndexWriter(File file, int workers) {
+		this.file = file;
+		this.workers = workers;
+
+		decoderBuffers = new ThreadLocal<PbfBlobDecoderBuffers>() {
+			@Override
+			protected PbfBlobDecoderBuffers initialValue() {
+				return new PbfBlobDecoderBuffers();
+			}
+		};
+	}
+
+
+	/**
+	 * Decodes a single blob on a worker thread and summarises its contents.
+	 */
+	private class BlobIndexer implements Callable<PbfBlobIndexEntry> {
+		private PbfRawBlob rawBlob;
+
+
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param rawBlob
+		 *            The blob to be indexed.
+		 */
+		public BlobIndexer(PbfRawBlob rawBlob) {
+			this.rawBlob = rawBlob;
+		}
+
+
+		@Override
+		public PbfBlobIndexEntry call() {
+			final PbfBlobIndexEntry entry = new PbfBlobIndexEntry(rawBlob.getOffset(), rawBlob.getType());
+			final boolean[] success = new boolean[1];
+
+			// The decoder notifies the listener on this thread before returning.
+			new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderBuffers, null, false,
+					new PbfBlobDecoderListener() {
+						@Override
+						public void complete(List<EntityContainer> decodedEntities) {
+							for (EntityContainer entityContainer : decodedEntities) {
+								entry.addEntity(entityContainer.getEntity());
+							}
+							success[0] = true;
+						}
+
+
+						@Override
+						public void error() {
+							success[0] = false;
+						}
+					}).run();
+
+			if (!success[0]) {
+				throw new OsmosisRuntimeException("Unable to decode PBF blob at offset " + rawBlob.getOffset()
+						+ " of file " + file + ".");
+			}
+
+			return entry;
+		}
+	}
+
+
+	private PbfBlobIndexEntry getResult(Future<PbfBlobIndexEntry> pendingEntry) {
+		try {
+			return pendingEntry.get();
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new OsmosisRuntimeException("A PBF indexing worker thread failed, aborting.", e.getCause());
+		}
+	}
+
+
+	@Override
+	public void run() {
+		PbfMappedFileSplitter splitter = null;
+		ExecutorService executorService = Executors.newFixedThreadPool(workers);
+
+		try {
+			List<PbfBlobIndexEntry> entries = new ArrayList<PbfBlobIndexEntry>();
+
+			// Capture the file state before reading so that a concurrent
+			// rewrite leaves the index stale rather than silently wrong.
+			long fileLength = file.length();
+			long fileModified = file.lastModified();
+			Queue<Future<PbfBlobIndexEntry>> pendingEntries = new LinkedList<Future<PbfBlobIndexEntry>>();
+
+			splitter = new PbfMappedFileSplitter(file);
+
+			// Keep one more blob in progress than there are workers so a
+			// worker doesn't sit idle while results are being collected.
+			while (splitter.hasNext()) {
+				pendingEntries.add(executorService.submit(new BlobIndexer(splitter.next())));
+
+				if (pendingEntries.size() > workers) {
+					entries.add(getResult(pendingEntries.remove()));
+				}
+			}
+			while (!pendingEntries.isEmpty()) {
+				entries.add(getResult(pendingEntries.remove()));
+			}
+
+			log.fine("Writing index of " + entries.size() + " blobs for PBF file " + file + ".");
+			new PbfBlobIndex(fileLength, fileModified, entries).save(file);
+
+		} finally {
+			executorService.shutdownNow();
+
+			if (splitter != null) {
+				splitter.release();
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6;
+
+import java.io.File;
+
+import org.openstreetmap.osmosis.core.pipeline.common.RunnableTaskManager;
+import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
+import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
+import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
+
+
+/**
+ * The task manager factory for a PBF blob index writer.
+ * 
+ * @author Brett Henderson
+ */
+public class PbfIndexWriterFactory extends TaskManagerFactory {
+	private static final String ARG_FILE_NAME = "file";
+	private static final String DEFAULT_FILE_NAME = "dump.osm.pbf";
+	private static final String ARG_WORKERS = "workers";
+	private static final int DEFAULT_WORKERS = 1;
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
+		String fileName;
+		int workers;
+
+		// Get the task arguments.
+		fileName = getStringArgument(taskConfig, ARG_FILE_NAME,
+				getDefaultStringArgument(taskConfig, DEFAULT_FILE_NAME));
+		workers = getIntegerArgument(taskConfig, ARG_WORKERS, DEFAULT_WORKERS);
+
+		return new RunnableTaskManager(taskConfig.getId(), new PbfIndexWriter(new File(fileName), workers),
+				taskConfig.getPipeArgs());
+	}
+}
@@ -9,25 +9,38 @@ import java.io.InputStream;
 import java.util.Collections;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.logging.Logger;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.task.v0_6.MultiPassSink;
 import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobIndex;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobSelector;
 import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfDecoder;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfMappedFileSplitter;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfRawBlob;
 import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfStreamSplitter;
 
 
 /**
  * An OSM data source reading from a PBF file. The entire contents of the file
- * are read.
+ * are read unless a selector is provided, in which case blobs are skipped using
+ * the file's blob index where one exists.
  * 
  * @author Brett Henderson
  */
 public class PbfReader implements RunnableSource {
 
+	private static Logger log = Logger.getLogger(PbfReader.class.getName());
+
 	private File file;
 	private Sink sink;
 	private int workers;
+	private boolean memoryMapped;
+	private PbfBlobSelector selector;
+	private boolean sharedNodeData;
 
 
 	/**
@@ -39,8 +52,70 @@ public class PbfReader implements RunnableSource {
 	 *            The number of worker threads for decoding PBF blocks.
 	 */
 	public PbfReader(File file, int workers) {
+		this(file, workers, false);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param workers
+	 *            The number of worker threads for decoding PBF blocks.
+	 * @param memoryMapped
+	 *            If true, the file is memory mapped and blobs are passed to
+	 *            workers as slices of the mapping instead of being copied
+	 *            from a stream. This cannot be used when reading from stdin.
+	 */
+	public PbfReader(File file, int workers, boolean memoryMapped) {
+		this(file, workers, memoryMapped, null, false);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param workers
+	 *            The number of worker threads for decoding PBF blocks.
+	 * @param memoryMapped
+	 *            If true, the file is memory mapped and blobs are passed to
+	 *            workers as slices of the mapping instead of being copied
+	 *            from a stream. This cannot be used when reading from stdin.
+	 * @param selector
+	 *            Selects the entities to be read, or null if all entities are
+	 *            required. If the file has a blob index, blobs that cannot
+	 *            contain selected entities are skipped without being read.
+	 * @param sharedNodeData
+	 *            If true, dense nodes are emitted as read-only entities sharing
+	 *            cached keys, users, timestamps and empty tag collections, which
+	 *            greatly reduces allocations when reading large files.
+	 */
+	public PbfReader(File file, int workers, boolean memoryMapped, PbfBlobSelector selector,
+			boolean sharedNodeData) {
 		this.file = file;
 		this.workers = workers;
+		this.memoryMapped = memoryMapped;
+		this.selector = selector;
+		this.sharedNodeData = sharedNodeData;
+	}
+
+
+	private PbfBlobIndex loadIndex() {
+		PbfBlobIndex index = null;
+
+		if (selector != null && !file.getName().equals("-")) {
+			index = PbfBlobIndex.load(file);
+		}
+
+		if (selector != null && index == null) {
+			log.warning("No usable blob index exists for PBF file " + file
+					+ ", all blobs will be decoded to apply the selection.");
+		}
+
+		return index;
 	}
 
 
@@ -50,34 +125,62 @@ public class PbfReader implements RunnableSource {
 	}
 
 
+	private ReleasableIterator<PbfRawBlob> createSplitter(PbfBlobIndex index) throws IOException {
+		if (index != null) {
+			// Create a splitter that visits only the blobs selected by the
+			// index. Seeking requires the file to be mapped.
+			return new PbfMappedFileSplitter(file, index.getSelectedOffsets(selector));
+		} else if (file.getName().equals("-")) {
+			// make "-" an alias for /dev/stdin
+			if (memoryMapped) {
+				throw new OsmosisRuntimeException("Memory mapped input cannot be used when reading from stdin.");
+			}
+			return new PbfStreamSplitter(new DataInputStream(System.in));
+		} else if (memoryMapped) {
+			// Create a splitter to break the mapped PBF file into blobs.
+			return new PbfMappedFileSplitter(file);
+		} else {
+			// Create a stream splitter to break the PBF stream into blobs.
+			InputStream inputStream = new FileInputStream(file);
+			return new PbfStreamSplitter(new DataInputStream(inputStream));
+		}
+	}
+
+
 	@Override
 	public void run() {
-		PbfStreamSplitter streamSplitter = null;
+		ReleasableIterator<PbfRawBlob> streamSplitter = null;
 		ExecutorService executorService = Executors.newFixedThreadPool(workers);
 
 		try {
-			InputStream inputStream;
+			PbfBlobIndex index = loadIndex();
+			boolean multiPass;
+
+			// A file can be read again if the sink is able to use several
+			// passes, but stdin can only be read once.
+			multiPass = false;
+			if (sink instanceof MultiPassSink && !file.getName().equals("-")) {
+				multiPass = ((MultiPassSink) sink).requestMultiPass();
+			}
 
 			sink.initialize(Collections.<String, Object>emptyMap());
 
-			// make "-" an alias for /dev/stdin
-			if (file.getName().equals("-")) {
-				inputStream = System.in;
-			} else {
-				inputStream = new FileInputStream(file);
-			}
+			do {
+				streamSplitter = createSplitter(index);
 
-			// Create a stream splitter to break the PBF stream into blobs.
-			streamSplitter = new PbfStreamSplitter(new DataInputStream(inputStream));
-
-			// Process all blobs of data in the stream using threads from the
-			// executor service. We allow the decoder to issue an extra blob
-			// than there are workers to ensure there is another blob
-			// immediately ready for processing when a worker thread completes.
-			// The main thread is responsible for splitting blobs from the
-			// request stream, and sending decoded entities to the sink.
-			PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink);
-			pbfDecoder.run();
+				// Process all blobs of data in the stream using threads from the
+				// executor service. We allow the decoder to issue an extra blob
+				// than there are workers to ensure there is another blob
+				// immediately ready for processing when a worker thread completes.
+				// The main thread is responsible for splitting blobs from the
+				// request stream, and sending decoded entities to the sink.
+				PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, selector,
+						sharedNodeData, sink);
+				pbfDecoder.run();
+
+				streamSplitter.release();
+				streamSplitter = null;
+			} while (multiPass && ((MultiPassSink) sink).completePass());
 
 			sink.complete();
 
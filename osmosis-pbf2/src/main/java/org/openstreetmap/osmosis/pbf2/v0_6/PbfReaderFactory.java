@@ -2,11 +2,16 @@
 package org.openstreetmap.osmosis.pbf2.v0_6;
 
 import java.io.File;
+import java.util.EnumSet;
+import java.util.Set;
 
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.pipeline.v0_6.RunnableSourceManager;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobSelector;
 
 
 /**
@@ -19,6 +24,104 @@ public class PbfReaderFactory extends TaskManagerFactory {
 	private static final String DEFAULT_FILE_NAME = "dump.osm.pbf";
 	private static final String ARG_WORKERS = "workers";
 	private static final int DEFAULT_WORKERS = 1;
+	private static final String ARG_MMAP = "mmap";
+	private static final boolean DEFAULT_MMAP = false;
+	private static final String ARG_BBOX = "bbox";
+	private static final String ARG_TYPES = "types";
+	private static final String ARG_ID_RANGE = "idRange";
+	private static final String ARG_SHARED_NODE_DATA = "sharedNodeData";
+	private static final boolean DEFAULT_SHARED_NODE_DATA = false;
+
+
+	private String[] splitArgument(TaskConfiguration taskConfig, String argName, int count, String format) {
+		String[] values = getStringArgument(taskConfig, argName).split(",");
+
+		if (values.length != count) {
+			throw new OsmosisRuntimeException("Argument " + argName + " for task " + taskConfig.getId()
+					+ " must be in the form " + format + ".");
+		}
+
+		return values;
+	}
+
+
+	private long[] parseIdRange(TaskConfiguration taskConfig) {
+		String format = "firstId,lastId";
+		String[] values = splitArgument(taskConfig, ARG_ID_RANGE, 2, format);
+
+		try {
+			return new long[] {Long.parseLong(values[0].trim()), Long.parseLong(values[1].trim())};
+		} catch (NumberFormatException e) {
+			throw new OsmosisRuntimeException("Argument " + ARG_ID_RANGE + " for task " + taskConfig.getId()
+					+ " must be in the form " + format + ".", e);
+		}
+	}
+
+
+	private double[] parseBox(TaskConfiguration taskConfig) {
+		String format = "left,bottom,right,top";
+		String[] values = splitArgument(taskConfig, ARG_BBOX, 4, format);
+		double[] box = new double[values.length];
+
+		try {
+			for (int i = 0; i < values.length; i++) {
+				box[i] = Double.parseDouble(values[i].trim());
+			}
+		} catch (NumberFormatException e) {
+			throw new OsmosisRuntimeException("Argument " + ARG_BBOX + " for task " + taskConfig.getId()
+					+ " must be in the form " + format + ".", e);
+		}
+
+		return box;
+	}
+
+
+	private Set<EntityType> parseTypes(TaskConfiguration taskConfig) {
+		Set<EntityType> types = EnumSet.noneOf(EntityType.class);
+
+		for (String value : getStringArgument(taskConfig, ARG_TYPES).split(",")) {
+			String typeName = value.trim();
+
+			if ("node".equalsIgnoreCase(typeName)) {
+				types.add(EntityType.Node);
+			} else if ("way".equalsIgnoreCase(typeName)) {
+				types.add(EntityType.Way);
+			} else if ("relation".equalsIgnoreCase(typeName)) {
+				types.add(EntityType.Relation);
+			} else {
+				throw new OsmosisRuntimeException("Argument " + ARG_TYPES + " for task " + taskConfig.getId()
+						+ " contains unknown type " + typeName + ", must be a list of node, way and relation.");
+			}
+		}
+
+		return types;
+	}
+
+
+	private PbfBlobSelector buildSelector(TaskConfiguration taskConfig) {
+		PbfBlobSelector selector = null;
+
+		if (doesArgumentExist(taskConfig, ARG_TYPES)) {
+			selector = new PbfBlobSelector();
+			selector.setTypes(parseTypes(taskConfig));
+		}
+		if (doesArgumentExist(taskConfig, ARG_ID_RANGE)) {
+			long[] range = parseIdRange(taskConfig);
+			if (selector == null) {
+				selector = new PbfBlobSelector();
+			}
+			selector.setIdRange(range[0], range[1]);
+		}
+		if (doesArgumentExist(taskConfig, ARG_BBOX)) {
+			double[] box = parseBox(taskConfig);
+			if (selector == null) {
+				selector = new PbfBlobSelector();
+			}
+			selector.setBox(box[0], box[2], box[3], box[1]);
+		}
+
+		return selector;
+	}
 
 
 	/**
@@ -30,17 +133,23 @@ public class PbfReaderFactory extends TaskManagerFactory {
 		File file;
 		PbfReader task;
 		int workers;
+		boolean memoryMapped;
+		PbfBlobSelector selector;
+		boolean sharedNodeData;
 
 		// Get the task arguments.
 		fileName = getStringArgument(taskConfig, ARG_FILE_NAME,
 				getDefaultStringArgument(taskConfig, DEFAULT_FILE_NAME));
 		workers = getIntegerArgument(taskConfig, ARG_WORKERS, DEFAULT_WORKERS);
+		memoryMapped = getBooleanArgument(taskConfig, ARG_MMAP, DEFAULT_MMAP);
+		selector = buildSelector(taskConfig);
+		sharedNodeData = getBooleanArgument(taskConfig, ARG_SHARED_NODE_DATA, DEFAULT_SHARED_NODE_DATA);
 
 		// Create a file object from the file name provided.
 		file = new File(fileName);
 
 		// Build the task object.
-		task = new PbfReader(file, workers);
+		task = new PbfReader(file, workers, memoryMapped, selector, sharedNodeData);
 
 		return new RunnableSourceManager(taskConfig.getId(), task, taskConfig.getPipeArgs());
 	}
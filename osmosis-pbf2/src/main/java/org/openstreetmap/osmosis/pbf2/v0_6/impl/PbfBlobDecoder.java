@@ -2,6 +2,7 @@
 package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -19,15 +20,19 @@ import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.common.SimpleTimestampContainer;
+import org.openstreetmap.osmosis.core.domain.common.TimestampContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
 import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
 import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
 import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
 import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollection;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollectionImpl;
+import org.openstreetmap.osmosis.core.domain.v0_6.UnmodifiableTagCollection;
 import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.osmbinary.Osmformat;
-import org.openstreetmap.osmosis.osmbinary.Fileformat.Blob;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.DenseInfo;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.DenseNodes;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.HeaderBBox;
@@ -38,7 +43,9 @@ import org.openstreetmap.osmosis.osmbinary.Osmformat.Relation;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.Way;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.Relation.MemberType;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 
 
 /**
@@ -56,9 +63,18 @@ public class PbfBlobDecoder implements Runnable {
 	private static final int EMPTY_VERSION = -1;
 	private static final Date EMPTY_TIMESTAMP = new Date(0);
 	private static final long EMPTY_CHANGESET = -1;
+	private static final TagCollection EMPTY_TAGS = new UnmodifiableTagCollection(new TagCollectionImpl());
+
+	// Field numbers of the Blob message in fileformat.proto.
+	private static final int BLOB_FIELD_RAW = 1;
+	private static final int BLOB_FIELD_RAW_SIZE = 2;
+	private static final int BLOB_FIELD_ZLIB_DATA = 3;
 
 	private String blobType;
-	private byte[] rawBlob;
+	private ByteBuffer rawBlob;
+	private ThreadLocal<PbfBlobDecoderBuffers> decoderBuffers;
+	private PbfBlobSelector selector;
+	private boolean sharedNodeData;
 	private PbfBlobDecoderListener listener;
 	private List<EntityContainer> decodedEntities;
 
@@ -70,44 +86,103 @@ public class PbfBlobDecoder implements Runnable {
 	 *            The type of blob.
 	 * @param rawBlob
 	 *            The raw data of the blob.
+	 * @param decoderBuffers
+	 *            Provides the decoding buffers owned by the current thread.
+	 * @param selector
+	 *            Selects the decoded entities passed to the listener, or null
+	 *            if all entities are required.
+	 * @param sharedNodeData
+	 *            If true, dense nodes are decoded as read-only entities which
+	 *            share cached keys, users, timestamps and empty tag collections
+	 *            instead of allocating their own.
 	 * @param listener
 	 *            The listener for receiving decoding results.
 	 */
-	public PbfBlobDecoder(String blobType, byte[] rawBlob, PbfBlobDecoderListener listener) {
+	public PbfBlobDecoder(String blobType, ByteBuffer rawBlob, ThreadLocal<PbfBlobDecoderBuffers> decoderBuffers,
+			PbfBlobSelector selector, boolean sharedNodeData, PbfBlobDecoderListener listener) {
 		this.blobType = blobType;
 		this.rawBlob = rawBlob;
+		this.decoderBuffers = decoderBuffers;
+		this.selector = selector;
+		this.sharedNodeData = sharedNodeData;
 		this.listener = listener;
 	}
 
 
-	private byte[] readBlobContent() throws IOException {
-		Blob blob = Blob.parseFrom(rawBlob);
-		byte[] blobData;
-
-		if (blob.hasRaw()) {
-			blobData = blob.getRaw().toByteArray();
-		} else if (blob.hasZlibData()) {
-			Inflater inflater = new Inflater();
-			inflater.setInput(blob.getZlibData().toByteArray());
-			blobData = new byte[blob.getRawSize()];
-			try {
-				inflater.inflate(blobData);
-			} catch (DataFormatException e) {
-				throw new OsmosisRuntimeException("Unable to decompress PBF blob.", e);
-			}
-			if (!inflater.finished()) {
-				throw new OsmosisRuntimeException("PBF blob contains incomplete compressed data.");
-			}
+	/**
+	 * Reads the content of the blob, decompressing it if necessary. The blob
+	 * message is walked field by field so that compressed data is inflated
+	 * directly from the raw blob without intermediate copies. The returned
+	 * buffer may be owned by the current thread and is only valid until the
+	 * next blob is decoded.
+	 */
+	private ByteBuffer readBlobContent(PbfBlobDecoderBuffers buffers) throws IOException {
+		byte[] blobArray;
+		int blobOffset;
+		int blobLength = rawBlob.remaining();
+
+		// Inflater requires array input, so blobs outside the heap such as
+		// memory mapped file regions must be copied into the thread's buffer.
+		if (rawBlob.hasArray()) {
+			blobArray = rawBlob.array();
+			blobOffset = rawBlob.arrayOffset() + rawBlob.position();
 		} else {
+			blobArray = buffers.getBlobBuffer(blobLength);
+			blobOffset = 0;
+			rawBlob.duplicate().get(blobArray, 0, blobLength);
+		}
+
+		CodedInputStream blobInput = CodedInputStream.newInstance(blobArray, blobOffset, blobLength);
+		int rawSize = -1;
+		int dataOffset = -1;
+		int dataLength = -1;
+		boolean compressed = false;
+		int tag;
+		while ((tag = blobInput.readTag()) != 0) {
+			int fieldNumber = WireFormat.getTagFieldNumber(tag);
+
+			if (fieldNumber == BLOB_FIELD_RAW || fieldNumber == BLOB_FIELD_ZLIB_DATA) {
+				dataLength = blobInput.readRawVarint32();
+				dataOffset = blobOffset + blobInput.getTotalBytesRead();
+				blobInput.skipRawBytes(dataLength);
+				compressed = fieldNumber == BLOB_FIELD_ZLIB_DATA;
+			} else if (fieldNumber == BLOB_FIELD_RAW_SIZE) {
+				rawSize = blobInput.readInt32();
+			} else {
+				blobInput.skipField(tag);
+			}
+		}
+
+		if (dataOffset < 0) {
 			throw new OsmosisRuntimeException("PBF blob uses unsupported compression, only raw or zlib may be used.");
 		}
 
-		return blobData;
+		if (!compressed) {
+			return ByteBuffer.wrap(blobArray, dataOffset, dataLength);
+		}
+
+		if (rawSize < 0) {
+			throw new OsmosisRuntimeException("PBF blob contains compressed data without a raw size.");
+		}
+		Inflater inflater = buffers.getInflater();
+		inflater.setInput(blobArray, dataOffset, dataLength);
+		byte[] content = buffers.getContentBuffer(rawSize);
+		try {
+			inflater.inflate(content, 0, rawSize);
+		} catch (DataFormatException e) {
+			throw new OsmosisRuntimeException("Unable to decompress PBF blob.", e);
+		}
+		if (!inflater.finished()) {
+			throw new OsmosisRuntimeException("PBF blob contains incomplete compressed data.");
+		}
+
+		return ByteBuffer.wrap(content, 0, rawSize);
 	}
 
 
-	private void processOsmHeader(byte[] data) throws InvalidProtocolBufferException {
-		Osmformat.HeaderBlock header = Osmformat.HeaderBlock.parseFrom(data);
+	private void processOsmHeader(ByteBuffer data) throws InvalidProtocolBufferException {
+		Osmformat.HeaderBlock header = Osmformat.HeaderBlock.PARSER.parseFrom(data.array(), data.position(),
+				data.remaining());
 
 		// Build the list of active and unsupported features in the file.
 		List<String> supportedFeatures = Arrays.asList("OsmSchema-V0.6", "DenseNodes");
@@ -157,7 +232,7 @@ public class PbfBlobDecoder implements Runnable {
 		Iterator<Integer> keyIterator = keys.iterator();
 		Iterator<Integer> valueIterator = values.iterator();
 		while (keyIterator.hasNext()) {
-			String key = fieldDecoder.decodeString(keyIterator.next());
+			String key = fieldDecoder.decodeCachedString(keyIterator.next());
 			String value = fieldDecoder.decodeString(valueIterator.next());
 			Tag tag = new Tag(key, value);
 			tags.add(tag);
@@ -211,8 +286,14 @@ public class PbfBlobDecoder implements Runnable {
 				entityData = buildCommonEntityData(node.getId(), node.getKeysList(), node.getValsList(), fieldDecoder);
 			}
 
-			osmNode = new org.openstreetmap.osmosis.core.domain.v0_6.Node(entityData, fieldDecoder.decodeLatitude(node
-					.getLat()), fieldDecoder.decodeLatitude(node.getLon()));
+			if (fieldDecoder.isFixedPrecisionCompatible()) {
+				osmNode = org.openstreetmap.osmosis.core.domain.v0_6.Node.createFixedPrecision(entityData,
+						fieldDecoder.decodeFixedLatitude(node.getLat()),
+						fieldDecoder.decodeFixedLongitude(node.getLon()));
+			} else {
+				osmNode = new org.openstreetmap.osmosis.core.domain.v0_6.Node(entityData,
+						fieldDecoder.decodeLatitude(node.getLat()), fieldDecoder.decodeLongitude(node.getLon()));
+			}
 
 			// Add the bound object to the results.
 			decodedEntities.add(new NodeContainer(osmNode));
@@ -231,7 +312,8 @@ public class PbfBlobDecoder implements Runnable {
 					+ "), and longitudes (" + lonList.size() + ") don't match");
 		}
 
-		Iterator<Integer> keysValuesIterator = nodes.getKeysValsList().iterator();
+		List<Integer> keysValues = nodes.getKeysValsList();
+		int keysValuesIndex = 0;
 
 		DenseInfo denseInfo;
 		if (nodes.hasDenseinfo()) {
@@ -240,6 +322,9 @@ public class PbfBlobDecoder implements Runnable {
 			denseInfo = null;
 		}
 
+		// Coordinates on the fixed precision grid bypass the conversion through doubles.
+		boolean fixedPrecision = fieldDecoder.isFixedPrecisionCompatible();
+
 		long nodeId = 0;
 		long latitude = 0;
 		long longitude = 0;
@@ -247,6 +332,8 @@ public class PbfBlobDecoder implements Runnable {
 		int userSid = 0;
 		long timestamp = 0;
 		long changesetId = 0;
+		long containerTimestamp = 0;
+		TimestampContainer timestampContainer = null;
 		for (int i = 0; i < idList.size(); i++) {
 			CommonEntityData entityData;
 			org.openstreetmap.osmosis.core.domain.v0_6.Node node;
@@ -256,6 +343,9 @@ public class PbfBlobDecoder implements Runnable {
 			latitude += latList.get(i);
 			longitude += lonList.get(i);
 
+			int version;
+			OsmUser user;
+			long nodeChangesetId;
 			if (denseInfo != null) {
 				// Delta decode dense info fields.
 				userId += denseInfo.getUid(i);
@@ -264,48 +354,98 @@ public class PbfBlobDecoder implements Runnable {
 				changesetId += denseInfo.getChangeset(i);
 
 				// Build the user, but only if one exists.
-				OsmUser user;
-				if (userId >= 0) {
-					user = new OsmUser(userId, fieldDecoder.decodeString(userSid));
-				} else {
+				if (userId < 0) {
 					user = OsmUser.NONE;
+				} else if (sharedNodeData) {
+					user = fieldDecoder.decodeUser(userId, userSid);
+				} else {
+					user = new OsmUser(userId, fieldDecoder.decodeString(userSid));
 				}
 
-				entityData = new CommonEntityData(nodeId, denseInfo.getVersion(i),
-						fieldDecoder.decodeTimestamp(timestamp), user, changesetId);
+				// Consecutive nodes often share a timestamp, in which case
+				// read-only nodes share the timestamp container too.
+				if (!sharedNodeData || timestampContainer == null || timestamp != containerTimestamp) {
+					timestampContainer = new SimpleTimestampContainer(fieldDecoder.decodeTimestamp(timestamp));
+					containerTimestamp = timestamp;
+				}
+
+				version = denseInfo.getVersion(i);
+				nodeChangesetId = changesetId;
 			} else {
-				entityData = new CommonEntityData(nodeId, EMPTY_VERSION, EMPTY_TIMESTAMP, OsmUser.NONE,
-						EMPTY_CHANGESET);
+				user = OsmUser.NONE;
+				version = EMPTY_VERSION;
+				timestampContainer = new SimpleTimestampContainer(EMPTY_TIMESTAMP);
+				nodeChangesetId = EMPTY_CHANGESET;
 			}
 
-			// Build the tags. The key and value string indexes are sequential
-			// in the same PBF array. Each set of tags is delimited by an index
-			// with a value of 0.
-			Collection<Tag> tags = entityData.getTags();
-			while (keysValuesIterator.hasNext()) {
-				int keyIndex = keysValuesIterator.next();
-				if (keyIndex == 0) {
-					break;
-				}
-				if (!keysValuesIterator.hasNext()) {
-					throw new OsmosisRuntimeException(
-							"The PBF DenseInfo keys/values list contains a key with no corresponding value.");
+			if (sharedNodeData) {
+				// Untagged nodes share a single empty tag collection, and the
+				// resulting read-only node wraps its entity data without a copy.
+				TagCollection tags;
+				if (keysValuesIndex < keysValues.size() && keysValues.get(keysValuesIndex) != 0) {
+					tags = new TagCollectionImpl();
+					keysValuesIndex = buildDenseTags(keysValues, keysValuesIndex, fieldDecoder, tags);
+				} else {
+					tags = EMPTY_TAGS;
+					keysValuesIndex++;
 				}
-				int valueIndex = keysValuesIterator.next();
 
-				Tag tag = new Tag(fieldDecoder.decodeString(keyIndex), fieldDecoder.decodeString(valueIndex));
-				tags.add(tag);
+				entityData = CommonEntityData.createReadOnly(nodeId, version, timestampContainer, user,
+						nodeChangesetId, tags);
+				if (fixedPrecision) {
+					node = org.openstreetmap.osmosis.core.domain.v0_6.Node.createReadOnlyFixedPrecision(entityData,
+							fieldDecoder.decodeFixedLatitude(latitude), fieldDecoder.decodeFixedLongitude(longitude));
+				} else {
+					node = org.openstreetmap.osmosis.core.domain.v0_6.Node.createReadOnly(entityData,
+							fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude));
+				}
+			} else {
+				entityData = new CommonEntityData(nodeId, version, timestampContainer, user, nodeChangesetId);
+				keysValuesIndex = buildDenseTags(keysValues, keysValuesIndex, fieldDecoder, entityData.getTags());
+				if (fixedPrecision) {
+					node = org.openstreetmap.osmosis.core.domain.v0_6.Node.createFixedPrecision(entityData,
+							fieldDecoder.decodeFixedLatitude(latitude), fieldDecoder.decodeFixedLongitude(longitude));
+				} else {
+					node = new org.openstreetmap.osmosis.core.domain.v0_6.Node(entityData,
+							fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude));
+				}
 			}
 
-			node = new org.openstreetmap.osmosis.core.domain.v0_6.Node(entityData,
-					fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude));
-
 			// Add the bound object to the results.
 			decodedEntities.add(new NodeContainer(node));
 		}
 	}
 
 
+	/**
+	 * Builds the tags of the next dense node. The key and value string indexes
+	 * are sequential in the same PBF array. Each set of tags is delimited by an
+	 * index with a value of 0. Returns the index of the following node's tags.
+	 */
+	private int buildDenseTags(List<Integer> keysValues, int startIndex, PbfFieldDecoder fieldDecoder,
+			Collection<Tag> tags) {
+		int index = startIndex;
+		int size = keysValues.size();
+
+		while (index < size) {
+			int keyIndex = keysValues.get(index++);
+			if (keyIndex == 0) {
+				break;
+			}
+			if (index >= size) {
+				throw new OsmosisRuntimeException(
+						"The PBF DenseInfo keys/values list contains a key with no corresponding value.");
+			}
+			int valueIndex = keysValues.get(index++);
+
+			Tag tag = new Tag(fieldDecoder.decodeCachedString(keyIndex), fieldDecoder.decodeString(valueIndex));
+			tags.add(tag);
+		}
+
+		return index;
+	}
+
+
 	private void processWays(List<Way> ways, PbfFieldDecoder fieldDecoder) {
 		for (Way way : ways) {
 			org.openstreetmap.osmosis.core.domain.v0_6.Way osmWay;
@@ -404,9 +544,16 @@ public class PbfBlobDecoder implements Runnable {
 	}
 
 
-	private void processOsmPrimitives(byte[] data) throws InvalidProtocolBufferException {
-		Osmformat.PrimitiveBlock block = Osmformat.PrimitiveBlock.parseFrom(data);
-		PbfFieldDecoder fieldDecoder = new PbfFieldDecoder(block);
+	private void processOsmPrimitives(ByteBuffer data, PbfBlobDecoderBuffers buffers)
+			throws InvalidProtocolBufferException {
+		Osmformat.PrimitiveBlock block = Osmformat.PrimitiveBlock.PARSER.parseFrom(data.array(), data.position(),
+				data.remaining());
+		PbfFieldDecoder fieldDecoder;
+		if (sharedNodeData) {
+			fieldDecoder = new PbfFieldDecoder(block, buffers.getStringCache());
+		} else {
+			fieldDecoder = new PbfFieldDecoder(block);
+		}
 
 		for (PrimitiveGroup primitiveGroup : block.getPrimitivegroupList()) {
 			log.finer("Processing OSM primitive group.");
@@ -418,15 +565,29 @@ public class PbfBlobDecoder implements Runnable {
 	}
 
 
+	private void applySelector() {
+		List<EntityContainer> selectedEntities = new ArrayList<EntityContainer>(decodedEntities.size());
+
+		for (EntityContainer entityContainer : decodedEntities) {
+			if (selector.isEntitySelected(entityContainer.getEntity())) {
+				selectedEntities.add(entityContainer);
+			}
+		}
+
+		decodedEntities = selectedEntities;
+	}
+
+
 	private void runAndTrapExceptions() {
 		try {
+			PbfBlobDecoderBuffers buffers = decoderBuffers.get();
 			decodedEntities = new ArrayList<EntityContainer>();
 
 			if ("OSMHeader".equals(blobType)) {
-				processOsmHeader(readBlobContent());
+				processOsmHeader(readBlobContent(buffers));
 
 			} else if ("OSMData".equals(blobType)) {
-				processOsmPrimitives(readBlobContent());
+				processOsmPrimitives(readBlobContent(buffers), buffers);
 
 			} else {
 				if (log.isLoggable(Level.FINER)) {
@@ -434,6 +595,10 @@ public class PbfBlobDecoder implements Runnable {
 				}
 			}
 
+			if (selector != null) {
+				applySelector();
+			}
+
 		} catch (IOException e) {
 			throw new OsmosisRuntimeException("Unable to process PBF blob", e);
 		}
@@ -0,0 +1,94 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.util.zip.Inflater;
+
+
+/**
+ * Holds the working buffers and inflater used to decode blobs. A single
+ * instance is owned by each worker thread and reused for every blob it
+ * decodes, which avoids allocating new arrays and native zlib state per blob.
+ * 
+ * @author Brett Henderson
+ */
+public class PbfBlobDecoderBuffers {
+	private Inflater inflater;
+	private byte[] blobBuffer;
+	private byte[] contentBuffer;
+	private PbfStringCache stringCache;
+
+
+	/**
+	 * Creates a new instance.
+	 */
+	public PbfBlobDecoderBuffers() {
+		inflater = new Inflater();
+		blobBuffer = new byte[0];
+		contentBuffer = new byte[0];
+		stringCache = new PbfStringCache();
+	}
+
+
+	private byte[] growBuffer(byte[] buffer, int minimumSize) {
+		if (buffer.length >= minimumSize) {
+			return buffer;
+		}
+
+		// Grow by at least half again to avoid repeated small increases.
+		return new byte[Math.max(minimumSize, buffer.length + (buffer.length >> 1))];
+	}
+
+
+	/**
+	 * Gets the inflater, reset and ready to accept new input.
+	 * 
+	 * @return The inflater.
+	 */
+	public Inflater getInflater() {
+		inflater.reset();
+
+		return inflater;
+	}
+
+
+	/**
+	 * Gets a buffer for holding a copy of the raw blob data. The contents of
+	 * the buffer are undefined.
+	 * 
+	 * @param minimumSize
+	 *            The minimum required size of the buffer.
+	 * @return The buffer.
+	 */
+	public byte[] getBlobBuffer(int minimumSize) {
+		blobBuffer = growBuffer(blobBuffer, minimumSize);
+
+		return blobBuffer;
+	}
+
+
+	/**
+	 * Gets a buffer for holding the decompressed blob content. The contents of
+	 * the buffer are undefined.
+	 * 
+	 * @param minimumSize
+	 *            The minimum required size of the buffer.
+	 * @return The buffer.
+	 */
+	public byte[] getContentBuffer(int minimumSize) {
+		contentBuffer = growBuffer(contentBuffer, minimumSize);
+
+		return contentBuffer;
+	}
+
+
+	/**
+	 * Gets the cache of frequently repeated strings such as tag keys and user
+	 * names. The cache lives as long as these buffers so that it is shared by
+	 * all blocks decoded on the owning thread.
+	 * 
+	 * @return The string cache.
+	 */
+	public PbfStringCache getStringCache() {
+		return stringCache;
+	}
+}
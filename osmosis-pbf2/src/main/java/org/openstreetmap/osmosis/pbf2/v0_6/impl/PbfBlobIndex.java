@@ -0,0 +1,189 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * A sidecar index of a PBF file listing the location and summary of every blob
+ * in the file. It allows a reader to skip blobs that cannot contain any entities
+ * of interest without reading or decompressing them.
+ * 
+ * @author Brett Henderson
+ */
+public class PbfBlobIndex {
+
+	private static Logger log = Logger.getLogger(PbfBlobIndex.class.getName());
+
+	private static final String FILE_SUFFIX = ".idx";
+	private static final String FORMAT_NAME = "osmosis-pbf-index";
+	private static final int FORMAT_VERSION = 2;
+
+	private long pbfFileLength;
+	private long pbfFileModified;
+	private List<PbfBlobIndexEntry> entries;
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param pbfFileLength
+	 *            The length of the indexed PBF file. This is used to detect a
+	 *            stale index.
+	 * @param pbfFileModified
+	 *            The modification time of the indexed PBF file. This detects a
+	 *            file rewritten with the same length.
+	 * @param entries
+	 *            The index entries ordered by file offset.
+	 */
+	public PbfBlobIndex(long pbfFileLength, long pbfFileModified, List<PbfBlobIndexEntry> entries) {
+		this.pbfFileLength = pbfFileLength;
+		this.pbfFileModified = pbfFileModified;
+		this.entries = entries;
+	}
+
+
+	/**
+	 * Gets the location of the index file for a PBF file.
+	 * 
+	 * @param pbfFile
+	 *            The PBF file.
+	 * @return The index file.
+	 */
+	public static File getIndexFile(File pbfFile) {
+		return new File(pbfFile.getPath() + FILE_SUFFIX);
+	}
+
+
+	/**
+	 * Loads the index for a PBF file if one exists and still matches the PBF
+	 * file.
+	 * 
+	 * @param pbfFile
+	 *            The PBF file.
+	 * @return The index, or null if no usable index exists.
+	 */
+	public static PbfBlobIndex load(File pbfFile) {
+		File indexFile = getIndexFile(pbfFile);
+
+		if (!indexFile.exists()) {
+			return null;
+		}
+
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+
+			if (!FORMAT_NAME.equals(input.readUTF()) || input.readInt() != FORMAT_VERSION) {
+				log.warning("Ignoring PBF index " + indexFile + " because it has an unrecognised format.");
+				return null;
+			}
+
+			long indexedLength = input.readLong();
+			long indexedModified = input.readLong();
+			if (indexedLength != pbfFile.length() || indexedModified != pbfFile.lastModified()) {
+				log.warning("Ignoring PBF index " + indexFile + " because the PBF file has changed since indexing.");
+				return null;
+			}
+
+			int entryCount = input.readInt();
+			List<PbfBlobIndexEntry> entries = new ArrayList<PbfBlobIndexEntry>(entryCount);
+			for (int i = 0; i < entryCount; i++) {
+				entries.add(new PbfBlobIndexEntry(input));
+			}
+
+			return new PbfBlobIndex(indexedLength, indexedModified, entries);
+
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to read PBF index " + indexFile + ".", e);
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					log.log(Level.SEVERE, "Unable to close PBF index " + indexFile + ".", e);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Writes the index alongside the PBF file.
+	 * 
+	 * @param pbfFile
+	 *            The PBF file that was indexed.
+	 */
+	public void save(File pbfFile) {
+		File indexFile = getIndexFile(pbfFile);
+
+		DataOutputStream output = null;
+		try {
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+
+			output.writeUTF(FORMAT_NAME);
+			output.writeInt(FORMAT_VERSION);
+			output.writeLong(pbfFileLength);
+			output.writeLong(pbfFileModified);
+			output.writeInt(entries.size());
+			for (PbfBlobIndexEntry entry : entries) {
+				entry.store(output);
+			}
+
+			output.close();
+			output = null;
+
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to write PBF index " + indexFile + ".", e);
+		} finally {
+			if (output != null) {
+				try {
+					output.close();
+				} catch (IOException e) {
+					log.log(Level.SEVERE, "Unable to close PBF index " + indexFile + ".", e);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the file offsets of all blobs accepted by the selector.
+	 * 
+	 * @param selector
+	 *            The selector deciding which blobs are required.
+	 * @return The offsets in file order.
+	 */
+	public long[] getSelectedOffsets(PbfBlobSelector selector) {
+		List<PbfBlobIndexEntry> selectedEntries = new ArrayList<PbfBlobIndexEntry>();
+		for (PbfBlobIndexEntry entry : entries) {
+			if (selector.isBlobSelected(entry)) {
+				selectedEntries.add(entry);
+			}
+		}
+
+		if (log.isLoggable(Level.FINE)) {
+			log.fine("Selected " + selectedEntries.size() + " of " + entries.size() + " PBF blobs using the index.");
+		}
+
+		long[] offsets = new long[selectedEntries.size()];
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = selectedEntries.get(i).getOffset();
+		}
+
+		return offsets;
+	}
+}
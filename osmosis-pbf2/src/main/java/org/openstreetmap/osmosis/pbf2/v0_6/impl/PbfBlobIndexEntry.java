@@ -0,0 +1,200 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+
+
+/**
+ * Summarises the contents of a single blob within a PBF file. It records where
+ * the blob is located along with enough information about its entities to
+ * decide whether the blob can be skipped without decoding it.
+ * 
+ * @author Brett Henderson
+ */
+public class PbfBlobIndexEntry {
+	private long offset;
+	private String blobType;
+	private int entityTypes;
+	private long minimumId;
+	private long maximumId;
+	private boolean nodeBoxAvailable;
+	private double left;
+	private double right;
+	private double top;
+	private double bottom;
+
+
+	/**
+	 * Creates a new empty instance. Entities are added to the summary using
+	 * the addEntity method.
+	 * 
+	 * @param offset
+	 *            The file offset of the blob header length prefix.
+	 * @param blobType
+	 *            The type of data represented by the blob.
+	 */
+	public PbfBlobIndexEntry(long offset, String blobType) {
+		this.offset = offset;
+		this.blobType = blobType;
+
+		entityTypes = 0;
+		minimumId = Long.MAX_VALUE;
+		maximumId = Long.MIN_VALUE;
+		nodeBoxAvailable = false;
+	}
+
+
+	/**
+	 * Creates a new instance from data previously written by the store method.
+	 * 
+	 * @param input
+	 *            The input to read from.
+	 * @throws IOException
+	 *             if the entry cannot be read.
+	 */
+	public PbfBlobIndexEntry(DataInput input) throws IOException {
+		offset = input.readLong();
+		blobType = input.readUTF();
+		entityTypes = input.readInt();
+		minimumId = input.readLong();
+		maximumId = input.readLong();
+		nodeBoxAvailable = input.readBoolean();
+		if (nodeBoxAvailable) {
+			left = input.readDouble();
+			right = input.readDouble();
+			top = input.readDouble();
+			bottom = input.readDouble();
+		}
+	}
+
+
+	/**
+	 * Writes the entry to the output.
+	 * 
+	 * @param output
+	 *            The output to write to.
+	 * @throws IOException
+	 *             if the entry cannot be written.
+	 */
+	public void store(DataOutput output) throws IOException {
+		output.writeLong(offset);
+		output.writeUTF(blobType);
+		output.writeInt(entityTypes);
+		output.writeLong(minimumId);
+		output.writeLong(maximumId);
+		output.writeBoolean(nodeBoxAvailable);
+		if (nodeBoxAvailable) {
+			output.writeDouble(left);
+			output.writeDouble(right);
+			output.writeDouble(top);
+			output.writeDouble(bottom);
+		}
+	}
+
+
+	/**
+	 * Updates the summary to include the specified entity.
+	 * 
+	 * @param entity
+	 *            The entity contained in the blob.
+	 */
+	public void addEntity(Entity entity) {
+		EntityType type = entity.getType();
+
+		entityTypes |= 1 << type.ordinal();
+		if (type == EntityType.Bound) {
+			return;
+		}
+
+		minimumId = Math.min(minimumId, entity.getId());
+		maximumId = Math.max(maximumId, entity.getId());
+
+		if (type == EntityType.Node) {
+			Node node = (Node) entity;
+
+			if (nodeBoxAvailable) {
+				left = Math.min(left, node.getLongitude());
+				right = Math.max(right, node.getLongitude());
+				bottom = Math.min(bottom, node.getLatitude());
+				top = Math.max(top, node.getLatitude());
+			} else {
+				left = node.getLongitude();
+				right = node.getLongitude();
+				bottom = node.getLatitude();
+				top = node.getLatitude();
+				nodeBoxAvailable = true;
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the file offset of the blob header length prefix.
+	 * 
+	 * @return The offset.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+
+	/**
+	 * Gets the type of data represented by the blob.
+	 * 
+	 * @return The blob type.
+	 */
+	public String getBlobType() {
+		return blobType;
+	}
+
+
+	/**
+	 * Indicates if the blob contains entities of the specified type.
+	 * 
+	 * @param type
+	 *            The entity type.
+	 * @return True if at least one entity of the type exists in the blob.
+	 */
+	public boolean containsType(EntityType type) {
+		return (entityTypes & (1 << type.ordinal())) != 0;
+	}
+
+
+	/**
+	 * Indicates if any entity in the blob may have an id within the range.
+	 * 
+	 * @param firstId
+	 *            The first id of the range.
+	 * @param lastId
+	 *            The last id of the range (inclusive).
+	 * @return True if the id ranges overlap.
+	 */
+	public boolean overlapsIdRange(long firstId, long lastId) {
+		return minimumId <= lastId && maximumId >= firstId;
+	}
+
+
+	/**
+	 * Indicates if any node in the blob may lie within the box. If the blob
+	 * contains no nodes this returns false.
+	 * 
+	 * @param boxLeft
+	 *            The minimum longitude of the box.
+	 * @param boxRight
+	 *            The maximum longitude of the box.
+	 * @param boxTop
+	 *            The maximum latitude of the box.
+	 * @param boxBottom
+	 *            The minimum latitude of the box.
+	 * @return True if the box overlaps the bounding box of the blob's nodes.
+	 */
+	public boolean overlapsNodeBox(double boxLeft, double boxRight, double boxTop, double boxBottom) {
+		return nodeBoxAvailable && left <= boxRight && right >= boxLeft && bottom <= boxTop && top >= boxBottom;
+	}
+}
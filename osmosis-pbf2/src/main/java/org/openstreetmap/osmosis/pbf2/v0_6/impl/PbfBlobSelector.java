@@ -0,0 +1,151 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+
+
+/**
+ * Decides which blobs and entities of a PBF file are required by a reader.
+ * Blobs are selected using their index entries so that irrelevant blobs can
+ * be skipped, and entities within the selected blobs are filtered exactly.
+ * The bounding box applies only to nodes, ways and relations are not
+ * restricted by it.
+ * 
+ * @author Brett Henderson
+ */
+public class PbfBlobSelector {
+	private Set<EntityType> types;
+	private boolean idRangeEnabled;
+	private long firstId;
+	private long lastId;
+	private boolean boxEnabled;
+	private double left;
+	private double right;
+	private double top;
+	private double bottom;
+
+
+	/**
+	 * Creates a new instance selecting all entity types and ids within any
+	 * location.
+	 */
+	public PbfBlobSelector() {
+		types = EnumSet.of(EntityType.Node, EntityType.Way, EntityType.Relation);
+		idRangeEnabled = false;
+		boxEnabled = false;
+	}
+
+
+	/**
+	 * Restricts the selection to the specified entity types.
+	 * 
+	 * @param selectedTypes
+	 *            The entity types to be selected.
+	 */
+	public void setTypes(Set<EntityType> selectedTypes) {
+		types = EnumSet.copyOf(selectedTypes);
+	}
+
+
+	/**
+	 * Restricts the selection to entities with ids in the range.
+	 * 
+	 * @param rangeFirstId
+	 *            The first id of the range.
+	 * @param rangeLastId
+	 *            The last id of the range (inclusive).
+	 */
+	public void setIdRange(long rangeFirstId, long rangeLastId) {
+		idRangeEnabled = true;
+		firstId = rangeFirstId;
+		lastId = rangeLastId;
+	}
+
+
+	/**
+	 * Restricts the selection to nodes within the box.
+	 * 
+	 * @param boxLeft
+	 *            The minimum longitude of the box.
+	 * @param boxRight
+	 *            The maximum longitude of the box.
+	 * @param boxTop
+	 *            The maximum latitude of the box.
+	 * @param boxBottom
+	 *            The minimum latitude of the box.
+	 */
+	public void setBox(double boxLeft, double boxRight, double boxTop, double boxBottom) {
+		boxEnabled = true;
+		left = boxLeft;
+		right = boxRight;
+		top = boxTop;
+		bottom = boxBottom;
+	}
+
+
+	/**
+	 * Indicates if a blob may contain selected entities and must be read.
+	 * 
+	 * @param entry
+	 *            The index entry of the blob.
+	 * @return True if the blob is required.
+	 */
+	public boolean isBlobSelected(PbfBlobIndexEntry entry) {
+		// Header blobs and any unknown blob types are always read.
+		if (!"OSMData".equals(entry.getBlobType())) {
+			return true;
+		}
+
+		if (idRangeEnabled && !entry.overlapsIdRange(firstId, lastId)) {
+			return false;
+		}
+
+		for (EntityType type : types) {
+			if (entry.containsType(type)) {
+				if (type != EntityType.Node || !boxEnabled || entry.overlapsNodeBox(left, right, top, bottom)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * Indicates if an entity is selected.
+	 * 
+	 * @param entity
+	 *            The entity to be checked.
+	 * @return True if the entity is required.
+	 */
+	public boolean isEntitySelected(Entity entity) {
+		EntityType type = entity.getType();
+
+		if (type == EntityType.Bound) {
+			return true;
+		}
+
+		if (!types.contains(type)) {
+			return false;
+		}
+
+		if (idRangeEnabled && (entity.getId() < firstId || entity.getId() > lastId)) {
+			return false;
+		}
+
+		if (boxEnabled && type == EntityType.Node) {
+			Node node = (Node) entity;
+
+			return node.getLongitude() >= left && node.getLongitude() <= right && node.getLatitude() >= bottom
+					&& node.getLatitude() <= top;
+		}
+
+		return true;
+	}
+}
@@ -1,6 +1,7 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -10,6 +11,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 
@@ -21,13 +23,16 @@ import org.openstreetmap.osmosis.core.task.v0_6.Sink;
  * @author Brett Henderson
  */
 public class PbfDecoder implements Runnable {
-	private PbfStreamSplitter streamSplitter;
+	private Iterator<PbfRawBlob> streamSplitter;
 	private ExecutorService executorService;
 	private int maxPendingBlobs;
 	private Sink sink;
 	private Lock lock;
 	private Condition dataWaitCondition;
 	private Queue<PbfBlobResult> blobResults;
+	private ThreadLocal<PbfBlobDecoderBuffers> decoderBuffers;
+	private PbfBlobSelector selector;
+	private boolean sharedNodeData;
 
 
 	/**
@@ -35,20 +40,28 @@ public class PbfDecoder implements Runnable {
 	 * 
 	 * @param streamSplitter
 	 *            The PBF stream splitter providing the source of blobs to be
-	 *            decoded.
+	 *            decoded. This may split a stream or a memory mapped file.
 	 * @param executorService
 	 *            The executor service managing the thread pool.
 	 * @param maxPendingBlobs
 	 *            The maximum number of blobs to have in progress at any point
 	 *            in time.
+	 * @param selector
+	 *            Selects the entities to be passed to the sink, or null if all
+	 *            entities are required.
+	 * @param sharedNodeData
+	 *            If true, dense nodes are decoded as read-only entities sharing
+	 *            common data instead of allocating their own.
 	 * @param sink
 	 *            The sink to send all decoded entities to.
 	 */
-	public PbfDecoder(PbfStreamSplitter streamSplitter, ExecutorService executorService, int maxPendingBlobs,
-			Sink sink) {
+	public PbfDecoder(Iterator<PbfRawBlob> streamSplitter, ExecutorService executorService, int maxPendingBlobs,
+			PbfBlobSelector selector, boolean sharedNodeData, Sink sink) {
 		this.streamSplitter = streamSplitter;
 		this.executorService = executorService;
 		this.maxPendingBlobs = maxPendingBlobs;
+		this.selector = selector;
+		this.sharedNodeData = sharedNodeData;
 		this.sink = sink;
 
 		// Create the thread synchronisation primitives.
@@ -57,6 +70,14 @@ public class PbfDecoder implements Runnable {
 
 		// Create the queue of blobs being decoded.
 		blobResults = new LinkedList<PbfBlobResult>();
+
+		// Each worker thread re-uses a single set of decoding buffers.
+		decoderBuffers = new ThreadLocal<PbfBlobDecoderBuffers>() {
+			@Override
+			protected PbfBlobDecoderBuffers initialValue() {
+				return new PbfBlobDecoderBuffers();
+			}
+		};
 	}
 
 
@@ -102,9 +123,7 @@ public class PbfDecoder implements Runnable {
 			// their results.
 			lock.unlock();
 			try {
-				for (EntityContainer entity : blobResult.getEntities()) {
-					sink.process(entity);
-				}
+				EntityBatch.create(blobResult.getEntities()).sendTo(sink);
 			} finally {
 				lock.lock();
 			}
@@ -154,7 +173,8 @@ public class PbfDecoder implements Runnable {
 			};
 
 			// Create the blob decoder itself and execute it on a worker thread.
-			PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener);
+			PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderBuffers,
+					selector, sharedNodeData, decoderListener);
 			executorService.execute(blobDecoder);
 
 			// If the number of pending blobs has reached capacity we must begin
@@ -3,6 +3,7 @@ package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 
 import java.util.Date;
 
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.PrimitiveBlock;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.StringTable;
 
@@ -16,11 +17,16 @@ import org.openstreetmap.osmosis.osmbinary.Osmformat.StringTable;
  */
 public class PbfFieldDecoder {
 	private static final double COORDINATE_SCALING_FACTOR = 0.000000001;
+	private static final int NANODEGREES_PER_FIXED_UNIT = 100;
 
+	private StringTable stringTable;
+	private PbfStringCache stringCache;
 	private String[] strings;
+	private OsmUser[] users;
 	private int coordGranularity;
 	private long coordLatitudeOffset;
 	private long coordLongitudeOffset;
+	private boolean fixedPrecisionCompatible;
 	private int dateGranularity;
 
 
@@ -31,16 +37,33 @@ public class PbfFieldDecoder {
 	 *            The primitive block containing the fields to be decoded.
 	 */
 	public PbfFieldDecoder(PrimitiveBlock primitiveBlock) {
+		this(primitiveBlock, null);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param primitiveBlock
+	 *            The primitive block containing the fields to be decoded.
+	 * @param stringCache
+	 *            If not null, keys and user names are obtained from this cache
+	 *            so that values repeated across blocks share a single instance.
+	 */
+	public PbfFieldDecoder(PrimitiveBlock primitiveBlock, PbfStringCache stringCache) {
 		this.coordGranularity = primitiveBlock.getGranularity();
 		this.coordLatitudeOffset = primitiveBlock.getLatOffset();
 		this.coordLongitudeOffset = primitiveBlock.getLonOffset();
+		this.fixedPrecisionCompatible = coordGranularity % NANODEGREES_PER_FIXED_UNIT == 0
+				&& coordLatitudeOffset % NANODEGREES_PER_FIXED_UNIT == 0
+				&& coordLongitudeOffset % NANODEGREES_PER_FIXED_UNIT == 0;
 		this.dateGranularity = primitiveBlock.getDateGranularity();
 
-		StringTable stringTable = primitiveBlock.getStringtable();
+		// Strings are decoded on first use because many table entries are
+		// only referenced by entities that a selector may discard.
+		this.stringTable = primitiveBlock.getStringtable();
+		this.stringCache = stringCache;
 		strings = new String[stringTable.getSCount()];
-		for (int i = 0; i < strings.length; i++) {
-			strings[i] = stringTable.getS(i).toStringUtf8();
-		}
 	}
 
 
@@ -68,6 +91,44 @@ public class PbfFieldDecoder {
 	}
 
 
+	/**
+	 * Indicates whether coordinates in this block fall on the fixed precision grid used by
+	 * FixedPrecisionCoordinateConvertor. This holds for the default granularity and offsets, in
+	 * which case the fixed precision decode methods may be used without losing precision.
+	 * 
+	 * @return True if the fixed precision decode methods are exact.
+	 */
+	public boolean isFixedPrecisionCompatible() {
+		return fixedPrecisionCompatible;
+	}
+
+
+	/**
+	 * Decodes a raw latitude value into fixed precision form. Only exact if
+	 * isFixedPrecisionCompatible returns true.
+	 * 
+	 * @param rawLatitude
+	 *            The PBF encoded value.
+	 * @return The latitude in fixed precision form.
+	 */
+	public int decodeFixedLatitude(long rawLatitude) {
+		return (int) ((coordLatitudeOffset + (coordGranularity * rawLatitude)) / NANODEGREES_PER_FIXED_UNIT);
+	}
+
+
+	/**
+	 * Decodes a raw longitude value into fixed precision form. Only exact if
+	 * isFixedPrecisionCompatible returns true.
+	 * 
+	 * @param rawLongitude
+	 *            The PBF encoded value.
+	 * @return The longitude in fixed precision form.
+	 */
+	public int decodeFixedLongitude(long rawLongitude) {
+		return (int) ((coordLongitudeOffset + (coordGranularity * rawLongitude)) / NANODEGREES_PER_FIXED_UNIT);
+	}
+
+
 	/**
 	 * Decodes a raw timestamp value into a Date.
 	 * 
@@ -88,6 +149,64 @@ public class PbfFieldDecoder {
 	 * @return The string as a String.
 	 */
 	public String decodeString(int rawString) {
-		return strings[rawString];
+		String string = strings[rawString];
+
+		if (string == null) {
+			string = stringTable.getS(rawString).toStringUtf8();
+			strings[rawString] = string;
+		}
+
+		return string;
+	}
+
+
+	/**
+	 * Decodes a raw string holding a frequently repeated value such as a tag
+	 * key into a String. If a string cache is in use, the same instance is
+	 * returned for equal values in all blocks sharing the cache.
+	 * 
+	 * @param rawString
+	 *            The PBF encoding string.
+	 * @return The string as a String.
+	 */
+	public String decodeCachedString(int rawString) {
+		String string = strings[rawString];
+
+		if (string == null) {
+			if (stringCache != null) {
+				string = stringCache.get(stringTable.getS(rawString));
+			} else {
+				string = stringTable.getS(rawString).toStringUtf8();
+			}
+			strings[rawString] = string;
+		}
+
+		return string;
+	}
+
+
+	/**
+	 * Decodes a user from its id and string table index. Users are cached by
+	 * string index for the life of this decoder so that all entities in a
+	 * block edited by the same user share a single instance.
+	 * 
+	 * @param userId
+	 *            The PBF user id.
+	 * @param rawUserName
+	 *            The PBF encoded user name.
+	 * @return The user.
+	 */
+	public OsmUser decodeUser(int userId, int rawUserName) {
+		if (users == null) {
+			users = new OsmUser[strings.length];
+		}
+
+		OsmUser user = users[rawUserName];
+		if (user == null || user.getId() != userId) {
+			user = new OsmUser(userId, decodeCachedString(rawUserName));
+			users[rawUserName] = user;
+		}
+
+		return user;
 	}
 }
@@ -0,0 +1,211 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.osmbinary.Fileformat;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
+
+import com.google.protobuf.CodedInputStream;
+
+
+/**
+ * Splits a PBF file into blobs by scanning blob boundaries over a memory
+ * mapped view of the file. Each blob returned references a slice of the
+ * mapping rather than a copy of the data. The file is mapped in windows
+ * because a single mapping is limited to 2GB. If a list of blob offsets is
+ * supplied, only the blobs at those offsets are returned.
+ * 
+ * @author Brett Henderson
+ */
+public class PbfMappedFileSplitter implements ReleasableIterator<PbfRawBlob> {
+
+	private static Logger log = Logger.getLogger(PbfMappedFileSplitter.class.getName());
+
+	/**
+	 * The preferred size of each mapped window. Blobs are at most 32MB so
+	 * only a small proportion of each window is wasted when a blob straddles
+	 * a window boundary.
+	 */
+	private static final long WINDOW_SIZE = 1024 * 1024 * 1024;
+
+	/**
+	 * The maximum header size permitted by the PBF specification.
+	 */
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+	private File file;
+	private RandomAccessFile randomAccessFile;
+	private FileChannel channel;
+	private long fileSize;
+	private long filePosition;
+	private long[] blobOffsets;
+	private int blobOffsetIndex;
+	private MappedByteBuffer window;
+	private long windowOffset;
+	private int dataBlockCount;
+	private PbfRawBlob nextBlob;
+
+
+	/**
+	 * Creates a new instance returning all blobs in the file.
+	 * 
+	 * @param file
+	 *            The PBF file to be parsed.
+	 */
+	public PbfMappedFileSplitter(File file) {
+		this(file, null);
+	}
+
+
+	/**
+	 * Creates a new instance returning only the blobs at the specified
+	 * offsets.
+	 * 
+	 * @param file
+	 *            The PBF file to be parsed.
+	 * @param blobOffsets
+	 *            The offsets of the required blobs in ascending order, or null
+	 *            to return all blobs.
+	 */
+	public PbfMappedFileSplitter(File file, long[] blobOffsets) {
+		this.file = file;
+		this.blobOffsets = blobOffsets;
+
+		try {
+			randomAccessFile = new RandomAccessFile(file, "r");
+			channel = randomAccessFile.getChannel();
+			fileSize = channel.size();
+		} catch (IOException e) {
+			release();
+			throw new OsmosisRuntimeException("Unable to open PBF file " + file + " for mapping.", e);
+		}
+
+		filePosition = 0;
+		blobOffsetIndex = 0;
+		dataBlockCount = 0;
+	}
+
+
+	/**
+	 * Gets a view of the requested region of the file, re-mapping the window
+	 * if the region is not already mapped. The returned buffer is positioned
+	 * at the start of the region and limited to its end.
+	 */
+	private ByteBuffer getRegion(long offset, int length) throws IOException {
+		if (offset + length > fileSize) {
+			throw new OsmosisRuntimeException("PBF file " + file + " is truncated, expected " + length
+					+ " bytes at offset " + offset + " but the file is only " + fileSize + " bytes.");
+		}
+
+		if (window == null || offset < windowOffset || offset + length > windowOffset + window.capacity()) {
+			long windowSize = Math.min(Math.max(WINDOW_SIZE, length), fileSize - offset);
+
+			if (log.isLoggable(Level.FINER)) {
+				log.finer("Mapping " + windowSize + " bytes of PBF file at offset " + offset + ".");
+			}
+			window = channel.map(FileChannel.MapMode.READ_ONLY, offset, windowSize);
+			windowOffset = offset;
+		}
+
+		ByteBuffer region = window.duplicate();
+		region.position((int) (offset - windowOffset));
+		region.limit(region.position() + length);
+
+		return region;
+	}
+
+
+	private void getNextBlob() {
+		try {
+			long blobOffset = filePosition;
+
+			// Read the length of the next header block.
+			int headerLength = getRegion(filePosition, 4).getInt();
+			if (headerLength < 0 || headerLength > MAX_HEADER_SIZE) {
+				throw new OsmosisRuntimeException("PBF blob header at offset " + filePosition + " has invalid length "
+						+ headerLength + ".");
+			}
+			filePosition += 4;
+
+			if (log.isLoggable(Level.FINER)) {
+				log.finer("Reading header for blob " + dataBlockCount++);
+			}
+			ByteBuffer headerRegion = getRegion(filePosition, headerLength);
+			byte[] headerBuffer = new byte[headerLength];
+			headerRegion.get(headerBuffer);
+			BlobHeader blobHeader = Fileformat.BlobHeader.parseFrom(CodedInputStream.newInstance(headerBuffer));
+			filePosition += headerLength;
+
+			if (log.isLoggable(Level.FINER)) {
+				log.finer("Processing blob of type " + blobHeader.getType() + ".");
+			}
+			ByteBuffer blobData = getRegion(filePosition, blobHeader.getDatasize()).slice();
+			filePosition += blobHeader.getDatasize();
+
+			nextBlob = new PbfRawBlob(blobOffset, blobHeader.getType(), blobData);
+
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to get next blob from PBF file " + file + ".", e);
+		}
+	}
+
+
+	@Override
+	public boolean hasNext() {
+		if (nextBlob == null) {
+			if (blobOffsets == null) {
+				if (filePosition < fileSize) {
+					getNextBlob();
+				}
+			} else if (blobOffsetIndex < blobOffsets.length) {
+				filePosition = blobOffsets[blobOffsetIndex++];
+				getNextBlob();
+			}
+		}
+
+		return nextBlob != null;
+	}
+
+
+	@Override
+	public PbfRawBlob next() {
+		PbfRawBlob result = nextBlob;
+		nextBlob = null;
+
+		return result;
+	}
+
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+
+	@Override
+	public void release() {
+		// The mapping itself is released when the last blob slice referencing
+		// it is garbage collected.
+		window = null;
+		channel = null;
+
+		if (randomAccessFile != null) {
+			try {
+				randomAccessFile.close();
+			} catch (IOException e) {
+				log.log(Level.SEVERE, "Unable to close PBF file.", e);
+			}
+		}
+		randomAccessFile = null;
+	}
+}
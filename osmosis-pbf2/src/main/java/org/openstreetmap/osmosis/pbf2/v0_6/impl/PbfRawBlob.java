@@ -1,6 +1,9 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 
+import java.nio.ByteBuffer;
+
+
 /**
  * Represents a single piece of raw blob data extracted from the PBF stream. It
  * has not yet been decoded into a PBF blob object.
@@ -8,25 +11,42 @@ package org.openstreetmap.osmosis.pbf2.v0_6.impl;
  * @author Brett Henderson
  */
 public class PbfRawBlob {
+	private long offset;
 	private String type;
-	private byte[] data;
+	private ByteBuffer data;
 
 
 	/**
 	 * Creates a new instance.
 	 * 
+	 * @param offset
+	 *            The position of the blob within the PBF stream. This is the
+	 *            offset of the header length prefix preceding the blob header.
 	 * @param type
 	 *            The type of data represented by this blob. This corresponds to
 	 *            the type field in the blob header.
 	 * @param data
-	 *            The raw contents of the blob in binary undecoded form.
+	 *            The raw contents of the blob in binary undecoded form. This
+	 *            may be a view over a larger buffer such as a memory mapped
+	 *            file, and will not be modified.
 	 */
-	public PbfRawBlob(String type, byte[] data) {
+	public PbfRawBlob(long offset, String type, ByteBuffer data) {
+		this.offset = offset;
 		this.type = type;
 		this.data = data;
 	}
 
 
+	/**
+	 * Gets the position of the blob within the PBF stream.
+	 * 
+	 * @return The offset of the header length prefix preceding the blob.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+
 	/**
 	 * Gets the type of data represented by this blob. This corresponds to the
 	 * type field in the blob header.
@@ -43,7 +63,7 @@ public class PbfRawBlob {
 	 * 
 	 * @return The raw blob data.
 	 */
-	public byte[] getData() {
+	public ByteBuffer getData() {
 		return data;
 	}
 }
@@ -4,12 +4,12 @@ package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
-import java.util.Iterator;
+import java.nio.ByteBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
-import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 import org.openstreetmap.osmosis.osmbinary.Fileformat;
 import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
 
@@ -20,11 +20,12 @@ import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
  * 
  * @author Brett Henderson
  */
-public class PbfStreamSplitter implements Iterator<PbfRawBlob>, Releasable {
+public class PbfStreamSplitter implements ReleasableIterator<PbfRawBlob> {
 
 	private static Logger log = Logger.getLogger(PbfStreamSplitter.class.getName());
 
 	private DataInputStream dis;
+	private long streamPosition;
 	private int dataBlockCount;
 	private boolean eof;
 	private PbfRawBlob nextBlob;
@@ -38,6 +39,7 @@ public class PbfStreamSplitter implements Iterator<PbfRawBlob>, Releasable {
 	 */
 	public PbfStreamSplitter(DataInputStream pbfStream) {
 		dis = pbfStream;
+		streamPosition = 0;
 		dataBlockCount = 0;
 		eof = false;
 	}
@@ -85,7 +87,8 @@ public class PbfStreamSplitter implements Iterator<PbfRawBlob>, Releasable {
 			}
 			byte[] blobData = readRawBlob(blobHeader);
 
-			nextBlob = new PbfRawBlob(blobHeader.getType(), blobData);
+			nextBlob = new PbfRawBlob(streamPosition, blobHeader.getType(), ByteBuffer.wrap(blobData));
+			streamPosition += 4 + headerLength + blobData.length;
 
 		} catch (IOException e) {
 			throw new OsmosisRuntimeException("Unable to get next blob from PBF stream.", e);
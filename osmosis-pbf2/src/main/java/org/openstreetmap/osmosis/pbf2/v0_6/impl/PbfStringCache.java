@@ -0,0 +1,80 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.protobuf.ByteString;
+
+
+/**
+ * Maps encoded PBF string table entries to strings, returning the same string
+ * instance each time an entry is encountered. It is intended for frequently
+ * repeated values such as tag keys and user names which would otherwise be
+ * decoded again for every block. The cache is cleared when it becomes full so
+ * that memory use remains bounded when values rarely repeat. Instances are not
+ * thread safe and are owned by a single decoding thread.
+ *
+ * @author Brett Henderson
+ */
+public class PbfStringCache {
+
+	/**
+	 * The default maximum number of strings held by a cache.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 4096;
+
+	private static final int MAX_STRING_LENGTH = 64;
+
+	private Map<ByteString, String> strings;
+	private int maxSize;
+
+
+	/**
+	 * Creates a new instance holding up to DEFAULT_MAX_SIZE strings.
+	 */
+	public PbfStringCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param maxSize
+	 *            The number of strings held before the cache is cleared.
+	 */
+	public PbfStringCache(int maxSize) {
+		this.maxSize = maxSize;
+
+		strings = new HashMap<ByteString, String>();
+	}
+
+
+	/**
+	 * Gets the string for an encoded string table entry.
+	 *
+	 * @param encodedString
+	 *            The UTF-8 encoded string.
+	 * @return The decoded string.
+	 */
+	public String get(ByteString encodedString) {
+		String string;
+
+		if (encodedString.size() > MAX_STRING_LENGTH) {
+			return encodedString.toStringUtf8();
+		}
+
+		string = strings.get(encodedString);
+		if (string == null) {
+			if (strings.size() >= maxSize) {
+				strings.clear();
+			}
+
+			string = encodedString.toStringUtf8();
+			strings.put(encodedString, string);
+		}
+
+		return string;
+	}
+}
@@ -3,9 +3,14 @@ package org.openstreetmap.osmosis.pbf2.v0_6;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.EnumSet;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.openstreetmap.osmosis.core.Osmosis;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobIndex;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlobSelector;
 import org.openstreetmap.osmosis.testutil.AbstractDataTest;
 
 
@@ -49,4 +54,237 @@ public class OsmosisReaderTest extends AbstractDataTest {
         // Validate that the output file matches the input file.
         dataUtils.compareFiles(inputXmlFile, outputXmlFile);
 	}
+
+
+	/**
+	 * Tests reading from a memory mapped PBF file containing many blobs.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testWriteAndReadMapped() throws IOException {
+		// Generate data files.
+		File inputXmlFile = dataUtils.createDataFile("v0_6/data-snapshot.osm");
+		File pbfFile = dataUtils.newFile();
+		File outputXmlFile = dataUtils.newFile();
+
+        // Read the XML and write to PBF using small blocks.
+        Osmosis.run(new String[] {
+        		"-q",
+        		"--read-xml-0.6",
+        		inputXmlFile.getPath(),
+        		"--write-pbf-0.6",
+        		"file=" + pbfFile.getPath(),
+        		"batchlimit=2"
+                });
+        
+        // Read the mapped PBF using the PBF2 reader and write to XML.
+        Osmosis.run(new String[] {
+        		"-q",
+        		"--read-pbf-fast-0.6",
+        		"file=" + pbfFile.getPath(),
+        		"workers=2",
+        		"mmap=yes",
+        		"--write-xml-0.6",
+        		outputXmlFile.getPath()
+                });
+
+        // Validate that the output file matches the input file.
+        dataUtils.compareFiles(inputXmlFile, outputXmlFile);
+	}
+
+
+	/**
+	 * Tests reading dense nodes as read-only entities sharing common data.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testWriteAndReadSharedNodeData() throws IOException {
+		// Generate data files.
+		File inputXmlFile = dataUtils.createDataFile("v0_6/data-snapshot.osm");
+		File pbfFile = dataUtils.newFile();
+		File outputXmlFile = dataUtils.newFile();
+
+        // Read the XML and write to PBF.
+        Osmosis.run(new String[] {
+        		"-q",
+        		"--read-xml-0.6",
+        		inputXmlFile.getPath(),
+        		"--write-pbf-0.6",
+        		"file=" + pbfFile.getPath()
+                });
+        
+        // Read the PBF using shared node data and write to XML.
+        Osmosis.run(new String[] {
+        		"-q",
+        		"--read-pbf-fast-0.6",
+        		"file=" + pbfFile.getPath(),
+        		"workers=2",
+        		"sharedNodeData=yes",
+        		"--write-xml-0.6",
+        		outputXmlFile.getPath()
+                });
+
+        // Validate that the output file matches the input file.
+        dataUtils.compareFiles(inputXmlFile, outputXmlFile);
+	}
+
+
+	private void readSelection(File pbfFile, File outputXmlFile) {
+		Osmosis.run(new String[] {
+				"-q",
+				"--read-pbf-fast-0.6",
+				"file=" + pbfFile.getPath(),
+				"types=node,relation",
+				"idRange=1,1000",
+				"bbox=-180,-90,180,90",
+				"--write-xml-0.6",
+				outputXmlFile.getPath()
+				});
+	}
+
+
+	private void readSmallBox(File pbfFile, File outputXmlFile) {
+		Osmosis.run(new String[] {
+				"-q",
+				"--read-pbf-fast-0.6",
+				"file=" + pbfFile.getPath(),
+				"types=node",
+				"bbox=-2.5,-1.5,-1.5,-0.5",
+				"--write-xml-0.6",
+				outputXmlFile.getPath()
+				});
+	}
+
+
+	private File writeSmallBlockPbf() throws IOException {
+		File inputXmlFile = dataUtils.createDataFile("v0_6/data-snapshot.osm");
+		File pbfFile = dataUtils.newFile();
+
+		Osmosis.run(new String[] {
+				"-q",
+				"--read-xml-0.6",
+				inputXmlFile.getPath(),
+				"--write-pbf-0.6",
+				"file=" + pbfFile.getPath(),
+				"batchlimit=2"
+				});
+
+		return pbfFile;
+	}
+
+
+	private void indexPbf(File pbfFile) {
+		Osmosis.run(new String[] {
+				"-q",
+				"--index-pbf-0.6",
+				"file=" + pbfFile.getPath()
+				});
+	}
+
+
+	/**
+	 * Tests that reading a selection using a blob index produces the same
+	 * result as decoding every blob.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testIndexedSelection() throws IOException {
+		// Generate data files.
+		File inputXmlFile = dataUtils.createDataFile("v0_6/data-snapshot.osm");
+		File pbfFile = dataUtils.newFile();
+		File unindexedXmlFile = dataUtils.newFile();
+		File indexedXmlFile = dataUtils.newFile();
+
+        // Read the XML and write to PBF using small blocks.
+        Osmosis.run(new String[] {
+        		"-q",
+        		"--read-xml-0.6",
+        		inputXmlFile.getPath(),
+        		"--write-pbf-0.6",
+        		"file=" + pbfFile.getPath(),
+        		"batchlimit=2"
+                });
+
+        // Read the selection without an index.
+        readSelection(pbfFile, unindexedXmlFile);
+
+        // Build the index and read the selection again.
+        Osmosis.run(new String[] {
+        		"-q",
+        		"--index-pbf-0.6",
+        		"file=" + pbfFile.getPath(),
+        		"workers=2"
+                });
+        File indexFile = new File(pbfFile.getPath() + ".idx");
+        Assert.assertTrue("The index file was not created.", indexFile.exists());
+        readSelection(pbfFile, indexedXmlFile);
+        indexFile.delete();
+
+        // Validate that the index produced the same result.
+        dataUtils.compareFiles(unindexedXmlFile, indexedXmlFile);
+	}
+
+
+	/**
+	 * Tests that a small bounding box selects fewer blobs from the index than
+	 * exist in the file, and that the entities read match those found by
+	 * decoding every blob.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testIndexedSelectionSkipsBlobs() throws IOException {
+		File pbfFile = writeSmallBlockPbf();
+		File unindexedXmlFile = dataUtils.newFile();
+		File indexedXmlFile = dataUtils.newFile();
+
+		readSmallBox(pbfFile, unindexedXmlFile);
+
+		indexPbf(pbfFile);
+		PbfBlobIndex index = PbfBlobIndex.load(pbfFile);
+		Assert.assertNotNull("The index could not be loaded.", index);
+
+		PbfBlobSelector boxSelector = new PbfBlobSelector();
+		boxSelector.setTypes(EnumSet.of(EntityType.Node));
+		boxSelector.setBox(-2.5, -1.5, -0.5, -1.5);
+		int allBlobCount = index.getSelectedOffsets(new PbfBlobSelector()).length;
+		int selectedBlobCount = index.getSelectedOffsets(boxSelector).length;
+		Assert.assertTrue("The file does not contain several blobs.", allBlobCount > 3);
+		// Only the header blob and the blob holding the single node in the box
+		// are required.
+		Assert.assertEquals(2, selectedBlobCount);
+
+		readSmallBox(pbfFile, indexedXmlFile);
+		PbfBlobIndex.getIndexFile(pbfFile).delete();
+
+		dataUtils.compareFiles(unindexedXmlFile, indexedXmlFile);
+	}
+
+
+	/**
+	 * Tests that an index is ignored once the PBF file has been modified, even
+	 * if its length is unchanged.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testStaleIndexIgnored() throws IOException {
+		File pbfFile = writeSmallBlockPbf();
+
+		indexPbf(pbfFile);
+		Assert.assertNotNull("The index could not be loaded.", PbfBlobIndex.load(pbfFile));
+
+		Assert.assertTrue(pbfFile.setLastModified(pbfFile.lastModified() + 60000));
+		Assert.assertNull("A stale index was loaded.", PbfBlobIndex.load(pbfFile));
+
+		PbfBlobIndex.getIndexFile(pbfFile).delete();
+	}
 }
@@ -0,0 +1,68 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+
+/**
+ * Tests the PBF string cache.
+ *
+ * @author Brett Henderson
+ */
+public class PbfStringCacheTest {
+
+	/**
+	 * Tests that equal entries decoded from different blocks share an instance.
+	 */
+	@Test
+	public void testSharedInstance() {
+		PbfStringCache cache = new PbfStringCache();
+
+		String first = cache.get(ByteString.copyFromUtf8("highway"));
+		String second = cache.get(ByteString.copyFromUtf8("highway"));
+
+		assertEquals("highway", first);
+		assertSame(first, second);
+	}
+
+
+	/**
+	 * Tests that the cache is cleared once full instead of growing.
+	 */
+	@Test
+	public void testBounded() {
+		PbfStringCache cache = new PbfStringCache(2);
+
+		String first = cache.get(ByteString.copyFromUtf8("a"));
+		cache.get(ByteString.copyFromUtf8("b"));
+		cache.get(ByteString.copyFromUtf8("c"));
+
+		assertNotSame(first, cache.get(ByteString.copyFromUtf8("a")));
+		assertEquals("a", cache.get(ByteString.copyFromUtf8("a")));
+	}
+
+
+	/**
+	 * Tests that long values are decoded without being cached.
+	 */
+	@Test
+	public void testLongValueNotCached() {
+		PbfStringCache cache = new PbfStringCache();
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			builder.append('x');
+		}
+
+		String first = cache.get(ByteString.copyFromUtf8(builder.toString()));
+		String second = cache.get(ByteString.copyFromUtf8(builder.toString()));
+
+		assertEquals(builder.toString(), first);
+		assertNotSame(first, second);
+	}
+}
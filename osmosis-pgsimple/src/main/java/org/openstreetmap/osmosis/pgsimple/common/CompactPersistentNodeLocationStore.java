@@ -3,6 +3,7 @@ package org.openstreetmap.osmosis.pgsimple.common;
 
 import org.openstreetmap.osmosis.core.store.IndexedObjectStore;
 import org.openstreetmap.osmosis.core.store.IndexedObjectStoreReader;
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
 import org.openstreetmap.osmosis.core.store.NoSuchIndexElementException;
 import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
 
@@ -57,6 +58,24 @@ public class CompactPersistentNodeLocationStore implements NodeLocationStore {
 			return new NodeLocation();
 		}
 	}
+	
+	
+	/**
+	 * {@inheritDoc} Locations are deserialized from the underlying store, so
+	 * this store still allocates an object for each lookup.
+	 */
+	@Override
+	public long getPackedLocation(long nodeId) {
+		NodeLocation nodeLocation;
+		
+		nodeLocation = getNodeLocation(nodeId);
+		
+		if (nodeLocation.isValid()) {
+			return MappedNodeLocationStore.pack(nodeLocation.getLongitude(), nodeLocation.getLatitude());
+		} else {
+			return MappedNodeLocationStore.INVALID_LOCATION;
+		}
+	}
 
 	
 	/**
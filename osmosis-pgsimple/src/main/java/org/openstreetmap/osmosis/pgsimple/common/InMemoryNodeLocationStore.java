@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
 import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
 
 
@@ -154,11 +155,11 @@ public class InMemoryNodeLocationStore implements NodeLocationStore {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public NodeLocation getNodeLocation(long nodeId) {
-		NodeLocation nodeLocation;
+	public long getPackedLocation(long nodeId) {
+		long packedLocation;
 		int bufferIndex;
 		
-		nodeLocation = invalidNodeLocation;
+		packedLocation = MappedNodeLocationStore.INVALID_LOCATION;
 		
 		bufferIndex = (int) (nodeId / BUFFER_ELEMENT_COUNT);
 		
@@ -182,14 +183,31 @@ public class InMemoryNodeLocationStore implements NodeLocationStore {
 				latitude = readIntFromBuffer(buffer, bufferOffset);
 				bufferOffset += 4;
 				
-				nodeLocation = new NodeLocation(
-					FixedPrecisionCoordinateConvertor.convertToDouble(longitude),
-					FixedPrecisionCoordinateConvertor.convertToDouble(latitude)
-				);
+				packedLocation = MappedNodeLocationStore.packFixed(longitude, latitude);
 			}
 		}
 		
-		return nodeLocation;
+		return packedLocation;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public NodeLocation getNodeLocation(long nodeId) {
+		long packedLocation;
+		
+		packedLocation = getPackedLocation(nodeId);
+		
+		if (MappedNodeLocationStore.isValid(packedLocation)) {
+			return new NodeLocation(
+				MappedNodeLocationStore.getLongitude(packedLocation),
+				MappedNodeLocationStore.getLatitude(packedLocation)
+			);
+		} else {
+			return invalidNodeLocation;
+		}
 	}
 	
 	
@@ -24,5 +24,13 @@ public enum NodeLocationStoreType {
 	 * temporary file on disk. This is optimised for small datasets, and is less
 	 * efficient for large datasets.
 	 */
-	CompactTempFile
+	CompactTempFile,
+	
+	/**
+	 * A memory mapped temporary file based node location store holds all
+	 * information in a temporary file accessed through the operating system
+	 * page cache. This is suitable for large datasets that don't fit in the
+	 * JVM heap.
+	 */
+	MappedFile
 }
@@ -13,6 +13,7 @@ import java.util.logging.Logger;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.store.BufferedRandomAccessFileInputStream;
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
 import org.openstreetmap.osmosis.core.store.StorageStage;
 import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
 
@@ -180,15 +181,15 @@ public class PersistentNodeLocationStore implements NodeLocationStore {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public NodeLocation getNodeLocation(long nodeId) {
-		NodeLocation nodeLocation;
+	public long getPackedLocation(long nodeId) {
+		long packedLocation;
 		long offset;
 		
 		initializeReadingStage();
 		
 		offset = nodeId * NODE_DATA_SIZE;
 		
-		nodeLocation = invalidNodeLocation;
+		packedLocation = MappedNodeLocationStore.INVALID_LOCATION;
 		
 		if (offset < currentFileOffset) {
 			try {
@@ -198,10 +199,12 @@ public class PersistentNodeLocationStore implements NodeLocationStore {
 				validFlag = dataInStream.readByte();
 				
 				if (validFlag != 0) {
-					nodeLocation = new NodeLocation(
-						FixedPrecisionCoordinateConvertor.convertToDouble(dataInStream.readInt()),
-						FixedPrecisionCoordinateConvertor.convertToDouble(dataInStream.readInt())
-					); 
+					int longitude;
+					int latitude;
+					
+					longitude = dataInStream.readInt();
+					latitude = dataInStream.readInt();
+					packedLocation = MappedNodeLocationStore.packFixed(longitude, latitude);
 				}
 				
 			} catch (IOException e) {
@@ -209,7 +212,27 @@ public class PersistentNodeLocationStore implements NodeLocationStore {
 			}
 		}
 		
-		return nodeLocation;
+		return packedLocation;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public NodeLocation getNodeLocation(long nodeId) {
+		long packedLocation;
+		
+		packedLocation = getPackedLocation(nodeId);
+		
+		if (MappedNodeLocationStore.isValid(packedLocation)) {
+			return new NodeLocation(
+				MappedNodeLocationStore.getLongitude(packedLocation),
+				MappedNodeLocationStore.getLatitude(packedLocation)
+			);
+		} else {
+			return invalidNodeLocation;
+		}
 	}
 	
 	
@@ -9,8 +9,10 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Node;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
 import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
 import org.openstreetmap.osmosis.pgsimple.common.CompactPersistentNodeLocationStore;
 import org.openstreetmap.osmosis.pgsimple.common.InMemoryNodeLocationStore;
+import org.openstreetmap.osmosis.pgsimple.common.MappedFileNodeLocationStore;
 import org.openstreetmap.osmosis.pgsimple.common.NodeLocation;
 import org.openstreetmap.osmosis.pgsimple.common.NodeLocationStore;
 import org.openstreetmap.osmosis.pgsimple.common.NodeLocationStoreType;
@@ -48,6 +50,8 @@ public class WayGeometryBuilder implements Releasable {
 			locationStore = new PersistentNodeLocationStore();
 		} else if (NodeLocationStoreType.CompactTempFile.equals(storeType)) {
 			locationStore = new CompactPersistentNodeLocationStore();
+		} else if (NodeLocationStoreType.MappedFile.equals(storeType)) {
+			locationStore = new MappedFileNodeLocationStore();
 		} else {
 			throw new OsmosisRuntimeException("The store type " + storeType + " is not recognized.");
 		}
@@ -74,6 +78,19 @@ public class WayGeometryBuilder implements Releasable {
     public NodeLocation getNodeLocation(long nodeId) {
         return locationStore.getNodeLocation(nodeId);
     }
+
+
+    /**
+     * Get the packed location of a node from internal store. The values are
+     * decoded using the static methods of MappedNodeLocationStore.
+     *
+     * @param nodeId
+     *              Id of the node we want the location for.
+     * @return Packed location of node, or MappedNodeLocationStore.INVALID_LOCATION if unknown
+     */
+    public long getPackedLocation(long nodeId) {
+        return locationStore.getPackedLocation(nodeId);
+    }
 	
 	private Polygon createWayBbox(double left, double right, double bottom, double top) {
 		Point[] points;
@@ -119,8 +136,15 @@ public class WayGeometryBuilder implements Releasable {
      * @return Point object
      */
     public Point createPoint(long nodeId) {
-	    NodeLocation nodeLocation = locationStore.getNodeLocation(nodeId);
-        Point point = new Point(nodeLocation.getLongitude(), nodeLocation.getLatitude());
+	    long packedLocation = locationStore.getPackedLocation(nodeId);
+	    Point point;
+	    if (MappedNodeLocationStore.isValid(packedLocation)) {
+	        point = new Point(
+	                MappedNodeLocationStore.getLongitude(packedLocation),
+	                MappedNodeLocationStore.getLatitude(packedLocation));
+	    } else {
+	        point = new Point(0, 0);
+	    }
         point.srid = 4326;
 
         return point;
@@ -148,15 +172,18 @@ public class WayGeometryBuilder implements Releasable {
 		bottom = 0;
 		top = 0;
 		for (WayNode wayNode : way.getWayNodes()) {
-			NodeLocation nodeLocation;
-			double longitude;
-			double latitude;
+			long packedLocation;
 			
-			nodeLocation = locationStore.getNodeLocation(wayNode.getNodeId());
-			longitude = nodeLocation.getLongitude();
-			latitude = nodeLocation.getLatitude();
+			// Packed locations avoid allocating a location object per way node.
+			packedLocation = locationStore.getPackedLocation(wayNode.getNodeId());
 			
-			if (nodeLocation.isValid()) {
+			if (MappedNodeLocationStore.isValid(packedLocation)) {
+				double longitude;
+				double latitude;
+				
+				longitude = MappedNodeLocationStore.getLongitude(packedLocation);
+				latitude = MappedNodeLocationStore.getLatitude(packedLocation);
+				
 				if (nodesFound) {
 					if (longitude < left) {
 						left = longitude;
@@ -199,13 +226,15 @@ public class WayGeometryBuilder implements Releasable {
 		
 		linePoints = new ArrayList<Point>();
 		for (WayNode wayNode : way.getWayNodes()) {
-			NodeLocation nodeLocation;
+			long packedLocation;
 			
-			nodeLocation = locationStore.getNodeLocation(wayNode.getNodeId());
+			packedLocation = locationStore.getPackedLocation(wayNode.getNodeId());
 	
-			if (nodeLocation.isValid()) {
+			if (MappedNodeLocationStore.isValid(packedLocation)) {
 				numValidNodes++;
-				linePoints.add(new Point(nodeLocation.getLongitude(), nodeLocation.getLatitude()));
+				linePoints.add(new Point(
+						MappedNodeLocationStore.getLongitude(packedLocation),
+						MappedNodeLocationStore.getLatitude(packedLocation)));
 			} else {
 				return null;
 			}
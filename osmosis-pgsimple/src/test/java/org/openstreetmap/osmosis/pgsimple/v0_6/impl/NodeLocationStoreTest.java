@@ -5,9 +5,11 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import org.openstreetmap.osmosis.pgsimple.common.InMemoryNodeLocationStore;
+import org.openstreetmap.osmosis.pgsimple.common.MappedFileNodeLocationStore;
 import org.openstreetmap.osmosis.pgsimple.common.NodeLocation;
 import org.openstreetmap.osmosis.pgsimple.common.NodeLocationStore;
 import org.openstreetmap.osmosis.pgsimple.common.PersistentNodeLocationStore;
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
 import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
 
 
@@ -40,6 +42,7 @@ public class NodeLocationStoreTest {
 			double longitude;
 			double latitude;
 			NodeLocation location;
+			long packedLocation;
 			
 			// Stores typically use fixed precision storage therefore ensure we
 			// have a good spread of values.
@@ -54,6 +57,17 @@ public class NodeLocationStoreTest {
 			
 			location = store.getNodeLocation((i * 2) + 1);
 			Assert.assertFalse("The node location should be invalid.", location.isValid());
+			
+			packedLocation = store.getPackedLocation(i * 2);
+			Assert.assertTrue("The packed location should be valid.", MappedNodeLocationStore.isValid(packedLocation));
+			Assert.assertEquals("The packed longitude is incorrect.",
+					longitude, MappedNodeLocationStore.getLongitude(packedLocation), 0);
+			Assert.assertEquals("The packed latitude is incorrect.",
+					latitude, MappedNodeLocationStore.getLatitude(packedLocation), 0);
+			
+			packedLocation = store.getPackedLocation((i * 2) + 1);
+			Assert.assertFalse("The packed location should be invalid.",
+					MappedNodeLocationStore.isValid(packedLocation));
 		}
 		
 		store.release();
@@ -76,4 +90,13 @@ public class NodeLocationStoreTest {
 	public void testInMemory() {
 		testStoreImplementation(new InMemoryNodeLocationStore());
 	}
+	
+	
+	/**
+	 * Tests the memory mapped file implementation.
+	 */
+	@Test
+	public void testMappedFile() {
+		testStoreImplementation(new MappedFileNodeLocationStore());
+	}
 }
@@ -3,6 +3,7 @@ package org.openstreetmap.osmosis.pgsnapshot.common;
 
 import org.openstreetmap.osmosis.core.store.IndexedObjectStore;
 import org.openstreetmap.osmosis.core.store.IndexedObjectStoreReader;
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
 import org.openstreetmap.osmosis.core.store.NoSuchIndexElementException;
 import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
 
@@ -57,6 +58,24 @@ public class CompactPersistentNodeLocationStore implements NodeLocationStore {
 			return new NodeLocation();
 		}
 	}
+	
+	
+	/**
+	 * {@inheritDoc} Locations are deserialized from the underlying store, so
+	 * this store still allocates an object for each lookup.
+	 */
+	@Override
+	public long getPackedLocation(long nodeId) {
+		NodeLocation nodeLocation;
+		
+		nodeLocation = getNodeLocation(nodeId);
+		
+		if (nodeLocation.isValid()) {
+			return MappedNodeLocationStore.packFixed(nodeLocation.getFixedLongitude(), nodeLocation.getFixedLatitude());
+		} else {
+			return MappedNodeLocationStore.INVALID_LOCATION;
+		}
+	}
 
 	
 	/**
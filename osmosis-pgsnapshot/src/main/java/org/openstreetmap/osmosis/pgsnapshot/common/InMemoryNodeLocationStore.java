@@ -6,8 +6,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
 
-import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
 
 
 /**
@@ -141,11 +141,9 @@ public class InMemoryNodeLocationStore implements NodeLocationStore {
 		bufferOffset = (int) ((nodeId - (bufferIndex * BUFFER_ELEMENT_COUNT)) * NODE_DATA_SIZE);
 		
 		buffer[bufferOffset++] = 1;
-		writeIntToBuffer(
-				FixedPrecisionCoordinateConvertor.convertToFixed(nodeLocation.getLongitude()), buffer, bufferOffset);
+		writeIntToBuffer(nodeLocation.getFixedLongitude(), buffer, bufferOffset);
 		bufferOffset += 4;
-		writeIntToBuffer(
-				FixedPrecisionCoordinateConvertor.convertToFixed(nodeLocation.getLatitude()), buffer, bufferOffset);
+		writeIntToBuffer(nodeLocation.getFixedLatitude(), buffer, bufferOffset);
 		bufferOffset += 4;
 	}
 	
@@ -154,11 +152,11 @@ public class InMemoryNodeLocationStore implements NodeLocationStore {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public NodeLocation getNodeLocation(long nodeId) {
-		NodeLocation nodeLocation;
+	public long getPackedLocation(long nodeId) {
+		long packedLocation;
 		int bufferIndex;
 		
-		nodeLocation = invalidNodeLocation;
+		packedLocation = MappedNodeLocationStore.INVALID_LOCATION;
 		
 		bufferIndex = (int) (nodeId / BUFFER_ELEMENT_COUNT);
 		
@@ -182,14 +180,31 @@ public class InMemoryNodeLocationStore implements NodeLocationStore {
 				latitude = readIntFromBuffer(buffer, bufferOffset);
 				bufferOffset += 4;
 				
-				nodeLocation = new NodeLocation(
-					FixedPrecisionCoordinateConvertor.convertToDouble(longitude),
-					FixedPrecisionCoordinateConvertor.convertToDouble(latitude)
-				);
+				packedLocation = MappedNodeLocationStore.packFixed(longitude, latitude);
 			}
 		}
 		
-		return nodeLocation;
+		return packedLocation;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public NodeLocation getNodeLocation(long nodeId) {
+		long packedLocation;
+		
+		packedLocation = getPackedLocation(nodeId);
+		
+		if (MappedNodeLocationStore.isValid(packedLocation)) {
+			return NodeLocation.createFixedPrecision(
+				MappedNodeLocationStore.getFixedLongitude(packedLocation),
+				MappedNodeLocationStore.getFixedLatitude(packedLocation)
+			);
+		} else {
+			return invalidNodeLocation;
+		}
 	}
 	
 	
@@ -0,0 +1,74 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pgsnapshot.common;
+
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
+
+
+/**
+ * A node location store implementation holding locations in a memory mapped
+ * temporary file outside the JVM heap.
+ * 
+ * @author Brett Henderson
+ */
+public class MappedFileNodeLocationStore implements NodeLocationStore {
+	
+	private MappedNodeLocationStore store;
+	private NodeLocation invalidNodeLocation;
+	
+	
+	/**
+	 * Creates a new instance.
+	 */
+	public MappedFileNodeLocationStore() {
+		store = new MappedNodeLocationStore();
+		
+		invalidNodeLocation = new NodeLocation();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addLocation(long nodeId, NodeLocation nodeLocation) {
+		store.addFixedLocation(nodeId, nodeLocation.getFixedLongitude(), nodeLocation.getFixedLatitude());
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getPackedLocation(long nodeId) {
+		return store.getPackedLocation(nodeId);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public NodeLocation getNodeLocation(long nodeId) {
+		long packedLocation;
+		
+		packedLocation = store.getPackedLocation(nodeId);
+		
+		if (MappedNodeLocationStore.isValid(packedLocation)) {
+			return NodeLocation.createFixedPrecision(
+				MappedNodeLocationStore.getFixedLongitude(packedLocation),
+				MappedNodeLocationStore.getFixedLatitude(packedLocation)
+			);
+		} else {
+			return invalidNodeLocation;
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		store.release();
+	}
+}
@@ -1,6 +1,7 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.pgsnapshot.common;
 
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
 
 /**
  * Represents the minimal geo-spatial information associated with a node.
@@ -9,8 +10,9 @@ package org.openstreetmap.osmosis.pgsnapshot.common;
  */
 public class NodeLocation {
 	private boolean valid;
-	private double longitude;
-	private double latitude;
+	private int fixedLongitude;
+	private int fixedLatitude;
+	private double[] exactCoordinates;
 	
 	
 	/**
@@ -31,8 +33,36 @@ public class NodeLocation {
 	 */
 	public NodeLocation(double longitude, double latitude) {
 		this.valid = true;
-		this.longitude = longitude;
-		this.latitude = latitude;
+		this.fixedLongitude = FixedPrecisionCoordinateConvertor.convertToFixed(longitude);
+		this.fixedLatitude = FixedPrecisionCoordinateConvertor.convertToFixed(latitude);
+		
+		// Only keep the doubles if the fixed precision values don't reproduce them.
+		if (Double.compare(FixedPrecisionCoordinateConvertor.convertToDouble(fixedLongitude), longitude) != 0
+				|| Double.compare(FixedPrecisionCoordinateConvertor.convertToDouble(fixedLatitude), latitude) != 0) {
+			exactCoordinates = new double[] {longitude, latitude};
+		}
+	}
+	
+	
+	/**
+	 * Creates a new instance with location details in the fixed precision form
+	 * used by the node location stores.
+	 * 
+	 * @param fixedLongitude
+	 *            The longitude of the node in fixed precision form.
+	 * @param fixedLatitude
+	 *            The latitude of the node in fixed precision form.
+	 * @return The node location.
+	 */
+	public static NodeLocation createFixedPrecision(int fixedLongitude, int fixedLatitude) {
+		NodeLocation nodeLocation;
+		
+		nodeLocation = new NodeLocation();
+		nodeLocation.valid = true;
+		nodeLocation.fixedLongitude = fixedLongitude;
+		nodeLocation.fixedLatitude = fixedLatitude;
+		
+		return nodeLocation;
 	}
 	
 	
@@ -53,7 +83,21 @@ public class NodeLocation {
 	 * @return The node longitude.
 	 */
 	public double getLongitude() {
-		return longitude;
+		if (exactCoordinates != null) {
+			return exactCoordinates[0];
+		}
+		
+		return FixedPrecisionCoordinateConvertor.convertToDouble(fixedLongitude);
+	}
+	
+	
+	/**
+	 * Gets the longitude of the node in fixed precision form.
+	 * 
+	 * @return The node longitude.
+	 */
+	public int getFixedLongitude() {
+		return fixedLongitude;
 	}
 	
 	
@@ -63,6 +107,20 @@ public class NodeLocation {
 	 * @return The node latitude.
 	 */
 	public double getLatitude() {
-		return latitude;
+		if (exactCoordinates != null) {
+			return exactCoordinates[1];
+		}
+		
+		return FixedPrecisionCoordinateConvertor.convertToDouble(fixedLatitude);
+	}
+	
+	
+	/**
+	 * Gets the latitude of the node in fixed precision form.
+	 * 
+	 * @return The node latitude.
+	 */
+	public int getFixedLatitude() {
+		return fixedLatitude;
 	}
 }
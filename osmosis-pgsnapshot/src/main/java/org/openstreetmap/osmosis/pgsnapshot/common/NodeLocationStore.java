@@ -31,4 +31,18 @@ public interface NodeLocationStore extends Releasable {
 	 *         valid flag will be set to false.
 	 */
 	NodeLocation getNodeLocation(long nodeId);
+	
+	
+	/**
+	 * Gets the location of the specified node packed into a long in the form
+	 * used by MappedNodeLocationStore, whose static methods decode it.
+	 * Unlike getNodeLocation, this avoids allocating a location object for
+	 * each lookup.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The packed location, or MappedNodeLocationStore.INVALID_LOCATION
+	 *         if the node doesn't exist.
+	 */
+	long getPackedLocation(long nodeId);
 }
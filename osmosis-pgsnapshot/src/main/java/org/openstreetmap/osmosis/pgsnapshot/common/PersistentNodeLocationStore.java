@@ -13,8 +13,8 @@ import java.util.logging.Logger;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.store.BufferedRandomAccessFileInputStream;
+import org.openstreetmap.osmosis.core.store.MappedNodeLocationStore;
 import org.openstreetmap.osmosis.core.store.StorageStage;
-import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
 
 
 /**
@@ -162,8 +162,8 @@ public class PersistentNodeLocationStore implements NodeLocationStore {
 			// Write the node data. Prefix with a non-zero byte to identify that
 			// data is available for this node.
 			dataOutStream.writeByte(1);
-			dataOutStream.writeInt(FixedPrecisionCoordinateConvertor.convertToFixed(nodeLocation.getLongitude()));
-			dataOutStream.writeInt(FixedPrecisionCoordinateConvertor.convertToFixed(nodeLocation.getLatitude()));
+			dataOutStream.writeInt(nodeLocation.getFixedLongitude());
+			dataOutStream.writeInt(nodeLocation.getFixedLatitude());
 			currentFileOffset += NODE_DATA_SIZE;
 			
 		} catch (IOException e) {
@@ -180,15 +180,15 @@ public class PersistentNodeLocationStore implements NodeLocationStore {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public NodeLocation getNodeLocation(long nodeId) {
-		NodeLocation nodeLocation;
+	public long getPackedLocation(long nodeId) {
+		long packedLocation;
 		long offset;
 		
 		initializeReadingStage();
 		
 		offset = nodeId * NODE_DATA_SIZE;
 		
-		nodeLocation = invalidNodeLocation;
+		packedLocation = MappedNodeLocationStore.INVALID_LOCATION;
 		
 		if (offset < currentFileOffset) {
 			try {
@@ -198,10 +198,12 @@ public class PersistentNodeLocationStore implements NodeLocationStore {
 				validFlag = dataInStream.readByte();
 				
 				if (validFlag != 0) {
-					nodeLocation = new NodeLocation(
-						FixedPrecisionCoordinateConvertor.convertToDouble(dataInStream.readInt()),
-						FixedPrecisionCoordinateConvertor.convertToDouble(dataInStream.readInt())
-					); 
+					int longitude;
+					int latitude;
+					
+					longitude = dataInStream.readInt();
+					latitude = dataInStream.readInt();
+					packedLocation = MappedNodeLocationStore.packFixed(longitude, latitude);
 				}
 				
 			} catch (IOException e) {
@@ -209,7 +211,27 @@ public class PersistentNodeLocationStore implements NodeLocationStore {
 			}
 		}
 		
-		return nodeLocation;
+		return packedLocation;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public NodeLocation getNodeLocation(long nodeId) {
+		long packedLocation;
+		
+		packedLocation = getPackedLocation(nodeId);
+		
+		if (MappedNodeLocationStore.isValid(packedLocation)) {
+			return NodeLocation.createFixedPrecision(
+				MappedNodeLocationStore.getFixedLongitude(packedLocation),
+				MappedNodeLocationStore.getFixedLatitude(packedLocation)
+			);
+		} else {
+			return invalidNodeLocation;
+		}
 	}
 	
 	
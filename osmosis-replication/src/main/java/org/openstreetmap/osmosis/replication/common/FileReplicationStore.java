@@ -20,6 +20,7 @@ public class FileReplicationStore implements ReplicationStore {
 	private PropertiesPersister currentStatePersister;
 	private ReplicationFileSequenceFormatter sequenceFormatter;
 	private boolean saveCurrentState;
+	private int compressionWorkers;
 
 
 	/**
@@ -33,6 +34,24 @@ public class FileReplicationStore implements ReplicationStore {
 	 *            sequenced state.
 	 */
 	public FileReplicationStore(File storeDirectory, boolean saveCurrentState) {
+		this(storeDirectory, saveCurrentState, 1);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param storeDirectory
+	 *            The directory used to hold the contents of the store.
+	 * @param saveCurrentState
+	 *            If true, the current state will be updated by the
+	 *            {@link #saveState(ReplicationState)} operation as well as the
+	 *            sequenced state.
+	 * @param compressionWorkers
+	 *            The number of threads to use for compressing data files.
+	 */
+	public FileReplicationStore(File storeDirectory, boolean saveCurrentState, int compressionWorkers) {
+		this.compressionWorkers = compressionWorkers;
 		currentStatePersister = new PropertiesPersister(new File(storeDirectory, STATE_FILE));
 		sequenceFormatter = new ReplicationFileSequenceFormatter(storeDirectory);
 		this.saveCurrentState = saveCurrentState;
@@ -75,6 +94,6 @@ public class FileReplicationStore implements ReplicationStore {
 	@Override
 	public XmlChangeWriter saveData(long sequence) {
 		File changeFile = sequenceFormatter.getFormattedName(sequence, ".osc.gz");
-		return new XmlChangeWriter(changeFile, CompressionMethod.GZip);
+		return new XmlChangeWriter(changeFile, CompressionMethod.GZip, compressionWorkers);
 	}
 }
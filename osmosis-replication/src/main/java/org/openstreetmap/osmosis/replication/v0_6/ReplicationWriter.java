@@ -35,7 +35,20 @@ public class ReplicationWriter implements ChangeSink {
 	 *            The directory containing configuration and tracking files.
 	 */
 	public ReplicationWriter(File workingDirectory) {
-		replicationStore = new FileReplicationStore(workingDirectory, false);
+		this(workingDirectory, 1);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param workingDirectory
+	 *            The directory containing configuration and tracking files.
+	 * @param compressionWorkers
+	 *            The number of threads to use for compressing replication files.
+	 */
+	public ReplicationWriter(File workingDirectory, int compressionWorkers) {
+		replicationStore = new FileReplicationStore(workingDirectory, false, compressionWorkers);
 		stateWriter = new ReplicationStateWriter(workingDirectory);
 	}
 
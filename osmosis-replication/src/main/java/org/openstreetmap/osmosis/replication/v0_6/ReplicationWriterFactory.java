@@ -3,6 +3,7 @@ package org.openstreetmap.osmosis.replication.v0_6;
 
 import java.io.File;
 
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
@@ -15,6 +16,8 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.ChangeSinkManager;
 public class ReplicationWriterFactory extends TaskManagerFactory {
 	private static final String ARG_WORKING_DIRECTORY = "workingDirectory";
 	private static final String DEFAULT_WORKING_DIRECTORY = "./";
+	private static final String ARG_COMPRESSION_WORKERS = "compressionWorkers";
+	private static final int DEFAULT_COMPRESSION_WORKERS = 1;
 
 
 	/**
@@ -24,17 +27,24 @@ public class ReplicationWriterFactory extends TaskManagerFactory {
 	protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
 		String workingDirectoryString;
 		File workingDirectory;
+		int compressionWorkers;
 
 		// Get the task arguments.
 		workingDirectoryString = getStringArgument(taskConfig, ARG_WORKING_DIRECTORY,
 				getDefaultStringArgument(taskConfig, DEFAULT_WORKING_DIRECTORY));
+		compressionWorkers = getIntegerArgument(taskConfig, ARG_COMPRESSION_WORKERS, DEFAULT_COMPRESSION_WORKERS);
+		if (compressionWorkers < 1) {
+			throw new OsmosisRuntimeException(
+				"Argument " + ARG_COMPRESSION_WORKERS + " for task " + taskConfig.getId()
+				+ " must be at least 1.");
+		}
 
 		// Convert argument strings to strongly typed objects.
 		workingDirectory = new File(workingDirectoryString);
 
 		return new ChangeSinkManager(
 				taskConfig.getId(),
-				new ReplicationWriter(workingDirectory),
+				new ReplicationWriter(workingDirectory, compressionWorkers),
 				taskConfig.getPipeArgs());
 	}
 }
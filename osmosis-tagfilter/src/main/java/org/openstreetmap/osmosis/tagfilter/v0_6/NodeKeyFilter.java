@@ -5,6 +5,8 @@ import java.util.HashSet;
 import java.util.Map;
 
 import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatchOutput;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityProcessor;
 import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
@@ -12,6 +14,7 @@ import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
 
@@ -21,8 +24,8 @@ import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
  *
  * @author Aurelien Jacobs
  */
-public class NodeKeyFilter implements SinkSource, EntityProcessor {
-	private Sink sink;
+public class NodeKeyFilter implements SinkSource, EntityProcessor, BatchSink {
+	private EntityBatchOutput sink;
 	private HashSet<String> allowedKeys;
 
 	/**
@@ -61,6 +64,14 @@ public class NodeKeyFilter implements SinkSource, EntityProcessor {
 	}
 
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(EntityBatch batch) {
+		sink.processBatch(batch, this);
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -126,6 +137,6 @@ public class NodeKeyFilter implements SinkSource, EntityProcessor {
 	 * {@inheritDoc}
 	 */
 	public void setSink(Sink sink) {
-		this.sink = sink;
+		this.sink = new EntityBatchOutput(sink);
 	}
 }
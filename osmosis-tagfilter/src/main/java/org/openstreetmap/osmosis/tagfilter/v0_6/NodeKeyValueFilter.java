@@ -9,6 +9,8 @@ import java.util.Map;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatchOutput;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityProcessor;
 import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
@@ -16,6 +18,7 @@ import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
 import org.openstreetmap.osmosis.tagfilter.common.KeyValueFileReader;
@@ -26,8 +29,8 @@ import org.openstreetmap.osmosis.tagfilter.common.KeyValueFileReader;
  *
  * @author Aurelien Jacobs
  */
-public class NodeKeyValueFilter implements SinkSource, EntityProcessor {
-	private Sink sink;
+public class NodeKeyValueFilter implements SinkSource, EntityProcessor, BatchSink {
+	private EntityBatchOutput sink;
 	private HashSet<String> allowedKeyValues;
 
 	/**
@@ -94,6 +97,14 @@ public class NodeKeyValueFilter implements SinkSource, EntityProcessor {
 	}
 
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(EntityBatch batch) {
+		sink.processBatch(batch, this);
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -160,6 +171,6 @@ public class NodeKeyValueFilter implements SinkSource, EntityProcessor {
 	 * {@inheritDoc}
 	 */
 	public void setSink(Sink sink) {
-		this.sink = sink;
+		this.sink = new EntityBatchOutput(sink);
 	}
 }
@@ -6,11 +6,14 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatchOutput;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
 
@@ -19,8 +22,8 @@ import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
  * 
  * @author Andrew Byrd
  */
-public class TagFilter implements SinkSource {
-    private Sink sink;
+public class TagFilter implements SinkSource, BatchSink {
+    private EntityBatchOutput sink;
     private Set<String> tagKeys;
     private Map<String, Set<String>> tagKeyValues;
     private Class<? extends EntityContainer> filterClass;
@@ -141,6 +144,14 @@ public class TagFilter implements SinkSource {
             sink.process(container);
         }
     }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void process(EntityBatch batch) {
+        sink.processBatch(batch, this);
+    }
         
 
     /**
@@ -163,6 +174,6 @@ public class TagFilter implements SinkSource {
      * {@inheritDoc}
      */
     public void setSink(Sink sink) {
-        this.sink = sink;
+        this.sink = new EntityBatchOutput(sink);
     }
 }
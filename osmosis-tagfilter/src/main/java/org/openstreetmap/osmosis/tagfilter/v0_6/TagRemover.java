@@ -5,9 +5,12 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatchOutput;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
 
@@ -19,8 +22,8 @@ import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
  * @author Jochen Topf
  * @author Brett Henderson
  */
-public class TagRemover implements SinkSource {
-	private Sink sink;
+public class TagRemover implements SinkSource, BatchSink {
+	private EntityBatchOutput sink;
 	private HashSet<String> keysToDrop;
 	private String[] keyPrefixesToDrop;
 	
@@ -50,7 +53,7 @@ public class TagRemover implements SinkSource {
 	 * {@inheritDoc}
 	 */
 	public void setSink(Sink sink) {
-		this.sink = sink;
+		this.sink = new EntityBatchOutput(sink);
 	}
     
     
@@ -94,6 +97,14 @@ public class TagRemover implements SinkSource {
 	}
 
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(EntityBatch batch) {
+		sink.processBatch(batch, this);
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
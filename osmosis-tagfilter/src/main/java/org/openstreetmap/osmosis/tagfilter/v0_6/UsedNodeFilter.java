@@ -18,6 +18,7 @@ import org.openstreetmap.osmosis.core.filter.common.IdTracker;
 import org.openstreetmap.osmosis.core.filter.common.IdTrackerFactory;
 import org.openstreetmap.osmosis.core.filter.common.IdTrackerType;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.store.CompactObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.store.SimpleObjectStore;
 import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
@@ -48,11 +49,14 @@ public class UsedNodeFilter implements SinkSource, EntityProcessor {
 	 */
 	public UsedNodeFilter(IdTrackerType idTrackerType) {
 		allNodes = new SimpleObjectStore<NodeContainer>(
-				new SingleClassObjectSerializationFactory(NodeContainer.class), "afnd", true);
+				new CompactObjectSerializationFactory(
+						new SingleClassObjectSerializationFactory(NodeContainer.class)), "afnd", true);
 		allWays = new SimpleObjectStore<WayContainer>(
-				new SingleClassObjectSerializationFactory(WayContainer.class), "afwy", true);
+				new CompactObjectSerializationFactory(
+						new SingleClassObjectSerializationFactory(WayContainer.class)), "afwy", true);
 		allRelations = new SimpleObjectStore<RelationContainer>(
-				new SingleClassObjectSerializationFactory(RelationContainer.class), "afrl", true);
+				new CompactObjectSerializationFactory(
+						new SingleClassObjectSerializationFactory(RelationContainer.class)), "afrl", true);
 
 		requiredNodes = IdTrackerFactory.createInstance(idTrackerType);
 	}
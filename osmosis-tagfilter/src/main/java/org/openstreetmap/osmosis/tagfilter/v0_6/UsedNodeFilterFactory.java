@@ -16,7 +16,7 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkSourceManager;
  * @author Christoph Sommer
  */
 public class UsedNodeFilterFactory extends TaskManagerFactory {
-	private static final IdTrackerType DEFAULT_ID_TRACKER_TYPE = IdTrackerType.Dynamic;
+	private static final IdTrackerType DEFAULT_ID_TRACKER_TYPE = IdTrackerType.Roaring;
 	
 	
 	/**
@@ -5,6 +5,8 @@ import java.util.HashSet;
 import java.util.Map;
 
 import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatchOutput;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityProcessor;
 import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
@@ -12,6 +14,7 @@ import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
 
@@ -22,8 +25,8 @@ import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
  * 
  * @author Andrew Byrd
  */
-public class WayKeyFilter implements SinkSource, EntityProcessor {
-	private Sink sink;
+public class WayKeyFilter implements SinkSource, EntityProcessor, BatchSink {
+	private EntityBatchOutput sink;
 	private HashSet<String> allowedKeys;
 
 	/**
@@ -62,6 +65,14 @@ public class WayKeyFilter implements SinkSource, EntityProcessor {
 	}
 
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void process(EntityBatch batch) {
+		sink.processBatch(batch, this);
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -127,6 +138,6 @@ public class WayKeyFilter implements SinkSource, EntityProcessor {
 	 * {@inheritDoc}
 	 */
 	public void setSink(Sink sink) {
-		this.sink = sink;
+		this.sink = new EntityBatchOutput(sink);
 	}
 }
@@ -30,6 +30,9 @@ public abstract class BaseXmlWriter {
 	private boolean initialized;
 	private BufferedWriter writer;
 	private CompressionMethod compressionMethod;
+	private int compressionWorkers;
+	private boolean byteOutput;
+	private XmlByteBuffer byteBuffer;
 	
 	
 	/**
@@ -54,8 +57,44 @@ public abstract class BaseXmlWriter {
 	 *            Specifies the compression method to employ.
 	 */
 	public BaseXmlWriter(File file, CompressionMethod compressionMethod) {
+		this(file, compressionMethod, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance to write to the specified file.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param compressionWorkers
+	 *            The number of threads to use for compression.
+	 */
+	public BaseXmlWriter(File file, CompressionMethod compressionMethod, int compressionWorkers) {
+		this(file, compressionMethod, compressionWorkers, false);
+	}
+	
+	
+	/**
+	 * Creates a new instance to write to the specified file.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param compressionWorkers
+	 *            The number of threads to use for compression.
+	 * @param byteOutput
+	 *            If true, xml is rendered directly into a UTF-8 byte buffer
+	 *            instead of through a character writer.
+	 */
+	public BaseXmlWriter(File file, CompressionMethod compressionMethod, int compressionWorkers,
+			boolean byteOutput) {
 		this.file = file;
 		this.compressionMethod = compressionMethod;
+		this.compressionWorkers = compressionWorkers;
+		this.byteOutput = byteOutput;
 		
 		writerProvided = false;
 		closeRequired = true;
@@ -71,6 +110,16 @@ public abstract class BaseXmlWriter {
 	protected abstract void setWriterOnElementWriter(BufferedWriter resultWriter);
 	
 	
+	/**
+	 * Sets the byte buffer on the element writer used for this implementation.
+	 * This is only called if byte output was requested at construction.
+	 * 
+	 * @param resultBuffer
+	 *            The buffer receiving xml data.
+	 */
+	protected abstract void setByteBufferOnElementWriter(XmlByteBuffer resultBuffer);
+	
+	
 	/**
 	 * Calls the begin method of the element writer used for this implementation.
 	 */
@@ -90,6 +139,11 @@ public abstract class BaseXmlWriter {
 	 *            The data to be written.
 	 */
 	private void write(String data) {
+		if (byteOutput) {
+			byteBuffer.writeString(data);
+			return;
+		}
+		
 		try {
 			writer.write(data);
 			
@@ -103,6 +157,11 @@ public abstract class BaseXmlWriter {
 	 * Writes a new line in the output file.
 	 */
 	private void writeNewLine() {
+		if (byteOutput) {
+			byteBuffer.writeString(System.getProperty("line.separator"));
+			return;
+		}
+		
 		try {
 			writer.newLine();
 			
@@ -148,12 +207,16 @@ public abstract class BaseXmlWriter {
 						outStream = new FileOutputStream(file);
 					}
 					
-					outStream =
-						new CompressionActivator(compressionMethod).createCompressionOutputStream(outStream);
+					outStream = new CompressionActivator(compressionMethod, compressionWorkers)
+							.createCompressionOutputStream(outStream);
 					
-					outStreamWriter = new OutputStreamWriter(outStream, "UTF-8");
-					
-					writer = new BufferedWriter(outStreamWriter);
+					if (byteOutput) {
+						byteBuffer = new XmlByteBuffer(outStream);
+					} else {
+						outStreamWriter = new OutputStreamWriter(outStream, "UTF-8");
+						
+						writer = new BufferedWriter(outStreamWriter);
+					}
 					
 					outStream = null;
 					
@@ -171,7 +234,11 @@ public abstract class BaseXmlWriter {
 				}
 			}
 			
-			setWriterOnElementWriter(writer);
+			if (byteOutput) {
+				setByteBufferOnElementWriter(byteBuffer);
+			} else {
+				setWriterOnElementWriter(writer);
+			}
 			
 			initialized = true;
 			
@@ -194,7 +261,14 @@ public abstract class BaseXmlWriter {
 		endElementWriter();
 
 		try {
-			if (closeRequired) {
+			if (byteOutput) {
+				if (closeRequired) {
+					byteBuffer.close();
+					byteBuffer = null;
+				} else {
+					byteBuffer.flush();
+				}
+			} else if (closeRequired) {
 				writer.close();
 				writer = null;
 			} else if (!writerProvided) {
@@ -223,8 +297,16 @@ public abstract class BaseXmlWriter {
 					} catch (IOException e) {
 						log.log(Level.SEVERE, "Unable to close writer.", e);
 					}
+					try {
+						if (byteBuffer != null) {
+							byteBuffer.close();
+						}
+					} catch (OsmosisRuntimeException e) {
+						log.log(Level.SEVERE, "Unable to close byte buffer.", e);
+					}
 				} finally {
 					writer = null;
+					byteBuffer = null;
 				}
 			}
 		} finally {
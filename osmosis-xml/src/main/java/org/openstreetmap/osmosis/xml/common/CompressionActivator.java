@@ -11,6 +11,9 @@ import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.util.MultiMemberGZIPInputStream;
+import org.openstreetmap.osmosis.core.util.ParallelBZip2InputStream;
+import org.openstreetmap.osmosis.core.util.ParallelBZip2OutputStream;
+import org.openstreetmap.osmosis.core.util.ParallelGZIPOutputStream;
 
 
 /**
@@ -22,6 +25,7 @@ import org.openstreetmap.osmosis.core.util.MultiMemberGZIPInputStream;
 public class CompressionActivator {
 	
 	private CompressionMethod compressionMethod;
+	private int workerCount;
 	
 	
 	/**
@@ -31,7 +35,23 @@ public class CompressionActivator {
 	 *            The compression method to employ.
 	 */
 	public CompressionActivator(CompressionMethod compressionMethod) {
+		this(compressionMethod, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param compressionMethod
+	 *            The compression method to employ.
+	 * @param workerCount
+	 *            The number of threads to use for compression and bzip2
+	 *            decompression. Parallel output consists of many concatenated
+	 *            gzip members or bzip2 streams.
+	 */
+	public CompressionActivator(CompressionMethod compressionMethod, int workerCount) {
 		this.compressionMethod = compressionMethod;
+		this.workerCount = workerCount;
 	}
 	
 	
@@ -52,10 +72,16 @@ public class CompressionActivator {
 			}
 			
 			if (CompressionMethod.GZip.equals(compressionMethod)) {
+				if (workerCount > 1) {
+					return new ParallelGZIPOutputStream(destinationStream, workerCount);
+				}
 				return new GZIPOutputStream(destinationStream);
 			}
 			
 			if (CompressionMethod.BZip2.equals(compressionMethod)) {
+				if (workerCount > 1) {
+					return new ParallelBZip2OutputStream(destinationStream, workerCount);
+				}
 				return new BZip2CompressorOutputStream(destinationStream);
 			}
 			
@@ -89,7 +115,11 @@ public class CompressionActivator {
 			}
 			
 			if (CompressionMethod.BZip2.equals(compressionMethod)) {
-				return new BZip2CompressorInputStream(sourceStream);
+				// Files such as the planet history dumps consist of many concatenated streams.
+				if (workerCount > 1) {
+					return new ParallelBZip2InputStream(sourceStream, workerCount);
+				}
+				return new BZip2CompressorInputStream(sourceStream, true);
 			}
 			
 			throw new OsmosisRuntimeException("Compression method " + compressionMethod + " is not recognized.");
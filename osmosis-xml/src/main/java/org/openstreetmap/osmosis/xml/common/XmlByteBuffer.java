@@ -0,0 +1,519 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.time.DateFormatter;
+
+
+/**
+ * Accumulates UTF-8 encoded xml in a reusable byte buffer which is written to
+ * an output stream whenever it fills. Values are escaped and numbers are
+ * formatted directly into the buffer without creating intermediate strings.
+ * The output is identical to that produced by {@link ElementWriter} through an
+ * UTF-8 encoding writer.
+ *
+ * @author Brett Henderson
+ */
+public class XmlByteBuffer {
+
+	private static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	/**
+	 * The largest number of bytes a single character may expand to when escaped
+	 * and encoded.
+	 */
+	private static final int MAX_CHARACTER_BYTES = 6;
+
+	private static final int MAX_CACHED_STRINGS = 8192;
+	private static final int MAX_CACHED_STRING_LENGTH = 64;
+
+	/**
+	 * The buffer must be able to hold the longest cached string in encoded form.
+	 */
+	private static final int MIN_BUFFER_SIZE = MAX_CACHED_STRING_LENGTH * MAX_CHARACTER_BYTES;
+
+	/**
+	 * The first millisecond which can no longer be formatted with a four digit
+	 * year.
+	 */
+	private static final long MAX_FAST_TIMESTAMP = 253402300800000L;
+
+	private static final int FIXED_PRECISION_DECIMALS = 7;
+
+	/**
+	 * The replacement written by the UTF-8 encoder for unpaired surrogates.
+	 */
+	private static final byte UNMAPPABLE_REPLACEMENT = '?';
+
+	/**
+	 * Holds the escaped form of each ASCII character. A null entry indicates
+	 * that the character is written unchanged and an empty entry that it is
+	 * dropped.
+	 */
+	private static final byte[][] ASCII_ESCAPES;
+
+	static {
+		ASCII_ESCAPES = new byte[128][];
+
+		// These match the encodings applied by ElementWriter.
+		for (int i = 0; i <= 0x1F; i++) {
+			if (i != 0x9 && i != 0xA && i != 0xD) {
+				ASCII_ESCAPES[i] = new byte[0];
+			}
+		}
+		ASCII_ESCAPES[0x7F] = new byte[0];
+
+		ASCII_ESCAPES['<'] = toAscii("&lt;");
+		ASCII_ESCAPES['>'] = toAscii("&gt;");
+		ASCII_ESCAPES['"'] = toAscii("&quot;");
+		ASCII_ESCAPES['\''] = toAscii("&apos;");
+		ASCII_ESCAPES['&'] = toAscii("&amp;");
+		ASCII_ESCAPES['\n'] = toAscii("&#xA;");
+		ASCII_ESCAPES['\r'] = toAscii("&#xD;");
+		ASCII_ESCAPES['\t'] = toAscii("&#x9;");
+	}
+
+	private OutputStream outputStream;
+	private byte[] buffer;
+	private int position;
+	private byte[] digits;
+	private Map<String, byte[]> escapedStringCache;
+	private DateFormatter dateFormatter;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param outputStream
+	 *            The stream receiving the encoded xml.
+	 */
+	public XmlByteBuffer(OutputStream outputStream) {
+		this(outputStream, DEFAULT_BUFFER_SIZE);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param outputStream
+	 *            The stream receiving the encoded xml.
+	 * @param bufferSize
+	 *            The number of bytes to accumulate before writing to the
+	 *            stream.
+	 */
+	public XmlByteBuffer(OutputStream outputStream, int bufferSize) {
+		if (bufferSize < MIN_BUFFER_SIZE) {
+			throw new IllegalArgumentException("Buffer size " + bufferSize + " is less than " + MIN_BUFFER_SIZE + ".");
+		}
+
+		this.outputStream = outputStream;
+
+		buffer = new byte[bufferSize];
+		digits = new byte[20];
+		escapedStringCache = new HashMap<String, byte[]>();
+	}
+
+
+	private static byte[] toAscii(String value) {
+		byte[] result;
+
+		result = new byte[value.length()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (byte) value.charAt(i);
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Encodes a string as UTF-8 without escaping. This is intended for
+	 * creating constant byte sequences such as element names once up front.
+	 *
+	 * @param value
+	 *            The string to be encoded.
+	 * @return The encoded bytes.
+	 */
+	public static byte[] encode(String value) {
+		ByteArrayOutputStream outputStream;
+		XmlByteBuffer byteBuffer;
+
+		outputStream = new ByteArrayOutputStream();
+		byteBuffer = new XmlByteBuffer(outputStream, MIN_BUFFER_SIZE);
+		byteBuffer.writeString(value);
+		byteBuffer.flush();
+
+		return outputStream.toByteArray();
+	}
+
+
+	private void ensureCapacity(int length) {
+		if (position + length > buffer.length) {
+			flushBuffer();
+		}
+	}
+
+
+	private void flushBuffer() {
+		try {
+			outputStream.write(buffer, 0, position);
+			position = 0;
+
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to write data.", e);
+		}
+	}
+
+
+	/**
+	 * Writes a single byte.
+	 *
+	 * @param value
+	 *            The byte to be written.
+	 */
+	public void write(byte value) {
+		if (position == buffer.length) {
+			flushBuffer();
+		}
+		buffer[position++] = value;
+	}
+
+
+	/**
+	 * Writes a pre-encoded byte sequence.
+	 *
+	 * @param value
+	 *            The bytes to be written.
+	 */
+	public void write(byte[] value) {
+		if (value.length > buffer.length) {
+			flushBuffer();
+			try {
+				outputStream.write(value);
+			} catch (IOException e) {
+				throw new OsmosisRuntimeException("Unable to write data.", e);
+			}
+			return;
+		}
+
+		ensureCapacity(value.length);
+		System.arraycopy(value, 0, buffer, position, value.length);
+		position += value.length;
+	}
+
+
+	/**
+	 * Writes a string encoded as UTF-8 without applying any xml escaping.
+	 *
+	 * @param value
+	 *            The string to be written.
+	 */
+	public void writeString(String value) {
+		writeCharacters(value, false);
+	}
+
+
+	/**
+	 * Writes a string encoded as UTF-8 with all characters which may not
+	 * appear in an attribute value escaped.
+	 *
+	 * @param value
+	 *            The string to be written.
+	 */
+	public void writeEscaped(String value) {
+		writeCharacters(value, true);
+	}
+
+
+	/**
+	 * Writes a string in the same way as {@link #writeEscaped(String)} but
+	 * retains the encoded form of short strings so that frequently repeated
+	 * values such as tag keys and user names are only encoded once. The cache
+	 * is cleared once it becomes full.
+	 *
+	 * @param value
+	 *            The string to be written.
+	 */
+	public void writeCachedEscaped(String value) {
+		byte[] encoded;
+
+		if (value.length() > MAX_CACHED_STRING_LENGTH) {
+			writeCharacters(value, true);
+			return;
+		}
+
+		encoded = escapedStringCache.get(value);
+		if (encoded == null) {
+			int start;
+
+			ensureCapacity(value.length() * MAX_CHARACTER_BYTES);
+			start = position;
+			writeCharacters(value, true);
+			encoded = new byte[position - start];
+			System.arraycopy(buffer, start, encoded, 0, encoded.length);
+
+			if (escapedStringCache.size() >= MAX_CACHED_STRINGS) {
+				escapedStringCache.clear();
+			}
+			escapedStringCache.put(value, encoded);
+
+		} else {
+			write(encoded);
+		}
+	}
+
+
+	private void writeCharacters(String value, boolean escape) {
+		int length;
+
+		length = value.length();
+		for (int i = 0; i < length; i++) {
+			char currentChar = value.charAt(i);
+
+			if (position + MAX_CHARACTER_BYTES > buffer.length) {
+				flushBuffer();
+			}
+
+			if (currentChar < 0x80) {
+				byte[] replacement;
+
+				if (escape) {
+					replacement = ASCII_ESCAPES[currentChar];
+				} else {
+					replacement = null;
+				}
+
+				if (replacement == null) {
+					buffer[position++] = (byte) currentChar;
+				} else {
+					for (int j = 0; j < replacement.length; j++) {
+						buffer[position++] = replacement[j];
+					}
+				}
+
+			} else if (currentChar < 0x800) {
+				buffer[position++] = (byte) (0xC0 | (currentChar >> 6));
+				buffer[position++] = (byte) (0x80 | (currentChar & 0x3F));
+
+			} else if (Character.isHighSurrogate(currentChar)) {
+				if (i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+					int codePoint;
+
+					i++;
+					codePoint = Character.toCodePoint(currentChar, value.charAt(i));
+					buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+					buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+					buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+					buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+				} else {
+					buffer[position++] = UNMAPPABLE_REPLACEMENT;
+				}
+
+			} else if (Character.isLowSurrogate(currentChar)) {
+				buffer[position++] = UNMAPPABLE_REPLACEMENT;
+
+			} else {
+				buffer[position++] = (byte) (0xE0 | (currentChar >> 12));
+				buffer[position++] = (byte) (0x80 | ((currentChar >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (currentChar & 0x3F));
+			}
+		}
+	}
+
+
+	/**
+	 * Writes the decimal representation of a number.
+	 *
+	 * @param value
+	 *            The number to be written.
+	 */
+	public void writeLong(long value) {
+		long remaining;
+		int digitCount;
+
+		if (value == Long.MIN_VALUE) {
+			writeString(Long.toString(value));
+			return;
+		}
+
+		ensureCapacity(digits.length);
+
+		remaining = value;
+		if (remaining < 0) {
+			buffer[position++] = '-';
+			remaining = -remaining;
+		}
+
+		digitCount = 0;
+		do {
+			digits[digitCount++] = (byte) ('0' + (remaining % 10));
+			remaining /= 10;
+		} while (remaining > 0);
+
+		while (digitCount > 0) {
+			buffer[position++] = digits[--digitCount];
+		}
+	}
+
+
+	/**
+	 * Writes a coordinate held in the fixed precision form with seven implied
+	 * decimal places. Trailing zeros and the decimal point are omitted where
+	 * possible, giving the same result as formatting the equivalent double with
+	 * the pattern "0.#######".
+	 *
+	 * @param fixedValue
+	 *            The coordinate in fixed precision form.
+	 */
+	public void writeFixedPrecision(int fixedValue) {
+		long absoluteValue;
+		long fraction;
+		int fractionDigits;
+
+		absoluteValue = Math.abs((long) fixedValue);
+		if (fixedValue < 0) {
+			write((byte) '-');
+		}
+		writeLong(absoluteValue / 10000000L);
+
+		fraction = absoluteValue % 10000000L;
+		if (fraction == 0) {
+			return;
+		}
+
+		fractionDigits = FIXED_PRECISION_DECIMALS;
+		while (fraction % 10 == 0) {
+			fraction /= 10;
+			fractionDigits--;
+		}
+
+		ensureCapacity(FIXED_PRECISION_DECIMALS + 1);
+		buffer[position++] = '.';
+		for (int i = fractionDigits - 1; i >= 0; i--) {
+			buffer[position + i] = (byte) ('0' + (fraction % 10));
+			fraction /= 10;
+		}
+		position += fractionDigits;
+	}
+
+
+	/**
+	 * Writes a timestamp in the same form as {@link DateFormatter}.
+	 *
+	 * @param timestamp
+	 *            The timestamp to be written.
+	 */
+	public void writeTimestamp(Date timestamp) {
+		long time;
+
+		time = timestamp.getTime();
+
+		// Earlier dates may fall within the Julian calendar and later dates
+		// don't have four digit years, leave both to the calendar.
+		if (time < 0 || time >= MAX_FAST_TIMESTAMP) {
+			if (dateFormatter == null) {
+				dateFormatter = new DateFormatter();
+			}
+			writeString(dateFormatter.format(timestamp));
+
+		} else {
+			long seconds;
+			long days;
+			int secondOfDay;
+			long era;
+			long dayOfEra;
+			long yearOfEra;
+			long dayOfYear;
+			long shiftedMonth;
+			long year;
+			int month;
+			int day;
+
+			seconds = time / 1000;
+			days = seconds / 86400;
+			secondOfDay = (int) (seconds % 86400);
+
+			// Convert the day count to a civil date, the year is considered to
+			// start in March so that the leap day falls at the end of the year.
+			days += 719468;
+			era = days / 146097;
+			dayOfEra = days - era * 146097;
+			yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+			dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+			shiftedMonth = (5 * dayOfYear + 2) / 153;
+			day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+			if (shiftedMonth < 10) {
+				month = (int) (shiftedMonth + 3);
+			} else {
+				month = (int) (shiftedMonth - 9);
+			}
+			year = yearOfEra + era * 400;
+			if (month <= 2) {
+				year++;
+			}
+
+			ensureCapacity(20);
+			writeDigits((int) year, 4);
+			buffer[position++] = '-';
+			writeDigits(month, 2);
+			buffer[position++] = '-';
+			writeDigits(day, 2);
+			buffer[position++] = 'T';
+			writeDigits(secondOfDay / 3600, 2);
+			buffer[position++] = ':';
+			writeDigits((secondOfDay / 60) % 60, 2);
+			buffer[position++] = ':';
+			writeDigits(secondOfDay % 60, 2);
+			buffer[position++] = 'Z';
+		}
+	}
+
+
+	private void writeDigits(int value, int digitCount) {
+		int remaining;
+
+		remaining = value;
+		for (int i = digitCount - 1; i >= 0; i--) {
+			buffer[position + i] = (byte) ('0' + (remaining % 10));
+			remaining /= 10;
+		}
+		position += digitCount;
+	}
+
+
+	/**
+	 * Writes all buffered data to the output stream and flushes the stream.
+	 */
+	public void flush() {
+		flushBuffer();
+
+		try {
+			outputStream.flush();
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to flush data.", e);
+		}
+	}
+
+
+	/**
+	 * Writes all buffered data and closes the output stream.
+	 */
+	public void close() {
+		try {
+			flushBuffer();
+		} finally {
+			try {
+				outputStream.close();
+			} catch (IOException e) {
+				throw new OsmosisRuntimeException("Unable to close the output stream.", e);
+			}
+		}
+	}
+}
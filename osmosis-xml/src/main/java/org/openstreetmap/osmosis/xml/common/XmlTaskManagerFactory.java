@@ -15,6 +15,10 @@ public abstract class XmlTaskManagerFactory extends TaskManagerFactory {
 	private static final String ARG_COMPRESSION_METHOD = "compressionMethod";
 	private static final String ARG_ENCODING_HACK = "encodingHack";
 	private static final boolean DEFAULT_ENCODING_HACK = false;
+	private static final String ARG_COMPRESSION_WORKERS = "compressionWorkers";
+	private static final int DEFAULT_COMPRESSION_WORKERS = 1;
+	private static final String ARG_BYTE_WRITER = "byteWriter";
+	private static final boolean DEFAULT_BYTE_WRITER = false;
 	
 	
 	/**
@@ -52,6 +56,44 @@ public abstract class XmlTaskManagerFactory extends TaskManagerFactory {
 	}
 	
 	
+	/**
+	 * Utility method for retrieving the number of threads to use for
+	 * compression and decompression of files.
+	 * 
+	 * @param taskConfig
+	 *            Contains all information required to instantiate and configure
+	 *            the task.
+	 * @return The compression worker thread count.
+	 */
+	protected int getCompressionWorkersArgument(TaskConfiguration taskConfig) {
+		int workers;
+		
+		workers = getIntegerArgument(taskConfig, ARG_COMPRESSION_WORKERS, DEFAULT_COMPRESSION_WORKERS);
+		if (workers < 1) {
+			throw new OsmosisRuntimeException(
+				"Argument " + ARG_COMPRESSION_WORKERS + " for task " + taskConfig.getId()
+				+ " must be at least 1.");
+		}
+		
+		return workers;
+	}
+	
+	
+	/**
+	 * Utility method for retrieving the argument specifying whether xml should
+	 * be rendered directly into a byte buffer rather than through a character
+	 * writer.
+	 * 
+	 * @param taskConfig
+	 *            Contains all information required to instantiate and configure
+	 *            the task.
+	 * @return The value of the argument.
+	 */
+	protected boolean getByteWriterArgument(TaskConfiguration taskConfig) {
+		return getBooleanArgument(taskConfig, ARG_BYTE_WRITER, DEFAULT_BYTE_WRITER);
+	}
+	
+	
 	/**
 	 * Utility method for retrieving the argument specifying whether to enable
 	 * the production file encoding hack to work around a bug in the current
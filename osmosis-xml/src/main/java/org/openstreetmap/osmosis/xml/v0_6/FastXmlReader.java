@@ -17,6 +17,7 @@ import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.xml.common.CompressionActivator;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
+import org.openstreetmap.osmosis.xml.v0_6.impl.ByteXmlParser;
 import org.openstreetmap.osmosis.xml.v0_6.impl.FastXmlParser;
 
 
@@ -35,6 +36,8 @@ public class FastXmlReader implements RunnableSource {
 		private final File file;
 		private final boolean enableDateParsing;
 		private final CompressionMethod compressionMethod;
+		private final int compressionWorkers;
+		private final boolean byteParser;
 		
 		
 		/**
@@ -49,9 +52,52 @@ public class FastXmlReader implements RunnableSource {
 		 *            Specifies the compression method to employ.
 		 */
 		public FastXmlReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod) {
+			this(file, enableDateParsing, compressionMethod, 1);
+		}
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param file
+		 *            The file to read.
+		 * @param enableDateParsing
+		 *            If true, dates will be parsed from xml data, else the current
+		 *            date will be used thus saving parsing time.
+		 * @param compressionMethod
+		 *            Specifies the compression method to employ.
+		 * @param compressionWorkers
+		 *            The number of threads to use for decompression.
+		 */
+		public FastXmlReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod,
+				int compressionWorkers) {
+			this(file, enableDateParsing, compressionMethod, compressionWorkers, false);
+		}
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param file
+		 *            The file to read.
+		 * @param enableDateParsing
+		 *            If true, dates will be parsed from xml data, else the current
+		 *            date will be used thus saving parsing time.
+		 * @param compressionMethod
+		 *            Specifies the compression method to employ.
+		 * @param compressionWorkers
+		 *            The number of threads to use for decompression.
+		 * @param byteParser
+		 *            If true, the file is read by a parser operating directly on
+		 *            UTF-8 encoded bytes instead of a StAX parser.
+		 */
+		public FastXmlReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod,
+				int compressionWorkers, boolean byteParser) {
 			this.file = file;
 			this.enableDateParsing = enableDateParsing;
 			this.compressionMethod = compressionMethod;
+			this.compressionWorkers = compressionWorkers;
+			this.byteParser = byteParser;
 		}
 		
 		
@@ -69,7 +115,6 @@ public class FastXmlReader implements RunnableSource {
 		 */
 		public void run() {
 			InputStream inputStream = null;
-			FastXmlParser parser = null;
 			
 			try {
 				sink.initialize(Collections.<String, Object>emptyMap());
@@ -83,18 +128,20 @@ public class FastXmlReader implements RunnableSource {
 				
 				
 				inputStream =
-					new CompressionActivator(compressionMethod).
+					new CompressionActivator(compressionMethod, compressionWorkers).
 						createCompressionInputStream(inputStream);
 				
-		        XMLInputFactory factory = XMLInputFactory.newInstance();
-		        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
-		        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
-		        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
-		        XMLStreamReader xpp = factory.createXMLStreamReader(inputStream);
-				
-				parser = new FastXmlParser(sink, xpp, enableDateParsing);
-				
-				parser.readOsm();
+				if (byteParser) {
+					new ByteXmlParser(sink, inputStream, enableDateParsing).readOsm();
+				} else {
+			        XMLInputFactory factory = XMLInputFactory.newInstance();
+			        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+			        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+			        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+			        XMLStreamReader xpp = factory.createXMLStreamReader(inputStream);
+					
+					new FastXmlParser(sink, xpp, enableDateParsing).readOsm();
+				}
 				
 				sink.complete();
 				
@@ -21,6 +21,8 @@ public class FastXmlReaderFactory extends XmlTaskManagerFactory {
 		private static final String DEFAULT_FILE_NAME = "dump.osm";
 		private static final String ARG_ENABLE_DATE_PARSING = "enableDateParsing";
 		private static final boolean DEFAULT_ENABLE_DATE_PARSING = true;
+		private static final String ARG_BYTE_PARSER = "byteParser";
+		private static final boolean DEFAULT_BYTE_PARSER = false;
 		
 		
 		/**
@@ -32,6 +34,8 @@ public class FastXmlReaderFactory extends XmlTaskManagerFactory {
 			File file;
 			boolean enableDateParsing;
 			CompressionMethod compressionMethod;
+			int compressionWorkers;
+			boolean byteParser;
 			FastXmlReader task;
 			
 			// Get the task arguments.
@@ -42,12 +46,14 @@ public class FastXmlReaderFactory extends XmlTaskManagerFactory {
 			);
 			enableDateParsing = getBooleanArgument(taskConfig, ARG_ENABLE_DATE_PARSING, DEFAULT_ENABLE_DATE_PARSING);
 			compressionMethod = getCompressionMethodArgument(taskConfig, fileName);
+			compressionWorkers = getCompressionWorkersArgument(taskConfig);
+			byteParser = getBooleanArgument(taskConfig, ARG_BYTE_PARSER, DEFAULT_BYTE_PARSER);
 			
 			// Create a file object from the file name provided.
 			file = new File(fileName);
 			
 			// Build the task object.
-			task = new FastXmlReader(file, enableDateParsing, compressionMethod);
+			task = new FastXmlReader(file, enableDateParsing, compressionMethod, compressionWorkers, byteParser);
 			
 			return new RunnableSourceManager(taskConfig.getId(), task, taskConfig.getPipeArgs());
 		}
@@ -37,6 +37,7 @@ public class XmlChangeReader implements RunnableChangeSource {
 	private File file;
 	private boolean enableDateParsing;
 	private CompressionMethod compressionMethod;
+	private int compressionWorkers;
 	
 	
 	/**
@@ -51,9 +52,29 @@ public class XmlChangeReader implements RunnableChangeSource {
 	 *            Specifies the compression method to employ.
 	 */
 	public XmlChangeReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod) {
+		this(file, enableDateParsing, compressionMethod, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param enableDateParsing
+	 *            If true, dates will be parsed from xml data, else the current
+	 *            date will be used thus saving parsing time.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param compressionWorkers
+	 *            The number of threads to use for decompression.
+	 */
+	public XmlChangeReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod,
+			int compressionWorkers) {
 		this.file = file;
 		this.enableDateParsing = enableDateParsing;
 		this.compressionMethod = compressionMethod;
+		this.compressionWorkers = compressionWorkers;
 	}
 	
 	
@@ -101,7 +122,7 @@ public class XmlChangeReader implements RunnableChangeSource {
 			}
 			
 			inputStream =
-				new CompressionActivator(compressionMethod).
+				new CompressionActivator(compressionMethod, compressionWorkers).
 					createCompressionInputStream(inputStream);
 			
 			parser = createParser();
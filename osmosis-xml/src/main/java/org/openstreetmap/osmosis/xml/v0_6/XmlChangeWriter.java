@@ -8,6 +8,8 @@ import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
 import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
 import org.openstreetmap.osmosis.xml.common.BaseXmlWriter;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
+import org.openstreetmap.osmosis.xml.common.XmlByteBuffer;
+import org.openstreetmap.osmosis.xml.v0_6.impl.ByteOsmChangeWriter;
 import org.openstreetmap.osmosis.xml.v0_6.impl.OsmChangeWriter;
 
 
@@ -19,6 +21,7 @@ import org.openstreetmap.osmosis.xml.v0_6.impl.OsmChangeWriter;
 public class XmlChangeWriter extends BaseXmlWriter implements ChangeSink {
 
 	private OsmChangeWriter osmChangeWriter;
+	private ByteOsmChangeWriter byteOsmChangeWriter;
 	
 	
 	/**
@@ -43,10 +46,48 @@ public class XmlChangeWriter extends BaseXmlWriter implements ChangeSink {
 	 *            Specifies the compression method to employ.
 	 */
 	public XmlChangeWriter(File file, CompressionMethod compressionMethod) {
-    	super(file, compressionMethod);
-
-        osmChangeWriter = new OsmChangeWriter("osmChange", 0);
-    }
+		this(file, compressionMethod, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param compressionWorkers
+	 *            The number of threads to use for compression.
+	 */
+	public XmlChangeWriter(File file, CompressionMethod compressionMethod, int compressionWorkers) {
+		this(file, compressionMethod, compressionWorkers, false);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param compressionWorkers
+	 *            The number of threads to use for compression.
+	 * @param byteWriter
+	 *            If true, changes are rendered directly into a UTF-8 byte
+	 *            buffer. The output is identical.
+	 */
+	public XmlChangeWriter(File file, CompressionMethod compressionMethod, int compressionWorkers,
+			boolean byteWriter) {
+		super(file, compressionMethod, compressionWorkers, byteWriter);
+		
+		if (byteWriter) {
+			byteOsmChangeWriter = new ByteOsmChangeWriter("osmChange", 0);
+		} else {
+			osmChangeWriter = new OsmChangeWriter("osmChange", 0);
+		}
+	}
 
 
 	/**
@@ -55,7 +96,11 @@ public class XmlChangeWriter extends BaseXmlWriter implements ChangeSink {
 	public void process(ChangeContainer changeContainer) {
 		initialize();
 		
-		osmChangeWriter.process(changeContainer);
+		if (byteOsmChangeWriter != null) {
+			byteOsmChangeWriter.process(changeContainer);
+		} else {
+			osmChangeWriter.process(changeContainer);
+		}
 	}
 
 	/**
@@ -63,7 +108,11 @@ public class XmlChangeWriter extends BaseXmlWriter implements ChangeSink {
 	 */
 	@Override
 	protected void beginElementWriter() {
-		osmChangeWriter.begin();
+		if (byteOsmChangeWriter != null) {
+			byteOsmChangeWriter.begin();
+		} else {
+			osmChangeWriter.begin();
+		}
 	}
 
 	/**
@@ -71,7 +120,11 @@ public class XmlChangeWriter extends BaseXmlWriter implements ChangeSink {
 	 */
 	@Override
 	protected void endElementWriter() {
-		osmChangeWriter.end();
+		if (byteOsmChangeWriter != null) {
+			byteOsmChangeWriter.end();
+		} else {
+			osmChangeWriter.end();
+		}
 	}
 
 	/**
@@ -81,4 +134,12 @@ public class XmlChangeWriter extends BaseXmlWriter implements ChangeSink {
 	protected void setWriterOnElementWriter(BufferedWriter writer) {
 		osmChangeWriter.setWriter(writer);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void setByteBufferOnElementWriter(XmlByteBuffer byteBuffer) {
+		byteOsmChangeWriter.setOutput(byteBuffer);
+	}
 }
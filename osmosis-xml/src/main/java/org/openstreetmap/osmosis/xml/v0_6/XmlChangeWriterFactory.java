@@ -28,6 +28,8 @@ public class XmlChangeWriterFactory extends XmlTaskManagerFactory {
 		String fileName;
 		File file;
 		CompressionMethod compressionMethod;
+		int compressionWorkers;
+		boolean byteWriter;
 		XmlChangeWriter task;
 		
 		// Get the task arguments.
@@ -37,12 +39,14 @@ public class XmlChangeWriterFactory extends XmlTaskManagerFactory {
 			getDefaultStringArgument(taskConfig, DEFAULT_FILE_NAME)
 		);
 		compressionMethod = getCompressionMethodArgument(taskConfig, fileName);
+		compressionWorkers = getCompressionWorkersArgument(taskConfig);
+		byteWriter = getByteWriterArgument(taskConfig);
 		
 		// Create a file object from the file name provided.
 		file = new File(fileName);
 		
 		// Build the task object.
-		task = new XmlChangeWriter(file, compressionMethod);
+		task = new XmlChangeWriter(file, compressionMethod, compressionWorkers, byteWriter);
 		
 		return new ChangeSinkManager(taskConfig.getId(), task, taskConfig.getPipeArgs());
 	}
@@ -22,6 +22,7 @@ import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.xml.common.CompressionActivator;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
 import org.openstreetmap.osmosis.xml.v0_6.impl.OsmHandler;
+import org.openstreetmap.osmosis.xml.v0_6.impl.ParallelXmlParser;
 
 
 /**
@@ -38,6 +39,8 @@ public class XmlReader implements RunnableSource {
 	private File file;
 	private boolean enableDateParsing;
 	private CompressionMethod compressionMethod;
+	private int compressionWorkers;
+	private int workers;
 	
 	
 	/**
@@ -52,9 +55,53 @@ public class XmlReader implements RunnableSource {
 	 *            Specifies the compression method to employ.
 	 */
 	public XmlReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod) {
+		this(file, enableDateParsing, compressionMethod, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param enableDateParsing
+	 *            If true, dates will be parsed from xml data, else the current
+	 *            date will be used thus saving parsing time.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param compressionWorkers
+	 *            The number of threads to use for decompression.
+	 */
+	public XmlReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod,
+			int compressionWorkers) {
+		this(file, enableDateParsing, compressionMethod, compressionWorkers, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param enableDateParsing
+	 *            If true, dates will be parsed from xml data, else the current
+	 *            date will be used thus saving parsing time.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param compressionWorkers
+	 *            The number of threads to use for decompression.
+	 * @param workers
+	 *            The number of threads to use for parsing. If greater than 1,
+	 *            the file is split into chunks between entities which are
+	 *            parsed concurrently.
+	 */
+	public XmlReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod,
+			int compressionWorkers, int workers) {
 		this.file = file;
 		this.enableDateParsing = enableDateParsing;
 		this.compressionMethod = compressionMethod;
+		this.compressionWorkers = compressionWorkers;
+		this.workers = workers;
 	}
 	
 	
@@ -103,12 +150,16 @@ public class XmlReader implements RunnableSource {
 			
 			
 			inputStream =
-				new CompressionActivator(compressionMethod).
+				new CompressionActivator(compressionMethod, compressionWorkers).
 					createCompressionInputStream(inputStream);
 			
-			parser = createParser();
-			
-			parser.parse(inputStream, new OsmHandler(sink, enableDateParsing));
+			if (workers > 1) {
+				new ParallelXmlParser(inputStream, workers, enableDateParsing, sink).parse();
+			} else {
+				parser = createParser();
+				
+				parser.parse(inputStream, new OsmHandler(sink, enableDateParsing));
+			}
 			
 			sink.complete();
 			
@@ -3,6 +3,7 @@ package org.openstreetmap.osmosis.xml.v0_6;
 
 import java.io.File;
 
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
 import org.openstreetmap.osmosis.core.pipeline.v0_6.RunnableSourceManager;
@@ -20,6 +21,8 @@ public class XmlReaderFactory extends XmlTaskManagerFactory {
 	private static final String DEFAULT_FILE_NAME = "dump.osm";
 	private static final String ARG_ENABLE_DATE_PARSING = "enableDateParsing";
 	private static final boolean DEFAULT_ENABLE_DATE_PARSING = true;
+	private static final String ARG_WORKERS = "workers";
+	private static final int DEFAULT_WORKERS = 1;
 	
 	
 	/**
@@ -31,6 +34,8 @@ public class XmlReaderFactory extends XmlTaskManagerFactory {
 		File file;
 		boolean enableDateParsing;
 		CompressionMethod compressionMethod;
+		int compressionWorkers;
+		int workers;
 		XmlReader task;
 		
 		// Get the task arguments.
@@ -41,12 +46,19 @@ public class XmlReaderFactory extends XmlTaskManagerFactory {
 		);
 		enableDateParsing = getBooleanArgument(taskConfig, ARG_ENABLE_DATE_PARSING, DEFAULT_ENABLE_DATE_PARSING);
 		compressionMethod = getCompressionMethodArgument(taskConfig, fileName);
+		compressionWorkers = getCompressionWorkersArgument(taskConfig);
+		workers = getIntegerArgument(taskConfig, ARG_WORKERS, DEFAULT_WORKERS);
+		if (workers < 1) {
+			throw new OsmosisRuntimeException(
+				"Argument " + ARG_WORKERS + " for task " + taskConfig.getId()
+				+ " must be at least 1.");
+		}
 		
 		// Create a file object from the file name provided.
 		file = new File(fileName);
 		
 		// Build the task object.
-		task = new XmlReader(file, enableDateParsing, compressionMethod);
+		task = new XmlReader(file, enableDateParsing, compressionMethod, compressionWorkers, workers);
 		
 		return new RunnableSourceManager(taskConfig.getId(), task, taskConfig.getPipeArgs());
 	}
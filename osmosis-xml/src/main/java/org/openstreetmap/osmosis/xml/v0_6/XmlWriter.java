@@ -8,6 +8,8 @@ import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.xml.common.BaseXmlWriter;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
+import org.openstreetmap.osmosis.xml.common.XmlByteBuffer;
+import org.openstreetmap.osmosis.xml.v0_6.impl.ByteOsmWriter;
 import org.openstreetmap.osmosis.xml.v0_6.impl.OsmWriter;
 
 
@@ -19,6 +21,7 @@ import org.openstreetmap.osmosis.xml.v0_6.impl.OsmWriter;
 public class XmlWriter extends BaseXmlWriter implements Sink {
 	
 	private OsmWriter osmWriter;
+	private ByteOsmWriter byteOsmWriter;
 	
 	/**
 	 * Creates a new instance.
@@ -60,9 +63,53 @@ public class XmlWriter extends BaseXmlWriter implements Sink {
 	 *            instead of the correct {@literal <bounds>} one.
 	 */
 	public XmlWriter(File file, CompressionMethod compressionMethod, boolean legacyBound) {
-		super(file, compressionMethod);
+		this(file, compressionMethod, legacyBound, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param legacyBound
+	 *            If true, write the legacy {@literal <bound>} element
+	 *            instead of the correct {@literal <bounds>} one.
+	 * @param compressionWorkers
+	 *            The number of threads to use for compression.
+	 */
+	public XmlWriter(File file, CompressionMethod compressionMethod, boolean legacyBound, int compressionWorkers) {
+		this(file, compressionMethod, legacyBound, compressionWorkers, false);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param legacyBound
+	 *            If true, write the legacy {@literal <bound>} element
+	 *            instead of the correct {@literal <bounds>} one.
+	 * @param compressionWorkers
+	 *            The number of threads to use for compression.
+	 * @param byteWriter
+	 *            If true, entities are rendered directly into a UTF-8 byte
+	 *            buffer. The output is identical.
+	 */
+	public XmlWriter(File file, CompressionMethod compressionMethod, boolean legacyBound, int compressionWorkers,
+			boolean byteWriter) {
+		super(file, compressionMethod, compressionWorkers, byteWriter);
 		
-		osmWriter = new OsmWriter("osm", 0, true, legacyBound);
+		if (byteWriter) {
+			byteOsmWriter = new ByteOsmWriter("osm", 0, true, legacyBound);
+		} else {
+			osmWriter = new OsmWriter("osm", 0, true, legacyBound);
+		}
 	}
 
 	
@@ -72,7 +119,11 @@ public class XmlWriter extends BaseXmlWriter implements Sink {
 	public void process(EntityContainer entityContainer) {
 		initialize();
 		
-		osmWriter.process(entityContainer);
+		if (byteOsmWriter != null) {
+			byteOsmWriter.process(entityContainer);
+		} else {
+			osmWriter.process(entityContainer);
+		}
 	}
 	
 	
@@ -81,7 +132,11 @@ public class XmlWriter extends BaseXmlWriter implements Sink {
 	 */
 	@Override
 	protected void beginElementWriter() {
-		osmWriter.begin();
+		if (byteOsmWriter != null) {
+			byteOsmWriter.begin();
+		} else {
+			osmWriter.begin();
+		}
 	}
 	
 	
@@ -90,7 +145,11 @@ public class XmlWriter extends BaseXmlWriter implements Sink {
 	 */
 	@Override
 	protected void endElementWriter() {
-		osmWriter.end();
+		if (byteOsmWriter != null) {
+			byteOsmWriter.end();
+		} else {
+			osmWriter.end();
+		}
 	}
 	
 	
@@ -101,4 +160,13 @@ public class XmlWriter extends BaseXmlWriter implements Sink {
 	protected void setWriterOnElementWriter(BufferedWriter writer) {
 		osmWriter.setWriter(writer);
 	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void setByteBufferOnElementWriter(XmlByteBuffer byteBuffer) {
+		byteOsmWriter.setOutput(byteBuffer);
+	}
 }
@@ -31,6 +31,8 @@ public class XmlWriterFactory extends XmlTaskManagerFactory {
 		File file;
 		XmlWriter task;
 		CompressionMethod compressionMethod;
+		int compressionWorkers;
+		boolean byteWriter;
 		
 		// Get the task arguments.
 		fileName = getStringArgument(
@@ -39,6 +41,8 @@ public class XmlWriterFactory extends XmlTaskManagerFactory {
 			getDefaultStringArgument(taskConfig, DEFAULT_FILE_NAME)
 		);
 		compressionMethod = getCompressionMethodArgument(taskConfig, fileName);
+		compressionWorkers = getCompressionWorkersArgument(taskConfig);
+		byteWriter = getByteWriterArgument(taskConfig);
 		
 		// Create a file object from the file name provided.
 		file = new File(fileName);
@@ -46,7 +50,7 @@ public class XmlWriterFactory extends XmlTaskManagerFactory {
 		boolean legacyBound = getBooleanArgument(taskConfig, ARG_LEGACY_BOUND, DEFAULT_LEGACY_BOUND);
 		
 		// Build the task object.
-		task = new XmlWriter(file, compressionMethod, legacyBound);
+		task = new XmlWriter(file, compressionMethod, legacyBound, compressionWorkers, byteWriter);
 		
 		return new SinkManager(taskConfig.getId(), task, taskConfig.getPipeArgs());
 	}
@@ -0,0 +1,149 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import org.openstreetmap.osmosis.core.OsmosisConstants;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
+import org.openstreetmap.osmosis.core.task.common.ChangeAction;
+import org.openstreetmap.osmosis.xml.common.XmlByteBuffer;
+
+
+/**
+ * Renders OSM changes as UTF-8 encoded xml into a byte buffer. This produces
+ * identical output to {@link OsmChangeWriter}.
+ *
+ * @author Brett Henderson
+ */
+public class ByteOsmChangeWriter {
+
+	private XmlByteBuffer output;
+	private byte[] elementStart;
+	private byte[] openElementEnd;
+	private byte[] elementEnd;
+	private ByteOsmWriter osmCreateWriter;
+	private ByteOsmWriter osmModifyWriter;
+	private ByteOsmWriter osmDeleteWriter;
+	private ByteOsmWriter activeOsmWriter;
+	private ChangeAction lastAction;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param elementName
+	 *            The name of the element to be written.
+	 * @param indentLevel
+	 *            The indent level of the element.
+	 */
+	public ByteOsmChangeWriter(String elementName, int indentLevel) {
+		StringBuilder indent;
+		String lineSeparator;
+
+		indent = new StringBuilder();
+		for (int i = 0; i < indentLevel; i++) {
+			indent.append("  ");
+		}
+		lineSeparator = System.getProperty("line.separator");
+
+		elementStart = XmlByteBuffer.encode(indent + "<" + elementName);
+		openElementEnd = XmlByteBuffer.encode(">" + lineSeparator);
+		elementEnd = XmlByteBuffer.encode(indent + "</" + elementName + ">" + lineSeparator);
+
+		osmCreateWriter = new ByteOsmWriter("create", indentLevel + 1, false, false);
+		osmModifyWriter = new ByteOsmWriter("modify", indentLevel + 1, false, false);
+		osmDeleteWriter = new ByteOsmWriter("delete", indentLevel + 1, false, false);
+		activeOsmWriter = null;
+		lastAction = null;
+	}
+
+
+	/**
+	 * Sets the buffer receiving the xml output.
+	 *
+	 * @param output
+	 *            The output buffer.
+	 */
+	public void setOutput(XmlByteBuffer output) {
+		if (output == null) {
+			throw new IllegalArgumentException("null output given");
+		}
+		this.output = output;
+
+		osmCreateWriter.setOutput(output);
+		osmModifyWriter.setOutput(output);
+		osmDeleteWriter.setOutput(output);
+	}
+
+
+	/**
+	 * Begins an &lt;osmchange&gt;-element.
+	 */
+	public void begin() {
+		output.write(elementStart);
+		addAttribute("version", XmlConstants.OSM_VERSION);
+		addAttribute("generator", "Osmosis " + OsmosisConstants.VERSION);
+		output.write(openElementEnd);
+	}
+
+
+	private void addAttribute(String name, String value) {
+		output.write((byte) ' ');
+		output.writeString(name);
+		output.write((byte) '=');
+		output.write((byte) '"');
+		output.writeEscaped(value);
+		output.write((byte) '"');
+	}
+
+
+	/**
+	 * Ends an &lt;osmchange&gt;-element.
+	 */
+	public void end() {
+		if (activeOsmWriter != null) {
+			activeOsmWriter.end();
+			activeOsmWriter = null;
+		}
+
+		lastAction = null;
+		output.write(elementEnd);
+	}
+
+
+	private ByteOsmWriter getWriterForAction(ChangeAction action) {
+		if (action.equals(ChangeAction.Create)) {
+			return osmCreateWriter;
+		} else if (action.equals(ChangeAction.Modify)) {
+			return osmModifyWriter;
+		} else if (action.equals(ChangeAction.Delete)) {
+			return osmDeleteWriter;
+		} else {
+			throw new OsmosisRuntimeException("The change action " + action + " is not recognised.");
+		}
+	}
+
+
+	/**
+	 * Writes the change in the container.
+	 *
+	 * @param changeContainer
+	 *            The container holding the change.
+	 */
+	public void process(ChangeContainer changeContainer) {
+		ChangeAction action;
+
+		action = changeContainer.getAction();
+		if (action != lastAction) {
+			if (activeOsmWriter != null) {
+				activeOsmWriter.end();
+			}
+
+			activeOsmWriter = getWriterForAction(action);
+			activeOsmWriter.begin();
+
+			lastAction = action;
+		}
+
+		activeOsmWriter.process(changeContainer.getEntityContainer());
+	}
+}
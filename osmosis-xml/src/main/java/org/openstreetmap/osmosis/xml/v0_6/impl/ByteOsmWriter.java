@@ -0,0 +1,505 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+
+import org.openstreetmap.osmosis.core.OsmosisConstants;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityProcessor;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.common.SimpleTimestampContainer;
+import org.openstreetmap.osmosis.core.domain.common.TimestampFormat;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+import org.openstreetmap.osmosis.xml.common.XmlByteBuffer;
+import org.openstreetmap.osmosis.xml.common.XmlTimestampFormat;
+
+
+/**
+ * Renders OSM data types as UTF-8 encoded xml into a byte buffer. This produces
+ * identical output to {@link OsmWriter} but writes all element names and
+ * indentation from pre-encoded byte sequences and formats values directly into
+ * the buffer.
+ *
+ * @author Brett Henderson
+ */
+public class ByteOsmWriter {
+
+	private static final int INDENT_SPACES_PER_LEVEL = 2;
+
+	private static final byte[] ATTRIBUTE_ID = attributeStart("id");
+	private static final byte[] ATTRIBUTE_VERSION = attributeStart("version");
+	private static final byte[] ATTRIBUTE_TIMESTAMP = attributeStart("timestamp");
+	private static final byte[] ATTRIBUTE_UID = attributeStart("uid");
+	private static final byte[] ATTRIBUTE_USER = attributeStart("user");
+	private static final byte[] ATTRIBUTE_CHANGESET = attributeStart("changeset");
+	private static final byte[] ATTRIBUTE_LATITUDE = attributeStart("lat");
+	private static final byte[] ATTRIBUTE_LONGITUDE = attributeStart("lon");
+	private static final byte[] ATTRIBUTE_KEY = attributeStart("k");
+	private static final byte[] ATTRIBUTE_VALUE = attributeStart("v");
+	private static final byte[] ATTRIBUTE_REF = attributeStart("ref");
+	private static final byte[] ATTRIBUTE_TYPE = attributeStart("type");
+	private static final byte[] ATTRIBUTE_ROLE = attributeStart("role");
+
+	private XmlByteBuffer output;
+	private boolean renderAttributes;
+	private boolean legacyBound;
+	private byte[] elementStart;
+	private byte[] elementEnd;
+	private byte[] nodeStart;
+	private byte[] nodeEnd;
+	private byte[] wayStart;
+	private byte[] wayEnd;
+	private byte[] relationStart;
+	private byte[] relationEnd;
+	private byte[] tagStart;
+	private byte[] wayNodeStart;
+	private byte[] memberStart;
+	private byte[] boundStart;
+	private byte[] openElementEnd;
+	private byte[] emptyElementEnd;
+	private TimestampFormat timestampFormat;
+	private NumberFormat numberFormat;
+	private MemberTypeRenderer memberTypeRenderer;
+	private SubElementWriter subElementWriter;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param elementName
+	 *            The name of the element to be written.
+	 * @param indentLevel
+	 *            The indent level of the element.
+	 * @param renderAttributes
+	 *            Specifies whether attributes of the top level element should
+	 *            be rendered. This would typically be set to false if this
+	 *            element is embedded within a higher level element (eg.
+	 *            changesets)
+	 * @param legacyBound
+	 *            If true, write the legacy {@literal <bound>} element instead
+	 *            of the correct {@literal <bounds>} one.
+	 */
+	public ByteOsmWriter(String elementName, int indentLevel, boolean renderAttributes, boolean legacyBound) {
+		String lineSeparator;
+
+		this.renderAttributes = renderAttributes;
+		this.legacyBound = legacyBound;
+
+		lineSeparator = System.getProperty("line.separator");
+
+		elementStart = elementStart(indentLevel, elementName);
+		elementEnd = elementEnd(indentLevel, elementName, lineSeparator);
+		nodeStart = elementStart(indentLevel + 1, "node");
+		nodeEnd = elementEnd(indentLevel + 1, "node", lineSeparator);
+		wayStart = elementStart(indentLevel + 1, "way");
+		wayEnd = elementEnd(indentLevel + 1, "way", lineSeparator);
+		relationStart = elementStart(indentLevel + 1, "relation");
+		relationEnd = elementEnd(indentLevel + 1, "relation", lineSeparator);
+		tagStart = elementStart(indentLevel + 2, "tag");
+		wayNodeStart = elementStart(indentLevel + 2, "nd");
+		memberStart = elementStart(indentLevel + 2, "member");
+		if (legacyBound) {
+			boundStart = elementStart(indentLevel + 1, "bound");
+		} else {
+			boundStart = elementStart(indentLevel + 1, "bounds");
+		}
+		openElementEnd = XmlByteBuffer.encode(">" + lineSeparator);
+		emptyElementEnd = XmlByteBuffer.encode("/>" + lineSeparator);
+
+		timestampFormat = new XmlTimestampFormat();
+		memberTypeRenderer = new MemberTypeRenderer();
+
+		// Only write the first 7 decimal places.
+		// Write in US locale so that a '.' is used as the decimal separator.
+		numberFormat = new DecimalFormat(
+			"0.#######;-0.#######",
+			new DecimalFormatSymbols(Locale.US)
+		);
+
+		subElementWriter = new SubElementWriter();
+	}
+
+
+	private static byte[] attributeStart(String name) {
+		return XmlByteBuffer.encode(" " + name + "=\"");
+	}
+
+
+	private static String indent(int indentLevel) {
+		StringBuilder builder;
+
+		builder = new StringBuilder();
+		for (int i = 0; i < indentLevel * INDENT_SPACES_PER_LEVEL; i++) {
+			builder.append(' ');
+		}
+
+		return builder.toString();
+	}
+
+
+	private static byte[] elementStart(int indentLevel, String name) {
+		return XmlByteBuffer.encode(indent(indentLevel) + "<" + name);
+	}
+
+
+	private static byte[] elementEnd(int indentLevel, String name, String lineSeparator) {
+		return XmlByteBuffer.encode(indent(indentLevel) + "</" + name + ">" + lineSeparator);
+	}
+
+
+	/**
+	 * Sets the buffer receiving the xml output.
+	 *
+	 * @param output
+	 *            The output buffer.
+	 */
+	public void setOutput(XmlByteBuffer output) {
+		if (output == null) {
+			throw new IllegalArgumentException("null output given");
+		}
+		this.output = output;
+
+		subElementWriter.reset();
+	}
+
+
+	/**
+	 * Begins an element.
+	 */
+	public void begin() {
+		output.write(elementStart);
+
+		if (renderAttributes) {
+			addAttribute("version", XmlConstants.OSM_VERSION);
+			addAttribute("generator", "Osmosis " + OsmosisConstants.VERSION);
+		}
+
+		output.write(openElementEnd);
+	}
+
+
+	/**
+	 * Ends an element.
+	 */
+	public void end() {
+		output.write(elementEnd);
+	}
+
+
+	/**
+	 * Writes the element in the container.
+	 *
+	 * @param entityContainer
+	 *            The container holding the entity.
+	 */
+	public void process(EntityContainer entityContainer) {
+		entityContainer.process(subElementWriter);
+	}
+
+
+	private void addAttribute(String name, String value) {
+		output.write((byte) ' ');
+		output.writeString(name);
+		output.write((byte) '=');
+		output.write((byte) '"');
+		output.writeEscaped(value);
+		output.write((byte) '"');
+	}
+
+
+	private void beginAttribute(byte[] attributeStart) {
+		output.write(attributeStart);
+	}
+
+
+	private void endAttribute() {
+		output.write((byte) '"');
+	}
+
+
+	private void addCommonAttributes(Entity entity) {
+		OsmUser user;
+
+		beginAttribute(ATTRIBUTE_ID);
+		output.writeLong(entity.getId());
+		endAttribute();
+
+		beginAttribute(ATTRIBUTE_VERSION);
+		output.writeLong(entity.getVersion());
+		endAttribute();
+
+		beginAttribute(ATTRIBUTE_TIMESTAMP);
+		if (entity.getTimestampContainer() instanceof SimpleTimestampContainer && entity.getTimestamp() != null) {
+			output.writeTimestamp(entity.getTimestamp());
+		} else {
+			// Unparsed timestamps are passed through in their original form.
+			output.writeEscaped(entity.getFormattedTimestamp(timestampFormat));
+		}
+		endAttribute();
+
+		user = entity.getUser();
+		if (!user.equals(OsmUser.NONE)) {
+			beginAttribute(ATTRIBUTE_UID);
+			output.writeLong(user.getId());
+			endAttribute();
+
+			beginAttribute(ATTRIBUTE_USER);
+			output.writeCachedEscaped(user.getName());
+			endAttribute();
+		}
+
+		if (entity.getChangesetId() != 0) {
+			beginAttribute(ATTRIBUTE_CHANGESET);
+			output.writeLong(entity.getChangesetId());
+			endAttribute();
+		}
+	}
+
+
+	private void addMetatags(Entity entity) {
+		for (Entry<String, Object> metaTag : entity.getMetaTags().entrySet()) {
+			addAttribute(metaTag.getKey(), metaTag.getValue().toString());
+		}
+	}
+
+
+	private void addTags(Collection<Tag> tags) {
+		for (Tag tag : tags) {
+			output.write(tagStart);
+
+			beginAttribute(ATTRIBUTE_KEY);
+			output.writeCachedEscaped(tag.getKey());
+			endAttribute();
+
+			beginAttribute(ATTRIBUTE_VALUE);
+			output.writeEscaped(tag.getValue());
+			endAttribute();
+
+			output.write(emptyElementEnd);
+		}
+	}
+
+
+	private void addCoordinate(byte[] attributeStart, double coordinate, int fixedCoordinate) {
+		if (Double.isNaN(coordinate)) {
+			return;
+		}
+
+		beginAttribute(attributeStart);
+
+		// Coordinates held exactly in fixed precision form can be written
+		// without rounding, otherwise fall back to the decimal format.
+		if (Double.compare(FixedPrecisionCoordinateConvertor.convertToDouble(fixedCoordinate), coordinate) == 0) {
+			output.writeFixedPrecision(fixedCoordinate);
+		} else {
+			output.writeString(numberFormat.format(coordinate));
+		}
+
+		endAttribute();
+	}
+
+
+	private void writeNode(Node node) {
+		Collection<Tag> tags;
+
+		output.write(nodeStart);
+		addCommonAttributes(node);
+		addCoordinate(ATTRIBUTE_LATITUDE, node.getLatitude(), node.getFixedLatitude());
+		addCoordinate(ATTRIBUTE_LONGITUDE, node.getLongitude(), node.getFixedLongitude());
+		addMetatags(node);
+
+		tags = node.getTags();
+
+		if (tags.size() > 0) {
+			output.write(openElementEnd);
+			addTags(tags);
+			output.write(nodeEnd);
+
+		} else {
+			output.write(emptyElementEnd);
+		}
+	}
+
+
+	private void writeWay(Way way) {
+		List<WayNode> wayNodes;
+		Collection<Tag> tags;
+
+		output.write(wayStart);
+		addCommonAttributes(way);
+		addMetatags(way);
+
+		wayNodes = way.getWayNodes();
+		tags = way.getTags();
+
+		if (wayNodes.size() > 0 || tags.size() > 0) {
+			output.write(openElementEnd);
+
+			for (WayNode wayNode : wayNodes) {
+				output.write(wayNodeStart);
+				beginAttribute(ATTRIBUTE_REF);
+				output.writeLong(wayNode.getNodeId());
+				endAttribute();
+				output.write(emptyElementEnd);
+			}
+
+			addTags(tags);
+			output.write(wayEnd);
+
+		} else {
+			output.write(emptyElementEnd);
+		}
+	}
+
+
+	private void writeRelation(Relation relation) {
+		List<RelationMember> relationMembers;
+		Collection<Tag> tags;
+
+		output.write(relationStart);
+		addCommonAttributes(relation);
+		addMetatags(relation);
+
+		relationMembers = relation.getMembers();
+		tags = relation.getTags();
+
+		if (relationMembers.size() > 0 || tags.size() > 0) {
+			output.write(openElementEnd);
+
+			for (RelationMember relationMember : relationMembers) {
+				output.write(memberStart);
+
+				beginAttribute(ATTRIBUTE_TYPE);
+				output.writeCachedEscaped(memberTypeRenderer.render(relationMember.getMemberType()));
+				endAttribute();
+
+				beginAttribute(ATTRIBUTE_REF);
+				output.writeLong(relationMember.getMemberId());
+				endAttribute();
+
+				beginAttribute(ATTRIBUTE_ROLE);
+				output.writeCachedEscaped(relationMember.getMemberRole());
+				endAttribute();
+
+				output.write(emptyElementEnd);
+			}
+
+			addTags(tags);
+			output.write(relationEnd);
+
+		} else {
+			output.write(emptyElementEnd);
+		}
+	}
+
+
+	private void writeBound(Bound bound) {
+		// Bounds are rare so they are formatted in the same way as BoundWriter.
+		if (legacyBound) {
+			if (!"".equals(bound.getOrigin())) {
+				output.write(boundStart);
+				addAttribute("box", String.format(
+						Locale.US,
+						"%.5f,%.5f,%.5f,%.5f",
+						bound.getBottom(),
+						bound.getLeft(),
+						bound.getTop(),
+						bound.getRight()));
+				addAttribute("origin", bound.getOrigin());
+				output.write(emptyElementEnd);
+			}
+
+		} else {
+			String format = "%.5f";
+
+			output.write(boundStart);
+			addAttribute(XmlConstants.ATTRIBUTE_NAME_MINLON, String.format(Locale.US, format, bound.getLeft()));
+			addAttribute(XmlConstants.ATTRIBUTE_NAME_MINLAT, String.format(Locale.US, format, bound.getBottom()));
+			addAttribute(XmlConstants.ATTRIBUTE_NAME_MAXLON, String.format(Locale.US, format, bound.getRight()));
+			addAttribute(XmlConstants.ATTRIBUTE_NAME_MAXLAT, String.format(Locale.US, format, bound.getTop()));
+			if (bound.getOrigin() != null) {
+				addAttribute("origin", bound.getOrigin());
+			}
+			output.write(emptyElementEnd);
+		}
+	}
+
+
+	/**
+	 * Directs data to the appropriate element rendering method.
+	 */
+	private class SubElementWriter implements EntityProcessor {
+		private boolean boundWritten = false; // can't write a Bound twice
+		private boolean entitiesWritten = false; // can't write a Bound after any Entities
+
+
+		/**
+		 * Resets the flags indicating which data has been written.
+		 */
+		public void reset() {
+			boundWritten = false;
+			entitiesWritten = false;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void process(NodeContainer node) {
+			writeNode(node.getEntity());
+			entitiesWritten = true;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void process(WayContainer way) {
+			writeWay(way.getEntity());
+			entitiesWritten = true;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void process(RelationContainer relation) {
+			writeRelation(relation.getEntity());
+			entitiesWritten = true;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void process(BoundContainer bound) {
+			if (boundWritten) {
+				throw new OsmosisRuntimeException("Bound element already written and only one allowed.");
+			}
+			if (entitiesWritten) {
+				throw new OsmosisRuntimeException("Can't write bound element after other entities.");
+			}
+			writeBound(bound.getEntity());
+			boundWritten = true;
+		}
+	}
+}
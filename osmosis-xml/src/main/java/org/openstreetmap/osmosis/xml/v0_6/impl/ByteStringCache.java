@@ -0,0 +1,113 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+
+/**
+ * Maps UTF-8 encoded byte sequences to strings, returning the same string
+ * instance each time a sequence is encountered. This avoids decoding and
+ * allocating a new string for frequently repeated values such as tag keys. The
+ * cache is cleared when it becomes full so that memory use remains bounded
+ * when values rarely repeat.
+ *
+ * @author Brett Henderson
+ */
+public class ByteStringCache {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private byte[][] keys;
+	private String[] values;
+	private int size;
+	private int maxSize;
+	private int maxKeyLength;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param capacity
+	 *            The number of slots in the cache which must be a power of two.
+	 *            Up to half of the slots are filled before the cache is
+	 *            cleared.
+	 * @param maxKeyLength
+	 *            The length of the longest byte sequence to be cached. Longer
+	 *            sequences are decoded each time.
+	 */
+	public ByteStringCache(int capacity, int maxKeyLength) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity " + capacity + " is not a power of two.");
+		}
+
+		this.maxKeyLength = maxKeyLength;
+
+		keys = new byte[capacity][];
+		values = new String[capacity];
+		maxSize = capacity / 2;
+	}
+
+
+	/**
+	 * Gets the string for a UTF-8 encoded byte sequence.
+	 *
+	 * @param data
+	 *            The array containing the byte sequence.
+	 * @param offset
+	 *            The start of the sequence within the array.
+	 * @param length
+	 *            The length of the sequence.
+	 * @return The decoded string.
+	 */
+	public String get(byte[] data, int offset, int length) {
+		int hash;
+		int mask;
+		int slot;
+		String value;
+
+		if (length > maxKeyLength) {
+			return new String(data, offset, length, UTF8);
+		}
+
+		hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + data[i];
+		}
+		mask = keys.length - 1;
+
+		for (slot = (hash ^ (hash >>> 16)) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+			if (isMatch(keys[slot], data, offset, length)) {
+				return values[slot];
+			}
+		}
+
+		if (size >= maxSize) {
+			Arrays.fill(keys, null);
+			Arrays.fill(values, null);
+			size = 0;
+			slot = (hash ^ (hash >>> 16)) & mask;
+		}
+
+		value = new String(data, offset, length, UTF8);
+		keys[slot] = Arrays.copyOfRange(data, offset, offset + length);
+		values[slot] = value;
+		size++;
+
+		return value;
+	}
+
+
+	private static boolean isMatch(byte[] key, byte[] data, int offset, int length) {
+		if (key.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (key[i] != data[offset + i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
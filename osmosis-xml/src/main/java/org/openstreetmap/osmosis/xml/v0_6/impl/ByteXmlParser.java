@@ -0,0 +1,512 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.common.SimpleTimestampContainer;
+import org.openstreetmap.osmosis.core.domain.common.TimestampContainer;
+import org.openstreetmap.osmosis.core.domain.common.TimestampFormat;
+import org.openstreetmap.osmosis.core.domain.common.UnparsedTimestampContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.xml.common.XmlTimestampFormat;
+
+
+/**
+ * Reads the contents of a UTF-8 encoded osm file using a tokenizer operating
+ * directly on bytes. Numeric attributes are converted without creating
+ * strings, node coordinates are read in fixed precision form, and repeated
+ * strings such as tag keys and user names are shared between entities. The
+ * entities produced are identical to those of the {@link FastXmlParser}.
+ *
+ * @author Brett Henderson
+ */
+public class ByteXmlParser {
+
+	private static final byte[] ELEMENT_NAME_OSM = toBytes("osm");
+	private static final byte[] ELEMENT_NAME_BOUND = toBytes("bound");
+	private static final byte[] ELEMENT_NAME_BOUNDS = toBytes("bounds");
+	private static final byte[] ELEMENT_NAME_NODE = toBytes("node");
+	private static final byte[] ELEMENT_NAME_WAY = toBytes("way");
+	private static final byte[] ELEMENT_NAME_RELATION = toBytes("relation");
+	private static final byte[] ELEMENT_NAME_TAG = toBytes("tag");
+	private static final byte[] ELEMENT_NAME_NODE_REFERENCE = toBytes("nd");
+	private static final byte[] ELEMENT_NAME_MEMBER = toBytes("member");
+
+	private static final byte[][] OSM_ATTRIBUTES = toByteArrays("version", "generator");
+	private static final int OSM_VERSION = 0;
+	private static final int OSM_GENERATOR = 1;
+
+	private static final byte[][] BOUND_ATTRIBUTES = toByteArrays("box", "origin");
+	private static final int BOUND_BOX = 0;
+	private static final int BOUND_ORIGIN = 1;
+
+	private static final byte[][] BOUNDS_ATTRIBUTES = toByteArrays("minlat", "minlon", "maxlat", "maxlon", "origin");
+	private static final int BOUNDS_MINLAT = 0;
+	private static final int BOUNDS_MINLON = 1;
+	private static final int BOUNDS_MAXLAT = 2;
+	private static final int BOUNDS_MAXLON = 3;
+	private static final int BOUNDS_ORIGIN = 4;
+
+	private static final byte[][] ENTITY_ATTRIBUTES =
+			toByteArrays("id", "version", "timestamp", "uid", "user", "changeset", "lat", "lon");
+	private static final int ENTITY_ID = 0;
+	private static final int ENTITY_VERSION = 1;
+	private static final int ENTITY_TIMESTAMP = 2;
+	private static final int ENTITY_USER_ID = 3;
+	private static final int ENTITY_USER = 4;
+	private static final int ENTITY_CHANGESET_ID = 5;
+	private static final int NODE_LATITUDE = 6;
+	private static final int NODE_LONGITUDE = 7;
+
+	private static final byte[][] TAG_ATTRIBUTES = toByteArrays("k", "v");
+	private static final int TAG_KEY = 0;
+	private static final int TAG_VALUE = 1;
+
+	private static final byte[][] WAY_NODE_ATTRIBUTES = toByteArrays("ref");
+	private static final int WAY_NODE_REF = 0;
+
+	private static final byte[][] MEMBER_ATTRIBUTES = toByteArrays("ref", "type", "role");
+	private static final int MEMBER_REF = 0;
+	private static final int MEMBER_TYPE = 1;
+	private static final int MEMBER_ROLE = 2;
+
+	private static final byte[] MEMBER_TYPE_NODE = toBytes("node");
+	private static final byte[] MEMBER_TYPE_WAY = toBytes("way");
+	private static final byte[] MEMBER_TYPE_RELATION = toBytes("relation");
+
+	private static final int CACHE_CAPACITY = 16384;
+	private static final int MAX_CACHED_LENGTH = 64;
+
+	private static final Logger LOG = Logger.getLogger(ByteXmlParser.class.getName());
+
+	private final XmlByteTokenizer tokenizer;
+	private final Sink sink;
+	private final boolean enableDateParsing;
+	private final MemberTypeParser memberTypeParser;
+	private final ByteStringCache keyCache;
+	private final ByteStringCache userNameCache;
+	private final ByteStringCache roleCache;
+	private final int[] attributes;
+	private TimestampFormat timestampFormat;
+	private TimestampContainer dummyTimestampContainer;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param sink
+	 *            The sink receiving all output data.
+	 * @param inputStream
+	 *            The stream providing the UTF-8 encoded xml.
+	 * @param enableDateParsing
+	 *            If true, parsing of dates in the xml will be enabled,
+	 *            otherwise the current system time will be used.
+	 */
+	public ByteXmlParser(Sink sink, InputStream inputStream, boolean enableDateParsing) {
+		this.sink = sink;
+		this.enableDateParsing = enableDateParsing;
+
+		tokenizer = new XmlByteTokenizer(inputStream);
+
+		if (enableDateParsing) {
+			timestampFormat = new XmlTimestampFormat();
+		} else {
+			Calendar calendar;
+
+			calendar = Calendar.getInstance();
+			calendar.set(Calendar.MILLISECOND, 0);
+			dummyTimestampContainer = new SimpleTimestampContainer(calendar.getTime());
+		}
+
+		memberTypeParser = new MemberTypeParser();
+		keyCache = new ByteStringCache(CACHE_CAPACITY, MAX_CACHED_LENGTH);
+		userNameCache = new ByteStringCache(CACHE_CAPACITY, MAX_CACHED_LENGTH);
+		roleCache = new ByteStringCache(CACHE_CAPACITY, MAX_CACHED_LENGTH);
+		attributes = new int[BOUNDS_ATTRIBUTES.length + ENTITY_ATTRIBUTES.length];
+	}
+
+
+	private static byte[] toBytes(String value) {
+		return value.getBytes(Charset.forName("US-ASCII"));
+	}
+
+
+	private static byte[][] toByteArrays(String... values) {
+		byte[][] result;
+
+		result = new byte[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = toBytes(values[i]);
+		}
+
+		return result;
+	}
+
+
+	private int[] findAttributes(byte[][] names) {
+		tokenizer.findAttributes(names, attributes);
+
+		return attributes;
+	}
+
+
+	private int getRequiredAttribute(int[] indexes, int attribute, byte[][] names) {
+		int index;
+
+		index = indexes[attribute];
+		if (index < 0) {
+			throw new OsmosisRuntimeException("Required attribute " + new String(names[attribute])
+					+ " of the " + tokenizer.getElementName() + " element is missing.");
+		}
+
+		return index;
+	}
+
+
+	private void skipElement() throws IOException {
+		int depth;
+
+		// Consume all nested elements and the end tag of the current element.
+		depth = tokenizer.getDepth();
+		while (tokenizer.next() != XmlByteTokenizer.END_ELEMENT || tokenizer.getDepth() >= depth) {
+			continue;
+		}
+	}
+
+
+	private TimestampContainer readTimestamp(int index) {
+		long timestamp;
+
+		if (!enableDateParsing) {
+			return dummyTimestampContainer;
+		}
+
+		if (index < 0) {
+			throw new OsmosisRuntimeException("The entity timestamp attribute is missing.");
+		}
+
+		timestamp = tokenizer.getTimestamp(index);
+		if (timestamp != Long.MIN_VALUE) {
+			return new SimpleTimestampContainer(new Date(timestamp));
+		}
+
+		return new UnparsedTimestampContainer(timestampFormat, tokenizer.getString(index));
+	}
+
+
+	private CommonEntityData readEntityData(int[] indexes) {
+		long id;
+		int version;
+		TimestampContainer timestamp;
+		OsmUser user;
+		long changesetId;
+
+		id = tokenizer.getLong(getRequiredAttribute(indexes, ENTITY_ID, ENTITY_ATTRIBUTES));
+		if (indexes[ENTITY_VERSION] < 0) {
+			throw new OsmosisRuntimeException("Entity " + id
+					+ " does not have a version attribute as OSM 0.6 are required to have.  Is this a 0.5 file?");
+		}
+		version = tokenizer.getInteger(indexes[ENTITY_VERSION]);
+		timestamp = readTimestamp(indexes[ENTITY_TIMESTAMP]);
+
+		if (indexes[ENTITY_USER_ID] >= 0) {
+			String userName;
+
+			userName = tokenizer.getString(indexes[ENTITY_USER], userNameCache);
+			if (userName == null) {
+				userName = "";
+			}
+			user = new OsmUser(tokenizer.getInteger(indexes[ENTITY_USER_ID]), userName);
+		} else {
+			user = OsmUser.NONE;
+		}
+
+		if (indexes[ENTITY_CHANGESET_ID] >= 0) {
+			changesetId = tokenizer.getLong(indexes[ENTITY_CHANGESET_ID]);
+		} else {
+			changesetId = 0;
+		}
+
+		return new CommonEntityData(id, version, timestamp, user, changesetId);
+	}
+
+
+	private double readCoordinate(int index) {
+		return Double.parseDouble(tokenizer.getString(index));
+	}
+
+
+	private Bound readBound() throws IOException {
+		int[] indexes;
+		String boxString;
+		String origin;
+		String[] boundStrings;
+		Double right;
+		Double left;
+		Double top;
+		Double bottom;
+
+		indexes = findAttributes(BOUND_ATTRIBUTES);
+
+		boxString = tokenizer.getString(indexes[BOUND_BOX]);
+		if (boxString == null) {
+			throw new OsmosisRuntimeException("Missing required box attribute of bound element");
+		}
+		boundStrings = boxString.split(",");
+		if (boundStrings.length != 4) {
+			throw new OsmosisRuntimeException("Badly formed box attribute of bound element");
+		}
+		try {
+			bottom = Double.parseDouble(boundStrings[0]);
+			left = Double.parseDouble(boundStrings[1]);
+			top = Double.parseDouble(boundStrings[2]);
+			right = Double.parseDouble(boundStrings[3]);
+		} catch (NumberFormatException e) {
+			throw new OsmosisRuntimeException("Can't parse box attribute of bound element", e);
+		}
+		origin = tokenizer.getString(indexes[BOUND_ORIGIN]);
+		if (origin == null || origin.equals("")) {
+			throw new OsmosisRuntimeException("Origin attribute of bound element is empty or missing.");
+		}
+
+		skipElement();
+
+		return new Bound(right, left, top, bottom, origin);
+	}
+
+
+	private Bound readBounds(String defaultOrigin) throws IOException {
+		int[] indexes;
+		double bottom;
+		double left;
+		double top;
+		double right;
+		String origin;
+
+		indexes = findAttributes(BOUNDS_ATTRIBUTES);
+
+		try {
+			bottom = readCoordinate(getRequiredAttribute(indexes, BOUNDS_MINLAT, BOUNDS_ATTRIBUTES));
+			left = readCoordinate(getRequiredAttribute(indexes, BOUNDS_MINLON, BOUNDS_ATTRIBUTES));
+			top = readCoordinate(getRequiredAttribute(indexes, BOUNDS_MAXLAT, BOUNDS_ATTRIBUTES));
+			right = readCoordinate(getRequiredAttribute(indexes, BOUNDS_MAXLON, BOUNDS_ATTRIBUTES));
+		} catch (NumberFormatException e) {
+			throw new OsmosisRuntimeException("Cannot parse the coordinates of the bounds element", e);
+		}
+
+		origin = tokenizer.getString(indexes[BOUNDS_ORIGIN]);
+		if (origin == null) {
+			origin = defaultOrigin;
+		}
+
+		skipElement();
+
+		return new Bound(right, left, top, bottom, origin);
+	}
+
+
+	private Tag readTag() throws IOException {
+		int[] indexes;
+		Tag tag;
+
+		indexes = findAttributes(TAG_ATTRIBUTES);
+		tag = new Tag(tokenizer.getString(indexes[TAG_KEY], keyCache), tokenizer.getString(indexes[TAG_VALUE]));
+
+		skipElement();
+
+		return tag;
+	}
+
+
+	private Node readNode() throws IOException {
+		int[] indexes;
+		CommonEntityData entityData;
+		int latitudeIndex;
+		int longitudeIndex;
+		long fixedLatitude;
+		long fixedLongitude;
+		Node node;
+
+		indexes = findAttributes(ENTITY_ATTRIBUTES);
+		entityData = readEntityData(indexes);
+
+		latitudeIndex = getRequiredAttribute(indexes, NODE_LATITUDE, ENTITY_ATTRIBUTES);
+		longitudeIndex = getRequiredAttribute(indexes, NODE_LONGITUDE, ENTITY_ATTRIBUTES);
+		fixedLatitude = tokenizer.getFixedPrecision(latitudeIndex);
+		fixedLongitude = tokenizer.getFixedPrecision(longitudeIndex);
+
+		// Coordinates with more precision than the fixed form can hold are
+		// retained as doubles.
+		if (fixedLatitude != Long.MIN_VALUE && fixedLongitude != Long.MIN_VALUE) {
+			node = Node.createFixedPrecision(entityData, (int) fixedLatitude, (int) fixedLongitude);
+		} else {
+			node = new Node(entityData, readCoordinate(latitudeIndex), readCoordinate(longitudeIndex));
+		}
+
+		while (tokenizer.next() == XmlByteTokenizer.START_ELEMENT) {
+			if (tokenizer.isElement(ELEMENT_NAME_TAG)) {
+				node.getTags().add(readTag());
+			} else {
+				skipElement();
+			}
+		}
+
+		return node;
+	}
+
+
+	private Way readWay() throws IOException {
+		Way way;
+
+		way = new Way(readEntityData(findAttributes(ENTITY_ATTRIBUTES)));
+
+		while (tokenizer.next() == XmlByteTokenizer.START_ELEMENT) {
+			if (tokenizer.isElement(ELEMENT_NAME_NODE_REFERENCE)) {
+				int[] indexes = findAttributes(WAY_NODE_ATTRIBUTES);
+				int refIndex = getRequiredAttribute(indexes, WAY_NODE_REF, WAY_NODE_ATTRIBUTES);
+
+				way.getWayNodes().add(new WayNode(tokenizer.getLong(refIndex)));
+				skipElement();
+			} else if (tokenizer.isElement(ELEMENT_NAME_TAG)) {
+				way.getTags().add(readTag());
+			} else {
+				skipElement();
+			}
+		}
+
+		return way;
+	}
+
+
+	private EntityType readMemberType(int index) {
+		if (index >= 0) {
+			if (tokenizer.isValue(index, MEMBER_TYPE_NODE)) {
+				return EntityType.Node;
+			} else if (tokenizer.isValue(index, MEMBER_TYPE_WAY)) {
+				return EntityType.Way;
+			} else if (tokenizer.isValue(index, MEMBER_TYPE_RELATION)) {
+				return EntityType.Relation;
+			}
+		}
+
+		return memberTypeParser.parse(tokenizer.getString(index));
+	}
+
+
+	private RelationMember readRelationMember() throws IOException {
+		int[] indexes;
+		long id;
+		EntityType type;
+		String role;
+
+		indexes = findAttributes(MEMBER_ATTRIBUTES);
+		id = tokenizer.getLong(getRequiredAttribute(indexes, MEMBER_REF, MEMBER_ATTRIBUTES));
+		type = readMemberType(indexes[MEMBER_TYPE]);
+		role = tokenizer.getString(indexes[MEMBER_ROLE], roleCache);
+
+		skipElement();
+
+		return new RelationMember(id, type, role);
+	}
+
+
+	private Relation readRelation() throws IOException {
+		Relation relation;
+
+		relation = new Relation(readEntityData(findAttributes(ENTITY_ATTRIBUTES)));
+
+		while (tokenizer.next() == XmlByteTokenizer.START_ELEMENT) {
+			if (tokenizer.isElement(ELEMENT_NAME_MEMBER)) {
+				relation.getMembers().add(readRelationMember());
+			} else if (tokenizer.isElement(ELEMENT_NAME_TAG)) {
+				relation.getTags().add(readTag());
+			} else {
+				skipElement();
+			}
+		}
+
+		return relation;
+	}
+
+
+	/**
+	 * Parses the xml and sends all data to the sink.
+	 */
+	public void readOsm() {
+		try {
+			int[] indexes;
+			String fileVersion;
+			String generator;
+			int event;
+
+			if (tokenizer.next() != XmlByteTokenizer.START_ELEMENT || !tokenizer.isElement(ELEMENT_NAME_OSM)) {
+				throw new OsmosisRuntimeException("This does not appear to be an OSM XML file.");
+			}
+
+			indexes = findAttributes(OSM_ATTRIBUTES);
+			fileVersion = tokenizer.getString(indexes[OSM_VERSION]);
+			generator = tokenizer.getString(indexes[OSM_GENERATOR]);
+
+			if (!XmlConstants.OSM_VERSION.equals(fileVersion)) {
+				LOG.warning(
+						"Expected version " + XmlConstants.OSM_VERSION
+						+ " but received " + fileVersion + "."
+				);
+			}
+
+			event = tokenizer.next();
+
+			if (event == XmlByteTokenizer.START_ELEMENT && tokenizer.isElement(ELEMENT_NAME_BOUND)) {
+				LOG.fine("Legacy <bound> element encountered.");
+				sink.process(new BoundContainer(readBound()));
+				event = tokenizer.next();
+			}
+
+			if (event == XmlByteTokenizer.START_ELEMENT && tokenizer.isElement(ELEMENT_NAME_BOUNDS)) {
+				sink.process(new BoundContainer(readBounds(generator)));
+				event = tokenizer.next();
+			}
+
+			while (event == XmlByteTokenizer.START_ELEMENT) {
+				if (tokenizer.isElement(ELEMENT_NAME_NODE)) {
+					sink.process(new NodeContainer(readNode()));
+				} else if (tokenizer.isElement(ELEMENT_NAME_WAY)) {
+					sink.process(new WayContainer(readWay()));
+				} else if (tokenizer.isElement(ELEMENT_NAME_RELATION)) {
+					sink.process(new RelationContainer(readRelation()));
+				} else {
+					skipElement();
+				}
+
+				event = tokenizer.next();
+			}
+
+			// Content following the root element is not checked.
+
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to read the xml data.", e);
+		} catch (NumberFormatException e) {
+			throw new OsmosisRuntimeException("Unable to parse a numeric attribute.", e);
+		}
+	}
+}
@@ -51,7 +51,24 @@ public class OsmHandler extends DefaultHandler {
 	 *            date will be used thus saving parsing time.
 	 */
 	public OsmHandler(Sink osmSink, boolean enableDateParsing) {
-		osmElementProcessor = new OsmElementProcessor(null, osmSink, enableDateParsing, true);
+		this(osmSink, enableDateParsing, true);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param osmSink
+	 *            The new osmSink to write data to.
+	 * @param enableDateParsing
+	 *            If true, dates will be parsed from xml data, else the current
+	 *            date will be used thus saving parsing time.
+	 * @param validateVersion
+	 *            If true, the version attribute of the osm element will be
+	 *            checked and validated.
+	 */
+	public OsmHandler(Sink osmSink, boolean enableDateParsing, boolean validateVersion) {
+		osmElementProcessor = new OsmElementProcessor(null, osmSink, enableDateParsing, validateVersion);
 	}
 	
 	
@@ -0,0 +1,285 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.SAXException;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatch;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityBatchCollector;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+
+
+/**
+ * Parses an osm xml document using multiple threads. The document is split into
+ * chunks at entity boundaries, each chunk is parsed into a batch of entities on
+ * a worker pool, and the batches are sent to the sink in their original order.
+ * <p>
+ * Chunk boundaries are speculative. A chunk that cannot be parsed is joined
+ * with the following chunk and parsed again, and the speculative result of the
+ * following chunk is discarded.
+ *
+ * @author Brett Henderson
+ */
+public class ParallelXmlParser {
+
+	private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+	private static final int PENDING_CHUNKS_PER_WORKER = 2;
+	private static final int ESTIMATED_BYTES_PER_ENTITY = 128;
+
+	/**
+	 * The maximum number of chunks that may be joined before a parsing failure
+	 * is treated as an error in the document. This limits the memory used when
+	 * reading a corrupt document.
+	 */
+	private static final int MAX_MERGED_CHUNKS = 16;
+
+	private XmlChunkSplitter splitter;
+	private int workers;
+	private boolean enableDateParsing;
+	private Sink sink;
+	private ThreadLocal<SAXParser> parsers;
+	private ExecutorService executorService;
+	private Queue<PendingChunk> pendingChunks;
+	private boolean splitterExhausted;
+	private byte[] prolog;
+	private byte[] epilog;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param inputStream
+	 *            The stream providing the document. It is not closed by this
+	 *            class.
+	 * @param workers
+	 *            The number of worker threads for parsing chunks.
+	 * @param enableDateParsing
+	 *            If true, dates will be parsed from xml data, else the current
+	 *            date will be used thus saving parsing time.
+	 * @param sink
+	 *            The sink to send all parsed entities to.
+	 */
+	public ParallelXmlParser(InputStream inputStream, int workers, boolean enableDateParsing, Sink sink) {
+		this(inputStream, workers, DEFAULT_CHUNK_SIZE, enableDateParsing, sink);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param inputStream
+	 *            The stream providing the document. It is not closed by this
+	 *            class.
+	 * @param workers
+	 *            The number of worker threads for parsing chunks.
+	 * @param chunkSize
+	 *            The minimum number of bytes in each chunk.
+	 * @param enableDateParsing
+	 *            If true, dates will be parsed from xml data, else the current
+	 *            date will be used thus saving parsing time.
+	 * @param sink
+	 *            The sink to send all parsed entities to.
+	 */
+	public ParallelXmlParser(InputStream inputStream, int workers, int chunkSize, boolean enableDateParsing,
+			Sink sink) {
+		this.workers = workers;
+		this.enableDateParsing = enableDateParsing;
+		this.sink = sink;
+
+		splitter = new XmlChunkSplitter(inputStream, chunkSize);
+		pendingChunks = new LinkedList<PendingChunk>();
+
+		// Each worker thread re-uses a single parser.
+		parsers = new ThreadLocal<SAXParser>() {
+			@Override
+			protected SAXParser initialValue() {
+				try {
+					return SAXParserFactory.newInstance().newSAXParser();
+
+				} catch (ParserConfigurationException e) {
+					throw new OsmosisRuntimeException("Unable to create SAX Parser.", e);
+				} catch (SAXException e) {
+					throw new OsmosisRuntimeException("Unable to create SAX Parser.", e);
+				}
+			}
+		};
+	}
+
+
+	/**
+	 * Parses the document and sends all data to the sink.
+	 *
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 * @throws SAXException
+	 *             if a document that cannot be split is not valid xml.
+	 */
+	public void parse() throws IOException, SAXException {
+		if (!splitter.isSplittable()) {
+			parsers.get().parse(splitter.getRemainingInput(), new OsmHandler(sink, enableDateParsing));
+			return;
+		}
+
+		prolog = splitter.getProlog();
+		epilog = splitter.getEpilog();
+
+		executorService = Executors.newFixedThreadPool(workers);
+		try {
+			while (true) {
+				PendingChunk pendingChunk;
+
+				fillPendingChunks();
+
+				pendingChunk = pendingChunks.poll();
+				if (pendingChunk == null) {
+					break;
+				}
+
+				sendToSink(pendingChunk.chunk, waitForChunk(pendingChunk));
+			}
+
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+
+	private EntityBatch parseChunk(XmlChunk chunk) throws IOException, SAXException {
+		InputStream input;
+		EntityBatchCollector collector;
+		SAXParser parser;
+
+		// Surround the chunk with the document prolog and root element end tag
+		// where necessary to make it a well-formed document.
+		input = new ByteArrayInputStream(chunk.getData());
+		if (!chunk.isFirst()) {
+			input = new SequenceInputStream(new ByteArrayInputStream(prolog), input);
+		}
+		if (!chunk.isLast()) {
+			input = new SequenceInputStream(input, new ByteArrayInputStream(epilog));
+		}
+
+		collector = new EntityBatchCollector(chunk.getData().length / ESTIMATED_BYTES_PER_ENTITY);
+
+		parser = parsers.get();
+		try {
+			parser.parse(input, new OsmHandler(collector, enableDateParsing, chunk.isFirst()));
+		} finally {
+			parser.reset();
+		}
+
+		return collector.getBatch();
+	}
+
+
+	private void fillPendingChunks() throws IOException {
+		while (!splitterExhausted && pendingChunks.size() < workers * PENDING_CHUNKS_PER_WORKER) {
+			final XmlChunk chunk;
+
+			chunk = splitter.nextChunk();
+			if (chunk == null) {
+				splitterExhausted = true;
+			} else {
+				pendingChunks.add(new PendingChunk(chunk, executorService.submit(new Callable<EntityBatch>() {
+					@Override
+					public EntityBatch call() throws IOException, SAXException {
+						return parseChunk(chunk);
+					}
+				})));
+			}
+		}
+	}
+
+
+	private EntityBatch waitForChunk(PendingChunk pendingChunk) throws IOException {
+		Exception failure;
+		XmlChunk mergedChunk;
+
+		try {
+			return pendingChunk.result.get();
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof Exception)) {
+				throw new OsmosisRuntimeException("An xml parsing worker thread failed, aborting.", e.getCause());
+			}
+			failure = (Exception) e.getCause();
+		}
+
+		// An entity tag occurring within a comment or nested element produces an
+		// incomplete chunk. Rejoin the chunk with its successors until it can be
+		// parsed.
+		mergedChunk = pendingChunk.chunk;
+		for (int mergeCount = 1; mergeCount < MAX_MERGED_CHUNKS; mergeCount++) {
+			PendingChunk nextChunk;
+
+			fillPendingChunks();
+
+			nextChunk = pendingChunks.poll();
+			if (nextChunk == null) {
+				break;
+			}
+			nextChunk.result.cancel(true);
+
+			mergedChunk = XmlChunk.merge(mergedChunk, nextChunk.chunk);
+			try {
+				return parseChunk(mergedChunk);
+			} catch (SAXException e) {
+				failure = e;
+			} catch (OsmosisRuntimeException e) {
+				failure = e;
+			}
+		}
+
+		throw new OsmosisRuntimeException(
+				"Unable to parse xml data starting at byte offset " + pendingChunk.chunk.getOffset() + ".", failure);
+	}
+
+
+	private void sendToSink(XmlChunk chunk, EntityBatch batch) {
+		// Each chunk is parsed without knowledge of its predecessors, so the
+		// ordering checks made when parsing a whole document are repeated here.
+		if (!chunk.isFirst()) {
+			for (EntityContainer entityContainer : batch.getEntities()) {
+				if (entityContainer instanceof BoundContainer) {
+					throw new OsmosisRuntimeException("Bound element must come before any entities.");
+				}
+			}
+		}
+
+		batch.sendTo(sink);
+	}
+
+
+	/**
+	 * A chunk submitted for parsing.
+	 */
+	private static class PendingChunk {
+		private XmlChunk chunk;
+		private Future<EntityBatch> result;
+
+
+		PendingChunk(XmlChunk chunk, Future<EntityBatch> result) {
+			this.chunk = chunk;
+			this.result = result;
+		}
+	}
+}
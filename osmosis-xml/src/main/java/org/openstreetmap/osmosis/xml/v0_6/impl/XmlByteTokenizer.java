@@ -0,0 +1,929 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * A minimal pull tokenizer for UTF-8 encoded xml which operates directly on
+ * bytes. Only element start and end events are reported. Text content,
+ * comments, processing instructions and document type declarations are
+ * skipped. Attribute values are decoded into an internal buffer and may be
+ * converted to numbers without creating intermediate strings.
+ * <p>
+ * This is not a validating parser and only detects the errors required to
+ * reliably read osm data, such as mismatched tags and malformed attributes.
+ *
+ * @author Brett Henderson
+ */
+public class XmlByteTokenizer {
+
+	/**
+	 * The event type of an element start tag.
+	 */
+	public static final int START_ELEMENT = 1;
+
+	/**
+	 * The event type of an element end tag. Empty elements produce a start
+	 * and an end event.
+	 */
+	public static final int END_ELEMENT = 2;
+
+	/**
+	 * The event type indicating the end of the document.
+	 */
+	public static final int END_DOCUMENT = 3;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_ATTRIBUTES = 16;
+	private static final int MAX_DEPTH = 16;
+	private static final int MAX_INTEGER_DIGITS = 18;
+	private static final int FIXED_PRECISION_DIGITS = 7;
+
+	private InputStream inputStream;
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	private long bufferOffset;
+	private boolean pendingEnd;
+	private int depth;
+	private byte[][] elementStack;
+	private int[] elementStackLengths;
+	private byte[] elementName;
+	private int elementNameLength;
+	private byte[] data;
+	private int dataLength;
+	private int attributeCount;
+	private int[] attributeNameOffsets;
+	private int[] attributeNameLengths;
+	private int[] attributeValueOffsets;
+	private int[] attributeValueLengths;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param inputStream
+	 *            The stream providing the document.
+	 */
+	public XmlByteTokenizer(InputStream inputStream) {
+		this.inputStream = inputStream;
+
+		buffer = new byte[BUFFER_SIZE];
+		elementName = new byte[64];
+		elementStack = new byte[MAX_DEPTH][];
+		elementStackLengths = new int[MAX_DEPTH];
+		data = new byte[1024];
+		attributeNameOffsets = new int[MAX_ATTRIBUTES];
+		attributeNameLengths = new int[MAX_ATTRIBUTES];
+		attributeValueOffsets = new int[MAX_ATTRIBUTES];
+		attributeValueLengths = new int[MAX_ATTRIBUTES];
+	}
+
+
+	/**
+	 * Advances to the next element start or end tag.
+	 *
+	 * @return The event type.
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 */
+	public int next() throws IOException {
+		if (pendingEnd) {
+			pendingEnd = false;
+			depth--;
+			return END_ELEMENT;
+		}
+
+		// All text content is ignored.
+		while (skipToTag()) {
+			int value;
+
+			value = readRequired();
+			if (value == '/') {
+				readEndTag();
+				return END_ELEMENT;
+			} else if (value == '?') {
+				readProcessingInstruction();
+			} else if (value == '!') {
+				readMarkupDeclaration();
+			} else {
+				unread();
+				readStartTag();
+				return START_ELEMENT;
+			}
+		}
+
+		if (depth > 0) {
+			throw error("Unexpected end of document");
+		}
+
+		return END_DOCUMENT;
+	}
+
+
+	/**
+	 * Gets the depth of the current element, with the root element at depth 1.
+	 * The depth of an end tag is that of its parent.
+	 *
+	 * @return The depth.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+
+	/**
+	 * Indicates if the current element has the specified name.
+	 *
+	 * @param name
+	 *            The ASCII encoded name.
+	 * @return True if the names match.
+	 */
+	public boolean isElement(byte[] name) {
+		return isMatch(name, elementName, 0, elementNameLength);
+	}
+
+
+	/**
+	 * Gets the name of the current element.
+	 *
+	 * @return The element name.
+	 */
+	public String getElementName() {
+		return new String(elementName, 0, elementNameLength, UTF8);
+	}
+
+
+	/**
+	 * Locates attributes of the current element in a single pass over the
+	 * attributes.
+	 *
+	 * @param names
+	 *            The ASCII encoded names of the attributes to be located.
+	 * @param indexes
+	 *            Receives the index of each named attribute, or -1 if the
+	 *            element has no such attribute.
+	 */
+	public void findAttributes(byte[][] names, int[] indexes) {
+		Arrays.fill(indexes, -1);
+
+		for (int i = 0; i < attributeCount; i++) {
+			int nameOffset = attributeNameOffsets[i];
+			int nameLength = attributeNameLengths[i];
+
+			for (int j = 0; j < names.length; j++) {
+				if (indexes[j] < 0 && isMatch(names[j], data, nameOffset, nameLength)) {
+					indexes[j] = i;
+					break;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the value of an attribute as a string.
+	 *
+	 * @param index
+	 *            The attribute index, or -1 if the attribute is missing.
+	 * @return The value, or null if the attribute is missing.
+	 */
+	public String getString(int index) {
+		if (index < 0) {
+			return null;
+		}
+
+		return new String(data, attributeValueOffsets[index], attributeValueLengths[index], UTF8);
+	}
+
+
+	/**
+	 * Gets the value of an attribute as a string, using a cache to avoid
+	 * creating new strings for repeated values.
+	 *
+	 * @param index
+	 *            The attribute index, or -1 if the attribute is missing.
+	 * @param cache
+	 *            The cache of previously decoded values.
+	 * @return The value, or null if the attribute is missing.
+	 */
+	public String getString(int index, ByteStringCache cache) {
+		if (index < 0) {
+			return null;
+		}
+
+		return cache.get(data, attributeValueOffsets[index], attributeValueLengths[index]);
+	}
+
+
+	/**
+	 * Indicates if the value of an attribute is equal to the specified value.
+	 *
+	 * @param index
+	 *            The attribute index.
+	 * @param value
+	 *            The ASCII encoded value.
+	 * @return True if the values match.
+	 */
+	public boolean isValue(int index, byte[] value) {
+		return isMatch(value, data, attributeValueOffsets[index], attributeValueLengths[index]);
+	}
+
+
+	/**
+	 * Gets the value of an attribute as a long.
+	 *
+	 * @param index
+	 *            The attribute index.
+	 * @return The value.
+	 */
+	public long getLong(int index) {
+		int offset = attributeValueOffsets[index];
+		int length = attributeValueLengths[index];
+		int end = offset + length;
+		boolean negative;
+		long result;
+
+		negative = length > 0 && data[offset] == '-';
+		if (negative) {
+			offset++;
+		}
+
+		// Rare cases such as very long or invalid values are handled by the
+		// standard parser.
+		if (offset == end || end - offset > MAX_INTEGER_DIGITS) {
+			return Long.parseLong(getString(index));
+		}
+
+		result = 0;
+		for (int i = offset; i < end; i++) {
+			int digit = data[i] - '0';
+
+			if (digit < 0 || digit > 9) {
+				return Long.parseLong(getString(index));
+			}
+			result = result * 10 + digit;
+		}
+
+		if (negative) {
+			return -result;
+		} else {
+			return result;
+		}
+	}
+
+
+	/**
+	 * Gets the value of an attribute as an int.
+	 *
+	 * @param index
+	 *            The attribute index.
+	 * @return The value.
+	 */
+	public int getInteger(int index) {
+		long result;
+
+		result = getLong(index);
+		if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+			return Integer.parseInt(getString(index));
+		}
+
+		return (int) result;
+	}
+
+
+	/**
+	 * Gets the value of an attribute as a coordinate in the fixed precision
+	 * form of FixedPrecisionCoordinateConvertor. Only plain decimal values
+	 * with at most seven decimal places are supported, which covers all
+	 * coordinates written by the OSM API.
+	 *
+	 * @param index
+	 *            The attribute index.
+	 * @return The fixed precision value, or Long.MIN_VALUE if the value cannot
+	 *         be represented exactly in fixed precision form.
+	 */
+	public long getFixedPrecision(int index) {
+		int offset = attributeValueOffsets[index];
+		int end = offset + attributeValueLengths[index];
+		boolean negative;
+		long result;
+		int fractionDigits;
+		boolean fraction;
+
+		negative = offset < end && data[offset] == '-';
+		if (negative) {
+			offset++;
+		}
+		if (offset == end || end - offset > 4 + FIXED_PRECISION_DIGITS) {
+			return Long.MIN_VALUE;
+		}
+
+		result = 0;
+		fraction = false;
+		fractionDigits = 0;
+		for (int i = offset; i < end; i++) {
+			int value = data[i];
+
+			if (value == '.' && !fraction && i > offset && i < end - 1) {
+				fraction = true;
+			} else if (value >= '0' && value <= '9') {
+				if (fraction) {
+					fractionDigits++;
+				}
+				result = result * 10 + value - '0';
+			} else {
+				return Long.MIN_VALUE;
+			}
+		}
+		if (fractionDigits > FIXED_PRECISION_DIGITS) {
+			return Long.MIN_VALUE;
+		}
+		for (int i = fractionDigits; i < FIXED_PRECISION_DIGITS; i++) {
+			result *= 10;
+		}
+
+		// A negative zero is not equal to zero as a double.
+		if (result > Integer.MAX_VALUE || (negative && result == 0)) {
+			return Long.MIN_VALUE;
+		}
+
+		if (negative) {
+			return -result;
+		} else {
+			return result;
+		}
+	}
+
+
+	/**
+	 * Gets the value of an attribute as epoch milliseconds, if it is a UTC
+	 * timestamp in the short form used by the OSM API, such as
+	 * 2007-09-23T08:25:43Z.
+	 *
+	 * @param index
+	 *            The attribute index.
+	 * @return The timestamp, or Long.MIN_VALUE if the value is not a valid
+	 *         timestamp in the short form.
+	 */
+	public long getTimestamp(int index) {
+		int offset = attributeValueOffsets[index];
+		int year;
+		int month;
+		int day;
+		int hour;
+		int minute;
+		int second;
+		long days;
+
+		if (attributeValueLengths[index] != 20 || data[offset + 4] != '-' || data[offset + 7] != '-'
+				|| data[offset + 10] != 'T' || data[offset + 13] != ':' || data[offset + 16] != ':'
+				|| data[offset + 19] != 'Z') {
+			return Long.MIN_VALUE;
+		}
+
+		year = parseDigits(offset, 4);
+		month = parseDigits(offset + 5, 2);
+		day = parseDigits(offset + 8, 2);
+		hour = parseDigits(offset + 11, 2);
+		minute = parseDigits(offset + 14, 2);
+		second = parseDigits(offset + 17, 2);
+
+		// Out of range values are left for the lenient standard parser.
+		if (year < 1900 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month) || hour < 0
+				|| hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+			return Long.MIN_VALUE;
+		}
+
+		days = getDaysSinceEpoch(year, month, day);
+
+		return (((days * 24 + hour) * 60 + minute) * 60 + second) * 1000;
+	}
+
+
+	private int parseDigits(int offset, int count) {
+		int result = 0;
+
+		for (int i = offset; i < offset + count; i++) {
+			int digit = data[i] - '0';
+
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			result = result * 10 + digit;
+		}
+
+		return result;
+	}
+
+
+	private static int getDaysInMonth(int year, int month) {
+		if (month == 2) {
+			if ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) {
+				return 29;
+			} else {
+				return 28;
+			}
+		} else if (month == 4 || month == 6 || month == 9 || month == 11) {
+			return 30;
+		} else {
+			return 31;
+		}
+	}
+
+
+	private static long getDaysSinceEpoch(int year, int month, int day) {
+		int adjustedYear;
+		int era;
+		int yearOfEra;
+		int dayOfYear;
+		int dayOfEra;
+
+		// Count days in years starting in March so that the leap day is the
+		// last day of the year.
+		if (month <= 2) {
+			adjustedYear = year - 1;
+		} else {
+			adjustedYear = year;
+		}
+		era = adjustedYear / 400;
+		yearOfEra = adjustedYear - era * 400;
+		dayOfYear = (153 * ((month + 9) % 12) + 2) / 5 + day - 1;
+		dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+
+	private static boolean isMatch(byte[] expected, byte[] actual, int offset, int length) {
+		if (expected.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (expected[i] != actual[offset + i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	private OsmosisRuntimeException error(String message) {
+		return new OsmosisRuntimeException(message + " at byte offset " + (bufferOffset + position) + ".");
+	}
+
+
+	private boolean fill() throws IOException {
+		int count;
+
+		bufferOffset += limit;
+		position = 0;
+		limit = 0;
+
+		count = inputStream.read(buffer, 0, buffer.length);
+		if (count <= 0) {
+			return false;
+		}
+		limit = count;
+
+		return true;
+	}
+
+
+	private int read() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+
+		return buffer[position++] & 0xFF;
+	}
+
+
+	private int readRequired() throws IOException {
+		int value;
+
+		value = read();
+		if (value < 0) {
+			throw error("Unexpected end of document");
+		}
+
+		return value;
+	}
+
+
+	private void unread() {
+		position--;
+	}
+
+
+	private static boolean isWhitespace(int value) {
+		return value == ' ' || value == '\n' || value == '\t' || value == '\r';
+	}
+
+
+	private int readNonWhitespace() throws IOException {
+		int value;
+
+		do {
+			value = readRequired();
+		} while (isWhitespace(value));
+
+		return value;
+	}
+
+
+	private boolean skipToTag() throws IOException {
+		while (true) {
+			byte[] currentBuffer = buffer;
+			int end = limit;
+
+			for (int i = position; i < end; i++) {
+				if (currentBuffer[i] == '<') {
+					position = i + 1;
+					return true;
+				}
+			}
+			position = end;
+
+			if (!fill()) {
+				return false;
+			}
+		}
+	}
+
+
+	private void skipPast(String terminator) throws IOException {
+		int[] window;
+		int count;
+
+		// Compare the most recent bytes with the terminator, allowing for
+		// terminators such as ]]> preceded by their own first character.
+		window = new int[terminator.length()];
+		for (count = 1; true; count++) {
+			boolean matched;
+
+			System.arraycopy(window, 1, window, 0, window.length - 1);
+			window[window.length - 1] = readRequired();
+
+			matched = count >= window.length;
+			for (int i = 0; matched && i < window.length; i++) {
+				matched = window[i] == terminator.charAt(i);
+			}
+			if (matched) {
+				return;
+			}
+		}
+	}
+
+
+	private void appendData(int value) {
+		if (dataLength == data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+		data[dataLength++] = (byte) value;
+	}
+
+
+	private void appendData(byte[] source, int offset, int length) {
+		if (dataLength + length > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + length));
+		}
+		System.arraycopy(source, offset, data, dataLength, length);
+		dataLength += length;
+	}
+
+
+	private static boolean isNameEnd(byte value) {
+		return value == '=' || value == '>' || value == '/' || value == ' ' || value == '\n' || value == '\t'
+				|| value == '\r' || value == '<' || value == '"' || value == '\'';
+	}
+
+
+	private int readName() throws IOException {
+		int start;
+
+		// Names are accumulated in the data buffer, starting at the returned
+		// offset.
+		start = dataLength;
+		while (true) {
+			byte[] currentBuffer = buffer;
+			int end = limit;
+			int i;
+
+			for (i = position; i < end && !isNameEnd(currentBuffer[i]); i++) {
+				continue;
+			}
+			appendData(currentBuffer, position, i - position);
+			position = i;
+
+			if (i < end) {
+				break;
+			}
+			if (!fill()) {
+				throw error("Unexpected end of document");
+			}
+		}
+
+		if (dataLength == start) {
+			throw error("Missing name");
+		}
+
+		return start;
+	}
+
+
+	private void readElementName() throws IOException {
+		int start;
+
+		dataLength = 0;
+		start = readName();
+
+		elementNameLength = dataLength - start;
+		if (elementNameLength > elementName.length) {
+			elementName = new byte[elementNameLength * 2];
+		}
+		System.arraycopy(data, start, elementName, 0, elementNameLength);
+	}
+
+
+	private void readProcessingInstruction() throws IOException {
+		int start;
+
+		// Retain the content of the xml declaration to check the encoding.
+		dataLength = 0;
+		start = 0;
+		while (dataLength < 2 || data[dataLength - 2] != '?' || data[dataLength - 1] != '>') {
+			appendData(readRequired());
+		}
+		if (dataLength < 4 || data[0] != 'x' || data[1] != 'm' || data[2] != 'l' || !isWhitespace(data[3])) {
+			return;
+		}
+
+		for (int i = 0; i + 8 < dataLength; i++) {
+			if (new String(data, i, 8, UTF8).equals("encoding")) {
+				start = i + 8;
+			}
+		}
+		if (start > 0) {
+			String encoding;
+			int quote;
+			int end;
+
+			while (start < dataLength && data[start] != '"' && data[start] != '\'') {
+				start++;
+			}
+			if (start == dataLength) {
+				return;
+			}
+			quote = start;
+			end = quote + 1;
+			while (end < dataLength && data[end] != data[quote]) {
+				end++;
+			}
+			encoding = new String(data, quote + 1, end - quote - 1, UTF8);
+
+			if (!"UTF-8".equalsIgnoreCase(encoding) && !"US-ASCII".equalsIgnoreCase(encoding)) {
+				throw new OsmosisRuntimeException(
+						"Only UTF-8 encoded xml is supported by the byte parser, the document encoding is "
+						+ encoding + ".");
+			}
+		}
+	}
+
+
+	private void readMarkupDeclaration() throws IOException {
+		int value;
+		int bracketDepth;
+
+		value = readRequired();
+		if (value == '-') {
+			if (readRequired() != '-') {
+				throw error("Malformed comment");
+			}
+			skipPast("-->");
+			return;
+		}
+		if (value == '[') {
+			skipPast("CDATA[");
+			skipPast("]]>");
+			return;
+		}
+
+		// A document type declaration which may contain an internal subset.
+		bracketDepth = 0;
+		while (value != '>' || bracketDepth > 0) {
+			if (value == '[') {
+				bracketDepth++;
+			} else if (value == ']') {
+				bracketDepth--;
+			}
+			value = readRequired();
+		}
+	}
+
+
+	private void readStartTag() throws IOException {
+		int value;
+
+		if (depth == MAX_DEPTH) {
+			throw error("Elements are nested too deeply");
+		}
+
+		readElementName();
+
+		attributeCount = 0;
+		dataLength = 0;
+		while (true) {
+			value = readNonWhitespace();
+
+			if (value == '>') {
+				if (elementStack[depth] == null || elementStack[depth].length < elementNameLength) {
+					elementStack[depth] = new byte[elementName.length];
+				}
+				System.arraycopy(elementName, 0, elementStack[depth], 0, elementNameLength);
+				elementStackLengths[depth] = elementNameLength;
+				depth++;
+				return;
+			}
+			if (value == '/') {
+				if (readRequired() != '>') {
+					throw error("Malformed empty element tag");
+				}
+				depth++;
+				pendingEnd = true;
+				return;
+			}
+
+			unread();
+			readAttribute();
+		}
+	}
+
+
+	private void readAttribute() throws IOException {
+		int value;
+		int quote;
+
+		if (attributeCount == attributeNameOffsets.length) {
+			int capacity = attributeCount * 2;
+
+			attributeNameOffsets = Arrays.copyOf(attributeNameOffsets, capacity);
+			attributeNameLengths = Arrays.copyOf(attributeNameLengths, capacity);
+			attributeValueOffsets = Arrays.copyOf(attributeValueOffsets, capacity);
+			attributeValueLengths = Arrays.copyOf(attributeValueLengths, capacity);
+		}
+
+		attributeNameOffsets[attributeCount] = readName();
+		attributeNameLengths[attributeCount] = dataLength - attributeNameOffsets[attributeCount];
+
+		if (readNonWhitespace() != '=') {
+			throw error("Missing attribute value");
+		}
+		quote = readNonWhitespace();
+		if (quote != '"' && quote != '\'') {
+			throw error("Unquoted attribute value");
+		}
+
+		attributeValueOffsets[attributeCount] = dataLength;
+		while (true) {
+			byte[] currentBuffer = buffer;
+			int end = limit;
+			int i;
+
+			// Copy runs of ordinary characters directly.
+			for (i = position; i < end; i++) {
+				byte current = currentBuffer[i];
+
+				if (current == quote || current == '&' || current == '<' || (current >= 0 && current < ' ')) {
+					break;
+				}
+			}
+			appendData(currentBuffer, position, i - position);
+			position = i;
+
+			if (i == end) {
+				if (!fill()) {
+					throw error("Unexpected end of document");
+				}
+				continue;
+			}
+
+			value = readRequired();
+			if (value == quote) {
+				break;
+			} else if (value == '&') {
+				readReference();
+			} else if (value == '\r') {
+				// Line breaks are normalised before whitespace is replaced.
+				appendData(' ');
+				if (readRequired() != '\n') {
+					unread();
+				}
+			} else if (value == '\n' || value == '\t') {
+				appendData(' ');
+			} else {
+				throw error("Invalid character in attribute value");
+			}
+		}
+		attributeValueLengths[attributeCount] = dataLength - attributeValueOffsets[attributeCount];
+
+		attributeCount++;
+	}
+
+
+	private void readReference() throws IOException {
+		StringBuilder name;
+		int value;
+		int codePoint;
+
+		name = new StringBuilder();
+		for (value = readRequired(); value != ';'; value = readRequired()) {
+			if (name.length() > 10) {
+				throw error("Malformed entity reference");
+			}
+			name.append((char) value);
+		}
+
+		if ("lt".contentEquals(name)) {
+			codePoint = '<';
+		} else if ("gt".contentEquals(name)) {
+			codePoint = '>';
+		} else if ("amp".contentEquals(name)) {
+			codePoint = '&';
+		} else if ("quot".contentEquals(name)) {
+			codePoint = '"';
+		} else if ("apos".contentEquals(name)) {
+			codePoint = '\'';
+		} else if (name.length() > 2 && name.charAt(0) == '#' && name.charAt(1) == 'x') {
+			codePoint = parseCodePoint(name.substring(2), 16);
+		} else if (name.length() > 1 && name.charAt(0) == '#') {
+			codePoint = parseCodePoint(name.substring(1), 10);
+		} else {
+			throw error("Unknown entity reference &" + name + ";");
+		}
+
+		appendCodePoint(codePoint);
+	}
+
+
+	private int parseCodePoint(String text, int radix) {
+		int codePoint;
+
+		try {
+			codePoint = Integer.parseInt(text, radix);
+		} catch (NumberFormatException e) {
+			throw error("Malformed character reference");
+		}
+		if (!Character.isValidCodePoint(codePoint)) {
+			throw error("Invalid character reference");
+		}
+
+		return codePoint;
+	}
+
+
+	private void appendCodePoint(int codePoint) {
+		if (codePoint < 0x80) {
+			appendData(codePoint);
+		} else if (codePoint < 0x800) {
+			appendData(0xC0 | (codePoint >> 6));
+			appendData(0x80 | (codePoint & 0x3F));
+		} else if (codePoint < 0x10000) {
+			appendData(0xE0 | (codePoint >> 12));
+			appendData(0x80 | ((codePoint >> 6) & 0x3F));
+			appendData(0x80 | (codePoint & 0x3F));
+		} else {
+			appendData(0xF0 | (codePoint >> 18));
+			appendData(0x80 | ((codePoint >> 12) & 0x3F));
+			appendData(0x80 | ((codePoint >> 6) & 0x3F));
+			appendData(0x80 | (codePoint & 0x3F));
+		}
+	}
+
+
+	private void readEndTag() throws IOException {
+		readElementName();
+
+		if (readNonWhitespace() != '>') {
+			throw error("Malformed end tag");
+		}
+
+		if (depth == 0 || elementStackLengths[depth - 1] != elementNameLength) {
+			throw error("Unexpected end tag " + getElementName());
+		}
+		for (int i = 0; i < elementNameLength; i++) {
+			if (elementStack[depth - 1][i] != elementName[i]) {
+				throw error("Unexpected end tag " + getElementName());
+			}
+		}
+		depth--;
+	}
+}
@@ -0,0 +1,100 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+
+/**
+ * A contiguous section of an osm xml document produced by the
+ * {@link XmlChunkSplitter}. The first chunk begins with the document prolog,
+ * and all chunks other than the last end immediately before a top-level entity
+ * element.
+ *
+ * @author Brett Henderson
+ */
+public class XmlChunk {
+	private long offset;
+	private byte[] data;
+	private boolean first;
+	private boolean last;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param offset
+	 *            The position of the chunk within the document in bytes.
+	 * @param data
+	 *            The raw bytes of the chunk.
+	 * @param first
+	 *            True if this is the first chunk of the document.
+	 * @param last
+	 *            True if this is the last chunk of the document.
+	 */
+	public XmlChunk(long offset, byte[] data, boolean first, boolean last) {
+		this.offset = offset;
+		this.data = data;
+		this.first = first;
+		this.last = last;
+	}
+
+
+	/**
+	 * Joins two adjacent chunks into a single chunk.
+	 *
+	 * @param chunk1
+	 *            The earlier chunk.
+	 * @param chunk2
+	 *            The chunk immediately following the earlier chunk.
+	 * @return The combined chunk.
+	 */
+	public static XmlChunk merge(XmlChunk chunk1, XmlChunk chunk2) {
+		byte[] data;
+
+		data = new byte[chunk1.data.length + chunk2.data.length];
+		System.arraycopy(chunk1.data, 0, data, 0, chunk1.data.length);
+		System.arraycopy(chunk2.data, 0, data, chunk1.data.length, chunk2.data.length);
+
+		return new XmlChunk(chunk1.offset, data, chunk1.first, chunk2.last);
+	}
+
+
+	/**
+	 * Gets the position of the chunk within the document.
+	 *
+	 * @return The offset in bytes.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+
+	/**
+	 * Gets the raw bytes of the chunk.
+	 *
+	 * @return The chunk data.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+
+	/**
+	 * Indicates if this is the first chunk of the document and therefore
+	 * contains the prolog and root element start tag.
+	 *
+	 * @return True if this is the first chunk.
+	 */
+	public boolean isFirst() {
+		return first;
+	}
+
+
+	/**
+	 * Indicates if this is the last chunk of the document and therefore
+	 * contains the root element end tag.
+	 *
+	 * @return True if this is the last chunk.
+	 */
+	public boolean isLast() {
+		return last;
+	}
+}
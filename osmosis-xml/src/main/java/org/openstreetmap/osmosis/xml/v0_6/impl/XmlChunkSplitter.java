@@ -0,0 +1,347 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+
+/**
+ * Splits an osm xml document into chunks that can be parsed independently. The
+ * split points are found by searching for the start of node, way and relation
+ * tags without otherwise parsing the document, so a split point may be
+ * incorrect if such a tag occurs within a comment or nested element. A chunk
+ * ending at an incorrect split point cannot be parsed, and the caller must join
+ * it with the following chunk.
+ * <p>
+ * Documents without a recognisable prolog and root element, such as those
+ * encoded in UTF-16, cannot be split and must be parsed as a stream.
+ *
+ * @author Brett Henderson
+ */
+public class XmlChunkSplitter {
+
+	private static final int READ_SIZE = 64 * 1024;
+	private static final String[] ENTITY_ELEMENT_NAMES = {"node", "way", "relation"};
+
+	private InputStream source;
+	private int chunkSize;
+	private byte[] buffer;
+	private int length;
+	private boolean endOfStream;
+	private long offset;
+	private boolean prologRead;
+	private byte[] prolog;
+	private String rootElementName;
+	private boolean firstChunkCreated;
+	private boolean lastChunkCreated;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param source
+	 *            The stream providing the document.
+	 * @param chunkSize
+	 *            The minimum size of each chunk in bytes. Chunks are extended
+	 *            to the start of the next entity.
+	 */
+	public XmlChunkSplitter(InputStream source, int chunkSize) {
+		this.source = source;
+		this.chunkSize = chunkSize;
+
+		buffer = new byte[READ_SIZE];
+	}
+
+
+	/**
+	 * Indicates if the document can be split into chunks.
+	 *
+	 * @return True if the document can be split.
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 */
+	public boolean isSplittable() throws IOException {
+		if (!prologRead) {
+			readProlog();
+		}
+
+		return prolog != null;
+	}
+
+
+	/**
+	 * Gets the document prolog up to and including the root element start tag.
+	 * This is prepended to every chunk other than the first to make it a
+	 * well-formed document.
+	 *
+	 * @return The prolog data.
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 */
+	public byte[] getProlog() throws IOException {
+		if (!isSplittable()) {
+			throw new IllegalStateException("The document cannot be split.");
+		}
+
+		return prolog;
+	}
+
+
+	/**
+	 * Gets the root element end tag. This is appended to every chunk other than
+	 * the last to make it a well-formed document.
+	 *
+	 * @return The epilog data.
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 */
+	public byte[] getEpilog() throws IOException {
+		if (!isSplittable()) {
+			throw new IllegalStateException("The document cannot be split.");
+		}
+
+		return ("</" + rootElementName + ">").getBytes("US-ASCII");
+	}
+
+
+	/**
+	 * Gets a stream providing the remainder of a document that cannot be split.
+	 *
+	 * @return The stream of unread data.
+	 */
+	public InputStream getRemainingInput() {
+		return new SequenceInputStream(new ByteArrayInputStream(buffer, 0, length), source);
+	}
+
+
+	/**
+	 * Reads the next chunk of the document.
+	 *
+	 * @return The next chunk, or null if the end of the document has been
+	 *         reached.
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 */
+	public XmlChunk nextChunk() throws IOException {
+		int boundary;
+
+		if (!isSplittable()) {
+			throw new IllegalStateException("The document cannot be split.");
+		}
+		if (lastChunkCreated) {
+			return null;
+		}
+
+		if (firstChunkCreated) {
+			boundary = findBoundary(Math.max(chunkSize, 1));
+		} else {
+			boundary = findBoundary(Math.max(chunkSize, prolog.length));
+		}
+
+		if (boundary < 0) {
+			fill(Integer.MAX_VALUE);
+			return createChunk(length, true);
+		} else {
+			return createChunk(boundary, false);
+		}
+	}
+
+
+	private XmlChunk createChunk(int end, boolean last) {
+		XmlChunk chunk;
+
+		chunk = new XmlChunk(offset, Arrays.copyOf(buffer, end), !firstChunkCreated, last);
+
+		System.arraycopy(buffer, end, buffer, 0, length - end);
+		length -= end;
+		offset += end;
+
+		firstChunkCreated = true;
+		lastChunkCreated = last;
+
+		return chunk;
+	}
+
+
+	private void fill(int required) throws IOException {
+		while (length < required && !endOfStream) {
+			int count;
+
+			if (length == buffer.length) {
+				int capacity;
+
+				capacity = buffer.length * 2;
+				if (capacity < 0) {
+					throw new IOException("The xml data between entities is too large to be split.");
+				}
+				buffer = Arrays.copyOf(buffer, capacity);
+			}
+
+			count = source.read(buffer, length, buffer.length - length);
+			if (count < 0) {
+				endOfStream = true;
+			} else {
+				length += count;
+			}
+		}
+	}
+
+
+	private int byteAt(int position) throws IOException {
+		if (position >= length) {
+			fill(position + 1);
+
+			if (position >= length) {
+				return -1;
+			}
+		}
+
+		return buffer[position] & 0xFF;
+	}
+
+
+	private boolean matches(int position, String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			if (byteAt(position + i) != text.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	private int indexOf(String text, int position) throws IOException {
+		while (byteAt(position) >= 0) {
+			if (matches(position, text)) {
+				return position;
+			}
+			position++;
+		}
+
+		return -1;
+	}
+
+
+	private static boolean isNameChar(int value) {
+		return (value >= 'a' && value <= 'z') || (value >= 'A' && value <= 'Z') || (value >= '0' && value <= '9')
+				|| value == '_' || value == ':' || value == '-' || value == '.';
+	}
+
+
+	private static boolean isNameEnd(int value) {
+		return value == ' ' || value == '\t' || value == '\r' || value == '\n' || value == '>' || value == '/';
+	}
+
+
+	private boolean isEntityStart(int position) throws IOException {
+		if (byteAt(position) != '<') {
+			return false;
+		}
+
+		for (String elementName : ENTITY_ELEMENT_NAMES) {
+			if (matches(position + 1, elementName) && isNameEnd(byteAt(position + 1 + elementName.length()))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+
+	private int findBoundary(int position) throws IOException {
+		fill(position);
+
+		while (byteAt(position) >= 0) {
+			if (isEntityStart(position)) {
+				return position;
+			}
+			position++;
+		}
+
+		return -1;
+	}
+
+
+	private void readProlog() throws IOException {
+		int position;
+
+		prologRead = true;
+
+		// Byte oriented searching is only possible with ASCII compatible
+		// encodings.
+		if ((byteAt(0) == 0xFE && byteAt(1) == 0xFF) || (byteAt(0) == 0xFF && byteAt(1) == 0xFE)) {
+			return;
+		}
+
+		position = indexOf("<", 0);
+		while (position >= 0) {
+			if (matches(position, "<?")) {
+				position = indexOf("?>", position);
+			} else if (matches(position, "<!--")) {
+				position = indexOf("-->", position + 4);
+			} else if (matches(position, "<!")) {
+				int end;
+
+				// A document type declaration is only supported without an
+				// internal subset.
+				end = indexOf(">", position);
+				if (end < 0) {
+					return;
+				}
+				for (int i = position; i < end; i++) {
+					if (buffer[i] == '[') {
+						return;
+					}
+				}
+				position = end;
+			} else {
+				readRootStartTag(position);
+				return;
+			}
+
+			if (position >= 0) {
+				position = indexOf("<", position);
+			}
+		}
+	}
+
+
+	private void readRootStartTag(int start) throws IOException {
+		int position;
+		int quote;
+
+		position = start + 1;
+		while (isNameChar(byteAt(position))) {
+			position++;
+		}
+		if (position == start + 1 || !isNameEnd(byteAt(position))) {
+			return;
+		}
+		rootElementName = new String(buffer, start + 1, position - start - 1, "US-ASCII");
+
+		quote = 0;
+		for (int value = byteAt(position); value != '>' || quote != 0; value = byteAt(++position)) {
+			if (value < 0) {
+				return;
+			}
+			if (quote != 0) {
+				if (value == quote) {
+					quote = 0;
+				}
+			} else if (value == '"' || value == '\'') {
+				quote = value;
+			}
+		}
+
+		// An empty root element has no content to split.
+		if (byteAt(position - 1) == '/') {
+			return;
+		}
+
+		prolog = Arrays.copyOf(buffer, position + 1);
+	}
+}
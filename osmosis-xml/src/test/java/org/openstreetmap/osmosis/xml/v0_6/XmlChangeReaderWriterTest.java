@@ -49,6 +49,35 @@ public class XmlChangeReaderWriterTest extends AbstractDataTest {
 	}
 	
 	/**
+	 * Tests that the byte level writer produces the same output as the
+	 * character based writer.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testByteWriter() throws IOException {
+		XmlChangeReader xmlReader;
+		XmlChangeWriter xmlWriter;
+		File inputFile;
+		File outputFile;
+		
+		inputFile = dataUtils.createDataFile("v0_6/xml-task-tests-v0_6.osc");
+		outputFile = dataUtils.newFile();
+		
+		// Create and connect the xml tasks.
+		xmlReader = new XmlChangeReader(inputFile, true, CompressionMethod.None);
+		xmlWriter = new XmlChangeWriter(outputFile, CompressionMethod.None, 1, true);
+		xmlReader.setChangeSink(xmlWriter);
+		
+		// Process the xml.
+		xmlReader.run();
+		
+		// Validate that the output file matches the input file.
+		dataUtils.compareFiles(inputFile, outputFile);
+	}
+	
+		/**
 	 * Tests acceptance of nodes in a delete change with lat/lon attribute not set.
 	 * 
 	 * @throws Exception if something goes wrong.
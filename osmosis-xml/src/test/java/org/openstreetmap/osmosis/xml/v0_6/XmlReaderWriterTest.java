@@ -83,4 +83,69 @@ public class XmlReaderWriterTest extends AbstractDataTest {
 		// Validate that the output file matches the input file.
 		dataUtils.compareFiles(inputFile, outputFile);
 	}
+	
+	
+	/**
+	 * Tests reading an osm file with the byte level parser of the fast xml
+	 * reader.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testFastReaderByteParser() throws IOException {
+		File inputFile;
+		File outputFile;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/xml-task-tests-v0_6.osm");
+		outputFile = dataUtils.newFile();
+		
+		// Run the pipeline.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--fast-read-xml",
+				inputFile.getPath(),
+				"byteParser=true",
+				"--write-xml-0.6",
+				outputFile.getPath()
+			}
+		);
+		
+		// Validate that the output file matches the input file.
+		dataUtils.compareFiles(inputFile, outputFile);
+	}
+	
+	
+	/**
+	 * Tests writing an osm file with the byte level writer.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testByteWriter() throws IOException {
+		File inputFile;
+		File outputFile;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/xml-task-tests-v0_6.osm");
+		outputFile = dataUtils.newFile();
+		
+		// Run the pipeline.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--read-xml-0.6",
+				inputFile.getPath(),
+				"--write-xml-0.6",
+				outputFile.getPath(),
+				"byteWriter=true"
+			}
+		);
+		
+		// Validate that the output file matches the input file.
+		dataUtils.compareFiles(inputFile, outputFile);
+	}
 }
@@ -0,0 +1,226 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.common.UnparsedTimestampContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.task.common.ChangeAction;
+import org.openstreetmap.osmosis.xml.common.XmlByteBuffer;
+import org.openstreetmap.osmosis.xml.common.XmlTimestampFormat;
+
+
+/**
+ * Tests the byte level xml writers by comparing their output with that of the
+ * character based writers.
+ *
+ * @author Brett Henderson
+ */
+public class ByteOsmWriterTest {
+
+	private static final OsmUser USER = new OsmUser(12, "us\"er & <name> é中");
+
+
+	private CommonEntityData createEntityData(long id, Date timestamp, OsmUser user, long changesetId, Tag... tags) {
+		return new CommonEntityData(id, 3, timestamp, user, changesetId, Arrays.asList(tags));
+	}
+
+
+	private List<EntityContainer> createEntities() {
+		List<EntityContainer> entities;
+		CommonEntityData metaTagged;
+		Way way;
+		Relation relation;
+
+		entities = new ArrayList<EntityContainer>();
+
+		entities.add(new NodeContainer(new Node(createEntityData(1, new Date(1234567890000L), USER, 5,
+				new Tag("name", "café <>&\"' 😀 中"),
+				new Tag("control", "a\u0001b\u007fc\td\ne\rf"),
+				new Tag("surrogates", "lone \ud800 high and \udc00 low \ud800")),
+				-1.2345678, 179.9999999)));
+		entities.add(new NodeContainer(new Node(
+				createEntityData(Long.MIN_VALUE, new Date(0), OsmUser.NONE, 0), 1.123456789, -0.0)));
+		entities.add(new NodeContainer(new Node(
+				createEntityData(Long.MAX_VALUE, new Date(951825599000L), USER, 0), 0.0000001, -0.0000001)));
+		entities.add(new NodeContainer(new Node(
+				createEntityData(3, new Date(-15000000000000L), USER, 1), Double.NaN, Double.NaN)));
+		entities.add(new NodeContainer(new Node(
+				createEntityData(4, new Date(253402300800000L), USER, 1), 90, -180)));
+		entities.add(new NodeContainer(new Node(new CommonEntityData(5, 1,
+				new UnparsedTimestampContainer(new XmlTimestampFormat(), "2010-01-01T00:00:00Z"), USER, 1),
+				1e-9, 1e20)));
+
+		metaTagged = createEntityData(6, new Date(1300000000000L), USER, 1, new Tag("k", "v"));
+		metaTagged.getMetaTags().put("meta<key>", "meta \"value\"");
+		entities.add(new NodeContainer(new Node(metaTagged, 10, 20)));
+
+		way = new Way(createEntityData(1, new Date(1234567890000L), USER, 5, new Tag("highway", "residential")));
+		way.getWayNodes().add(new WayNode(1));
+		way.getWayNodes().add(new WayNode(-2));
+		entities.add(new WayContainer(way));
+		entities.add(new WayContainer(new Way(createEntityData(2, new Date(1234567890000L), OsmUser.NONE, 0))));
+
+		relation = new Relation(createEntityData(1, new Date(1234567890000L), USER, 5, new Tag("type", "route")));
+		relation.getMembers().add(new RelationMember(1, EntityType.Node, "stop & go"));
+		relation.getMembers().add(new RelationMember(1, EntityType.Way, ""));
+		relation.getMembers().add(new RelationMember(2, EntityType.Relation, "sub"));
+		entities.add(new RelationContainer(relation));
+		entities.add(new RelationContainer(
+				new Relation(createEntityData(2, new Date(1234567890000L), USER, 5))));
+
+		return entities;
+	}
+
+
+	private byte[] writeCharacters(List<EntityContainer> entities, boolean legacyBound) throws IOException {
+		ByteArrayOutputStream outputStream;
+		Writer writer;
+		OsmWriter osmWriter;
+
+		outputStream = new ByteArrayOutputStream();
+		writer = new OutputStreamWriter(outputStream, "UTF-8");
+		osmWriter = new OsmWriter("osm", 0, true, legacyBound);
+		osmWriter.setWriter(writer);
+
+		osmWriter.begin();
+		for (EntityContainer entity : entities) {
+			osmWriter.process(entity);
+		}
+		osmWriter.end();
+		writer.flush();
+
+		return outputStream.toByteArray();
+	}
+
+
+	private byte[] writeBytes(List<EntityContainer> entities, boolean legacyBound) throws IOException {
+		ByteArrayOutputStream outputStream;
+		XmlByteBuffer byteBuffer;
+		ByteOsmWriter osmWriter;
+
+		outputStream = new ByteArrayOutputStream();
+		// Use a small buffer so that values are split across buffer flushes.
+		byteBuffer = new XmlByteBuffer(outputStream, 384);
+		osmWriter = new ByteOsmWriter("osm", 0, true, legacyBound);
+		osmWriter.setOutput(byteBuffer);
+
+		osmWriter.begin();
+		for (EntityContainer entity : entities) {
+			osmWriter.process(entity);
+		}
+		osmWriter.end();
+		byteBuffer.flush();
+
+		return outputStream.toByteArray();
+	}
+
+
+	/**
+	 * Tests that all entity types are written identically.
+	 *
+	 * @throws IOException
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testEntities() throws IOException {
+		List<EntityContainer> entities;
+
+		entities = createEntities();
+		entities.add(0, new BoundContainer(new Bound(4.25, -2, 3, -1.5, "somewhere")));
+
+		assertArrayEquals(writeCharacters(entities, false), writeBytes(entities, false));
+	}
+
+
+	/**
+	 * Tests that legacy bounds are written identically.
+	 *
+	 * @throws IOException
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testLegacyBound() throws IOException {
+		List<EntityContainer> entities;
+
+		entities = new ArrayList<EntityContainer>();
+		entities.add(new BoundContainer(new Bound(4.25, -2, 3, -1.5, "somewhere")));
+
+		assertArrayEquals(writeCharacters(entities, true), writeBytes(entities, true));
+	}
+
+
+	/**
+	 * Tests that changes are written identically.
+	 *
+	 * @throws IOException
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testChanges() throws IOException {
+		ByteArrayOutputStream characterStream;
+		ByteArrayOutputStream byteStream;
+		Writer writer;
+		XmlByteBuffer byteBuffer;
+		OsmChangeWriter changeWriter;
+		ByteOsmChangeWriter byteChangeWriter;
+		ChangeAction[] actions;
+		int i;
+
+		characterStream = new ByteArrayOutputStream();
+		writer = new OutputStreamWriter(characterStream, "UTF-8");
+		changeWriter = new OsmChangeWriter("osmChange", 0);
+		changeWriter.setWriter(writer);
+
+		byteStream = new ByteArrayOutputStream();
+		byteBuffer = new XmlByteBuffer(byteStream);
+		byteChangeWriter = new ByteOsmChangeWriter("osmChange", 0);
+		byteChangeWriter.setOutput(byteBuffer);
+
+		actions = new ChangeAction[] {ChangeAction.Create, ChangeAction.Create, ChangeAction.Modify,
+				ChangeAction.Delete, ChangeAction.Modify};
+
+		changeWriter.begin();
+		byteChangeWriter.begin();
+		i = 0;
+		for (EntityContainer entity : createEntities()) {
+			ChangeContainer change = new ChangeContainer(entity, actions[i++ % actions.length]);
+
+			changeWriter.process(change);
+			byteChangeWriter.process(change);
+		}
+		changeWriter.end();
+		byteChangeWriter.end();
+
+		writer.flush();
+		byteBuffer.flush();
+
+		assertArrayEquals(characterStream.toByteArray(), byteStream.toByteArray());
+	}
+}
@@ -0,0 +1,250 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.Test;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.testutil.v0_6.SinkEntityInspector;
+
+
+/**
+ * Tests the byte level xml parser by comparing its results with those of the
+ * SAX based parser.
+ *
+ * @author Brett Henderson
+ */
+public class ByteXmlParserTest {
+
+	private static final String OSM_PREFIX = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<!-- A comment containing <node id=\"1\"/> and ]]> and - -->\n"
+			+ "<osm version=\"0.6\" generator=\"test &amp; generator\">\n";
+	private static final String OSM_SUFFIX = "</osm>\n";
+
+
+	private List<Entity> parseSax(String document) throws Exception {
+		SinkEntityInspector inspector;
+
+		inspector = new SinkEntityInspector();
+		SAXParserFactory.newInstance().newSAXParser().parse(
+				new ByteArrayInputStream(document.getBytes("UTF-8")), new OsmHandler(inspector, true));
+
+		return getEntities(inspector);
+	}
+
+
+	private List<Entity> parseBytes(String document) throws Exception {
+		SinkEntityInspector inspector;
+
+		inspector = new SinkEntityInspector();
+		new ByteXmlParser(inspector, new ByteArrayInputStream(document.getBytes("UTF-8")), true).readOsm();
+
+		return getEntities(inspector);
+	}
+
+
+	private List<Entity> getEntities(SinkEntityInspector inspector) {
+		List<Entity> entities;
+
+		entities = new ArrayList<Entity>();
+		for (EntityContainer entityContainer : inspector.getProcessedEntities()) {
+			entities.add(entityContainer.getEntity());
+		}
+
+		return entities;
+	}
+
+
+	private void assertTagsEqual(List<Tag> expected, List<Tag> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+			assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+		}
+	}
+
+
+	private void assertSameResult(String document) throws Exception {
+		List<Entity> expected;
+		List<Entity> actual;
+
+		expected = parseSax(document);
+		actual = parseBytes(document);
+
+		assertEquals(expected, actual);
+		for (int i = 0; i < expected.size(); i++) {
+			Entity expectedEntity = expected.get(i);
+			Entity actualEntity = actual.get(i);
+
+			assertEquals(expectedEntity.getUser(), actualEntity.getUser());
+			assertEquals(expectedEntity.getUser().getName(), actualEntity.getUser().getName());
+			assertEquals(expectedEntity.getChangesetId(), actualEntity.getChangesetId());
+			// Bounds are timestamped with the time they were created.
+			if (!(expectedEntity instanceof Bound)) {
+				assertEquals(expectedEntity.getTimestamp(), actualEntity.getTimestamp());
+			}
+			assertTagsEqual(new ArrayList<Tag>(expectedEntity.getTags()), new ArrayList<Tag>(actualEntity.getTags()));
+
+			if (expectedEntity instanceof Node) {
+				Node expectedNode = (Node) expectedEntity;
+				Node actualNode = (Node) actualEntity;
+
+				assertEquals(0, Double.compare(expectedNode.getLatitude(), actualNode.getLatitude()));
+				assertEquals(0, Double.compare(expectedNode.getLongitude(), actualNode.getLongitude()));
+			}
+		}
+	}
+
+
+	/**
+	 * Tests a document containing all supported entity types and bounds.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testEntities() throws Exception {
+		String document;
+
+		document = OSM_PREFIX
+				+ "  <bounds minlat='-1.5' minlon='-2' maxlat='3' maxlon='4.25' origin='somewhere'/>\n"
+				+ "  <node id=\"1\" version=\"2\" timestamp=\"2008-01-02T03:04:05Z\" uid=\"10\" user=\"user10\""
+				+ " changeset=\"5\" lat=\"-1.2345678\" lon=\"179.9999999\">\n"
+				+ "    <tag k=\"name\" v=\"caf&#233; &lt;&gt;&amp;&quot;&apos; &#x1F600; é中\"/>\n"
+				+ "    <tag k = 'note' v = 'line\nbreak\ttab\r\nwindows\rmac&#10;kept'/>\n"
+				+ "  </node>\n"
+				+ "  <node id=\"-2\" version=\"1\" timestamp=\"2008-02-29T23:59:59Z\" lat=\"1.123456789\""
+				+ " lon=\"-0\"/>\n"
+				+ "  <node id=\"9223372036854775807\" version=\"1\" timestamp=\"2008-02-30T03:04:05Z\""
+				+ " uid=\"3\" lat=\"1e-5\" lon=\"-0.0000001\"><unknown><tag k=\"a\" v=\"b\"/></unknown></node>\n"
+				+ "  <node id=\"4\" version=\"1\" timestamp=\"1970-01-01T00:00:00Z\" lat=\"90\" lon=\"-180.0\">"
+				+ "<![CDATA[ <tag k=\"x\" v=\"y\"/> ]]]></node>\n"
+				+ "  <?ignored instruction?>\n"
+				+ "  <way id=\"1\" version=\"3\" timestamp=\"2012-12-31T12:00:00Z\" uid=\"7\" user=\"\">\n"
+				+ "    <nd ref=\"1\"/><nd ref=\"-2\"/>\n"
+				+ "    <tag k=\"highway\" v=\"residential\"/>\n"
+				+ "  </way>\n"
+				+ "  <unknown id=\"1\"><node id=\"100\" version=\"1\"/></unknown>\n"
+				+ "  <relation id=\"1\" version=\"1\" timestamp=\"2012-12-31T12:00:00Z\" changeset=\"9\">\n"
+				+ "    <member type=\"way\" ref=\"1\" role=\"outer\"/>\n"
+				+ "    <member type=\"node\" ref=\"-2\" role=\"\"/>\n"
+				+ "    <member type=\"relation\" ref=\"1\" role=\"sub\"/>\n"
+				+ "    <tag k=\"type\" v=\"multipolygon\"/>\n"
+				+ "  </relation>\n"
+				+ OSM_SUFFIX;
+
+		assertSameResult(document);
+	}
+
+
+	/**
+	 * Tests a document containing a legacy bound element.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testLegacyBound() throws Exception {
+		assertSameResult(OSM_PREFIX + "<bound box=\"-1,-2,3,4\" origin=\"somewhere\"/>" + OSM_SUFFIX);
+	}
+
+
+	/**
+	 * Tests that an empty document is parsed successfully.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testEmptyDocument() throws Exception {
+		assertTrue(parseBytes("<osm version=\"0.6\"/>").isEmpty());
+	}
+
+
+	/**
+	 * Tests that mismatched tags are rejected.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testMismatchedTags() throws Exception {
+		parseBytes(OSM_PREFIX + "<node id=\"1\" version=\"1\" lat=\"1\" lon=\"1\"></way>" + OSM_SUFFIX);
+	}
+
+
+	/**
+	 * Tests that an unterminated document is rejected.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testUnterminatedDocument() throws Exception {
+		parseBytes(OSM_PREFIX + "<node id=\"1\" version=\"1\" timestamp=\"2008-01-02T03:04:05Z\" lat=\"1\"");
+	}
+
+
+	/**
+	 * Tests that an entity without a timestamp is rejected when date parsing
+	 * is enabled.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testMissingTimestamp() throws Exception {
+		try {
+			parseBytes(OSM_PREFIX + "<node id=\"1\" version=\"1\" lat=\"1\" lon=\"1\"/>" + OSM_SUFFIX);
+			fail("A missing timestamp was accepted.");
+		} catch (OsmosisRuntimeException e) {
+			assertEquals("The entity timestamp attribute is missing.", e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Tests that an entity without a timestamp is accepted when date parsing
+	 * is disabled.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testMissingTimestampWithoutDateParsing() throws Exception {
+		SinkEntityInspector inspector;
+
+		inspector = new SinkEntityInspector();
+		new ByteXmlParser(inspector, new ByteArrayInputStream(
+				(OSM_PREFIX + "<node id=\"1\" version=\"1\" lat=\"1\" lon=\"1\"/>" + OSM_SUFFIX).getBytes("UTF-8")),
+				false).readOsm();
+
+		assertEquals(1, getEntities(inspector).size());
+	}
+
+
+		/**
+	 * Tests that documents in encodings other than UTF-8 are rejected.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testUnsupportedEncoding() throws Exception {
+		parseBytes("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><osm version=\"0.6\"/>");
+	}
+}
@@ -0,0 +1,170 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.Test;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.testutil.v0_6.SinkEntityInspector;
+
+
+/**
+ * Tests the parallel xml parser.
+ *
+ * @author Brett Henderson
+ */
+public class ParallelXmlParserTest {
+
+	private static final String OSM_PREFIX = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<osm version=\"0.6\" generator=\"test > generator\">\n"
+			+ "  <bounds minlat=\"-1\" minlon=\"-2\" maxlat=\"3\" maxlon=\"4\"/>\n";
+	private static final String OSM_SUFFIX = "</osm>\n";
+
+
+	private String buildEntities(int count) {
+		StringBuilder builder;
+
+		builder = new StringBuilder();
+		for (int i = 1; i <= count; i++) {
+			builder.append("  <node id=\"").append(i).append("\" version=\"1\" timestamp=\"2010-01-01T00:00:00Z\"")
+					.append(" uid=\"7\" user=\"me\" changeset=\"3\" lat=\"1.5\" lon=\"").append(i).append("\">\n")
+					.append("    <tag k=\"name\" v=\"&lt;node ").append(i).append("\"/>\n")
+					.append("  </node>\n");
+		}
+		for (int i = 1; i <= count; i++) {
+			builder.append("  <way id=\"").append(i).append("\" version=\"2\" timestamp=\"2010-01-01T00:00:00Z\"")
+					.append(" changeset=\"3\">\n")
+					.append("    <nd ref=\"").append(i).append("\"/>\n")
+					.append("  </way>\n");
+		}
+		for (int i = 1; i <= count; i++) {
+			builder.append("  <relation id=\"").append(i)
+					.append("\" version=\"3\" timestamp=\"2010-01-01T00:00:00Z\" changeset=\"3\">\n")
+					.append("    <member type=\"way\" ref=\"").append(i).append("\" role=\"outer\"/>\n")
+					.append("  </relation>\n");
+		}
+
+		return builder.toString();
+	}
+
+
+	private List<Entity> parseSequential(String document) throws Exception {
+		SinkEntityInspector inspector;
+
+		inspector = new SinkEntityInspector();
+		SAXParserFactory.newInstance().newSAXParser().parse(
+				new ByteArrayInputStream(document.getBytes("UTF-8")), new OsmHandler(inspector, true));
+
+		return getEntities(inspector);
+	}
+
+
+	private List<Entity> parseParallel(String document, int chunkSize) throws Exception {
+		SinkEntityInspector inspector;
+
+		inspector = new SinkEntityInspector();
+		new ParallelXmlParser(
+				new ByteArrayInputStream(document.getBytes("UTF-8")), 3, chunkSize, true, inspector).parse();
+
+		return getEntities(inspector);
+	}
+
+
+	private List<Entity> getEntities(SinkEntityInspector inspector) {
+		List<Entity> entities;
+
+		entities = new ArrayList<Entity>();
+		for (EntityContainer entityContainer : inspector.getProcessedEntities()) {
+			entities.add(entityContainer.getEntity());
+		}
+
+		return entities;
+	}
+
+
+	/**
+	 * Tests that a document split into many chunks produces the same entities
+	 * as a sequential parse.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testManyChunks() throws Exception {
+		String document;
+
+		document = OSM_PREFIX + buildEntities(50) + OSM_SUFFIX;
+
+		for (int chunkSize : new int[] {1, 100, 1000, 1000000}) {
+			assertEquals("Incorrect entities for chunk size " + chunkSize + ".",
+					parseSequential(document), parseParallel(document, chunkSize));
+		}
+	}
+
+
+	/**
+	 * Tests that entity tags within comments and unknown elements do not cause
+	 * entities to be lost or invented.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testFalseBoundaries() throws Exception {
+		String document;
+
+		document = OSM_PREFIX + buildEntities(2)
+				+ "  <!-- <node id=\"100\"/> <way id=\"100\"/> <relation id=\"100\"/> -->\n"
+				+ "  <unknown><node id=\"101\"/><way id=\"101\"/></unknown>\n"
+				+ buildEntities(2) + OSM_SUFFIX;
+
+		assertEquals(parseSequential(document), parseParallel(document, 1));
+	}
+
+
+	/**
+	 * Tests that a document which cannot be split is parsed as a stream.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test
+	public void testEmptyRootElement() throws Exception {
+		assertEquals(0, parseParallel("<osm version=\"0.6\"/>", 1).size());
+	}
+
+
+	/**
+	 * Tests that a bound element following entities in a later chunk is
+	 * rejected.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testLateBound() throws Exception {
+		parseParallel(OSM_PREFIX + buildEntities(2)
+				+ "  <bounds minlat=\"-1\" minlon=\"-2\" maxlat=\"3\" maxlon=\"4\"/>\n" + OSM_SUFFIX, 1);
+	}
+
+
+	/**
+	 * Tests that a malformed document is rejected.
+	 *
+	 * @throws Exception
+	 *             if an error occurs.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testMalformedDocument() throws Exception {
+		parseParallel(OSM_PREFIX + buildEntities(2) + "  <node id=\"5\">\n" + buildEntities(2) + OSM_SUFFIX, 1);
+	}
+}